@@ -0,0 +1,81 @@
+package edu.bu.zaman.MMHModel;
+
+import org.apache.poi.ss.usermodel.Row;
+
+/**
+ * The original trajectory matcher, which parses the conditions and severities of a row of the
+ * trajectories sheet for every test. It is kept only as the baseline that
+ * {@link StageManagerBenchmark} compares the compiled {@link TrajectoryTable} against, so that the
+ * model itself does not retain any POI objects.
+ */
+final class BaselineStageMatcher
+{
+	private BaselineStageMatcher()
+	{
+	}
+	
+	/**
+	 * Determines whether the patient's current set of conditions and associated
+	 * severities meets the requirements for the specified trajectory.
+	 * 
+	 * @param patient the current patient
+	 * @param trajectory 	the trajectory to test against, provided as a row in the 
+	 * 		  				trajectories spreadsheet
+	 * @return Whether the trajectory matches the patient's current status
+	 */
+	public static boolean patientSatisfiesRow(Patient patient, Row trajectory)
+	{
+		if (trajectory == null)
+		{
+			return false;
+		}
+		
+		String[] trajectoryConditions = trajectory.getCell(SetupLoader.Fields.PATIENT_CONDITIONS).getStringCellValue().split(",");
+		String[] conditionSeverities = trajectory.getCell(SetupLoader.Fields.SEVERITIES).getStringCellValue().split(",");
+		
+		boolean match = true;		
+		for (int index = 0;index < trajectoryConditions.length; index++)
+		{
+			// Check first to see if the patient has one of the conditions listed in the 
+			// current trajectory
+			Condition.Type condition = Condition.Type.valueOf(trajectoryConditions[index]);
+			Condition patientCondition = patient.getCondition(condition);
+			if (condition != null && patientCondition != null && condition == patientCondition.getType())
+			{
+				
+				// If the patient has the condition, check to see if the patient's severity for
+				// the condition matches the requirements of the trajectory
+				String[] bounds = conditionSeverities[index].split("-");
+				if (bounds.length == 2)
+				{
+					try
+					{
+						double min = Double.parseDouble(bounds[0]);
+						double max = Double.parseDouble(bounds[1]);
+						
+						double pom = patientCondition.getProbabilityOfMortality();
+						if (pom > min && pom <= max)
+						{
+							// Continue to check next condition in the trajectory as all of the
+							// requirements have been met for this condition
+							continue;
+						}
+					}
+					catch (NumberFormatException nfe)
+					{
+						nfe.printStackTrace();
+					}
+				}
+				else
+				{
+					System.out.println("Error: invalid severity condition <" + conditionSeverities[index] + ">");
+				}
+			}
+			
+			match = false;
+			break;			
+		}
+		
+		return match;
+	}
+}
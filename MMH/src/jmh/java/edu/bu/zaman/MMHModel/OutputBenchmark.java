@@ -0,0 +1,173 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of writing one cycle of patients with each of the output writers used by
+ * {@link App}: the JSON Lines export, the columnar snapshot and the event log. The JSON Lines
+ * export and the event log are written to streams that discard their output, so that the score is
+ * the cost of formatting rather than of the disk. The columnar snapshot is written to a memory-mapped
+ * temporary file, which is replaced every {@link OutputBenchmark#REOPEN_INTERVAL} cycles so that it
+ * does not grow without bound.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputBenchmark
+{
+	/**
+	 * The number of patients in the hospital in each cycle.
+	 */
+	private static final int PATIENTS = 1024;
+
+	/**
+	 * The number of cycles written to the columnar file before it is replaced.
+	 */
+	private static final int REOPEN_INTERVAL = 256;
+
+	private SimulationContext m_context;
+
+	private List<Patient> m_patients;
+
+	private JsonLinesExporter m_exporter;
+
+	private File m_resultsFile;
+
+	private ColumnarResultWriter m_results;
+
+	private EventLogWriter m_eventLog;
+
+	private int m_cycle;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		SyntheticSetup.install();
+
+		m_context = new SimulationContext(new Hospital(0, 0),
+			SyntheticSetup.createTrajectories(SyntheticSetup.INSTALLED_TRAJECTORIES), new RandomStreams(2017));
+		m_patients = Shiva.createPatients(m_context, PATIENTS, 18, 45);
+		m_context.getCurrentPatients().addAll(m_patients);
+
+		m_exporter = new JsonLinesExporter(new NullWriter());
+
+		m_resultsFile = File.createTempFile("results", ".mmhc");
+		m_resultsFile.deleteOnExit();
+		m_results = new ColumnarResultWriter(m_resultsFile.getPath());
+
+		m_eventLog = new EventLogWriter(new NullOutputStream());
+		for (Patient patient : m_patients)
+		{
+			m_eventLog.patientAdmitted(m_context, patient);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		m_exporter.close();
+		m_results.close();
+		m_eventLog.close();
+		m_resultsFile.delete();
+	}
+
+	@Benchmark
+	public void jsonLines() throws IOException
+	{
+		for (Patient patient : m_patients)
+		{
+			m_exporter.write(patient, m_cycle);
+		}
+		m_exporter.flush();
+		m_cycle++;
+	}
+
+	@Benchmark
+	public void columnar() throws IOException
+	{
+		if (m_cycle == REOPEN_INTERVAL)
+		{
+			m_results.close();
+			m_results = new ColumnarResultWriter(m_resultsFile.getPath());
+			m_cycle = 0;
+		}
+
+		m_results.writeCycle(m_cycle++, m_patients);
+	}
+
+	@Benchmark
+	public void eventLog() throws IOException
+	{
+		// Change every probability of mortality, as treatment and deterioration do in a cycle, so
+		// that each patient has an update to write
+		double scale = (m_cycle++ % 2 == 0) ? 0.5 : 2;
+		for (Patient patient : m_patients)
+		{
+			for (Condition condition : patient.getConditions())
+			{
+				condition.setProbabilityOfMortality(condition.getProbabilityOfMortality() * scale);
+			}
+		}
+
+		m_eventLog.cycleCompleted(m_context);
+		m_eventLog.flush();
+	}
+
+	/**
+	 * Writer that discards everything written to it.
+	 */
+	private static class NullWriter extends Writer
+	{
+		@Override
+		public void write(char[] buffer, int offset, int length)
+		{
+		}
+
+		@Override
+		public void flush()
+		{
+		}
+
+		@Override
+		public void close()
+		{
+		}
+	}
+
+	/**
+	 * Output stream that discards everything written to it.
+	 */
+	private static class NullOutputStream extends OutputStream
+	{
+		@Override
+		public void write(int b)
+		{
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length)
+		{
+		}
+	}
+}
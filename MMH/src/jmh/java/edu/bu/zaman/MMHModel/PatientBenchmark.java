@@ -0,0 +1,111 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per-patient operations of a cycle: creating a patient, computing its probability of
+ * mortality, and looking up and administering its treatment.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatientBenchmark
+{
+	/**
+	 * The number of patients used in turn.
+	 */
+	private static final int PATIENTS = 1024;
+
+	/**
+	 * The length of the synthetic treatment plans.
+	 */
+	private static final int TREATMENT_CYCLES = 8;
+
+	private SimulationContext m_context;
+
+	private Patient[] m_patients;
+
+	private TreatmentPlan[] m_plans;
+
+	private final double[] m_doses = new double[Hospital.MATERIAL_RESOURCES];
+
+	private int m_next;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		SyntheticSetup.install();
+
+		m_context = new SimulationContext(new Hospital(0, 0),
+			SyntheticSetup.createTrajectories(SyntheticSetup.INSTALLED_TRAJECTORIES), new RandomStreams(2017));
+		m_patients = Shiva.createPatients(m_context, PATIENTS, 18, 45).toArray(new Patient[0]);
+
+		m_plans = new TreatmentPlan[PATIENTS];
+		for (int index = 0; index < PATIENTS; index++)
+		{
+			Stage stage = StageManager.getStage(m_context, m_patients[index]);
+			m_patients[index].setStage(stage);
+			m_plans[index] = stage.getTreatmentPlan();
+		}
+	}
+
+	private int next()
+	{
+		int index = m_next;
+		m_next = (m_next + 1) % PATIENTS;
+		return index;
+	}
+
+	@Benchmark
+	public Patient createPatient()
+	{
+		return Shiva.createPatient(m_context, 18, 45);
+	}
+
+	@Benchmark
+	public double probabilityOfMortality()
+	{
+		return m_patients[next()].probabilityOfMortality();
+	}
+
+	@Benchmark
+	public int requiredMaterialResources()
+	{
+		return m_plans[next()].requiredMaterialResources(m_doses);
+	}
+
+	/**
+	 * Takes every patient through a full treatment plan, as treating a patient beyond the end of its
+	 * plan is not meaningful. The score is the time per treatment cycle.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(PATIENTS * TREATMENT_CYCLES)
+	public void treatPatient()
+	{
+		for (int index = 0; index < PATIENTS; index++)
+		{
+			TreatmentPlan plan = new TreatmentPlan(m_patients[index], m_plans[index].getTemplate());
+			for (int cycle = 0; cycle < TREATMENT_CYCLES; cycle++)
+			{
+				plan.treatPatient();
+			}
+		}
+	}
+}
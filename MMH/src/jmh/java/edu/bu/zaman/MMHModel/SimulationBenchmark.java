@@ -0,0 +1,105 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full cycle of the model, as run by {@link App}, for hospitals holding from ten to a
+ * million patients. Each measured cycle starts from a freshly admitted census, so that every
+ * cycle does the same amount of work.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SimulationBenchmark
+{
+	/**
+	 * A hospital holding the census, staffed and stocked in proportion to it.
+	 */
+	@State(Scope.Thread)
+	public static class Census
+	{
+		@Param({ "10", "1000", "100000", "1000000" })
+		public int census;
+
+		@Setup(Level.Trial)
+		public void install() throws IOException
+		{
+			SyntheticSetup.install();
+		}
+
+		SimulationContext createContext()
+		{
+			EnumMap<Hospital.MaterialResource, Double> stock = new EnumMap<>(Hospital.MaterialResource.class);
+			for (Hospital.MaterialResource resource : Hospital.MaterialResource.values())
+			{
+				stock.put(resource, 2.0 * census);
+			}
+
+			return new SimulationContext(new Hospital(census / 2, census / 8, stock),
+				SyntheticSetup.createTrajectories(SyntheticSetup.INSTALLED_TRAJECTORIES), new RandomStreams(2017));
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class ObjectEngine
+	{
+		Simulation m_simulation;
+
+		@Setup(Level.Invocation)
+		public void admitCensus(Census census)
+		{
+			SimulationContext context = census.createContext();
+			context.getCurrentPatients().addAll(Shiva.createPatients(context, census.census, 18, 45));
+			m_simulation = new Simulation(context, 0.5);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class ColumnarEngine
+	{
+		ColumnarSimulation m_simulation;
+
+		@Setup(Level.Invocation)
+		public void admitCensus(Census census)
+		{
+			SimulationContext context = census.createContext();
+			PatientStore store = new PatientStore(census.census);
+			for (Patient patient : Shiva.createPatients(context, census.census, 18, 45))
+			{
+				store.add(patient);
+			}
+			m_simulation = new ColumnarSimulation(context, new BernoulliArrivalProcess(0.5), store);
+		}
+	}
+
+	@Benchmark
+	public Simulation cycle(ObjectEngine engine) throws IOException
+	{
+		engine.m_simulation.runCycle();
+		return engine.m_simulation;
+	}
+
+	@Benchmark
+	public ColumnarSimulation columnarCycle(ColumnarEngine engine) throws IOException
+	{
+		engine.m_simulation.runCycle();
+		return engine.m_simulation;
+	}
+}
@@ -0,0 +1,110 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to find the trajectory of a patient as the trajectory table grows,
+ * both with the compiled trajectory table and by testing the rows of the trajectories sheet.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageManagerBenchmark
+{
+	/**
+	 * The number of patients looked up in turn.
+	 */
+	private static final int PATIENTS = 1024;
+
+	@Param({ "8", "64", "512", "4096" })
+	public int trajectories;
+
+	private Workbook m_workbook;
+
+	private ArrayList<Row> m_rows;
+
+	private SimulationContext m_context;
+
+	private Patient[] m_patients;
+
+	private int m_next;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		SyntheticSetup.install();
+
+		// The synthetic trajectories sheet only holds strings, as the sheet does once it is loaded
+		m_workbook = SyntheticSetup.createWorkbook(trajectories);
+		Sheet sheet = m_workbook.getSheetAt(2);
+		m_rows = new ArrayList<>();
+		for (Row row : sheet)
+		{
+			if (row.getRowNum() == 0)
+			{
+				continue;
+			}
+			m_rows.add(row);
+		}
+
+		m_context = new SimulationContext(new Hospital(0, 0), SyntheticSetup.createTrajectories(trajectories),
+			new RandomStreams(2017));
+		m_patients = Shiva.createPatients(m_context, PATIENTS, 18, 45).toArray(new Patient[0]);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		m_workbook.close();
+	}
+
+	private Patient nextPatient()
+	{
+		Patient patient = m_patients[m_next];
+		m_next = (m_next + 1) % PATIENTS;
+		return patient;
+	}
+
+	@Benchmark
+	public Stage getStage()
+	{
+		return StageManager.getStage(m_context, nextPatient());
+	}
+
+	@Benchmark
+	public Row patientSatisfiesRow()
+	{
+		Patient patient = nextPatient();
+		for (Row row : m_rows)
+		{
+			if (BaselineStageMatcher.patientSatisfiesRow(patient, row))
+			{
+				return row;
+			}
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,224 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Generates setup data for the benchmarks in-process, so that they run without the setup file
+ * and scale to any number of trajectories. The data has the same layout as the setup file: a sheet
+ * of deterioration rates, a sheet of condition combinations and a sheet of trajectories.
+ *
+ * The trajectories split the severity range of the first condition of each combination into equal
+ * bands, so that every patient created from the case mix matches a trajectory.
+ */
+public final class SyntheticSetup
+{
+	/**
+	 * The condition combinations new patients arrive with.
+	 */
+	private static final String[] COMBINATIONS = {
+		"DELIVERY",
+		"DELIVERY,PREECLAMPSIA",
+		"DELIVERY,SEPSIS",
+		"DELIVERY,PPH",
+		"DELIVERY,ANAEMIA",
+		"APH",
+		"ABORTION,SEPSIS",
+		"CARDIOMYOPATHY"
+	};
+
+	/**
+	 * The incidence of each condition combination.
+	 */
+	private static final double[] PROBABILITIES = { 0.4, 0.1, 0.1, 0.1, 0.1, 0.1, 0.05, 0.05 };
+
+	/**
+	 * The number of trajectories in the setup file installed by {@link SyntheticSetup#install()}.
+	 */
+	public static final int INSTALLED_TRAJECTORIES = 64;
+
+	/**
+	 * Whether the synthetic setup file has been installed in this JVM.
+	 */
+	private static boolean m_installed = false;
+
+	private SyntheticSetup()
+	{
+	}
+
+	/**
+	 * Writes a synthetic setup file to a temporary directory and makes it the working directory of
+	 * the model, so that {@link Shiva} and {@link StageManager} load it. This must be called before
+	 * either class is first used, and only has an effect the first time it is called.
+	 *
+	 * @throws IOException if the setup file cannot be written
+	 */
+	public static synchronized void install() throws IOException
+	{
+		if (m_installed)
+		{
+			return;
+		}
+
+		Path directory = Files.createTempDirectory("mmh-benchmark");
+		directory.toFile().deleteOnExit();
+
+		String filepath = directory.resolve("setup.xlsx").toString();
+		try (
+			Workbook workbook = createWorkbook(INSTALLED_TRAJECTORIES);
+			OutputStream output = new FileOutputStream(filepath);
+		)
+		{
+			workbook.write(output);
+		}
+		directory.resolve("setup.xlsx").toFile().deleteOnExit();
+
+		System.setProperty("user.dir", directory.toString());
+		m_installed = true;
+	}
+
+	/**
+	 * Creates a setup workbook with the specified number of trajectories.
+	 *
+	 * @param trajectories the number of trajectories, at least one per condition combination
+	 * @return the setup workbook
+	 */
+	public static Workbook createWorkbook(int trajectories)
+	{
+		Workbook workbook = new XSSFWorkbook();
+
+		Sheet deteriorations = workbook.createSheet("Deterioration");
+		header(deteriorations, "Condition", "Deterioration");
+		Condition.Type[] types = Condition.Type.values();
+		for (int index = 0; index < types.length; index++)
+		{
+			Row row = deteriorations.createRow(index + 1);
+			row.createCell(0).setCellValue(types[index].name());
+			row.createCell(1).setCellValue(10 + 100 * index);
+		}
+
+		Sheet caseMix = workbook.createSheet("Conditions");
+		header(caseMix, "Conditions", "Probability");
+		for (int index = 0; index < COMBINATIONS.length; index++)
+		{
+			Row row = caseMix.createRow(index + 1);
+			row.createCell(0).setCellValue(COMBINATIONS[index]);
+			row.createCell(1).setCellValue(PROBABILITIES[index]);
+		}
+
+		Sheet trajectorySheet = workbook.createSheet("Trajectories");
+		header(trajectorySheet, "ID", "Conditions", "Severities", "Treated", "Resources", "Efficacies",
+			"Dosages", "Frequencies", "Nurses", "NurseOn", "NurseOff", "Doctors", "DoctorOn", "DoctorOff",
+			"Cycles");
+		for (int index = 0; index < trajectories; index++)
+		{
+			Row row = trajectorySheet.createRow(index + 1);
+			String[] values = trajectory(index, trajectories);
+			for (int field = 0; field < values.length; field++)
+			{
+				row.createCell(field).setCellValue(values[field]);
+			}
+		}
+
+		return workbook;
+	}
+
+	/**
+	 * Creates a trajectory table with the specified number of trajectories.
+	 *
+	 * @param trajectories the number of trajectories, at least one per condition combination
+	 * @return the trajectory table
+	 */
+	public static TrajectoryTable createTrajectories(int trajectories)
+	{
+		List<Trajectory> compiled = new ArrayList<>(trajectories);
+		for (int index = 0; index < trajectories; index++)
+		{
+			String[] values = trajectory(index, trajectories);
+			TreatmentPlanTemplate template = TreatmentPlanTemplate.parse(values[0], values[3], values[4],
+				values[5], values[6], values[7], values[8], values[9], values[10], values[11], values[12],
+				values[13], values[14]);
+			compiled.add(Trajectory.parse(template.getID(), index + 1, values[1], values[2], template));
+		}
+
+		return new TrajectoryTable(compiled);
+	}
+
+	/**
+	 * Returns the cells of a trajectory row, in the column order of the trajectories sheet.
+	 */
+	private static String[] trajectory(int index, int trajectories)
+	{
+		if (trajectories < COMBINATIONS.length)
+		{
+			throw new IllegalArgumentException("Expected at least " + COMBINATIONS.length + " trajectories.");
+		}
+
+		// Trajectories cycle through the combinations, and the severity range of the first condition
+		// of each combination is split into one band per trajectory of that combination
+		int combination = index % COMBINATIONS.length;
+		int bands = (trajectories - combination + COMBINATIONS.length - 1) / COMBINATIONS.length;
+		int band = index / COMBINATIONS.length;
+
+		String[] conditions = COMBINATIONS[combination].split(",");
+		StringBuilder severities = new StringBuilder();
+		StringBuilder efficacies = new StringBuilder();
+		for (int condition = 0; condition < conditions.length; condition++)
+		{
+			if (condition > 0)
+			{
+				severities.append(',');
+				efficacies.append(',');
+			}
+
+			if (condition == 0)
+			{
+				double min = (band == 0) ? 0 : (double) band / bands;
+				double max = (band == bands - 1) ? 1 : (double) (band + 1) / bands;
+				severities.append(min).append('-').append(max);
+			}
+			else
+			{
+				severities.append("0-1");
+			}
+			efficacies.append(0.5 + 0.4 * band / bands);
+		}
+
+		return new String[] {
+			Integer.toString(index + 1),
+			COMBINATIONS[combination],
+			severities.toString(),
+			COMBINATIONS[combination],
+			"OXYTOCIN,MG_SO4",
+			efficacies.toString(),
+			"1,2",
+			"1,0",
+			"1",
+			"2",
+			"1",
+			"1",
+			"1",
+			"3",
+			"8"
+		};
+	}
+
+	private static void header(Sheet sheet, String... names)
+	{
+		Row row = sheet.createRow(0);
+		for (int index = 0; index < names.length; index++)
+		{
+			row.createCell(index).setCellValue(names[index]);
+		}
+	}
+}
@@ -1,21 +1,15 @@
 package edu.bu.zaman.MMHModel;
 
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.ObjectOutputStream;
-import java.io.Reader;
-import java.util.Arrays;
+import java.io.Writer;
 import java.util.List;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+
+import javax.management.JMException;
 
 /**
  * 
@@ -25,39 +19,51 @@ import com.google.gson.GsonBuilder;
 
 public class App 
 {
+	/**
+	 * Filename of the setup excel spreadsheet stored in the project root folder.
+	 */
+	private static final String SETUP_FILENAME = "setup.xlsx";
 	
-	public static HashMap<String, Object> patientList = new HashMap<String, Object>();
-	
-	static List<String> jsonList = new ArrayList<String>();
+	private static final String json_FILENAME = "patientlist.jsonl";
 	
-
-
-
+	/**
+	 * Filename of the columnar snapshot of the patients in every cycle, see
+	 * {@link ColumnarResultFormat}.
+	 */
+	private static final String RESULTS_FILENAME = "results.mmhc";
 	
+	/**
+	 * Filename of the log of the changes to the patients in every cycle, see
+	 * {@link EventLogFormat}.
+	 */
+	private static final String EVENT_LOG_FILENAME = "patientlog.mmhe";
 	
 	/**
-	 * Filename of the setup excel spreadsheet stored in the project root folder.
+	 * Filename of the per-cycle statistics written by replication runs, see {@link CycleStatistics}.
 	 */
-	private static final String SETUP_FILENAME = "setup.xlsx";
+	private static final String STATISTICS_FILENAME = "statistics.csv";
 	
-	private static final String json_FILENAME = "patientlist.json";
+	/**
+	 * Filename of the checkpoint of a run, see {@link Checkpoint}.
+	 */
+	private static final String CHECKPOINT_FILENAME = "checkpoint.mmhk";
 	
-	private static final String Spreadsheet_FILENAME = "patientlist.csv";
+	/**
+	 * Prefix of the argument that selects the output of a single run, see {@link Output}.
+	 */
+	private static final String OUTPUT_OPTION = "--output=";
 	
-	private static final String ser_FILENAME = "data.ser";
+	/**
+	 * The number of cycles between checkpoints, one day of 15 minute cycles.
+	 */
+	private static final int CHECKPOINT_INTERVAL = 96;
 	
 	/**
 	 * Provides an absolute filepath to the setup file containing all of the model parameters
 	 * and trajectory information.
 	 * 
 	 * @return the absolute filepath to the setup file
-	 * 
-	 * json/csv/ser output files
-	 *
 	 */
-	
-	
-	
 	public static String getSetupFilepath()
 	{
 		String currentDir = System.getProperty("user.dir");
@@ -76,20 +82,48 @@ public class App
         return filepath;
 	}
 	
+	/**
+	 * Provides an absolute filepath to the columnar snapshot written by a run.
+	 */
+	public static String getResultsFilepath()
+	{
+		String currentDir = System.getProperty("user.dir");
+        String filepath = Paths.get(currentDir, RESULTS_FILENAME).toString();
+        
+        return filepath;
+	}
+	
+	/**
+	 * Provides an absolute filepath to the patient event log written by a run.
+	 */
+	public static String getEventLogFilepath()
+	{
+		String currentDir = System.getProperty("user.dir");
+        String filepath = Paths.get(currentDir, EVENT_LOG_FILENAME).toString();
+        
+        return filepath;
+	}
 	
 	
-	public static String getSpreadsheetFilepath()
+	/**
+	 * Provides an absolute filepath to the per-cycle statistics written by replication runs.
+	 */
+	public static String getStatisticsFilepath()
 	{
 		String currentDir = System.getProperty("user.dir");
-        String filepath = Paths.get(currentDir, Spreadsheet_FILENAME).toString();
+        String filepath = Paths.get(currentDir, STATISTICS_FILENAME).toString();
         
         return filepath;
 	}
 	
-	public static String getserFilepath()
+	
+	/**
+	 * Provides an absolute filepath to the checkpoint written by a run.
+	 */
+	public static String getCheckpointFilepath()
 	{
 		String currentDir = System.getProperty("user.dir");
-        String filepath = Paths.get(currentDir, ser_FILENAME).toString();
+        String filepath = Paths.get(currentDir, CHECKPOINT_FILENAME).toString();
         
         return filepath;
 	}
@@ -98,330 +132,369 @@ public class App
 	/***********************************************************MODEL**************************************************************
 	 * The main run loop for the model.
 	 * update collection after every var
+	 * 
+	 * When a number of replications is provided as the first argument, that many independent
+	 * replications are run in parallel and only their merged summary and per-cycle statistics are
+	 * written, without any per-patient output. An optional
+	 * second argument provides the random seed so that a run can be reproduced, and a third
+	 * argument of {@code skip-idle} skips the cycles in which the hospital is empty and no patient
+	 * arrives.
+	 * 
+	 * A single run saves a checkpoint every {@link App#CHECKPOINT_INTERVAL} cycles and at the end of
+	 * the run. When the first argument is {@code resume}, the run is restored from the checkpoint and
+	 * continues up to the total number of cycles. The output files are cut back to the end of the
+	 * cycle before the checkpoint and continued from there, so that the cycles run again are not
+	 * repeated; output files that do not reach the checkpoint are replaced, as in a new run.
+	 * 
+	 * A single run writes every output by default. An {@code --output=events} argument writes only the
+	 * event log, and {@code --output=aggregates} writes only the summaries, without any per-patient
+	 * output, as replication runs do; see {@link Output}.
+	 * Replication runs ignore the argument.
+	 * 
+	 * A {@code --verbose} argument, anywhere on the command line, prints every patient as it is
+	 * admitted and treated and every patient in the hospital at the end of each cycle.
+	 * 
 	 * @param args
 	 * @throws IOException 
 	 */
     public static void main( String[] args ) throws IOException
     {
-    	
-    	String spreadsheetPath = getSpreadsheetFilepath();
-    	FileWriter writer = new FileWriter(spreadsheetPath, true);
-    	
-    	Collector.writeLine(writer, Arrays.asList("ID", "Age", "Condition", "POM", "Survival"));
-    	   	
-    	
-    	
-        ArrayList<Patient> currentPatients = new ArrayList<>();
-        ArrayList<Patient> deceasedPatients = new ArrayList<>();
-        
-        
-        
-        
 		double probabilityNewPatient = 0.5; // The probability of acquiring a new patient
 		int totalCycles = 10; // Number of cycles to run simulation, 1 cycle is 15 minutes
-
-		Hospital.nurses = 3;
-		Hospital.doctors = 1;
-		//TODO export
+		int nurses = 3;
+		int doctors = 1;
 		
+		ArrayList<String> arguments = new ArrayList<>();
+		boolean verbose = false;
+		Output output = Output.ALL;
+		for (String arg : args)
+		{
+			if (arg.equals("--verbose"))
+			{
+				verbose = true;
+			}
+			else if (arg.startsWith(OUTPUT_OPTION))
+			{
+				output = Output.parse(arg.substring(OUTPUT_OPTION.length()));
+				if (output == null)
+				{
+					usage("unknown output " + arg.substring(OUTPUT_OPTION.length()));
+					return;
+				}
+			}
+			else
+			{
+				arguments.add(arg);
+			}
+		}
+		args = arguments.toArray(new String[0]);
 		
-        // Iterates through cycles of 15 minutes
-		for (int cycle = 0; cycle < totalCycles; cycle++)
-        {
-            
-            /////////////////////////////////////////////////////////////////////////////////
-            // 1. Take in additional patients
-            //
-            // New patients are randomly admitted to the hospital. Each patient is created
-            // by Shiva with a random age and set of conditions.
-            /////////////////////////////////////////////////////////////////////////////////
-            
-            // Determine if a new patient has arrived
-			double newPatient = Math.random();
+		boolean resume = args.length > 0 && args[0].equals("resume");
+		long seed = (args.length > 1 && !resume) ? Long.parseLong(args[1]) : System.nanoTime();
+		if (!resume)
+		{
+			System.out.println("Random seed: " + seed);
+		}
 		
+		if (args.length > 0 && !resume)
+		{
+			int replications;
+			try
+			{
+				replications = Integer.parseInt(args[0]);
+			}
+			catch (NumberFormatException nfe)
+			{
+				usage("the first argument must be a number of replications or resume");
+				return;
+			}
+			if (replications < 1)
+			{
+				usage("the number of replications must be at least 1");
+				return;
+			}
 			
+			Scenario scenario = new Scenario("default", probabilityNewPatient, totalCycles, nurses, doctors,
+				Hospital.defaultStock(), replications, seed);
+			boolean skipIdleCycles = args.length > 2 && args[2].equals("skip-idle");
+			ReplicationRunner runner = new ReplicationRunner(scenario, skipIdleCycles);
+			registerMetrics(runner.getMetrics());
+			System.out.println(runner.run());
+			System.out.println(runner.getStatistics().summary());
+			System.out.println(runner.getMetrics().summary());
+			try (Writer writer = new FileWriter(getStatisticsFilepath()))
+			{
+				runner.getStatistics().writeTable(writer);
+			}
+			return;
+		}
+    	
+		Path checkpoint = Paths.get(getCheckpointFilepath());
+		SimulationContext context;
+		if (resume)
+		{
+			context = Checkpoint.load(checkpoint, StageManager.getTrajectories());
+			System.out.println("Resuming from cycle " + context.getCycle() + " of " + checkpoint);
+		}
+		else
+		{
+			context = new SimulationContext(new Hospital(nurses, doctors), new RandomStreams(seed));
+		}
+		
+    	// Count the bytes written to the output files for the cycle metrics
+    	final CountingOutputStream jsonOutput;
+    	final JsonLinesExporter exporter;
+    	final ColumnarResultWriter results;
+    	if (output == Output.ALL)
+    	{
+    		// A resumed run continues the files written up to its checkpoint, if there are any. The
+    		// columnar results have a block for every cycle, so they tell whether both files reach it.
+    		boolean continued = resume && ColumnarResultWriter.truncate(getResultsFilepath(), context);
+    		if (continued)
+    		{
+    			JsonLinesExporter.truncate(pointJSONfilepath(), context.getCycle());
+    		}
+    		jsonOutput = new CountingOutputStream(new FileOutputStream(pointJSONfilepath(), continued));
+    		exporter = new JsonLinesExporter(jsonOutput);
+    		results = new ColumnarResultWriter(getResultsFilepath(), continued);
+    	}
+    	else
+    	{
+    		jsonOutput = null;
+    		exporter = null;
+    		results = null;
+    	}
+    	
+    	final CountingOutputStream logOutput;
+    	final EventLogWriter eventLog;
+    	if (output != Output.AGGREGATES)
+    	{
+    		// A resumed run continues the log written up to its checkpoint, if there is one
+    		boolean continued = resume && EventLogWriter.truncate(getEventLogFilepath(), context);
+    		logOutput = new CountingOutputStream(new FileOutputStream(getEventLogFilepath(), continued));
+    		eventLog = new EventLogWriter(logOutput, continued);
+    	}
+    	else
+    	{
+    		logOutput = null;
+    		eventLog = null;
+    	}
+		
+		final Simulation simulation = new Simulation(context, probabilityNewPatient);
+		registerMetrics(simulation.getMetrics());
+		
+		// Drawdown is measured against the stock the hospital starts with, also when resuming
+		CycleStatistics statistics = new CycleStatistics(new Hospital(nurses, doctors), totalCycles);
+		simulation.addListener(statistics);
+		if (eventLog != null)
+		{
+			simulation.addListener(eventLog);
+		}
+		final boolean printPatients = verbose;
+		simulation.addListener(new SimulationListener()
+		{
+			@Override
+			public void patientAdmitted(SimulationContext context, Patient patient)
+			{
+				if (m_verbose)
+				{
+					System.out.println("Creating patient: " + patient.toString());
+				}
+			}
 			
-			if (newPatient <= probabilityNewPatient)
-            {
-                // Create a new patient with a random age and set of conditions
-                // LIMITATION: Can only add 1 patient per cycle
-                Patient p = Shiva.createPatient(18, 45);
-				currentPatients.add(p);
-
-				
-				
-									
-
-                //TODO Export
-                System.out.println("Creating patient: " + p.toString());
-                
-
-			} 
-
-            /////////////////////////////////////////////////////////////////////////////////
-            // 2. Allocate resources to patients and treat them
-            //
-            // The current list of patients are sorted from most severe to least t and are
-            // assigned human and material resources required for treatment. The patient's
-            // treatment is based on their current stage and associated treatment plan.
-            // The patient's current stage is updated every cycle by the StageManager, who
-            // evaluates the patient's current state and list of conditions.
-            /////////////////////////////////////////////////////////////////////////////////
-            
-            // Sort the patients according to their current probability of mortality from most
-            // severe to least severe
-            Collections.sort(currentPatients, new Comparator<Patient>()
-            {
-                @Override
-                public int compare(Patient patient1, Patient patient2)
-                {
-                    return (int) (patient2.probabilityOfMortality() - patient2.probabilityOfMortality());
-                }
-            });
-
-            // Update the patient's stage, if needed, and administer cycle treatment
-			for (Patient patient : currentPatients)
-            {
-                // Get the stage the patient should be in from the StageManager and update it
-                // if it has changed
-				Stage stage = StageManager.getStage(patient);
-				if (!stage.equals(patient.getStage()))
-                {
-					patient.setStage(stage);
+			@Override
+			public void patientTreated(SimulationContext context, Patient patient)
+			{
+				if (m_verbose)
+				{
+					System.out.println("Treating patient " + patient.getPatientId());
 				}
-            
-                // Get treatment plan for the patient's current stage and determine if the required
-                // resources for treatment in the current cycle are available
-                TreatmentPlan plan = patient.getStage().getTreatmentPlan();
-                
-                HashMap<Hospital.MaterialResource, Double> requiredMaterialResources = plan.requiredMaterialResources();
-                
-                int requiredNurses = plan.requiredNurses();
-                int requiredDoctors = plan.requiredDoctors();
-
-                boolean resourcesAvailable = true;
-                for (Hospital.MaterialResource resource : 
-                	requiredMaterialResources.keySet())
-                {
-                    if (!Hospital.isAvailable(resource, 
-                    		requiredMaterialResources.get(resource)))
-                    {
-                        resourcesAvailable = false;
-                        break;
-                    }
-                }
-                
-                if (Hospital.nurses < requiredNurses || 
-                		Hospital.doctors < requiredDoctors)
-                {
-                    resourcesAvailable = false;
-                }
-                
-                // Request resources from the hospital based on the treatments for the current stage
-                // if the resources are available
-                if (resourcesAvailable)
-                {
-                    // Consume the required material resources for the treatment plan from the hospital
-                    // inventory
-                    for (Hospital.MaterialResource resource : requiredMaterialResources.keySet())
-                    {
-                        Hospital.consumeResource(resource, requiredMaterialResources.get(resource));
-                        patient.setDoses(requiredMaterialResources.get(resource));
-                    }
-                    
-                    // Check out the number of nurses and doctors required for treatment in the current cycle
-                    Hospital.nurses -= requiredNurses;
-                    Hospital.doctors -= requiredDoctors;
-                    
-                    patient.setDoctor(requiredDoctors);
-                    patient.setNurse(requiredNurses);
-                    
-           
-
-                    // Treat the patient, updating his or her probability of mortality
-                    plan.treatPatient();
-                    
-                    System.out.println("Treating patient " + patient.getPatientId());
-                }
-                else
-                {
-                    // Worsen the patient's current conditions as the patient could not be treated
-                    for (Condition condition : patient.getConditions())
-                    {
-                        condition.worsen();
-                    }
-                }
-            }
-
-            /////////////////////////////////////////////////////////////////////////////////
-            // 3. Evaluate patient health
-            //
-            // Determine if any patient deaths will occur based on the patient probability
-            // of mortality and a random number draw.
-            /////////////////////////////////////////////////////////////////////////////////
-
-            for (Patient patient : currentPatients)
-            {
-			 	double variate = Math.random();
-			 	if (variate <= patient.probabilityOfMortality())
-                {
-                    patient.die();
-			 	}
-            }
-
-            /////////////////////////////////////////////////////////////////////////////////
-            // 4. Update current patient list and return and available resources to the hospital
-            //
-            // Remove any deceased patients from the list of current patients and return any
-            // human resources that are now available after the current treatment cycle.
-            /////////////////////////////////////////////////////////////////////////////////
-
-
-            
-            
-            Iterator<Patient> iterator = currentPatients.iterator();
-            while (iterator.hasNext())
-            {
-                Patient patient = iterator.next();
-			 	TreatmentPlan plan = patient.getStage().getTreatmentPlan();
-			 	
-			 	if (patient.isAlive())
-                {
-			 		Shiva.reassessConditions(patient);
-			 	}
-                else
-                {
-                    // Add patient to running list of deceased patients and remove from the list of
-                    // current patients
-                    deceasedPatients.add(patient);
-                    iterator.remove();
-                  
-			 	}
-			 	
-			 	
-			 	
-			 	
-			 	
-                 
-			 	int freeNurses = plan.freeNursesAfterTreatment();
-			 	int freeDoctors = plan.freeDoctorsAfterTreatment();
-                 
-			 	Hospital.nurses += freeNurses;
-			 	Hospital.doctors += freeDoctors;
-                 
-
-			 }
-
-			 /*
-
-			 V CHECK TIME + UPDATE RESOURCES
-
+			}
+			
+			@Override
+			public void runResumed(SimulationContext context)
+			{
+				m_deaths = context.getDeceasedPatients().size();
+			}
+			
+			@Override
+			public void cycleCompleted(SimulationContext context) throws IOException
+			{
+	            System.out.println("Cycle " + context.getCycle() + ", " + context.getCurrentPatients().size() + 
+	            		" patients");
+	            
+	            if (m_verbose)
+	            {
+	                for (Patient patient : context.getCurrentPatients())
+	                {
+	                    System.out.println("\t" + patient.toString());
+	                }
+	            }
+	            
+	            long bytes = bytesWritten();
+	            long records = 0;
+	            
+	            if (exporter != null)
+	            {
+	                // The snapshot holds the patients still in the hospital and those that died in
+	                // this cycle
+	                ArrayList<Patient> deceased = context.getDeceasedPatients();
+	                m_snapshot.clear();
+	                m_snapshot.addAll(context.getCurrentPatients());
+	                m_snapshot.addAll(deceased.subList(m_deaths, deceased.size()));
+	                m_deaths = deceased.size();
+	                
+	                // Each deceased patient is exported once, in the cycle it died
+	                for (Patient patient : m_snapshot)
+	                {
+	                    exporter.write(patient, context.getCycle());
+	                }
+	                
+	                results.writeCycle(context.getCycle(), m_snapshot);
+	                
+	                // Flush the cycle's records so the bytes exported are up to date
+	                exporter.flush();
+	                records += 2 * m_snapshot.size();
+	            }
+	            
+	            if (eventLog != null)
+	            {
+	                eventLog.flush();
+	                records += eventLog.getRecordCount() - m_logRecords;
+	                m_logRecords = eventLog.getRecordCount();
+	            }
+	            
+	            simulation.getMetrics().addExported(records, bytesWritten() - bytes);
+			}
+			
+			/**
+			 * Returns the number of bytes written to the output files so far.
 			 */
-
-			 // CHECK: How many cycles until night shift?
-            
-            System.out.println("Cycle " + cycle + ", " + currentPatients.size() + 
-            		" patients");
-            
-            /**********************************************************JSON STORE!************************************/
-           // gsonBuild(Cycle, ID, Age, Survival, DoctorsUsed);
-            
-
-
-            
-            for (Patient patient : currentPatients)
-            {
-                System.out.println("\t" + patient.toString());
-                Collector.writeLine(writer, Arrays.asList(patient.toString(), "Survived"));
-                gsonBuild2(patient, cycle);
-
-
-
-
-            }
-            
-            for (Patient patienter : deceasedPatients) {
-            	Collector.writeLine(writer, Arrays.asList(patienter.toString(), "Died"));
-            	gsonBuild2(patienter, cycle);
-            	
-            }
-            
-          
-            
-		}
+			private long bytesWritten()
+			{
+				long bytes = 0;
+				if (exporter != null)
+				{
+					bytes += results.getBytesWritten() + jsonOutput.getCount();
+				}
+				if (eventLog != null)
+				{
+					bytes += logOutput.getCount();
+				}
+				return bytes;
+			}
+			
+			/**
+			 * Whether or not every patient is printed.
+			 */
+			private final boolean m_verbose = printPatients;
+			
+			/**
+			 * The patients written to the columnar snapshot in the current cycle.
+			 */
+			private final ArrayList<Patient> m_snapshot = new ArrayList<>();
+			
+			/**
+			 * The number of deceased patients written to the columnar snapshot so far.
+			 */
+			private int m_deaths = 0;
+			
+			/**
+			 * The number of event log records counted in the metrics so far.
+			 */
+			private long m_logRecords = 0;
+		});
 		
+		// The checkpoint is saved after the cycle's output is written, so the output of a resumed
+		// run always reaches the end of the cycle before its checkpoint
+		simulation.addListener(new CheckpointWriter(checkpoint, CHECKPOINT_INTERVAL));
 		
+        // Iterates through cycles of 15 minutes
+		if (resume)
+		{
+			simulation.resume(Math.max(totalCycles - context.getCycle(), 0));
+		}
+		else
+		{
+			simulation.run(totalCycles);
+		}
 		
-	      try {
-	    	  String serpath = getserFilepath();
-	          FileOutputStream fileOut = new FileOutputStream(serpath);
-	          ObjectOutputStream out = new ObjectOutputStream(fileOut);
-	          out.writeObject(patientList);
-	          out.close();
-	          fileOut.close();
-	          System.out.printf("Serialized data is saved in " + System.getProperty("user.dir"));
-	       }catch(IOException i) {
-	          i.printStackTrace();
-	       }
-	        
-	 
-	      
-	      
-	      
+		// The final checkpoint lets the run be extended later
+		Checkpoint.save(context, context.getCycle(), checkpoint);
 		
-        writer.flush();
-        writer.close();
+        if (exporter != null)
+        {
+        	exporter.close();
+        	results.close();
+        }
+        if (eventLog != null)
+        {
+        	eventLog.close();
+        }
         
-
+        System.out.println(statistics.summary());
+        System.out.println(simulation.getMetrics().summary());
     }
     
-	/******************************************JSON****************************************/
-	static Gson gson = new GsonBuilder().setPrettyPrinting().create();
-	
+    /**
+     * Prints an error and how the model is run.
+     */
+    private static void usage(String error)
+    {
+    	System.out.println("Error: " + error);
+    	System.out.println("Usage: App [--verbose] [--output=all|events|aggregates] [resume | <replications> [<seed> [skip-idle]]]");
+    }
     
-    public static void gsonBuild2(Patient patientObj, int Cycle) {
-    	
-    	
-    	PatientSerialize patientAdd = new PatientSerialize();
-    	
-    	
-    	//POJO Hierarchy
-    	//internalize resources into patientObj
-    	int IDer = patientObj.getPatientId();
-    	int ager = patientObj.getAge();
-    	String conditioner = patientObj.toStringCondition();
-    	int DoctorsUsed = patientObj.getDoctor();
-    	int NursesUsed = patientObj.getNurse();
-    	Double DosesUsed = patientObj.getDoses();
-    	
-
-    	patientAdd.setCycle(Cycle);
-    	patientAdd.setPatientCollected(IDer);
-    	patientAdd.setAge(ager);
-    	patientAdd.setCondition(conditioner);
-    	patientAdd.setDoctors(DoctorsUsed);
-    	patientAdd.setNurses(NursesUsed);
-    	patientAdd.setDoses(DosesUsed);
-    	
-    	
-    	String json = gson.toJson(patientAdd);
-    	
-    	String writeToFile = pointJSONfilepath();
-    	
-    	try (FileWriter writer = new FileWriter(writeToFile, true)){
-    		//True to prevent new file
-    		gson.toJson(patientAdd, writer);
-    	
-    	} catch(IOException e) {
-    		e.printStackTrace();
+    /**
+     * Publishes the cycle metrics of the run over JMX. A run still completes if the metrics
+     * cannot be published.
+     */
+    private static void registerMetrics(CycleMetrics metrics)
+    {
+    	try
+    	{
+    		metrics.register("App");
+    	}
+    	catch (JMException jme)
+    	{
+    		System.out.println("Error: unable to publish cycle metrics: " + jme.getMessage());
     	}
+    }
 
-    
+    /**
+     * The output files written by a single run, besides the checkpoint and the printed summaries.
+     */
+    enum Output
+    {
+    	/**
+    	 * The JSON Lines export, the columnar snapshot and the event log.
+    	 */
+    	ALL,
     	
+    	/**
+    	 * Only the event log, which records the changes to the patients rather than every patient in
+    	 * every cycle.
+    	 */
+    	EVENTS,
     	
+    	/**
+    	 * No per-patient output, only the summaries.
+    	 */
+    	AGGREGATES;
     	
+    	/**
+    	 * Returns the output with the specified name, ignoring case, or null if there is none.
+    	 */
+    	static Output parse(String name)
+    	{
+    		for (Output output : values())
+    		{
+    			if (output.name().equalsIgnoreCase(name))
+    			{
+    				return output;
+    			}
+    		}
+    		return null;
+    	}
     }
-	/*********************************Toodle-Loo!********************JSON END*************Toodle-Loo!****************************************/
-    
-
 }
@@ -0,0 +1,48 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * Determines how many new patients arrive at the hospital in each cycle.
+ */
+public interface ArrivalProcess
+{
+    /**
+     * Draws the number of patients arriving in the specified cycle.
+     *
+     * @param cycle     the current cycle of the run
+     * @param random    the random source to draw from
+     * @return the number of arrivals, which is never negative
+     */
+    int arrivals(int cycle, RandomSource random);
+
+    /**
+     * Draws the first cycle, at or after the specified cycle, in which at least one patient arrives.
+     * The number of patients arriving in that cycle should then be drawn with
+     * {@link ArrivalProcess#conditionalArrivals(int, RandomSource)}. Together, the two methods let
+     * a simulation skip idle cycles without arrivals while preserving the distribution of
+     * {@link ArrivalProcess#arrivals(int, RandomSource)}.
+     *
+     * Processes that cannot skip cycles return the specified cycle, in which case
+     * {@link ArrivalProcess#conditionalArrivals(int, RandomSource)} may return zero.
+     *
+     * @param cycle     the first cycle to consider
+     * @param random    the random source to draw from
+     * @return the cycle of the next arrival, or {@link Integer#MAX_VALUE} if no patient will arrive
+     */
+    default int nextArrivalCycle(int cycle, RandomSource random)
+    {
+        return cycle;
+    }
+
+    /**
+     * Draws the number of patients arriving in a cycle returned by
+     * {@link ArrivalProcess#nextArrivalCycle(int, RandomSource)}, conditioned on at least one
+     * arrival when the process supports skipping cycles.
+     *
+     * @param cycle     the cycle of the arrival
+     * @param random    the random source to draw from
+     */
+    default int conditionalArrivals(int cycle, RandomSource random)
+    {
+        return arrivals(cycle, random);
+    }
+}
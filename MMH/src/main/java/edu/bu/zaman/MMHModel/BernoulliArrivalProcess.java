@@ -0,0 +1,69 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * Arrival process in which at most one patient arrives per cycle, with a fixed probability. This is
+ * the arrival process of the original model.
+ */
+public class BernoulliArrivalProcess implements ArrivalProcess
+{
+    /**
+     * The probability of acquiring a new patient in each cycle.
+     */
+    private final double m_probabilityNewPatient;
+
+    /**
+     * Creates a new Bernoulli arrival process.
+     *
+     * @param probabilityNewPatient the probability of acquiring a new patient in each cycle
+     */
+    public BernoulliArrivalProcess(double probabilityNewPatient)
+    {
+        m_probabilityNewPatient = probabilityNewPatient;
+    }
+
+    /**
+     * {@link BernoulliArrivalProcess#m_probabilityNewPatient}
+     */
+    public double getProbabilityNewPatient()
+    {
+        return m_probabilityNewPatient;
+    }
+
+    @Override
+    public int arrivals(int cycle, RandomSource random)
+    {
+        return (random.nextDouble() <= m_probabilityNewPatient) ? 1 : 0;
+    }
+
+    /**
+     * Skips the cycles without arrivals by drawing the geometrically distributed number of cycles
+     * until the next arrival.
+     */
+    @Override
+    public int nextArrivalCycle(int cycle, RandomSource random)
+    {
+        if (m_probabilityNewPatient >= 1)
+        {
+            return cycle;
+        }
+        if (!(m_probabilityNewPatient > 0))
+        {
+            return Integer.MAX_VALUE;
+        }
+
+        double gap = Math.floor(Math.log1p(-random.nextDouble()) / Math.log1p(-m_probabilityNewPatient));
+        return (int) Math.min(cycle + gap, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int conditionalArrivals(int cycle, RandomSource random)
+    {
+        return 1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Bernoulli p=" + m_probabilityNewPatient;
+    }
+}
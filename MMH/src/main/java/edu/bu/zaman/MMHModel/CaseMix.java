@@ -0,0 +1,246 @@
+package edu.bu.zaman.MMHModel;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Immutable distribution of the condition combinations that new patients arrive with, compiled
+ * from the case mix sheet of the setup file. Combinations are sampled in constant time with
+ * Walker's alias method, using a single uniform variate per patient.
+ */
+public final class CaseMix
+{
+    /**
+     * The conditions of each combination.
+     */
+    private final Condition.Type[][] m_combinations;
+
+    /**
+     * The incidence of each combination.
+     */
+    private final double[] m_probabilities;
+
+    /**
+     * The probability of keeping each column of the alias table rather than taking its alias.
+     */
+    private final double[] m_aliasProbabilities;
+
+    /**
+     * The combination taken in place of each column when the column is not kept.
+     */
+    private final int[] m_aliases;
+
+    /**
+     * The deterioration rate of each condition type, indexed by {@link Condition.Type#ordinal()}.
+     */
+    private final double[] m_deteriorationRates;
+
+    /**
+     * Creates a new case mix.
+     *
+     * @param combinations          the conditions of each combination
+     * @param probabilities         the incidence of each combination, which must sum to unity
+     * @param deteriorationRates    the deterioration rate of each condition type, indexed by
+     *                              {@link Condition.Type#ordinal()}, or NaN if unknown
+     * @throws IllegalArgumentException if the probabilities are invalid or a combination includes a
+     *                                  condition without a deterioration rate or repeats a condition
+     */
+    public CaseMix(List<Condition.Type[]> combinations, double[] probabilities, double[] deteriorationRates)
+    {
+        if (combinations.isEmpty() || combinations.size() != probabilities.length)
+        {
+            throw new IllegalArgumentException("Expected one probability per condition combination.");
+        }
+
+        double sum = 0;
+        for (double probability : probabilities)
+        {
+            if (!(probability >= 0))
+            {
+                throw new IllegalArgumentException("Invalid condition probability " + probability + ".");
+            }
+            sum += probability;
+        }
+
+        // Test for unity taking into account rounding errors with floating point arithmetic
+        if ((Math.round(sum * 100000d) / 100000d) != 1)
+        {
+            throw new IllegalArgumentException("Condition probabilities do not sum to unity.");
+        }
+
+        for (Condition.Type[] combination : combinations)
+        {
+            int mask = 0;
+            for (Condition.Type type : combination)
+            {
+                if (Double.isNaN(deteriorationRates[type.ordinal()]))
+                {
+                    throw new IllegalArgumentException("Missing deterioration rate for " + type + ".");
+                }
+
+                // Patients hold one condition per type, see Patient#probabilityOfMortality()
+                if ((mask & (1 << type.ordinal())) != 0)
+                {
+                    throw new IllegalArgumentException("Condition combination repeats " + type + ".");
+                }
+                mask |= 1 << type.ordinal();
+            }
+        }
+
+        int count = probabilities.length;
+        m_combinations = new Condition.Type[count][];
+        for (int index = 0; index < count; index++)
+        {
+            m_combinations[index] = combinations.get(index).clone();
+        }
+        m_probabilities = probabilities.clone();
+        m_deteriorationRates = deteriorationRates.clone();
+
+        // Vose's construction of the alias table: columns with less than the average probability
+        // are topped up by an alias drawn from a column with more than the average
+        m_aliasProbabilities = new double[count];
+        m_aliases = new int[count];
+
+        double[] scaled = new double[count];
+        ArrayDeque<Integer> small = new ArrayDeque<>();
+        ArrayDeque<Integer> large = new ArrayDeque<>();
+        for (int index = 0; index < count; index++)
+        {
+            scaled[index] = probabilities[index] * count / sum;
+            if (scaled[index] < 1)
+            {
+                small.add(index);
+            }
+            else
+            {
+                large.add(index);
+            }
+        }
+
+        while (!small.isEmpty() && !large.isEmpty())
+        {
+            int less = small.poll();
+            int more = large.poll();
+
+            m_aliasProbabilities[less] = scaled[less];
+            m_aliases[less] = more;
+
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1)
+            {
+                small.add(more);
+            }
+            else
+            {
+                large.add(more);
+            }
+        }
+
+        // Any remaining columns are full, up to rounding errors
+        while (!large.isEmpty())
+        {
+            int index = large.poll();
+            m_aliasProbabilities[index] = 1;
+            m_aliases[index] = index;
+        }
+        while (!small.isEmpty())
+        {
+            int index = small.poll();
+            m_aliasProbabilities[index] = 1;
+            m_aliases[index] = index;
+        }
+    }
+
+    /**
+     * Creates a case mix from an alias table that has already been constructed, e.g. when the case
+     * mix is loaded from a {@link ModelBundle}.
+     *
+     * @param combinations          the conditions of each combination
+     * @param probabilities         the incidence of each combination
+     * @param aliasProbabilities    {@link CaseMix#m_aliasProbabilities}
+     * @param aliases               {@link CaseMix#m_aliases}
+     * @param deteriorationRates    the deterioration rate of each condition type
+     */
+    CaseMix(Condition.Type[][] combinations, double[] probabilities, double[] aliasProbabilities, int[] aliases,
+            double[] deteriorationRates)
+    {
+        m_combinations = combinations;
+        m_probabilities = probabilities;
+        m_aliasProbabilities = aliasProbabilities;
+        m_aliases = aliases;
+        m_deteriorationRates = deteriorationRates;
+    }
+
+    /**
+     * Draws a random condition combination.
+     *
+     * @param random the random source to draw from
+     * @return the index of the combination
+     */
+    public int sample(RandomSource random)
+    {
+        // Split a single variate into the column and the coin flip within the column
+        double variate = random.nextDouble() * m_aliases.length;
+        int column = Math.min((int) variate, m_aliases.length - 1);
+        return (variate - column < m_aliasProbabilities[column]) ? column : m_aliases[column];
+    }
+
+    /**
+     * Returns the number of condition combinations.
+     */
+    public int getCombinationCount()
+    {
+        return m_combinations.length;
+    }
+
+    /**
+     * Returns the number of conditions in the specified combination.
+     */
+    public int getConditionCount(int combination)
+    {
+        return m_combinations[combination].length;
+    }
+
+    /**
+     * Returns a condition of the specified combination.
+     *
+     * @param combination   the index of the combination
+     * @param index         the position of the condition within the combination
+     */
+    public Condition.Type getConditionType(int combination, int index)
+    {
+        return m_combinations[combination][index];
+    }
+
+    /**
+     * Returns the incidence of the specified combination.
+     */
+    public double getProbability(int combination)
+    {
+        return m_probabilities[combination];
+    }
+
+    /**
+     * Returns the probability of keeping the specified column of the alias table.
+     */
+    double getAliasProbability(int column)
+    {
+        return m_aliasProbabilities[column];
+    }
+
+    /**
+     * Returns the combination taken in place of the specified column of the alias table.
+     */
+    int getAlias(int column)
+    {
+        return m_aliases[column];
+    }
+
+    /**
+     * Returns the deterioration rate of the specified condition type.
+     */
+    public double getDeteriorationRate(Condition.Type type)
+    {
+        return m_deteriorationRates[type.ordinal()];
+    }
+}
@@ -0,0 +1,319 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Saves the full state of a run to a compact, versioned binary checkpoint and restores a run from
+ * it. A checkpoint holds everything a {@link SimulationContext} needs to continue exactly as the
+ * original run would have:
+ * <ul>
+ * <li>the cycle to resume from and the number of patients created</li>
+ * <li>the state of every random stream</li>
+ * <li>the staff and inventory of the hospital</li>
+ * <li>the current and deceased patients, with their conditions, resources used and the trajectory
+ * and treatment cycle of their stage</li>
+ * </ul>
+ * The trajectories are not saved; a checkpoint refers to them by ID and is restored against the
+ * trajectories loaded from the setup file.
+ *
+ * All values are written with {@link DataOutputStream} after {@link Checkpoint#MAGIC} and the format
+ * version, and the checkpoint ends with a CRC-32 of everything before it, so that a truncated or
+ * corrupt checkpoint is rejected rather than restored.
+ */
+public final class Checkpoint
+{
+    /**
+     * Identifies a checkpoint, "MMHK".
+     */
+    static final int MAGIC = 0x4D4D484B;
+
+    /**
+     * The version of the format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Size of the input and output buffers in bytes.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private Checkpoint()
+    {
+    }
+
+    /**
+     * Writes a checkpoint of a run. Checkpoints are taken between cycles, typically from
+     * {@link SimulationListener#cycleCompleted(SimulationContext)}, where the cycle to resume from is
+     * the one after the completed cycle.
+     *
+     * @param context   the state of the run
+     * @param nextCycle the cycle the restored run resumes from
+     * @param output    the stream the checkpoint is written to, which is not closed
+     * @throws IOException if the checkpoint cannot be written, or a random stream is not a
+     *                     {@link SplitMixRandomSource} whose state can be saved
+     */
+    public static void write(SimulationContext context, int nextCycle, OutputStream output) throws IOException
+    {
+        CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(output, BUFFER_SIZE), new CRC32());
+        DataOutputStream data = new DataOutputStream(checked);
+
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeByte(Condition.Type.values().length);
+        data.writeByte(Hospital.MATERIAL_RESOURCES);
+
+        data.writeInt(nextCycle);
+        data.writeInt(context.getPatientCount());
+
+        for (RandomSource stream : context.getRandom().getSources())
+        {
+            // Only the state of a SplitMix stream can be saved
+            if (!(stream instanceof SplitMixRandomSource))
+            {
+                throw new IOException("Unable to checkpoint random stream " + stream.getClass().getName() + ".");
+            }
+
+            SplitMixRandomSource source = (SplitMixRandomSource) stream;
+            data.writeLong(source.getSeed());
+            data.writeLong(source.getGamma());
+        }
+
+        Hospital hospital = context.getHospital();
+        data.writeInt(hospital.nurses);
+        data.writeInt(hospital.doctors);
+        data.writeInt(hospital.getStockedResources());
+        for (Hospital.MaterialResource resource : Hospital.MaterialResource.values())
+        {
+            data.writeDouble(hospital.getStock(resource));
+        }
+
+        writePatients(data, context.getCurrentPatients());
+        writePatients(data, context.getDeceasedPatients());
+
+        data.flush();
+        data.writeInt((int) checked.getChecksum().getValue());
+        data.flush();
+    }
+
+    /**
+     * Writes a checkpoint of a run to a file. The checkpoint is written to a temporary file that
+     * replaces any existing checkpoint once it is complete, so a crash while writing leaves the
+     * previous checkpoint intact.
+     *
+     * @param context   the state of the run
+     * @param nextCycle the cycle the restored run resumes from
+     * @param path      the path of the checkpoint file
+     * @throws IOException if the checkpoint cannot be written, or a random stream is not a
+     *                     {@link SplitMixRandomSource} whose state can be saved
+     */
+    public static void save(SimulationContext context, int nextCycle, Path path) throws IOException
+    {
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try
+        {
+            try (OutputStream output = Files.newOutputStream(temporary))
+            {
+                write(context, nextCycle, output);
+            }
+
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Restores a run from a checkpoint. The restored context is at the cycle the run resumes from,
+     * so the run continues with {@link Simulation#resume(int)}.
+     *
+     * @param input         the stream the checkpoint is read from, which is not closed
+     * @param trajectories  the trajectories the patients' stages refer to
+     * @return the restored state of the run
+     * @throws IOException if the checkpoint cannot be read, is corrupt, or refers to a trajectory
+     *                     that does not exist
+     */
+    public static SimulationContext read(InputStream input, TrajectoryTable trajectories) throws IOException
+    {
+        CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(input, BUFFER_SIZE), new CRC32());
+        DataInputStream data = new DataInputStream(checked);
+
+        if (data.readInt() != MAGIC)
+        {
+            throw new IOException("File is not a checkpoint.");
+        }
+        int version = data.readInt();
+        int conditionTypes = data.readUnsignedByte();
+        int resources = data.readUnsignedByte();
+        if (version != VERSION || conditionTypes != Condition.Type.values().length ||
+                resources != Hospital.MATERIAL_RESOURCES)
+        {
+            throw new IOException("Unsupported checkpoint version " + version + " with " + conditionTypes +
+                " condition types and " + resources + " material resources.");
+        }
+
+        int nextCycle = data.readInt();
+        int patientCount = data.readInt();
+
+        SplitMixRandomSource[] sources = new SplitMixRandomSource[4];
+        for (int stream = 0; stream < sources.length; stream++)
+        {
+            long seed = data.readLong();
+            long gamma = data.readLong();
+            if ((gamma & 1) == 0)
+            {
+                throw new IOException("Checkpoint has an invalid random stream.");
+            }
+            sources[stream] = new SplitMixRandomSource(seed, gamma);
+        }
+
+        Hospital hospital = new Hospital(data.readInt(), data.readInt(), new EnumMap<>(Hospital.MaterialResource.class));
+        int stocked = data.readInt();
+        for (Hospital.MaterialResource resource : Hospital.MaterialResource.values())
+        {
+            hospital.restoreStock(resource, data.readDouble(), (stocked & (1 << resource.ordinal())) != 0);
+        }
+
+        List<Patient> current = readPatients(data, trajectories);
+        List<Patient> deceased = readPatients(data, trajectories);
+
+        int checksum = (int) checked.getChecksum().getValue();
+        if (data.readInt() != checksum)
+        {
+            throw new IOException("Checkpoint is corrupt.");
+        }
+
+        SimulationContext context = new SimulationContext(hospital, trajectories,
+            new RandomStreams(sources[0], sources[1], sources[2], sources[3]));
+        context.restorePatientCount(patientCount);
+        context.advanceTo(nextCycle);
+        context.getCurrentPatients().addAll(current);
+        context.getDeceasedPatients().addAll(deceased);
+
+        return context;
+    }
+
+    /**
+     * Restores a run from a checkpoint file.
+     *
+     * @param path          the path of the checkpoint file
+     * @param trajectories  the trajectories the patients' stages refer to
+     * @return the restored state of the run
+     * @throws IOException if the checkpoint cannot be read or is corrupt
+     * @see Checkpoint#read(InputStream, TrajectoryTable)
+     */
+    public static SimulationContext load(Path path, TrajectoryTable trajectories) throws IOException
+    {
+        try (InputStream input = Files.newInputStream(path))
+        {
+            return read(input, trajectories);
+        }
+    }
+
+    private static void writePatients(DataOutputStream data, List<Patient> patients) throws IOException
+    {
+        data.writeInt(patients.size());
+        for (Patient patient : patients)
+        {
+            data.writeInt(patient.getPatientId());
+            data.writeInt(patient.getAge());
+            data.writeBoolean(patient.isAlive());
+            data.writeInt(patient.getDoctor());
+            data.writeInt(patient.getNurse());
+            data.writeDouble(patient.getDoses());
+
+            List<Condition> conditions = patient.getConditions();
+            data.writeByte(conditions.size());
+            for (Condition condition : conditions)
+            {
+                data.writeByte(condition.getType().ordinal());
+                data.writeDouble(condition.getProbabilityOfMortality());
+                data.writeDouble(condition.getDeteriorationRate());
+                data.writeInt(condition.getCycle());
+            }
+
+            Stage stage = patient.getStage();
+            data.writeInt((stage == null) ? -1 : stage.getTreatmentPlan().getID());
+            data.writeInt((stage == null) ? 0 : stage.getTreatmentPlan().getCycle());
+        }
+    }
+
+    private static List<Patient> readPatients(DataInputStream data, TrajectoryTable trajectories) throws IOException
+    {
+        Condition.Type[] types = Condition.Type.values();
+
+        int count = data.readInt();
+        if (count < 0)
+        {
+            throw new IOException("Checkpoint has an invalid patient count.");
+        }
+
+        List<Patient> patients = new ArrayList<>(Math.min(count, 1 << 16));
+        for (int index = 0; index < count; index++)
+        {
+            int patientId = data.readInt();
+            int age = data.readInt();
+            boolean alive = data.readBoolean();
+            int doctors = data.readInt();
+            int nurses = data.readInt();
+            double doses = data.readDouble();
+
+            int conditionCount = data.readUnsignedByte();
+            ArrayList<Condition> conditions = new ArrayList<>(conditionCount);
+            for (int condition = 0; condition < conditionCount; condition++)
+            {
+                int ordinal = data.readUnsignedByte();
+                if (ordinal >= types.length)
+                {
+                    throw new IOException("Checkpoint has an invalid condition type " + ordinal + ".");
+                }
+                conditions.add(new Condition(types[ordinal], data.readDouble(), data.readDouble(), data.readInt()));
+            }
+
+            Patient patient = new Patient(patientId, age, conditions);
+            if (!alive)
+            {
+                patient.die();
+            }
+
+            // Resources used are cumulative, so they are restored by adding them to a new patient
+            patient.setDoctor(doctors);
+            patient.setNurse(nurses);
+            patient.setDoses(doses);
+
+            int trajectoryId = data.readInt();
+            int planCycle = data.readInt();
+            if (trajectoryId >= 0)
+            {
+                Trajectory trajectory = trajectories.get(trajectoryId);
+                if (trajectory == null)
+                {
+                    throw new IOException("Checkpoint refers to trajectory " + trajectoryId +
+                        ", which is not in the setup file.");
+                }
+                patient.setStage(new Stage(new TreatmentPlan(patient, trajectory.getTreatmentPlanTemplate(), planCycle)));
+            }
+
+            patients.add(patient);
+        }
+
+        return patients;
+    }
+}
@@ -0,0 +1,57 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Saves a {@link Checkpoint} of a run at a fixed interval of cycles, replacing the previous
+ * checkpoint, so that a run that crashes can be restored from its most recent checkpoint.
+ */
+public class CheckpointWriter implements SimulationListener
+{
+    /**
+     * The path of the checkpoint file.
+     */
+    private final Path m_path;
+
+    /**
+     * The number of cycles between checkpoints.
+     */
+    private final int m_interval;
+
+    /**
+     * Creates a listener that saves a checkpoint every time the number of completed cycles is a
+     * multiple of the interval.
+     *
+     * @param path      the path of the checkpoint file
+     * @param interval  the number of cycles between checkpoints
+     */
+    public CheckpointWriter(Path path, int interval)
+    {
+        if (interval <= 0)
+        {
+            throw new IllegalArgumentException("The checkpoint interval must be positive.");
+        }
+
+        m_path = path;
+        m_interval = interval;
+    }
+
+    /**
+     * {@link CheckpointWriter#m_path}
+     */
+    public Path getPath()
+    {
+        return m_path;
+    }
+
+    @Override
+    public void cycleCompleted(SimulationContext context) throws IOException
+    {
+        int nextCycle = context.getCycle() + 1;
+        if (nextCycle % m_interval == 0)
+        {
+            Checkpoint.save(context, nextCycle, m_path);
+        }
+    }
+}
@@ -34,6 +34,15 @@ public class Collector {
     }
 
     
+    /**
+     * Returns whether a value has to be quoted to be read back as a single field, because it contains
+     * the separator, a quote or a line break.
+     */
+    private static boolean needsQuotes(String value, char separator) {
+        return value.indexOf(separator) >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 ||
+            value.indexOf('\r') >= 0;
+    }
+
     
     public static void writeLine(Writer w, List<String> values, char separators, char customQuote) throws IOException {
 
@@ -50,7 +59,9 @@ public class Collector {
             if (!first) {
                 sb.append(separators);
             }
-            if (customQuote == ' ') {
+            if (customQuote == ' ' && needsQuotes(value, separators)) {
+                sb.append('"').append(followCVSformat(value)).append('"');
+            } else if (customQuote == ' ') {
                 sb.append(followCVSformat(value));
             } else {
                 sb.append(customQuote).append(followCVSformat(value)).append(customQuote);
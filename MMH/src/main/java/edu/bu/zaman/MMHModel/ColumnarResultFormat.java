@@ -0,0 +1,160 @@
+package edu.bu.zaman.MMHModel;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the columnar result files written by {@link ColumnarResultWriter} and read by
+ * {@link ColumnarResultReader}.
+ *
+ * A file starts with a header holding {@link ColumnarResultFormat#MAGIC}, the format version and
+ * the number of condition types. It is followed by one block per cycle and ends with a footer index
+ * of the blocks. Each block starts with the cycle and the number of rows, which stands in for a
+ * cycle column, followed by one column per field:
+ * <ul>
+ * <li>the probability of mortality of each condition type, as doubles, NaN if the patient does not
+ * have the condition</li>
+ * <li>the doses used, as doubles</li>
+ * <li>the patient ID, age, doctors and nurses, as ints</li>
+ * <li>the outcome, as one byte per row, {@link ColumnarResultFormat#SURVIVED} or
+ * {@link ColumnarResultFormat#DIED}</li>
+ * </ul>
+ * Every column is padded to a multiple of 8 bytes, so that every column is aligned within the file.
+ * The footer holds the cycle, number of rows and file offset of each block, followed by a trailer
+ * holding the offset of the footer, the number of blocks and {@link ColumnarResultFormat#MAGIC}.
+ * All values are little-endian.
+ */
+public final class ColumnarResultFormat
+{
+    /**
+     * Identifies a columnar result file, "MMHC".
+     */
+    static final int MAGIC = 0x4D4D4843;
+
+    /**
+     * The version of the format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The byte order of all values.
+     */
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * The number of condition types, which is the number of probability of mortality columns.
+     */
+    static final int CONDITION_TYPES = Condition.Type.values().length;
+
+    /**
+     * The size of the file header: magic, version, condition types and a reserved int.
+     */
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * The size of the header of each block: cycle and number of rows.
+     */
+    static final int BLOCK_HEADER_SIZE = 8;
+
+    /**
+     * The size of each footer entry: cycle, number of rows and block offset.
+     */
+    static final int FOOTER_ENTRY_SIZE = 16;
+
+    /**
+     * The size of the trailer: footer offset, number of blocks and magic.
+     */
+    static final int TRAILER_SIZE = 16;
+
+    /**
+     * Outcome of a patient still in the hospital at the end of the cycle.
+     */
+    public static final byte SURVIVED = 1;
+
+    /**
+     * Outcome of a patient that died during the cycle.
+     */
+    public static final byte DIED = 0;
+
+    private ColumnarResultFormat()
+    {
+    }
+
+    /**
+     * Returns the offset of the probability of mortality column of a condition type within a block.
+     */
+    static long probabilityOfMortalityOffset(int rows, int ordinal)
+    {
+        return BLOCK_HEADER_SIZE + (long) ordinal * doubleColumnSize(rows);
+    }
+
+    /**
+     * Returns the offset of the doses column within a block.
+     */
+    static long dosesOffset(int rows)
+    {
+        return probabilityOfMortalityOffset(rows, CONDITION_TYPES);
+    }
+
+    /**
+     * Returns the offset of the patient ID column within a block.
+     */
+    static long patientIdOffset(int rows)
+    {
+        return dosesOffset(rows) + doubleColumnSize(rows);
+    }
+
+    /**
+     * Returns the offset of the age column within a block.
+     */
+    static long ageOffset(int rows)
+    {
+        return patientIdOffset(rows) + intColumnSize(rows);
+    }
+
+    /**
+     * Returns the offset of the doctors column within a block.
+     */
+    static long doctorsOffset(int rows)
+    {
+        return ageOffset(rows) + intColumnSize(rows);
+    }
+
+    /**
+     * Returns the offset of the nurses column within a block.
+     */
+    static long nursesOffset(int rows)
+    {
+        return doctorsOffset(rows) + intColumnSize(rows);
+    }
+
+    /**
+     * Returns the offset of the outcome column within a block.
+     */
+    static long outcomeOffset(int rows)
+    {
+        return nursesOffset(rows) + intColumnSize(rows);
+    }
+
+    /**
+     * Returns the size of a block.
+     */
+    static long blockSize(int rows)
+    {
+        return outcomeOffset(rows) + align(rows);
+    }
+
+    private static long doubleColumnSize(int rows)
+    {
+        return 8L * rows;
+    }
+
+    private static long intColumnSize(int rows)
+    {
+        return align(4L * rows);
+    }
+
+    private static long align(long size)
+    {
+        return (size + 7) & ~7L;
+    }
+}
@@ -0,0 +1,236 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the columnar result files written by {@link ColumnarResultWriter}, see
+ * {@link ColumnarResultFormat}. The footer index is read when the file is opened; the columns of a
+ * cycle are read by mapping its block and returned as typed buffers, so they can be scanned
+ * without any parsing.
+ */
+public class ColumnarResultReader implements Closeable
+{
+    /**
+     * The channel of the input file.
+     */
+    private final FileChannel m_channel;
+
+    /**
+     * The cycle of each block.
+     */
+    private final int[] m_cycles;
+
+    /**
+     * The number of rows of each block.
+     */
+    private final int[] m_rows;
+
+    /**
+     * The file offset of each block.
+     */
+    private final long[] m_offsets;
+
+    /**
+     * The most recently mapped block.
+     */
+    private MappedByteBuffer m_block;
+
+    /**
+     * The index of {@link ColumnarResultReader#m_block}, or -1 if no block is mapped.
+     */
+    private int m_mappedBlock = -1;
+
+    /**
+     * Opens a columnar result file and reads its footer index.
+     *
+     * @param filepath the path of the file
+     * @throws IOException if the file cannot be read or is not a columnar result file
+     */
+    public ColumnarResultReader(String filepath) throws IOException
+    {
+        m_channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ);
+        try
+        {
+            long size = m_channel.size();
+            if (size < ColumnarResultFormat.HEADER_SIZE + ColumnarResultFormat.TRAILER_SIZE)
+            {
+                throw new IOException("File is too short to be a columnar result file.");
+            }
+
+            ByteBuffer header = read(0, ColumnarResultFormat.HEADER_SIZE);
+            if (header.getInt() != ColumnarResultFormat.MAGIC)
+            {
+                throw new IOException("File is not a columnar result file.");
+            }
+            int version = header.getInt();
+            int conditionTypes = header.getInt();
+            if (version != ColumnarResultFormat.VERSION || conditionTypes != ColumnarResultFormat.CONDITION_TYPES)
+            {
+                throw new IOException("Unsupported columnar result file version " + version + " with " +
+                    conditionTypes + " condition types.");
+            }
+
+            ByteBuffer trailer = read(size - ColumnarResultFormat.TRAILER_SIZE, ColumnarResultFormat.TRAILER_SIZE);
+            long footerOffset = trailer.getLong();
+            int blocks = trailer.getInt();
+            if (trailer.getInt() != ColumnarResultFormat.MAGIC ||
+                    footerOffset + (long) blocks * ColumnarResultFormat.FOOTER_ENTRY_SIZE + ColumnarResultFormat.TRAILER_SIZE != size)
+            {
+                throw new IOException("Columnar result file has no valid footer; it may not have been closed.");
+            }
+
+            m_cycles = new int[blocks];
+            m_rows = new int[blocks];
+            m_offsets = new long[blocks];
+            ByteBuffer footer = read(footerOffset, blocks * ColumnarResultFormat.FOOTER_ENTRY_SIZE);
+            for (int block = 0; block < blocks; block++)
+            {
+                m_cycles[block] = footer.getInt();
+                m_rows[block] = footer.getInt();
+                m_offsets[block] = footer.getLong();
+            }
+        }
+        catch (IOException ioe)
+        {
+            m_channel.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Returns the number of cycles in the file.
+     */
+    public int getBlockCount()
+    {
+        return m_cycles.length;
+    }
+
+    /**
+     * Returns the cycle of the specified block.
+     */
+    public int getCycle(int block)
+    {
+        return m_cycles[block];
+    }
+
+    /**
+     * Returns the number of rows in the specified block.
+     */
+    public int getRowCount(int block)
+    {
+        return m_rows[block];
+    }
+
+    /**
+     * Returns the probability of mortality of a condition type for each row of a block, NaN for
+     * patients without the condition.
+     */
+    public DoubleBuffer getProbabilityOfMortality(int block, Condition.Type type) throws IOException
+    {
+        int rows = m_rows[block];
+        return column(block, ColumnarResultFormat.probabilityOfMortalityOffset(rows, type.ordinal()), 8L * rows)
+            .asDoubleBuffer();
+    }
+
+    /**
+     * Returns the doses used by each row of a block.
+     */
+    public DoubleBuffer getDoses(int block) throws IOException
+    {
+        int rows = m_rows[block];
+        return column(block, ColumnarResultFormat.dosesOffset(rows), 8L * rows).asDoubleBuffer();
+    }
+
+    /**
+     * Returns the patient ID of each row of a block.
+     */
+    public IntBuffer getPatientIds(int block) throws IOException
+    {
+        int rows = m_rows[block];
+        return column(block, ColumnarResultFormat.patientIdOffset(rows), 4L * rows).asIntBuffer();
+    }
+
+    /**
+     * Returns the age of each row of a block.
+     */
+    public IntBuffer getAges(int block) throws IOException
+    {
+        int rows = m_rows[block];
+        return column(block, ColumnarResultFormat.ageOffset(rows), 4L * rows).asIntBuffer();
+    }
+
+    /**
+     * Returns the doctors used by each row of a block.
+     */
+    public IntBuffer getDoctors(int block) throws IOException
+    {
+        int rows = m_rows[block];
+        return column(block, ColumnarResultFormat.doctorsOffset(rows), 4L * rows).asIntBuffer();
+    }
+
+    /**
+     * Returns the nurses used by each row of a block.
+     */
+    public IntBuffer getNurses(int block) throws IOException
+    {
+        int rows = m_rows[block];
+        return column(block, ColumnarResultFormat.nursesOffset(rows), 4L * rows).asIntBuffer();
+    }
+
+    /**
+     * Returns the outcome of each row of a block, {@link ColumnarResultFormat#SURVIVED} or
+     * {@link ColumnarResultFormat#DIED}.
+     */
+    public ByteBuffer getOutcomes(int block) throws IOException
+    {
+        int rows = m_rows[block];
+        return column(block, ColumnarResultFormat.outcomeOffset(rows), rows);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        m_block = null;
+        m_channel.close();
+    }
+
+    /**
+     * Returns a view of a column of a block, mapping the block if it is not already mapped.
+     */
+    private ByteBuffer column(int block, long offset, long length) throws IOException
+    {
+        if (m_mappedBlock != block)
+        {
+            m_block = m_channel.map(FileChannel.MapMode.READ_ONLY, m_offsets[block],
+                ColumnarResultFormat.blockSize(m_rows[block]));
+            m_mappedBlock = block;
+        }
+
+        ByteBuffer column = m_block.duplicate();
+        column.position((int) offset);
+        column.limit((int) (offset + length));
+        return column.slice().order(ColumnarResultFormat.BYTE_ORDER);
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ColumnarResultFormat.BYTE_ORDER);
+        while (buffer.hasRemaining())
+        {
+            if (m_channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new IOException("Unexpected end of columnar result file.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,424 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Writes a snapshot of the patients in the hospital at the end of every cycle to a typed columnar
+ * file, see {@link ColumnarResultFormat}. Cycles are appended as blocks written directly into a
+ * memory-mapped region of the file, and the footer index is written the same way when the file is
+ * closed. Each region covers exactly the block or footer written into it, so the file never extends
+ * past its contents and never has to be truncated while a region is still mapped, which fails on
+ * Windows.
+ */
+public class ColumnarResultWriter implements Closeable
+{
+    /**
+     * The channel of the output file.
+     */
+    private final FileChannel m_channel;
+
+    /**
+     * The file offset at which the next block is written.
+     */
+    private long m_position;
+
+    /**
+     * The number of blocks written.
+     */
+    private int m_blocks;
+
+    /**
+     * The cycle of each block.
+     */
+    private int[] m_cycles = new int[64];
+
+    /**
+     * The number of rows of each block.
+     */
+    private int[] m_rows = new int[64];
+
+    /**
+     * The file offset of each block.
+     */
+    private long[] m_offsets = new long[64];
+
+    /**
+     * Creates the output file, replacing any existing file.
+     *
+     * @param filepath the path of the output file
+     * @throws IOException if the file cannot be created
+     */
+    public ColumnarResultWriter(String filepath) throws IOException
+    {
+        this(filepath, false);
+    }
+
+    /**
+     * Creates the output file, or continues one.
+     *
+     * @param filepath  the path of the output file
+     * @param append    true to append blocks to the file of a restored run, truncated by
+     *                  {@link ColumnarResultWriter#truncate(String, SimulationContext)}, false to replace any
+     *                  existing file
+     * @throws IOException if the file cannot be opened, or cannot be continued because it does not
+     *                     end with a complete block
+     */
+    public ColumnarResultWriter(String filepath, boolean append) throws IOException
+    {
+        if (append)
+        {
+            m_channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try
+            {
+                readBlocks();
+            }
+            catch (IOException ioe)
+            {
+                m_channel.close();
+                throw ioe;
+            }
+            return;
+        }
+
+        m_channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        ByteBuffer header = ByteBuffer.allocate(ColumnarResultFormat.HEADER_SIZE).order(ColumnarResultFormat.BYTE_ORDER);
+        header.putInt(ColumnarResultFormat.MAGIC);
+        header.putInt(ColumnarResultFormat.VERSION);
+        header.putInt(ColumnarResultFormat.CONDITION_TYPES);
+        header.putInt(0);
+        header.flip();
+        writeFully(header, 0);
+
+        m_position = ColumnarResultFormat.HEADER_SIZE;
+    }
+
+    /**
+     * Prepares the output file of a run restored from a checkpoint to be continued. The blocks of
+     * the restored cycle and later cycles, written before the run was stopped, are dropped along with
+     * the footer, so that they are not repeated when those cycles are run again.
+     *
+     * The file can only be continued if it holds a block for every cycle up to the one before the
+     * restored cycle, and the patients of the checkpoint survived that cycle. Otherwise, for example
+     * when the run did not write the file, the file is left unchanged and a new file should be
+     * started.
+     *
+     * @param filepath  the path of the output file
+     * @param context   the state of the restored run
+     * @return true if the file was truncated and can be continued, false if a new file is needed
+     * @throws IOException if the file cannot be read or truncated
+     */
+    public static boolean truncate(String filepath, SimulationContext context) throws IOException
+    {
+        int cycle = context.getCycle();
+        if (!Files.exists(Paths.get(filepath)))
+        {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            long size = channel.size();
+            if (!hasHeader(channel))
+            {
+                return false;
+            }
+
+            // A file that was closed ends with the footer, which is not a block
+            long end = size;
+            if (size >= ColumnarResultFormat.HEADER_SIZE + ColumnarResultFormat.TRAILER_SIZE)
+            {
+                ByteBuffer trailer = read(channel, size - ColumnarResultFormat.TRAILER_SIZE, ColumnarResultFormat.TRAILER_SIZE);
+                long footer = trailer.getLong(0);
+                int blocks = trailer.getInt(8);
+                if (trailer.getInt(12) == ColumnarResultFormat.MAGIC && blocks >= 0 &&
+                    footer + (long) blocks * ColumnarResultFormat.FOOTER_ENTRY_SIZE + ColumnarResultFormat.TRAILER_SIZE == size)
+                {
+                    end = footer;
+                }
+            }
+
+            // Keep the blocks before the restored cycle, stopping at a block that was only partly
+            // written before the run was stopped
+            long position = ColumnarResultFormat.HEADER_SIZE;
+            int lastCycle = -1;
+            long lastOffset = -1;
+            int lastRows = 0;
+            while (position + ColumnarResultFormat.BLOCK_HEADER_SIZE <= end)
+            {
+                ByteBuffer header = read(channel, position, ColumnarResultFormat.BLOCK_HEADER_SIZE);
+                int blockCycle = header.getInt(0);
+                int rows = header.getInt(4);
+                if (blockCycle >= cycle || blockCycle <= lastCycle || rows < 0 ||
+                    position + ColumnarResultFormat.blockSize(rows) > end)
+                {
+                    break;
+                }
+
+                lastOffset = position;
+                lastRows = rows;
+                position += ColumnarResultFormat.blockSize(rows);
+                lastCycle = blockCycle;
+            }
+
+            if (lastCycle != cycle - 1 || !survivorsMatch(channel, lastOffset, lastRows, context))
+            {
+                return false;
+            }
+
+            channel.truncate(position);
+            return true;
+        }
+    }
+
+    /**
+     * Returns true if the patients that survived the block at the specified offset are the patients
+     * in the hospital, or if there is no block and the hospital is empty.
+     */
+    private static boolean survivorsMatch(FileChannel channel, long offset, int rows, SimulationContext context)
+        throws IOException
+    {
+        HashSet<Integer> patientIds = new HashSet<>();
+        if (offset >= 0)
+        {
+            ByteBuffer ids = read(channel, offset + ColumnarResultFormat.patientIdOffset(rows), 4 * rows);
+            ByteBuffer outcomes = read(channel, offset + ColumnarResultFormat.outcomeOffset(rows), rows);
+            for (int row = 0; row < rows; row++)
+            {
+                if (outcomes.get(row) == ColumnarResultFormat.SURVIVED)
+                {
+                    patientIds.add(ids.getInt(4 * row));
+                }
+            }
+        }
+
+        for (Patient patient : context.getCurrentPatients())
+        {
+            if (!patientIds.remove(patient.getPatientId()))
+            {
+                return false;
+            }
+        }
+        return patientIds.isEmpty();
+    }
+
+    /**
+     * Reads the blocks of an existing file into the index, so that blocks are appended after them.
+     */
+    private void readBlocks() throws IOException
+    {
+        if (!hasHeader(m_channel))
+        {
+            throw new IOException("File is not a columnar result file.");
+        }
+
+        long size = m_channel.size();
+        m_position = ColumnarResultFormat.HEADER_SIZE;
+        while (m_position < size)
+        {
+            if (m_position + ColumnarResultFormat.BLOCK_HEADER_SIZE > size)
+            {
+                throw new IOException("File does not end with a complete block.");
+            }
+
+            ByteBuffer header = read(m_channel, m_position, ColumnarResultFormat.BLOCK_HEADER_SIZE);
+            int cycle = header.getInt(0);
+            int rows = header.getInt(4);
+            long blockSize = ColumnarResultFormat.blockSize(rows);
+            if (rows < 0 || m_position + blockSize > size)
+            {
+                throw new IOException("File does not end with a complete block.");
+            }
+
+            addBlock(cycle, rows, m_position);
+            m_position += blockSize;
+        }
+    }
+
+    /**
+     * Returns true if the file starts with the header of this version of the format.
+     */
+    private static boolean hasHeader(FileChannel channel) throws IOException
+    {
+        if (channel.size() < ColumnarResultFormat.HEADER_SIZE)
+        {
+            return false;
+        }
+
+        ByteBuffer header = read(channel, 0, ColumnarResultFormat.HEADER_SIZE);
+        return header.getInt(0) == ColumnarResultFormat.MAGIC && header.getInt(4) == ColumnarResultFormat.VERSION &&
+            header.getInt(8) == ColumnarResultFormat.CONDITION_TYPES;
+    }
+
+    /**
+     * Reads a region of the file with the byte order of the format.
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ColumnarResultFormat.BYTE_ORDER);
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+
+        return buffer;
+    }
+
+    /**
+     * Returns the number of bytes written to the file so far.
+     */
+    public long getBytesWritten()
+    {
+        return m_position;
+    }
+
+    /**
+     * Appends the patients of a cycle as a new block. The outcome of each patient is taken from
+     * {@link Patient#isAlive()}.
+     *
+     * @param cycle     the cycle
+     * @param patients  the patients in the hospital at the end of the cycle, and the patients that
+     *                  died during the cycle
+     * @throws IOException if the block cannot be mapped
+     */
+    public void writeCycle(int cycle, List<Patient> patients) throws IOException
+    {
+        int rows = patients.size();
+        long size = ColumnarResultFormat.blockSize(rows);
+        ByteBuffer block = map(m_position, size);
+        block.putInt(0, cycle);
+        block.putInt(4, rows);
+
+        // Fill one column at a time so that each column is written sequentially
+        for (Condition.Type type : Condition.Type.values())
+        {
+            int offset = (int) ColumnarResultFormat.probabilityOfMortalityOffset(rows, type.ordinal());
+            for (int row = 0; row < rows; row++)
+            {
+                Condition condition = patients.get(row).getCondition(type);
+                block.putDouble(offset + 8 * row, (condition == null) ? Double.NaN : condition.getProbabilityOfMortality());
+            }
+        }
+
+        int doses = (int) ColumnarResultFormat.dosesOffset(rows);
+        for (int row = 0; row < rows; row++)
+        {
+            block.putDouble(doses + 8 * row, patients.get(row).getDoses());
+        }
+
+        int ids = (int) ColumnarResultFormat.patientIdOffset(rows);
+        int ages = (int) ColumnarResultFormat.ageOffset(rows);
+        int doctors = (int) ColumnarResultFormat.doctorsOffset(rows);
+        int nurses = (int) ColumnarResultFormat.nursesOffset(rows);
+        for (int row = 0; row < rows; row++)
+        {
+            block.putInt(ids + 4 * row, patients.get(row).getPatientId());
+        }
+        for (int row = 0; row < rows; row++)
+        {
+            block.putInt(ages + 4 * row, patients.get(row).getAge());
+        }
+        for (int row = 0; row < rows; row++)
+        {
+            block.putInt(doctors + 4 * row, patients.get(row).getDoctor());
+        }
+        for (int row = 0; row < rows; row++)
+        {
+            block.putInt(nurses + 4 * row, patients.get(row).getNurse());
+        }
+
+        int outcomes = (int) ColumnarResultFormat.outcomeOffset(rows);
+        for (int row = 0; row < rows; row++)
+        {
+            block.put(outcomes + row, patients.get(row).isAlive() ? ColumnarResultFormat.SURVIVED : ColumnarResultFormat.DIED);
+        }
+
+        addBlock(cycle, rows, m_position);
+        m_position += size;
+    }
+
+    /**
+     * Adds a block to the index written to the footer.
+     */
+    private void addBlock(int cycle, int rows, long offset)
+    {
+        if (m_blocks == m_cycles.length)
+        {
+            m_cycles = Arrays.copyOf(m_cycles, m_blocks * 2);
+            m_rows = Arrays.copyOf(m_rows, m_blocks * 2);
+            m_offsets = Arrays.copyOf(m_offsets, m_blocks * 2);
+        }
+        m_cycles[m_blocks] = cycle;
+        m_rows[m_blocks] = rows;
+        m_offsets[m_blocks] = offset;
+        m_blocks++;
+    }
+
+    /**
+     * Maps the region of the file that the next block or the footer is written to, which extends the
+     * file to the end of the region.
+     */
+    private ByteBuffer map(long position, long size) throws IOException
+    {
+        if (size > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Region of " + size + " bytes exceeds the maximum block size.");
+        }
+
+        MappedByteBuffer region = m_channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        region.order(ColumnarResultFormat.BYTE_ORDER);
+
+        return region;
+    }
+
+    /**
+     * Writes the footer index.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            ByteBuffer footer = map(m_position, (long) m_blocks * ColumnarResultFormat.FOOTER_ENTRY_SIZE +
+                ColumnarResultFormat.TRAILER_SIZE);
+            for (int block = 0; block < m_blocks; block++)
+            {
+                footer.putInt(m_cycles[block]);
+                footer.putInt(m_rows[block]);
+                footer.putLong(m_offsets[block]);
+            }
+            footer.putLong(m_position);
+            footer.putInt(m_blocks);
+            footer.putInt(ColumnarResultFormat.MAGIC);
+            m_position += footer.capacity();
+        }
+        finally
+        {
+            m_channel.close();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            position += m_channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package edu.bu.zaman.MMHModel;
+
+import java.util.Arrays;
+
+/**
+ * Runs the cycle loop of the model over a {@link PatientStore} instead of a list of patient
+ * objects. The four phases of each cycle are the same as in {@link Simulation} and consume the
+ * random streams of the context in the same order, so both engines produce the same admissions,
+ * treatments and deaths for the same seed; only the memory layout differs.
+ *
+ * Deceased patients are counted but not retained, so the memory footprint of a run is proportional
+ * to the current census rather than to the number of patients admitted.
+ */
+public class ColumnarSimulation
+{
+    /**
+     * The state of the run. The current and deceased patient lists of the context are not used.
+     */
+    private final SimulationContext m_context;
+
+    /**
+     * Determines how many new patients arrive in each cycle.
+     */
+    private final ArrivalProcess m_arrivalProcess;
+
+    /**
+     * The patients currently in the hospital.
+     */
+    private final PatientStore m_store;
+
+    /**
+     * The total number of patients admitted.
+     */
+    private long m_admissions;
+
+    /**
+     * The total number of patients that have died.
+     */
+    private long m_deaths;
+
+    /**
+     * The slots in the order they are treated in the current cycle.
+     */
+    private int[] m_triageOrder;
+
+    /**
+     * The positions, in the per-condition columns of the store, of the conditions of the patients
+     * that could not be treated in the current cycle.
+     */
+    private int[] m_untreated = new int[0];
+
+    /**
+     * Buffer holding the doses of the material resources required by the patient being treated,
+     * indexed by {@link Hospital.MaterialResource#ordinal()}.
+     */
+    private final double[] m_requiredDoses = new double[Hospital.MATERIAL_RESOURCES];
+
+    /**
+     * Creates a new columnar simulation.
+     *
+     * @param context               the state of the run
+     * @param probabilityNewPatient the probability of acquiring a new patient in each cycle
+     */
+    public ColumnarSimulation(SimulationContext context, double probabilityNewPatient)
+    {
+        this(context, new BernoulliArrivalProcess(probabilityNewPatient), new PatientStore());
+    }
+
+    /**
+     * Creates a new columnar simulation.
+     *
+     * @param context           the state of the run
+     * @param arrivalProcess    determines how many new patients arrive in each cycle
+     * @param store             the store holding the patients currently in the hospital
+     */
+    public ColumnarSimulation(SimulationContext context, ArrivalProcess arrivalProcess, PatientStore store)
+    {
+        m_context = context;
+        m_arrivalProcess = arrivalProcess;
+        m_store = store;
+    }
+
+    /**
+     * {@link ColumnarSimulation#m_context}
+     */
+    public SimulationContext getContext()
+    {
+        return m_context;
+    }
+
+    /**
+     * {@link ColumnarSimulation#m_store}
+     */
+    public PatientStore getStore()
+    {
+        return m_store;
+    }
+
+    /**
+     * {@link ColumnarSimulation#m_admissions}
+     */
+    public long getAdmissions()
+    {
+        return m_admissions;
+    }
+
+    /**
+     * {@link ColumnarSimulation#m_deaths}
+     */
+    public long getDeaths()
+    {
+        return m_deaths;
+    }
+
+    /**
+     * Runs the specified number of cycles.
+     *
+     * @param cycles the number of cycles to run
+     */
+    public void run(int cycles)
+    {
+        for (int cycle = 0; cycle < cycles; cycle++)
+        {
+            runCycle();
+        }
+    }
+
+    /**
+     * Runs a single 15 minute cycle of the model.
+     */
+    public void runCycle()
+    {
+        CycleEvent event = new CycleEvent();
+        event.begin();
+        long admissions = m_admissions;
+        long deaths = m_deaths;
+
+        admit();
+        treat();
+        evaluate();
+        release();
+
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.cycle = m_context.getCycle();
+            event.census = m_store.size();
+            event.admissions = (int) (m_admissions - admissions);
+            event.deaths = (int) (m_deaths - deaths);
+            event.commit();
+        }
+
+        m_context.nextCycle();
+    }
+
+    /**
+     * 1. Take in additional patients
+     *
+     * New patients are created by Shiva exactly as in {@link Simulation} and copied into the store.
+     */
+    private void admit()
+    {
+        int arrivals = m_arrivalProcess.arrivals(m_context.getCycle(), m_context.getRandom().arrivals());
+        for (Patient patient : Shiva.createPatients(m_context, arrivals, 18, 45))
+        {
+            m_store.add(patient);
+            m_admissions++;
+        }
+    }
+
+    /**
+     * 2. Allocate resources to patients and treat them
+     *
+     * Patients are visited from the most severe to the least severe, as in {@link Simulation}.
+     */
+    private void treat()
+    {
+        final int stride = PatientStore.CONDITION_TYPES;
+        final TrajectoryTable trajectories = m_context.getTrajectories();
+        final Hospital hospital = m_context.getHospital();
+
+        final PatientStore store = m_store;
+        final int[] masks = store.m_conditionMasks;
+        final int[] stages = store.m_stages;
+        final int[] planCycles = store.m_planCycles;
+        final double[] severities = store.m_severities;
+        final double[] rates = store.m_deteriorationRates;
+        final int[] deteriorationCycles = store.m_deteriorationCycles;
+
+        int untreated = 0;
+        m_triageOrder = store.triageOrder(m_triageOrder);
+        for (int position = 0; position < store.m_size; position++)
+        {
+            int slot = m_triageOrder[position];
+            int offset = slot * stride;
+            int mask = masks[slot];
+
+            // Keep the current stage while its trajectory still matches, otherwise move the patient
+            // to the first matching trajectory and restart the treatment plan
+            int stage = stages[slot];
+            if (stage < 0 || !trajectories.getAt(stage).matches(mask, severities, offset))
+            {
+                StageTransitionEvent event = new StageTransitionEvent();
+                event.begin();
+
+                int match = trajectories.find(mask, severities, offset);
+                if (match < 0)
+                {
+                    throw new IllegalStateException("Patient " + store.m_ids[slot] + " does not match any trajectory.");
+                }
+                if (match != stage)
+                {
+                    stages[slot] = match;
+                    planCycles[slot] = 0;
+
+                    event.end();
+                    if (event.shouldCommit())
+                    {
+                        event.cycle = m_context.getCycle();
+                        event.patientId = store.m_ids[slot];
+                        event.previousTrajectoryId = (stage < 0) ? -1 : trajectories.getAt(stage).getId();
+                        event.trajectoryId = trajectories.getAt(match).getId();
+                        event.commit();
+                    }
+                }
+            }
+
+            TreatmentPlanTemplate template = trajectories.getAt(stages[slot]).getTreatmentPlanTemplate();
+            int cycle = planCycles[slot];
+
+            int requiredNurses = template.requiredNurses(cycle);
+            int requiredDoctors = template.requiredDoctors(cycle);
+
+            int requiredResources = template.requiredMaterialResources(cycle, m_requiredDoses);
+
+            boolean resourcesAvailable = hospital.nurses >= requiredNurses &&
+                    hospital.doctors >= requiredDoctors &&
+                    hospital.consumeResources(requiredResources, m_requiredDoses);
+
+            if (resourcesAvailable)
+            {
+                for (int resources = requiredResources; resources != 0; resources &= resources - 1)
+                {
+                    store.m_doses[slot] += m_requiredDoses[Integer.numberOfTrailingZeros(resources)];
+                }
+
+                hospital.nurses -= requiredNurses;
+                hospital.doctors -= requiredDoctors;
+
+                store.m_doctors[slot] += requiredDoctors;
+                store.m_nurses[slot] += requiredNurses;
+
+                TreatmentEvent event = new TreatmentEvent();
+                event.begin();
+
+                // Treat the conditions targeted by the plan, see TreatmentPlan#treatPatient()
+                for (int index = 0; index < template.getConditionTypeCount(); index++)
+                {
+                    Condition.Type type = template.getConditionType(index);
+                    int ordinal = type.ordinal();
+                    if ((mask & (1 << ordinal)) == 0)
+                    {
+                        continue;
+                    }
+
+                    double pom = template.treatedProbabilityOfMortality(type, severities[offset + ordinal], cycle);
+                    if (pom >= 0 && pom <= 1)
+                    {
+                        severities[offset + ordinal] = pom;
+                        deteriorationCycles[offset + ordinal] = 0;
+                    }
+                }
+                planCycles[slot]++;
+
+                event.end();
+                if (event.shouldCommit())
+                {
+                    event.patientId = store.m_ids[slot];
+                    event.trajectoryId = template.getID();
+                    event.planCycle = cycle;
+                    event.commit();
+                }
+            }
+            else
+            {
+                ResourceDenialEvent event = new ResourceDenialEvent();
+                if (event.shouldCommit())
+                {
+                    event.cycle = m_context.getCycle();
+                    event.patientId = store.m_ids[slot];
+                    event.trajectoryId = template.getID();
+                    event.requiredNurses = requiredNurses;
+                    event.availableNurses = hospital.nurses;
+                    event.requiredDoctors = requiredDoctors;
+                    event.availableDoctors = hospital.doctors;
+                    event.requiredResources = requiredResources;
+                    event.commit();
+                }
+
+                // Collect the patient's current conditions, which worsen once all patients have
+                // been visited, see Condition#worsen()
+                if (m_untreated.length < untreated + stride)
+                {
+                    m_untreated = Arrays.copyOf(m_untreated, Math.max(m_untreated.length * 2, untreated + stride));
+                }
+                for (; mask != 0; mask &= mask - 1)
+                {
+                    m_untreated[untreated++] = offset + Integer.numberOfTrailingZeros(mask);
+                }
+            }
+        }
+
+        // Worsening a patient's conditions has no effect on the treatment of other patients in the
+        // same cycle, so all untreated conditions are worsened in one pass
+        Deterioration.advance(severities, rates, deteriorationCycles, m_untreated, untreated, 1);
+    }
+
+    /**
+     * 3. Evaluate patient health
+     */
+    private void evaluate()
+    {
+        RandomSource deaths = m_context.getRandom().deaths();
+        for (int slot = 0; slot < m_store.m_size; slot++)
+        {
+            double variate = deaths.nextDouble();
+            if (variate <= m_store.probabilityOfMortality(slot))
+            {
+                m_store.m_alive[slot] = false;
+            }
+        }
+    }
+
+    /**
+     * 4. Remove deceased patients and return available resources to the hospital
+     */
+    private void release()
+    {
+        final TrajectoryTable trajectories = m_context.getTrajectories();
+        final Hospital hospital = m_context.getHospital();
+
+        for (int slot = 0; slot < m_store.m_size; slot++)
+        {
+            TreatmentPlanTemplate template = trajectories.getAt(m_store.m_stages[slot]).getTreatmentPlanTemplate();
+            int cycle = m_store.m_planCycles[slot];
+            boolean alive = m_store.m_alive[slot];
+
+            hospital.nurses += template.freeNursesAfterTreatment(cycle, alive);
+            hospital.doctors += template.freeDoctorsAfterTreatment(cycle, alive);
+        }
+
+        m_deaths += m_store.removeDeceased();
+    }
+}
@@ -51,10 +51,25 @@ public class Condition
      *                                  absence of appropriate treatment {@link Condition#m_deteriorationRate
      */
     public Condition(Condition.Type type, double probabilityOfMortality, double deteriorationRate)
+    {
+        this(type, probabilityOfMortality, deteriorationRate, 0);
+    }
+    
+    /**
+     * Initializes a condition that has already deteriorated for a number of cycles, e.g. when it is
+     * restored from a {@link Checkpoint}.
+     *
+     * @param type                      the type of condition that should be instantiated
+     * @param probabilityOfMortality    the current probability of mortality associated with this condition
+     * @param deteriorationRate         {@link Condition#m_deteriorationRate}
+     * @param cycle                     {@link Condition#m_cycle}
+     */
+    Condition(Condition.Type type, double probabilityOfMortality, double deteriorationRate, int cycle)
     {
         m_type = type;
         m_probabilityOfMortality = probabilityOfMortality;
         m_deteriorationRate = deteriorationRate;
+        m_cycle = cycle;
     }
     
     public Condition.Type getType()
@@ -88,6 +103,22 @@ public class Condition
         m_cycle = 0;
     }
     
+    /**
+     * {@link Condition#m_deteriorationRate}
+     */
+    public double getDeteriorationRate()
+    {
+        return m_deteriorationRate;
+    }
+    
+    /**
+     * {@link Condition#m_cycle}
+     */
+    public int getCycle()
+    {
+        return m_cycle;
+    }
+    
     /**
      * Worsens the current condition by increasing its probability of mortality based on the condition's
      * inherent deterioration rate.
@@ -100,6 +131,33 @@ public class Condition
         m_probabilityOfMortality = Math.pow(getProbabilityOfMortality(), m_deteriorationRate / (m_cycle + m_deteriorationRate));
     }
     
+    /**
+     * Worsens the current condition for the specified number of cycles in a single step, with the
+     * same result as calling {@link Condition#worsen()} that many times up to rounding errors.
+     *
+     * @param cycles the number of cycles the condition worsens for
+     * @see Deterioration#advance(double, double, int, int)
+     */
+    public void advance(int cycles)
+    {
+        if (cycles == 0)
+        {
+            return;
+        }
+
+        m_probabilityOfMortality = Deterioration.advance(m_probabilityOfMortality, m_deteriorationRate, m_cycle, cycles);
+        m_cycle += cycles;
+    }
+    
+    /**
+     * Returns a copy of the condition, with the same probability of mortality, deterioration rate
+     * and age, that is not associated with any patient.
+     */
+    Condition copy()
+    {
+        return new Condition(m_type, m_probabilityOfMortality, m_deteriorationRate, m_cycle);
+    }
+    
     public String toString()
     {
         return "Condition name=" + getType().name() + ", pom=" + getProbabilityOfMortality();
@@ -0,0 +1,68 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that counts the bytes read through it from the underlying stream.
+ */
+public class CountingInputStream extends FilterInputStream
+{
+	/**
+	 * The number of bytes read so far.
+	 */
+	private long m_count;
+
+	/**
+	 * Creates a counting stream that reads from the specified stream.
+	 */
+	public CountingInputStream(InputStream input)
+	{
+		super(input);
+	}
+
+	/**
+	 * {@link CountingInputStream#m_count}
+	 */
+	public long getCount()
+	{
+		return m_count;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		int b = in.read();
+		if (b != -1)
+		{
+			m_count++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException
+	{
+		int read = in.read(buffer, offset, length);
+		if (read > 0)
+		{
+			m_count += read;
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException
+	{
+		long skipped = in.skip(n);
+		m_count += skipped;
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported()
+	{
+		return false;
+	}
+}
@@ -0,0 +1,46 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that counts the bytes passed through it to the underlying stream.
+ */
+public class CountingOutputStream extends FilterOutputStream
+{
+	/**
+	 * The number of bytes written so far.
+	 */
+	private long m_count;
+
+	/**
+	 * Creates a counting stream that writes to the specified stream.
+	 */
+	public CountingOutputStream(OutputStream output)
+	{
+		super(output);
+	}
+
+	/**
+	 * {@link CountingOutputStream#m_count}
+	 */
+	public long getCount()
+	{
+		return m_count;
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		out.write(b);
+		m_count++;
+	}
+
+	@Override
+	public void write(byte[] buffer, int offset, int length) throws IOException
+	{
+		out.write(buffer, offset, length);
+		m_count += length;
+	}
+}
@@ -0,0 +1,32 @@
+package edu.bu.zaman.MMHModel;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning a single cycle of the model. Like all of the model's events, it
+ * is only filled in and committed when a recording has enabled it, so emitting it costs nothing
+ * otherwise.
+ */
+@Name("edu.bu.zaman.MMHModel.Cycle")
+@Label("Cycle")
+@Category("MMH Model")
+@Description("A single 15 minute cycle of the model")
+final class CycleEvent extends Event
+{
+    @Label("Cycle")
+    int cycle;
+
+    @Label("Census")
+    @Description("The number of patients in the hospital at the end of the cycle")
+    int census;
+
+    @Label("Admissions")
+    int admissions;
+
+    @Label("Deaths")
+    int deaths;
+}
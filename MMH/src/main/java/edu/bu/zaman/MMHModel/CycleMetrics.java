@@ -0,0 +1,324 @@
+package edu.bu.zaman.MMHModel;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Times each phase of the cycle loop and counts what happens in it, so that a slow run can be
+ * attributed to stage matching, triage or output without attaching a profiler. Each phase is
+ * timed once per cycle, and the engine adds its counters once per phase rather than once per
+ * patient, so the overhead is a handful of clock reads per cycle.
+ *
+ * The metrics can be shared by replications running in parallel, and can be published as a JMX
+ * MBean with {@link CycleMetrics#register(String)} and printed with {@link CycleMetrics#summary()}.
+ */
+public class CycleMetrics implements CycleMetricsMBean
+{
+    /**
+     * The timed phases of a cycle.
+     */
+    public enum Phase
+    {
+        ADMISSION, TRIAGE, STAGE_MATCHING, TREATMENT, EVALUATION, RELEASE, EXPORT
+    }
+
+    /**
+     * The domain of the JMX object names of registered metrics.
+     */
+    public static final String DOMAIN = "edu.bu.zaman.MMHModel";
+
+    /**
+     * The total time spent in each phase, indexed by {@link Phase#ordinal()}.
+     */
+    private final LongAdder[] m_phaseNanos = new LongAdder[Phase.values().length];
+
+    /**
+     * The number of completed cycles.
+     */
+    private final LongAdder m_cycles = new LongAdder();
+
+    /**
+     * The number of patients admitted.
+     */
+    private final LongAdder m_patientsAdmitted = new LongAdder();
+
+    /**
+     * The number of times a patient was treated.
+     */
+    private final LongAdder m_patientsTreated = new LongAdder();
+
+    /**
+     * The number of times a patient could not be treated for lack of resources.
+     */
+    private final LongAdder m_patientsDenied = new LongAdder();
+
+    /**
+     * The number of times a patient moved to a new stage.
+     */
+    private final LongAdder m_stageTransitions = new LongAdder();
+
+    /**
+     * The number of patients that died.
+     */
+    private final LongAdder m_deaths = new LongAdder();
+
+    /**
+     * The number of records written to the output files.
+     */
+    private final LongAdder m_recordsExported = new LongAdder();
+
+    /**
+     * The number of bytes written to the output files.
+     */
+    private final LongAdder m_bytesExported = new LongAdder();
+
+    /**
+     * Creates new metrics with all times and counters cleared.
+     */
+    public CycleMetrics()
+    {
+        for (int index = 0; index < m_phaseNanos.length; index++)
+        {
+            m_phaseNanos[index] = new LongAdder();
+        }
+    }
+
+    /**
+     * Publishes the metrics on the platform MBean server.
+     *
+     * @param name the name that identifies the metrics among other registered metrics
+     * @return the object name the metrics were registered under
+     * @throws JMException if the metrics cannot be registered, e.g. if the name is already taken
+     */
+    public ObjectName register(String name) throws JMException
+    {
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=CycleMetrics,name=" + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, objectName);
+
+        return objectName;
+    }
+
+    /**
+     * Adds time spent in a phase.
+     *
+     * @param phase the phase
+     * @param nanos the time spent, in nanoseconds
+     */
+    public void addTime(Phase phase, long nanos)
+    {
+        m_phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * Returns the total time spent in a phase, in nanoseconds.
+     */
+    public long getNanos(Phase phase)
+    {
+        return m_phaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * Counts a completed cycle.
+     */
+    public void cycleCompleted()
+    {
+        m_cycles.increment();
+    }
+
+    /**
+     * Counts admitted patients.
+     */
+    public void addPatientsAdmitted(int patients)
+    {
+        m_patientsAdmitted.add(patients);
+    }
+
+    /**
+     * Counts treated patients.
+     */
+    public void addPatientsTreated(int patients)
+    {
+        m_patientsTreated.add(patients);
+    }
+
+    /**
+     * Counts patients that could not be treated for lack of resources.
+     */
+    public void addPatientsDeniedResources(int patients)
+    {
+        m_patientsDenied.add(patients);
+    }
+
+    /**
+     * Counts patients that moved to a new stage.
+     */
+    public void addStageTransitions(int transitions)
+    {
+        m_stageTransitions.add(transitions);
+    }
+
+    /**
+     * Counts patients that died.
+     */
+    public void addDeaths(int deaths)
+    {
+        m_deaths.add(deaths);
+    }
+
+    /**
+     * Counts output written.
+     *
+     * @param records   the number of records written
+     * @param bytes     the number of bytes written
+     */
+    public void addExported(long records, long bytes)
+    {
+        m_recordsExported.add(records);
+        m_bytesExported.add(bytes);
+    }
+
+    @Override
+    public long getCycles()
+    {
+        return m_cycles.sum();
+    }
+
+    @Override
+    public long getAdmissionNanos()
+    {
+        return getNanos(Phase.ADMISSION);
+    }
+
+    @Override
+    public long getTriageNanos()
+    {
+        return getNanos(Phase.TRIAGE);
+    }
+
+    @Override
+    public long getStageMatchingNanos()
+    {
+        return getNanos(Phase.STAGE_MATCHING);
+    }
+
+    @Override
+    public long getTreatmentNanos()
+    {
+        return getNanos(Phase.TREATMENT);
+    }
+
+    @Override
+    public long getEvaluationNanos()
+    {
+        return getNanos(Phase.EVALUATION);
+    }
+
+    @Override
+    public long getReleaseNanos()
+    {
+        return getNanos(Phase.RELEASE);
+    }
+
+    @Override
+    public long getExportNanos()
+    {
+        return getNanos(Phase.EXPORT);
+    }
+
+    @Override
+    public long getPatientsAdmitted()
+    {
+        return m_patientsAdmitted.sum();
+    }
+
+    @Override
+    public long getPatientsTreated()
+    {
+        return m_patientsTreated.sum();
+    }
+
+    @Override
+    public long getPatientsDeniedResources()
+    {
+        return m_patientsDenied.sum();
+    }
+
+    @Override
+    public long getStageTransitions()
+    {
+        return m_stageTransitions.sum();
+    }
+
+    @Override
+    public long getDeaths()
+    {
+        return m_deaths.sum();
+    }
+
+    @Override
+    public long getRecordsExported()
+    {
+        return m_recordsExported.sum();
+    }
+
+    @Override
+    public long getBytesExported()
+    {
+        return m_bytesExported.sum();
+    }
+
+    @Override
+    public void reset()
+    {
+        for (LongAdder nanos : m_phaseNanos)
+        {
+            nanos.reset();
+        }
+
+        m_cycles.reset();
+        m_patientsAdmitted.reset();
+        m_patientsTreated.reset();
+        m_patientsDenied.reset();
+        m_stageTransitions.reset();
+        m_deaths.reset();
+        m_recordsExported.reset();
+        m_bytesExported.reset();
+    }
+
+    @Override
+    public String summary()
+    {
+        long total = 0;
+        for (Phase phase : Phase.values())
+        {
+            total += getNanos(phase);
+        }
+
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Cycles: %d, total time %.3f ms%n", getCycles(), total / 1e6));
+        for (Phase phase : Phase.values())
+        {
+            long nanos = getNanos(phase);
+            summary.append(String.format("\t%-16s %12.3f ms %6.1f%%%n", phase, nanos / 1e6,
+                (total == 0) ? 0 : 100.0 * nanos / total));
+        }
+        summary.append(String.format("Patients admitted: %d, treated: %d, denied resources: %d%n",
+            getPatientsAdmitted(), getPatientsTreated(), getPatientsDeniedResources()));
+        summary.append(String.format("Stage transitions: %d, deaths: %d%n", getStageTransitions(), getDeaths()));
+        summary.append(String.format("Records exported: %d, bytes exported: %d", getRecordsExported(),
+            getBytesExported()));
+
+        return summary.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return summary();
+    }
+}
@@ -0,0 +1,94 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * Management interface of {@link CycleMetrics}, published over JMX. Times are the total time spent
+ * in each phase of the cycle loop, in nanoseconds, since the metrics were created or last reset.
+ */
+public interface CycleMetricsMBean
+{
+    /**
+     * Returns the number of completed cycles.
+     */
+    long getCycles();
+
+    /**
+     * Returns the time spent admitting new patients.
+     */
+    long getAdmissionNanos();
+
+    /**
+     * Returns the time spent ordering the patients by severity.
+     */
+    long getTriageNanos();
+
+    /**
+     * Returns the time spent matching patients to their stage.
+     */
+    long getStageMatchingNanos();
+
+    /**
+     * Returns the time spent allocating resources and treating patients.
+     */
+    long getTreatmentNanos();
+
+    /**
+     * Returns the time spent drawing deaths.
+     */
+    long getEvaluationNanos();
+
+    /**
+     * Returns the time spent removing deceased patients and releasing staff.
+     */
+    long getReleaseNanos();
+
+    /**
+     * Returns the time spent notifying listeners at the end of each cycle, which includes writing
+     * the output files.
+     */
+    long getExportNanos();
+
+    /**
+     * Returns the number of patients admitted.
+     */
+    long getPatientsAdmitted();
+
+    /**
+     * Returns the number of times a patient was treated.
+     */
+    long getPatientsTreated();
+
+    /**
+     * Returns the number of times a patient could not be treated for lack of resources.
+     */
+    long getPatientsDeniedResources();
+
+    /**
+     * Returns the number of times a patient moved to a new stage.
+     */
+    long getStageTransitions();
+
+    /**
+     * Returns the number of patients that died.
+     */
+    long getDeaths();
+
+    /**
+     * Returns the number of records written to the output files.
+     */
+    long getRecordsExported();
+
+    /**
+     * Returns the number of bytes written to the output files.
+     */
+    long getBytesExported();
+
+    /**
+     * Clears all times and counters.
+     */
+    void reset();
+
+    /**
+     * Returns a human readable summary of the times and counters.
+     */
+    String summary();
+}
@@ -0,0 +1,477 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregate statistics of one or more runs, collected as a listener without writing any patient
+ * records. Each notification updates the statistics in constant time per patient involved, so the
+ * collector can replace the per-patient outputs of a run when only aggregates are needed.
+ *
+ * The collector keeps the following, summed over the runs combined with
+ * {@link CycleStatistics#merge(CycleStatistics)}:
+ * <ul>
+ * <li>per-cycle series of the census, deaths, nurses and doctors checked out for treatment, and the
+ * stock of every disposable resource</li>
+ * <li>running statistics, across the cycles of every run, of the census, deaths and the utilization
+ * of nurses and doctors</li>
+ * <li>admissions and deaths by condition type</li>
+ * </ul>
+ * Staff in use are the nurses and doctors checked out by the patients treated during a cycle, and
+ * utilization is the fraction of the staff available when the treatment phase starts that is
+ * checked out. Inventory drawdown is measured against the stock of the hospital when the collector
+ * is created, so it should be created before the run starts.
+ */
+public class CycleStatistics implements SimulationListener
+{
+    /**
+     * The number of runs combined in these statistics.
+     */
+    private int m_runs;
+
+    /**
+     * The number of nurses of the hospital.
+     */
+    private final int m_nurses;
+
+    /**
+     * The number of doctors of the hospital.
+     */
+    private final int m_doctors;
+
+    /**
+     * The number of nurses available when the treatment phase of the current cycle starts, which are
+     * those left after the release phase of the previous cycle.
+     */
+    private int m_availableNurses;
+
+    /**
+     * The number of doctors available when the treatment phase of the current cycle starts.
+     */
+    private int m_availableDoctors;
+
+    /**
+     * The number of nurses checked out during the current cycle.
+     */
+    private int m_checkedOutNurses;
+
+    /**
+     * The number of doctors checked out during the current cycle.
+     */
+    private int m_checkedOutDoctors;
+
+    /**
+     * The initial stock (in mg) of each disposable resource, indexed by
+     * {@link Hospital.MaterialResource#ordinal()}.
+     */
+    private final double[] m_initialStock = new double[Hospital.MATERIAL_RESOURCES];
+
+    /**
+     * The total number of patients in the hospital at the end of each cycle.
+     */
+    private final long[] m_censusByCycle;
+
+    /**
+     * The total number of deaths during each cycle.
+     */
+    private final long[] m_deathsByCycle;
+
+    /**
+     * The total number of nurses checked out during each cycle.
+     */
+    private final long[] m_nursesByCycle;
+
+    /**
+     * The total number of doctors checked out during each cycle.
+     */
+    private final long[] m_doctorsByCycle;
+
+    /**
+     * The total stock (in mg) of each disposable resource at the end of each cycle, indexed by
+     * cycle and then by {@link Hospital.MaterialResource#ordinal()}.
+     */
+    private final double[] m_stockByCycle;
+
+    /**
+     * Statistics of the census across cycles.
+     */
+    private RunningStatistics m_census = new RunningStatistics();
+
+    /**
+     * Statistics of the deaths per cycle across cycles.
+     */
+    private RunningStatistics m_deaths = new RunningStatistics();
+
+    /**
+     * Statistics of the fraction of the available nurses checked out across cycles.
+     */
+    private RunningStatistics m_nurseUtilization = new RunningStatistics();
+
+    /**
+     * Statistics of the fraction of the available doctors checked out across cycles.
+     */
+    private RunningStatistics m_doctorUtilization = new RunningStatistics();
+
+    /**
+     * The number of patients admitted with each condition type, indexed by
+     * {@link Condition.Type#ordinal()}.
+     */
+    private final long[] m_admissionsByCondition = new long[Condition.Type.values().length];
+
+    /**
+     * The number of patients that died with each condition type, indexed by
+     * {@link Condition.Type#ordinal()}.
+     */
+    private final long[] m_deathsByCondition = new long[Condition.Type.values().length];
+
+    /**
+     * The number of deceased patients of the run already counted.
+     */
+    private int m_deceased;
+
+    /**
+     * Creates an empty collector for runs in the specified hospital.
+     *
+     * @param hospital      the hospital of the run, before the run starts
+     * @param totalCycles   the number of cycles of the run
+     */
+    public CycleStatistics(Hospital hospital, int totalCycles)
+    {
+        this(hospital.nurses, hospital.doctors, totalCycles);
+        m_availableNurses = hospital.nurses;
+        m_availableDoctors = hospital.doctors;
+
+        for (Hospital.MaterialResource resource : Hospital.MaterialResource.values())
+        {
+            m_initialStock[resource.ordinal()] = hospital.getStock(resource);
+        }
+    }
+
+    private CycleStatistics(int nurses, int doctors, int totalCycles)
+    {
+        m_nurses = nurses;
+        m_doctors = doctors;
+        m_censusByCycle = new long[totalCycles];
+        m_deathsByCycle = new long[totalCycles];
+        m_nursesByCycle = new long[totalCycles];
+        m_doctorsByCycle = new long[totalCycles];
+        m_stockByCycle = new double[totalCycles * Hospital.MATERIAL_RESOURCES];
+    }
+
+    @Override
+    public void patientAdmitted(SimulationContext context, Patient patient)
+    {
+        for (int mask = patient.getConditionMask(); mask != 0; mask &= mask - 1)
+        {
+            m_admissionsByCondition[Integer.numberOfTrailingZeros(mask)]++;
+        }
+    }
+
+    @Override
+    public void patientTreated(SimulationContext context, Patient patient)
+    {
+        // The plan has moved on to its next cycle once the patient has been treated
+        TreatmentPlan plan = patient.getStage().getTreatmentPlan();
+        m_checkedOutNurses += plan.getTemplate().requiredNurses(plan.getCycle() - 1);
+        m_checkedOutDoctors += plan.getTemplate().requiredDoctors(plan.getCycle() - 1);
+    }
+
+    @Override
+    public void runResumed(SimulationContext context)
+    {
+        // Deaths before the checkpoint are not part of the cycles collected
+        m_deceased = context.getDeceasedPatients().size();
+        m_availableNurses = context.getHospital().nurses;
+        m_availableDoctors = context.getHospital().doctors;
+    }
+
+    @Override
+    public void cycleCompleted(SimulationContext context)
+    {
+        m_runs = 1;
+
+        ArrayList<Patient> deceased = context.getDeceasedPatients();
+        int deaths = deceased.size() - m_deceased;
+        for (Patient patient : deceased.subList(m_deceased, deceased.size()))
+        {
+            for (int mask = patient.getConditionMask(); mask != 0; mask &= mask - 1)
+            {
+                m_deathsByCondition[Integer.numberOfTrailingZeros(mask)]++;
+            }
+        }
+        m_deceased = deceased.size();
+
+        Hospital hospital = context.getHospital();
+        int census = context.getCurrentPatients().size();
+        int nurses = m_checkedOutNurses;
+        int doctors = m_checkedOutDoctors;
+
+        m_census.add(census);
+        m_deaths.add(deaths);
+        if (m_availableNurses > 0)
+        {
+            m_nurseUtilization.add((double) nurses / m_availableNurses);
+        }
+        if (m_availableDoctors > 0)
+        {
+            m_doctorUtilization.add((double) doctors / m_availableDoctors);
+        }
+
+        // Staff do not change between the release phase and the next treatment phase
+        m_checkedOutNurses = 0;
+        m_checkedOutDoctors = 0;
+        m_availableNurses = hospital.nurses;
+        m_availableDoctors = hospital.doctors;
+
+        int cycle = context.getCycle();
+        if (cycle >= m_censusByCycle.length)
+        {
+            return;
+        }
+
+        m_censusByCycle[cycle] = census;
+        m_deathsByCycle[cycle] = deaths;
+        m_nursesByCycle[cycle] = nurses;
+        m_doctorsByCycle[cycle] = doctors;
+        for (Hospital.MaterialResource resource : Hospital.MaterialResource.values())
+        {
+            m_stockByCycle[cycle * Hospital.MATERIAL_RESOURCES + resource.ordinal()] = hospital.getStock(resource);
+        }
+    }
+
+    /**
+     * Combines these statistics with the statistics of other runs in the same hospital.
+     *
+     * @param other the statistics to combine with these statistics
+     * @return new statistics containing both sets of runs
+     */
+    public CycleStatistics merge(CycleStatistics other)
+    {
+        if (other.m_censusByCycle.length != m_censusByCycle.length)
+        {
+            throw new IllegalArgumentException("Runs must have the same number of cycles.");
+        }
+        if (other.m_nurses != m_nurses || other.m_doctors != m_doctors)
+        {
+            throw new IllegalArgumentException("Runs must have the same staff.");
+        }
+
+        CycleStatistics merged = new CycleStatistics(m_nurses, m_doctors, m_censusByCycle.length);
+        merged.m_runs = m_runs + other.m_runs;
+        System.arraycopy(m_initialStock, 0, merged.m_initialStock, 0, m_initialStock.length);
+        for (int cycle = 0; cycle < m_censusByCycle.length; cycle++)
+        {
+            merged.m_censusByCycle[cycle] = m_censusByCycle[cycle] + other.m_censusByCycle[cycle];
+            merged.m_deathsByCycle[cycle] = m_deathsByCycle[cycle] + other.m_deathsByCycle[cycle];
+            merged.m_nursesByCycle[cycle] = m_nursesByCycle[cycle] + other.m_nursesByCycle[cycle];
+            merged.m_doctorsByCycle[cycle] = m_doctorsByCycle[cycle] + other.m_doctorsByCycle[cycle];
+        }
+        for (int index = 0; index < m_stockByCycle.length; index++)
+        {
+            merged.m_stockByCycle[index] = m_stockByCycle[index] + other.m_stockByCycle[index];
+        }
+        for (int ordinal = 0; ordinal < m_admissionsByCondition.length; ordinal++)
+        {
+            merged.m_admissionsByCondition[ordinal] = m_admissionsByCondition[ordinal] + other.m_admissionsByCondition[ordinal];
+            merged.m_deathsByCondition[ordinal] = m_deathsByCondition[ordinal] + other.m_deathsByCondition[ordinal];
+        }
+        merged.m_census = m_census.merge(other.m_census);
+        merged.m_deaths = m_deaths.merge(other.m_deaths);
+        merged.m_nurseUtilization = m_nurseUtilization.merge(other.m_nurseUtilization);
+        merged.m_doctorUtilization = m_doctorUtilization.merge(other.m_doctorUtilization);
+
+        return merged;
+    }
+
+    /**
+     * {@link CycleStatistics#m_runs}
+     */
+    public int getRuns()
+    {
+        return m_runs;
+    }
+
+    /**
+     * Returns the number of cycles of each run.
+     */
+    public int getTotalCycles()
+    {
+        return m_censusByCycle.length;
+    }
+
+    /**
+     * {@link CycleStatistics#m_census}
+     */
+    public RunningStatistics getCensus()
+    {
+        return m_census;
+    }
+
+    /**
+     * {@link CycleStatistics#m_deaths}
+     */
+    public RunningStatistics getDeaths()
+    {
+        return m_deaths;
+    }
+
+    /**
+     * {@link CycleStatistics#m_nurseUtilization}
+     */
+    public RunningStatistics getNurseUtilization()
+    {
+        return m_nurseUtilization;
+    }
+
+    /**
+     * {@link CycleStatistics#m_doctorUtilization}
+     */
+    public RunningStatistics getDoctorUtilization()
+    {
+        return m_doctorUtilization;
+    }
+
+    /**
+     * Returns the mean number of patients in the hospital at the end of a cycle.
+     */
+    public double getMeanCensus(int cycle)
+    {
+        return mean(m_censusByCycle[cycle]);
+    }
+
+    /**
+     * Returns the mean number of deaths during a cycle.
+     */
+    public double getMeanDeaths(int cycle)
+    {
+        return mean(m_deathsByCycle[cycle]);
+    }
+
+    /**
+     * Returns the mean number of nurses checked out during a cycle.
+     */
+    public double getMeanNursesInUse(int cycle)
+    {
+        return mean(m_nursesByCycle[cycle]);
+    }
+
+    /**
+     * Returns the mean number of doctors checked out during a cycle.
+     */
+    public double getMeanDoctorsInUse(int cycle)
+    {
+        return mean(m_doctorsByCycle[cycle]);
+    }
+
+    /**
+     * Returns the mean amount (in mg) of a disposable resource used up to the end of a cycle.
+     */
+    public double getMeanDrawdown(int cycle, Hospital.MaterialResource resource)
+    {
+        if (m_runs == 0)
+        {
+            return 0;
+        }
+
+        return m_initialStock[resource.ordinal()] -
+            m_stockByCycle[cycle * Hospital.MATERIAL_RESOURCES + resource.ordinal()] / m_runs;
+    }
+
+    /**
+     * Returns the number of patients admitted with a condition type.
+     */
+    public long getAdmissions(Condition.Type type)
+    {
+        return m_admissionsByCondition[type.ordinal()];
+    }
+
+    /**
+     * Returns the number of patients that died with a condition type.
+     */
+    public long getDeaths(Condition.Type type)
+    {
+        return m_deathsByCondition[type.ordinal()];
+    }
+
+    /**
+     * Returns the fraction of the patients admitted with a condition type that died.
+     */
+    public double getMortality(Condition.Type type)
+    {
+        long admissions = m_admissionsByCondition[type.ordinal()];
+        return (admissions == 0) ? 0 : (double) m_deathsByCondition[type.ordinal()] / admissions;
+    }
+
+    /**
+     * Writes the per-cycle series as CSV, containing the mean census, deaths, nurses and doctors in
+     * use and drawdown of every disposable resource of every cycle across all runs.
+     *
+     * @param writer the writer the table should be written to
+     * @throws IOException if the table cannot be written
+     */
+    public void writeTable(Writer writer) throws IOException
+    {
+        List<String> header = new ArrayList<>();
+        header.add("Cycle");
+        header.add("MeanCensus");
+        header.add("MeanDeaths");
+        header.add("MeanNursesInUse");
+        header.add("MeanDoctorsInUse");
+        for (Hospital.MaterialResource resource : Hospital.MaterialResource.values())
+        {
+            header.add("MeanDrawdown" + resource);
+        }
+        Collector.writeLine(writer, header);
+
+        List<String> row = new ArrayList<>();
+        for (int cycle = 0; cycle < m_censusByCycle.length; cycle++)
+        {
+            row.clear();
+            row.add(String.valueOf(cycle));
+            row.add(String.valueOf(getMeanCensus(cycle)));
+            row.add(String.valueOf(getMeanDeaths(cycle)));
+            row.add(String.valueOf(getMeanNursesInUse(cycle)));
+            row.add(String.valueOf(getMeanDoctorsInUse(cycle)));
+            for (Hospital.MaterialResource resource : Hospital.MaterialResource.values())
+            {
+                row.add(String.valueOf(getMeanDrawdown(cycle, resource)));
+            }
+            Collector.writeLine(writer, row);
+        }
+    }
+
+    /**
+     * Returns a readable summary of the statistics.
+     */
+    public String summary()
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Runs: ").append(m_runs).append('\n');
+        builder.append("Census: ").append(m_census).append('\n');
+        builder.append("Deaths per cycle: ").append(m_deaths).append('\n');
+        builder.append("Nurse utilization: ").append(m_nurseUtilization).append('\n');
+        builder.append("Doctor utilization: ").append(m_doctorUtilization).append('\n');
+        for (Condition.Type type : Condition.Type.values())
+        {
+            if (getAdmissions(type) > 0)
+            {
+                builder.append(type).append(" mortality: ").append(getMortality(type))
+                    .append(" (").append(getDeaths(type)).append(" of ").append(getAdmissions(type)).append(")\n");
+            }
+        }
+        int last = m_censusByCycle.length - 1;
+        for (Hospital.MaterialResource resource : Hospital.MaterialResource.values())
+        {
+            builder.append(resource).append(" drawdown: ").append((last < 0) ? 0 : getMeanDrawdown(last, resource)).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    private double mean(long total)
+    {
+        return (m_runs == 0) ? 0 : (double) total / m_runs;
+    }
+}
@@ -0,0 +1,98 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * Closed form of the deterioration of untreated conditions. Worsening a condition once raises its
+ * probability of mortality {@code p} to the power {@code r / (c + r)}, where {@code r} is the
+ * deterioration rate and {@code c} is the age of the condition after the cycle, see
+ * {@link Condition#worsen()}. Worsening it {@code k} times starting from age {@code c} therefore
+ * raises {@code p} to the product of those powers,
+ *
+ * <pre>
+ *     r^k * Gamma(c + r + 1) / Gamma(c + r + k + 1)
+ * </pre>
+ *
+ * which is evaluated in constant time through {@link SpecialFunctions#logGamma(double)}.
+ */
+public final class Deterioration
+{
+    private Deterioration()
+    {
+    }
+
+    /**
+     * Returns the exponent applied to the probability of mortality of a condition that worsens for
+     * the specified number of cycles.
+     *
+     * @param rate      the deterioration rate of the condition
+     * @param cycle     the age of the condition, in cycles, before it worsens
+     * @param cycles    the number of cycles the condition worsens for
+     */
+    public static double exponent(double rate, int cycle, int cycles)
+    {
+        if (cycles == 1)
+        {
+            return rate / (cycle + 1 + rate);
+        }
+
+        double start = cycle + rate + 1;
+        return Math.exp(cycles * Math.log(rate) + SpecialFunctions.logGamma(start) -
+            SpecialFunctions.logGamma(start + cycles));
+    }
+
+    /**
+     * Returns the probability of mortality of a condition after it worsens for the specified number
+     * of cycles, equivalent to calling {@link Condition#worsen()} that many times.
+     *
+     * @param probability   the probability of mortality of the condition
+     * @param rate          the deterioration rate of the condition
+     * @param cycle         the age of the condition, in cycles, before it worsens
+     * @param cycles        the number of cycles the condition worsens for
+     * @throws IllegalArgumentException if the number of cycles is negative
+     */
+    public static double advance(double probability, double rate, int cycle, int cycles)
+    {
+        if (cycles < 0)
+        {
+            throw new IllegalArgumentException("Cannot worsen a condition for " + cycles + " cycles.");
+        }
+        if (cycles == 0)
+        {
+            return probability;
+        }
+
+        return Math.pow(probability, exponent(rate, cycle, cycles));
+    }
+
+    /**
+     * Worsens many conditions for the same number of cycles. The conditions are given by their
+     * positions in columns of probabilities of mortality, deterioration rates and ages, such as the
+     * per-condition columns of a {@link PatientStore}; the probabilities and ages are updated in
+     * place.
+     *
+     * @param probabilities the probability of mortality of each condition
+     * @param rates         the deterioration rate of each condition
+     * @param ages          the age, in cycles, of each condition
+     * @param indices       the positions of the conditions to worsen
+     * @param count         the number of positions to use
+     * @param cycles        the number of cycles the conditions worsen for
+     * @throws IllegalArgumentException if the number of cycles is negative
+     */
+    public static void advance(double[] probabilities, double[] rates, int[] ages, int[] indices, int count, int cycles)
+    {
+        if (cycles < 0)
+        {
+            throw new IllegalArgumentException("Cannot worsen a condition for " + cycles + " cycles.");
+        }
+        if (cycles == 0)
+        {
+            return;
+        }
+
+        for (int position = 0; position < count; position++)
+        {
+            int index = indices[position];
+            probabilities[index] = Math.pow(probabilities[index], exponent(rates[index], ages[index], cycles));
+            ages[index] += cycles;
+        }
+    }
+}
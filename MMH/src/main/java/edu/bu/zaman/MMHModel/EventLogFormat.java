@@ -0,0 +1,69 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * Layout of the patient event logs written by {@link EventLogWriter} and replayed by
+ * {@link EventLogReplay}.
+ *
+ * A log starts with {@link EventLogFormat#MAGIC} and the format version, followed by one record per
+ * change to a patient. Each record starts with its kind and the cycle it happened in, written with
+ * {@link java.io.DataOutputStream}:
+ * <ul>
+ * <li>{@link EventLogFormat#ADMISSION}: patient ID, age, number of conditions and, for each
+ * condition, its type ordinal, probability of mortality and deterioration rate</li>
+ * <li>{@link EventLogFormat#STAGE}: patient ID and the ID of the patient's new trajectory</li>
+ * <li>{@link EventLogFormat#TREATMENT}: patient ID, doctors, nurses and doses used</li>
+ * <li>{@link EventLogFormat#PROBABILITY}: patient ID, condition type ordinal and the condition's
+ * new probability of mortality</li>
+ * <li>{@link EventLogFormat#DEATH}: patient ID</li>
+ * <li>{@link EventLogFormat#CYCLE_END}: the number of patients in the hospital at the end of the
+ * cycle</li>
+ * </ul>
+ * Every cycle ends with a {@link EventLogFormat#CYCLE_END} record, so that cycles without any
+ * changes are still recorded.
+ */
+public final class EventLogFormat
+{
+    /**
+     * Identifies a patient event log, "MMHE".
+     */
+    static final int MAGIC = 0x4D4D4845;
+
+    /**
+     * The version of the format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * A patient was admitted.
+     */
+    static final byte ADMISSION = 1;
+
+    /**
+     * A patient moved to a new stage.
+     */
+    static final byte STAGE = 2;
+
+    /**
+     * A patient was treated.
+     */
+    static final byte TREATMENT = 3;
+
+    /**
+     * The probability of mortality of one of a patient's conditions changed.
+     */
+    static final byte PROBABILITY = 4;
+
+    /**
+     * A patient died.
+     */
+    static final byte DEATH = 5;
+
+    /**
+     * A cycle ended.
+     */
+    static final byte CYCLE_END = 6;
+
+    private EventLogFormat()
+    {
+    }
+}
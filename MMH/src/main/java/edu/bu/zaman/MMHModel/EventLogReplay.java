@@ -0,0 +1,365 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Reconstructs the state of the patients at the end of each cycle from an event log written by
+ * {@link EventLogWriter}, see {@link EventLogFormat}. The log is replayed one cycle at a time, so
+ * only the patients in the hospital are held in memory.
+ */
+public class EventLogReplay implements Closeable
+{
+    /**
+     * Size of the input buffer in bytes.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Counts the bytes of the log read so far.
+     */
+    private final CountingInputStream m_counter;
+
+    /**
+     * The input stream of the log.
+     */
+    private final DataInputStream m_input;
+
+    /**
+     * The patients in the hospital at the end of the current cycle, in order of admission.
+     */
+    private final LinkedHashMap<Integer, PatientState> m_patients = new LinkedHashMap<>();
+
+    /**
+     * The patients that died during the current cycle.
+     */
+    private final List<PatientState> m_deaths = new ArrayList<>();
+
+    /**
+     * The current cycle, or -1 before the first cycle is replayed.
+     */
+    private int m_cycle = -1;
+
+    /**
+     * Opens a log file and reads its header.
+     *
+     * @param filepath the path of the log file
+     * @throws IOException if the file cannot be read or is not an event log
+     */
+    public EventLogReplay(String filepath) throws IOException
+    {
+        this(new FileInputStream(filepath));
+    }
+
+    /**
+     * Reads an event log from the specified stream.
+     *
+     * @param input the stream of the log
+     * @throws IOException if the stream cannot be read or is not an event log
+     */
+    public EventLogReplay(InputStream input) throws IOException
+    {
+        m_counter = new CountingInputStream(new BufferedInputStream(input, BUFFER_SIZE));
+        m_input = new DataInputStream(m_counter);
+        try
+        {
+            if (m_input.readInt() != EventLogFormat.MAGIC)
+            {
+                throw new IOException("File is not a patient event log.");
+            }
+            int version = m_input.readInt();
+            if (version != EventLogFormat.VERSION)
+            {
+                throw new IOException("Unsupported patient event log version " + version + ".");
+            }
+        }
+        catch (IOException ioe)
+        {
+            m_input.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * {@link EventLogReplay#m_cycle}
+     */
+    public int getCycle()
+    {
+        return m_cycle;
+    }
+
+    /**
+     * Returns the number of bytes of the log read so far. At the end of a replayed cycle, this is
+     * the length of the log up to the end of that cycle.
+     */
+    public long getPosition()
+    {
+        return m_counter.getCount();
+    }
+
+    /**
+     * Returns the patients in the hospital at the end of the current cycle, in order of admission.
+     * The states are updated in place as later cycles are replayed.
+     */
+    public Collection<PatientState> getPatients()
+    {
+        return Collections.unmodifiableCollection(m_patients.values());
+    }
+
+    /**
+     * Returns the patients that died during the current cycle.
+     */
+    public List<PatientState> getDeaths()
+    {
+        return Collections.unmodifiableList(m_deaths);
+    }
+
+    /**
+     * Applies the records of the next cycle.
+     *
+     * @return true if a cycle was replayed, false if the end of the log was reached
+     * @throws IOException if the log cannot be read or is inconsistent
+     */
+    public boolean nextCycle() throws IOException
+    {
+        m_deaths.clear();
+
+        while (true)
+        {
+            int kind;
+            try
+            {
+                kind = m_input.readByte();
+            }
+            catch (EOFException eofe)
+            {
+                return false;
+            }
+
+            int cycle = m_input.readInt();
+            if (kind == EventLogFormat.CYCLE_END)
+            {
+                int census = m_input.readInt();
+                if (census != m_patients.size())
+                {
+                    throw new IOException("Replay of cycle " + cycle + " has " + m_patients.size() +
+                        " patients but the log recorded " + census + ".");
+                }
+
+                m_cycle = cycle;
+                return true;
+            }
+
+            int patientId = m_input.readInt();
+            if (kind == EventLogFormat.ADMISSION)
+            {
+                PatientState patient = new PatientState(patientId, m_input.readInt());
+                int conditions = m_input.readUnsignedByte();
+                for (int condition = 0; condition < conditions; condition++)
+                {
+                    int ordinal = m_input.readUnsignedByte();
+                    double probability = m_input.readDouble();
+                    m_input.readDouble();
+
+                    // As for a patient, the first condition of each type takes precedence
+                    if (Double.isNaN(patient.m_probabilities[ordinal]))
+                    {
+                        patient.m_probabilities[ordinal] = probability;
+                    }
+                }
+                m_patients.put(patientId, patient);
+                continue;
+            }
+
+            PatientState patient = m_patients.get(patientId);
+            if (patient == null)
+            {
+                throw new IOException("Record of cycle " + cycle + " refers to patient " + patientId +
+                    " who is not in the hospital.");
+            }
+
+            switch (kind)
+            {
+                case EventLogFormat.STAGE:
+                    patient.m_trajectoryId = m_input.readInt();
+                    break;
+
+                case EventLogFormat.TREATMENT:
+                    patient.m_doctors = m_input.readInt();
+                    patient.m_nurses = m_input.readInt();
+                    patient.m_doses = m_input.readDouble();
+                    break;
+
+                case EventLogFormat.PROBABILITY:
+                    int ordinal = m_input.readUnsignedByte();
+                    patient.m_probabilities[ordinal] = m_input.readDouble();
+                    break;
+
+                case EventLogFormat.DEATH:
+                    patient.m_alive = false;
+                    m_patients.remove(patientId);
+                    m_deaths.add(patient);
+                    break;
+
+                default:
+                    throw new IOException("Unknown record kind " + kind + " in cycle " + cycle + ".");
+            }
+        }
+    }
+
+    /**
+     * Replays the log up to the end of a cycle.
+     *
+     * @param cycle the cycle
+     * @return true if the cycle was reached, false if the log ended first
+     * @throws IOException if the log cannot be read or is inconsistent
+     */
+    public boolean advanceTo(int cycle) throws IOException
+    {
+        while (m_cycle < cycle)
+        {
+            if (!nextCycle())
+            {
+                return false;
+            }
+        }
+
+        return m_cycle == cycle;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        m_input.close();
+    }
+
+    /**
+     * The state of a patient reconstructed from the log.
+     */
+    public static class PatientState
+    {
+        /**
+         * The patient ID.
+         */
+        private final int m_patientId;
+
+        /**
+         * The age of the patient.
+         */
+        private final int m_age;
+
+        /**
+         * The ID of the trajectory of the patient's stage, -1 if the patient has no stage yet.
+         */
+        private int m_trajectoryId = -1;
+
+        /**
+         * The probability of mortality of each condition type, NaN if the patient does not have the
+         * condition.
+         */
+        private final double[] m_probabilities = new double[Condition.Type.values().length];
+
+        /**
+         * The doctors used by the patient's last treatment.
+         */
+        private int m_doctors;
+
+        /**
+         * The nurses used by the patient's last treatment.
+         */
+        private int m_nurses;
+
+        /**
+         * The doses used by the patient's last treatment.
+         */
+        private double m_doses;
+
+        /**
+         * Whether or not the patient is alive.
+         */
+        private boolean m_alive = true;
+
+        PatientState(int patientId, int age)
+        {
+            m_patientId = patientId;
+            m_age = age;
+            Arrays.fill(m_probabilities, Double.NaN);
+        }
+
+        /**
+         * {@link PatientState#m_patientId}
+         */
+        public int getPatientId()
+        {
+            return m_patientId;
+        }
+
+        /**
+         * {@link PatientState#m_age}
+         */
+        public int getAge()
+        {
+            return m_age;
+        }
+
+        /**
+         * {@link PatientState#m_trajectoryId}
+         */
+        public int getTrajectoryId()
+        {
+            return m_trajectoryId;
+        }
+
+        /**
+         * Returns the probability of mortality of a condition type, NaN if the patient does not have
+         * the condition.
+         */
+        public double getProbabilityOfMortality(Condition.Type type)
+        {
+            return m_probabilities[type.ordinal()];
+        }
+
+        /**
+         * {@link PatientState#m_doctors}
+         */
+        public int getDoctors()
+        {
+            return m_doctors;
+        }
+
+        /**
+         * {@link PatientState#m_nurses}
+         */
+        public int getNurses()
+        {
+            return m_nurses;
+        }
+
+        /**
+         * {@link PatientState#m_doses}
+         */
+        public double getDoses()
+        {
+            return m_doses;
+        }
+
+        /**
+         * {@link PatientState#m_alive}
+         */
+        public boolean isAlive()
+        {
+            return m_alive;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Writes the changes to the patients of a run as an event log, see {@link EventLogFormat}. Each
+ * admission, stage change, treatment, change in probability of mortality and death is written once,
+ * in the cycle it happens, so the size of the log grows with the number of changes rather than with
+ * the number of patients times the number of cycles. The state of every cycle can be reconstructed
+ * from the log with {@link EventLogReplay}.
+ *
+ * Stage and probability of mortality changes are found by comparing each patient against the
+ * values last written for it, so the writer keeps the stage and probabilities of the patients in the
+ * hospital.
+ */
+public class EventLogWriter implements SimulationListener, Closeable, Flushable
+{
+    /**
+     * Size of the output buffer in bytes.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The output stream of the log.
+     */
+    private final DataOutputStream m_output;
+
+    /**
+     * The values last written for each patient in the hospital, by patient ID.
+     */
+    private final HashMap<Integer, WrittenState> m_written = new HashMap<>();
+
+    /**
+     * Whether or not the writer continues the log of a restored run, see
+     * {@link EventLogWriter#truncate(String, SimulationContext)}.
+     */
+    private final boolean m_continued;
+
+    /**
+     * The number of deceased patients of the context written so far.
+     */
+    private int m_deaths;
+
+    /**
+     * The number of records written.
+     */
+    private long m_records;
+
+    /**
+     * Opens the log file for writing, replacing any existing file.
+     *
+     * @param filepath the path of the log file
+     * @throws IOException if the file cannot be opened
+     */
+    public EventLogWriter(String filepath) throws IOException
+    {
+        this(new FileOutputStream(filepath));
+    }
+
+    /**
+     * Creates a writer that writes the log to the specified stream.
+     *
+     * @param output the stream the log should be written to
+     * @throws IOException if the header cannot be written
+     */
+    public EventLogWriter(OutputStream output) throws IOException
+    {
+        this(output, false);
+    }
+
+    /**
+     * Creates a writer that writes a log to the specified stream, or continues one.
+     *
+     * @param output    the stream the log should be written to
+     * @param continued true if the stream appends to the log of a restored run, truncated by
+     *                  {@link EventLogWriter#truncate(String, SimulationContext)}, false to start a
+     *                  new log
+     * @throws IOException if the header cannot be written
+     */
+    public EventLogWriter(OutputStream output, boolean continued) throws IOException
+    {
+        m_output = new DataOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+        m_continued = continued;
+        if (!continued)
+        {
+            m_output.writeInt(EventLogFormat.MAGIC);
+            m_output.writeInt(EventLogFormat.VERSION);
+        }
+    }
+
+    /**
+     * Prepares the log of a run restored from a checkpoint to be continued. The records of the
+     * restored cycle and later cycles, written before the run was stopped, are dropped so that they
+     * are not repeated when those cycles are run again.
+     *
+     * The log can only be continued if it holds every cycle up to the end of the one before the
+     * restored cycle, with the patients of the checkpoint in the hospital. Otherwise, for example
+     * when the run did not write a log, the file is left unchanged and a new log should be started.
+     *
+     * @param filepath  the path of the log file
+     * @param context   the state of the restored run
+     * @return true if the log was truncated and can be continued, false if a new log is needed
+     * @throws IOException if the log cannot be truncated
+     */
+    public static boolean truncate(String filepath, SimulationContext context) throws IOException
+    {
+        long length;
+        try (EventLogReplay replay = new EventLogReplay(filepath))
+        {
+            if (!replay.advanceTo(context.getCycle() - 1))
+            {
+                return false;
+            }
+
+            HashSet<Integer> patientIds = new HashSet<>();
+            for (EventLogReplay.PatientState patient : replay.getPatients())
+            {
+                patientIds.add(patient.getPatientId());
+            }
+            for (Patient patient : context.getCurrentPatients())
+            {
+                if (!patientIds.remove(patient.getPatientId()))
+                {
+                    return false;
+                }
+            }
+            if (!patientIds.isEmpty())
+            {
+                return false;
+            }
+
+            length = replay.getPosition();
+        }
+        catch (IOException ioe)
+        {
+            // The file is missing, is not a log or ends part way through a cycle before the checkpoint
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.WRITE))
+        {
+            channel.truncate(length);
+        }
+        return true;
+    }
+
+    /**
+     * {@link EventLogWriter#m_records}
+     */
+    public long getRecordCount()
+    {
+        return m_records;
+    }
+
+    /**
+     * Starts the log of a restored run by recording the patients in the hospital as admissions in
+     * the first resumed cycle, along with their stage and the resources they have used, so that the
+     * log can be replayed on its own. When the log of the run is continued, the patients are already
+     * in the log and only the values written for them are restored.
+     */
+    @Override
+    public void runResumed(SimulationContext context) throws IOException
+    {
+        m_deaths = context.getDeceasedPatients().size();
+
+        if (m_continued)
+        {
+            // The end of the previous cycle wrote the stage and probabilities of every patient
+            for (Patient patient : context.getCurrentPatients())
+            {
+                WrittenState written = new WrittenState(patient);
+                written.m_trajectoryId = trajectoryId(patient);
+                m_written.put(patient.getPatientId(), written);
+            }
+            return;
+        }
+
+        int cycle = context.getCycle();
+        for (Patient patient : context.getCurrentPatients())
+        {
+            patientAdmitted(context, patient);
+            writeStage(cycle, patient);
+
+            if (patient.getDoctor() != 0 || patient.getNurse() != 0 || patient.getDoses() != 0)
+            {
+                startRecord(EventLogFormat.TREATMENT, cycle, patient.getPatientId());
+                m_output.writeInt(patient.getDoctor());
+                m_output.writeInt(patient.getNurse());
+                m_output.writeDouble(patient.getDoses());
+            }
+        }
+    }
+
+    @Override
+    public void patientAdmitted(SimulationContext context, Patient patient)
+    {
+        try
+        {
+            List<Condition> conditions = patient.getConditions();
+            startRecord(EventLogFormat.ADMISSION, context.getCycle(), patient.getPatientId());
+            m_output.writeInt(patient.getAge());
+            m_output.writeByte(conditions.size());
+            for (Condition condition : conditions)
+            {
+                m_output.writeByte(condition.getType().ordinal());
+                m_output.writeDouble(condition.getProbabilityOfMortality());
+                m_output.writeDouble(condition.getDeteriorationRate());
+            }
+
+            m_written.put(patient.getPatientId(), new WrittenState(patient));
+        }
+        catch (IOException ioe)
+        {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    @Override
+    public void patientTreated(SimulationContext context, Patient patient)
+    {
+        try
+        {
+            // The stage is matched before treatment, so it is written before the treatment
+            writeStage(context.getCycle(), patient);
+
+            startRecord(EventLogFormat.TREATMENT, context.getCycle(), patient.getPatientId());
+            m_output.writeInt(patient.getDoctor());
+            m_output.writeInt(patient.getNurse());
+            m_output.writeDouble(patient.getDoses());
+        }
+        catch (IOException ioe)
+        {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    @Override
+    public void cycleCompleted(SimulationContext context) throws IOException
+    {
+        int cycle = context.getCycle();
+        for (Patient patient : context.getCurrentPatients())
+        {
+            writeStage(cycle, patient);
+            writeProbabilities(cycle, patient);
+        }
+
+        ArrayList<Patient> deceased = context.getDeceasedPatients();
+        for (Patient patient : deceased.subList(m_deaths, deceased.size()))
+        {
+            writeStage(cycle, patient);
+            writeProbabilities(cycle, patient);
+            startRecord(EventLogFormat.DEATH, cycle, patient.getPatientId());
+            m_written.remove(patient.getPatientId());
+        }
+        m_deaths = deceased.size();
+
+        m_output.writeByte(EventLogFormat.CYCLE_END);
+        m_output.writeInt(cycle);
+        m_output.writeInt(context.getCurrentPatients().size());
+        m_records++;
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        m_output.flush();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        m_output.close();
+    }
+
+    private void startRecord(byte kind, int cycle, int patientId) throws IOException
+    {
+        m_output.writeByte(kind);
+        m_output.writeInt(cycle);
+        m_output.writeInt(patientId);
+        m_records++;
+    }
+
+    private void writeStage(int cycle, Patient patient) throws IOException
+    {
+        WrittenState written = m_written.get(patient.getPatientId());
+        int trajectoryId = trajectoryId(patient);
+        if (written.m_trajectoryId != trajectoryId)
+        {
+            startRecord(EventLogFormat.STAGE, cycle, patient.getPatientId());
+            m_output.writeInt(trajectoryId);
+            written.m_trajectoryId = trajectoryId;
+        }
+    }
+
+    private void writeProbabilities(int cycle, Patient patient) throws IOException
+    {
+        double[] probabilities = m_written.get(patient.getPatientId()).m_probabilities;
+        for (Condition.Type type : Condition.Type.values())
+        {
+            Condition condition = patient.getCondition(type);
+            if (condition == null)
+            {
+                continue;
+            }
+
+            int ordinal = type.ordinal();
+            double probability = condition.getProbabilityOfMortality();
+            if (Double.compare(probabilities[ordinal], probability) != 0)
+            {
+                startRecord(EventLogFormat.PROBABILITY, cycle, patient.getPatientId());
+                m_output.writeByte(ordinal);
+                m_output.writeDouble(probability);
+                probabilities[ordinal] = probability;
+            }
+        }
+    }
+
+    /**
+     * Returns the ID of the trajectory of a patient's current stage, or -1 if the patient has no
+     * stage yet.
+     */
+    static int trajectoryId(Patient patient)
+    {
+        return (patient.getStage() == null) ? -1 : patient.getStage().getTreatmentPlan().getID();
+    }
+
+    /**
+     * The values last written for a patient.
+     */
+    private static class WrittenState
+    {
+        /**
+         * The ID of the trajectory of the patient's stage, -1 if the patient had no stage.
+         */
+        private int m_trajectoryId;
+
+        /**
+         * The probability of mortality of each condition type, NaN for the condition types the
+         * patient does not have.
+         */
+        private final double[] m_probabilities = new double[Condition.Type.values().length];
+
+        /**
+         * Creates the state written by the admission record of a patient, which has no stage.
+         */
+        WrittenState(Patient patient)
+        {
+            m_trajectoryId = -1;
+
+            for (Condition.Type type : Condition.Type.values())
+            {
+                Condition condition = patient.getCondition(type);
+                m_probabilities[type.ordinal()] = (condition == null) ? Double.NaN : condition.getProbabilityOfMortality();
+            }
+        }
+    }
+}
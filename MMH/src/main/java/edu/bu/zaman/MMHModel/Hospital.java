@@ -1,6 +1,7 @@
 package edu.bu.zaman.MMHModel;
 
-import java.util.*;
+import java.util.EnumMap;
+import java.util.Map;
 
 public class Hospital
 {
@@ -9,31 +10,97 @@ public class Hospital
         OXYTOCIN, MG_SO4, HYDROLAZINE
     }
     
+    /**
+     * The amount (in mg) of each disposable resource stocked when a hospital is created without an
+     * explicit initial inventory.
+     */
+    public static final double DEFAULT_STOCK = 100;
+    
     /**
      * The number of nurses currently available for monitoring and procedures
      */
-    public static int nurses = 0;
+    public int nurses = 0;
     
     /**
      * The number of doctors currently avaiable for procedures
      */
-    public static int doctors = 0;
+    public int doctors = 0;
+    
+    /**
+     * The number of material resource types, which is the length of a resource vector. Resource
+     * vectors hold one amount (in mg) per resource indexed by {@link MaterialResource#ordinal()}.
+     */
+    public static final int MATERIAL_RESOURCES = MaterialResource.values().length;
+    
+    /**
+     * Stores the current inventory of disposable material resources, indexed by
+     * {@link MaterialResource#ordinal()}
+     */
+    private final double[] m_totalDisposableResources = new double[MATERIAL_RESOURCES];
     
     /**
-     * Stores the current inventory of disposable material resources
+     * Bitmask of the disposable resources that have been stocked, where each bit corresponds to
+     * {@link MaterialResource#ordinal()}. Resources that were never stocked are not available at any
+     * dose.
      */
-    private static HashMap<MaterialResource, Double> m_totalDisposableResources;
+    private int m_stockedResources;
     
-    @SuppressWarnings("unused")
-    private static Hospital m_instance = new Hospital(); // Eager creation of singleton Hospital object
-    private Hospital()
+    /**
+     * Creates a new hospital with the default initial inventory of disposable resources.
+     *
+     * @param nurses    the number of nurses available at the start of the simulation
+     * @param doctors   the number of doctors available at the start of the simulation
+     */
+    public Hospital(int nurses, int doctors)
+    {
+        this(nurses, doctors, defaultStock());
+    }
+    
+    /**
+     * Creates a new hospital.
+     *
+     * @param nurses    the number of nurses available at the start of the simulation
+     * @param doctors   the number of doctors available at the start of the simulation
+     * @param stock     the initial amount (in mg) of each disposable resource
+     */
+    public Hospital(int nurses, int doctors, Map<MaterialResource, Double> stock)
     {
-        m_totalDisposableResources = new HashMap<>();
+        this.nurses = nurses;
+        this.doctors = doctors;
         
         // Load initial inventory of disposable resources
-        stockDisposableResource(MaterialResource.OXYTOCIN, 100);
-        stockDisposableResource(MaterialResource.MG_SO4, 100);
-        stockDisposableResource(MaterialResource.HYDROLAZINE, 100);
+        for (Map.Entry<MaterialResource, Double> entry : stock.entrySet())
+        {
+            stockDisposableResource(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    /**
+     * Returns the default initial inventory, {@link Hospital#DEFAULT_STOCK} of every disposable
+     * resource.
+     */
+    public static EnumMap<MaterialResource, Double> defaultStock()
+    {
+        EnumMap<MaterialResource, Double> stock = new EnumMap<>(MaterialResource.class);
+        for (MaterialResource resource : MaterialResource.values())
+        {
+            stock.put(resource, DEFAULT_STOCK);
+        }
+        
+        return stock;
+    }
+    
+    /**
+     * Returns a copy of the hospital with the same staff available and the same inventory, which can
+     * be drawn down independently of this hospital.
+     */
+    public Hospital copy()
+    {
+        Hospital copy = new Hospital(nurses, doctors, new EnumMap<>(MaterialResource.class));
+        System.arraycopy(m_totalDisposableResources, 0, copy.m_totalDisposableResources, 0, MATERIAL_RESOURCES);
+        copy.m_stockedResources = m_stockedResources;
+        
+        return copy;
     }
     
     /**
@@ -43,7 +110,7 @@ public class Hospital
      * @param resource  the disposable resource to stock
      * @param amount    the amount (in mg) to stock for the disposable resource
      */
-    public static void stockDisposableResource(MaterialResource resource, double amount)
+    public void stockDisposableResource(MaterialResource resource, double amount)
     {
         // Check to make sure the amount is positive
         if (amount <= 0)
@@ -51,16 +118,47 @@ public class Hospital
             return;
         }
         
-        // Update the inventory for the specified resource depending on whether or not
-        // the specified resource is already in stock
-        if (m_totalDisposableResources.containsKey(resource))
+        m_totalDisposableResources[resource.ordinal()] += amount;
+        m_stockedResources |= 1 << resource.ordinal();
+    }
+    
+    /**
+     * Returns the amount (in mg) of the specified disposable resource currently in stock.
+     *
+     * @param resource  the disposable resource
+     */
+    public double getStock(MaterialResource resource)
+    {
+        return m_totalDisposableResources[resource.ordinal()];
+    }
+    
+    /**
+     * {@link Hospital#m_stockedResources}
+     */
+    int getStockedResources()
+    {
+        return m_stockedResources;
+    }
+    
+    /**
+     * Replaces the stock of a disposable resource, e.g. when the inventory is restored from a
+     * {@link Checkpoint}. Unlike {@link Hospital#stockDisposableResource(MaterialResource, double)},
+     * a resource can be restored as stocked with none left.
+     *
+     * @param resource  the disposable resource
+     * @param amount    the amount (in mg) in stock
+     * @param stocked   whether the resource has been stocked
+     */
+    void restoreStock(MaterialResource resource, double amount, boolean stocked)
+    {
+        m_totalDisposableResources[resource.ordinal()] = amount;
+        if (stocked)
         {
-            double currentAmount = m_totalDisposableResources.get(resource);
-            m_totalDisposableResources.put(resource, currentAmount + amount);
+            m_stockedResources |= 1 << resource.ordinal();
         }
         else
         {
-            m_totalDisposableResources.put(resource, amount);
+            m_stockedResources &= ~(1 << resource.ordinal());
         }
     }
     
@@ -70,14 +168,36 @@ public class Hospital
      * @param resource  the disposable resource being requested
      * @param dose      the amount (in mg) that is being requested
      */
-    public static boolean isAvailable(MaterialResource resource, double dose)
+    public boolean isAvailable(MaterialResource resource, double dose)
+    {
+        int ordinal = resource.ordinal();
+        return (m_stockedResources & (1 << ordinal)) != 0 && m_totalDisposableResources[ordinal] >= dose;
+    }
+    
+    /**
+     * Returns whether every requested resource is available at its requested dose.
+     *
+     * @param resourceMask  bitmask of the requested resources, where each bit corresponds to
+     *                      {@link MaterialResource#ordinal()}
+     * @param doses         resource vector holding the amount (in mg) requested for each resource
+     */
+    public boolean isAvailable(int resourceMask, double[] doses)
     {
-        if (!m_totalDisposableResources.containsKey(resource))
+        if ((resourceMask & ~m_stockedResources) != 0)
         {
             return false;
         }
         
-        return (m_totalDisposableResources.get(resource) >= dose);
+        for (int mask = resourceMask; mask != 0; mask &= mask - 1)
+        {
+            int ordinal = Integer.numberOfTrailingZeros(mask);
+            if (m_totalDisposableResources[ordinal] < doses[ordinal])
+            {
+                return false;
+            }
+        }
+        
+        return true;
     }
     
     /**
@@ -87,7 +207,7 @@ public class Hospital
      * @param resource  the disposable resource being requested
      * @param dose      the amount (in mg) that is being requested and consumed
      */
-    public static void consumeResource(MaterialResource resource, double dose)
+    public void consumeResource(MaterialResource resource, double dose)
     {
         // Check to make sure the disposable resource being requested is in stock
         if (!isAvailable(resource, dose))
@@ -95,9 +215,31 @@ public class Hospital
             return;
         }
         
-        double currentAmount = m_totalDisposableResources.get(resource);
-        currentAmount -= dose;
+        m_totalDisposableResources[resource.ordinal()] -= dose;
+    }
+    
+    /**
+     * Consumes every requested resource from the hospital stock if, and only if, all of them are
+     * available at their requested doses; otherwise nothing is consumed.
+     *
+     * @param resourceMask  bitmask of the requested resources, where each bit corresponds to
+     *                      {@link MaterialResource#ordinal()}
+     * @param doses         resource vector holding the amount (in mg) requested for each resource
+     * @return whether the resources were consumed
+     */
+    public boolean consumeResources(int resourceMask, double[] doses)
+    {
+        if (!isAvailable(resourceMask, doses))
+        {
+            return false;
+        }
+        
+        for (int mask = resourceMask; mask != 0; mask &= mask - 1)
+        {
+            int ordinal = Integer.numberOfTrailingZeros(mask);
+            m_totalDisposableResources[ordinal] -= doses[ordinal];
+        }
         
-        m_totalDisposableResources.put(resource, currentAmount);
+        return true;
     }
 }
@@ -0,0 +1,51 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * A change made to a forked run before it continues, such as adding staff or restocking a
+ * disposable resource, so that several interventions can be compared from the same state.
+ *
+ * @see WhatIfRunner
+ */
+public interface Intervention
+{
+    /**
+     * Applies the intervention to a forked run.
+     *
+     * @param context the state of the forked run, at the cycle it continues from
+     */
+    void apply(SimulationContext context);
+
+    /**
+     * Returns an intervention that leaves the run unchanged, the baseline to compare others against.
+     */
+    static Intervention none()
+    {
+        return context -> { };
+    }
+
+    /**
+     * Returns an intervention that adds staff to the hospital.
+     *
+     * @param nurses    the number of nurses to add
+     * @param doctors   the number of doctors to add
+     */
+    static Intervention addStaff(int nurses, int doctors)
+    {
+        return context ->
+        {
+            context.getHospital().nurses += nurses;
+            context.getHospital().doctors += doctors;
+        };
+    }
+
+    /**
+     * Returns an intervention that restocks a disposable resource.
+     *
+     * @param resource  the disposable resource to restock
+     * @param amount    the amount (in mg) to add to the inventory
+     */
+    static Intervention restock(Hospital.MaterialResource resource, double amount)
+    {
+        return context -> context.getHospital().stockDisposableResource(resource, amount);
+    }
+}
@@ -0,0 +1,203 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes patient records as JSON Lines, one compact JSON object per line. The output file is
+ * opened once and written through a buffered streaming writer for the duration of the run.
+ *
+ * The record fields match those of {@link PatientSerialize}, so each line can be read back with
+ * Gson into a {@link PatientSerialize} object.
+ */
+public class JsonLinesExporter implements Closeable, Flushable
+{
+	/**
+	 * Size of the output buffer in characters.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The start of every record, which is followed by the cycle of the record.
+	 */
+	private static final String CYCLE_PREFIX = "{\"Cycle\":";
+
+	/**
+	 * The number of characters at the start of a line needed to read the cycle of the record.
+	 */
+	private static final int PREFIX_LENGTH = CYCLE_PREFIX.length() + 12;
+
+	/**
+	 * The buffered writer for the output file.
+	 */
+	private final Writer m_writer;
+
+	/**
+	 * Streaming JSON writer used to serialize each record.
+	 */
+	private final JsonWriter m_jsonWriter;
+
+	/**
+	 * Opens the output file for writing.
+	 *
+	 * @param filepath	the path of the output file
+	 * @param append	whether records should be appended to an existing file
+	 * @throws IOException if the file cannot be opened
+	 */
+	public JsonLinesExporter(String filepath, boolean append) throws IOException
+	{
+		this(new FileOutputStream(filepath, append));
+	}
+
+	/**
+	 * Creates an exporter that writes UTF-8 encoded records to the specified stream.
+	 *
+	 * @param output the stream the records should be written to
+	 */
+	public JsonLinesExporter(OutputStream output)
+	{
+		this(new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE));
+	}
+
+	/**
+	 * Creates an exporter that writes to the specified writer.
+	 *
+	 * @param writer the writer the records should be written to
+	 */
+	public JsonLinesExporter(Writer writer)
+	{
+		m_writer = writer;
+		m_jsonWriter = new JsonWriter(writer);
+
+		// Lenient mode allows a sequence of top-level objects to be written to the same stream
+		m_jsonWriter.setLenient(true);
+	}
+
+	/**
+	 * Prepares the output file of a run restored from a checkpoint to be appended to. The records of
+	 * the restored cycle and later cycles, written before the run was stopped, are dropped so that
+	 * they are not repeated when those cycles are run again, along with a last line that was only
+	 * partly written. Records are written in cycle order, so everything from the first such line on
+	 * is dropped. A missing file is left missing.
+	 *
+	 * @param filepath	the path of the output file
+	 * @param cycle		the cycle the run is restored at
+	 * @throws IOException if the file cannot be read or truncated
+	 */
+	public static void truncate(String filepath, int cycle) throws IOException
+	{
+		Path path = Paths.get(filepath);
+		if (!Files.exists(path))
+		{
+			return;
+		}
+
+		long length = 0;
+		try (InputStream input = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE))
+		{
+			StringBuilder prefix = new StringBuilder(PREFIX_LENGTH);
+			long position = 0;
+			int b;
+			while ((b = input.read()) != -1)
+			{
+				position++;
+				if (b != '\n')
+				{
+					if (prefix.length() < PREFIX_LENGTH)
+					{
+						prefix.append((char) b);
+					}
+					continue;
+				}
+
+				if (cycleOf(prefix) >= cycle)
+				{
+					break;
+				}
+				length = position;
+				prefix.setLength(0);
+			}
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE))
+		{
+			channel.truncate(length);
+		}
+	}
+
+	/**
+	 * Returns the cycle of the record that starts with the specified characters, or
+	 * {@link Integer#MAX_VALUE} if they are not the start of a record.
+	 */
+	private static int cycleOf(CharSequence prefix)
+	{
+		String start = prefix.toString();
+		int end = start.indexOf(',', CYCLE_PREFIX.length());
+		if (!start.startsWith(CYCLE_PREFIX) || end < 0)
+		{
+			return Integer.MAX_VALUE;
+		}
+
+		try
+		{
+			return Integer.parseInt(start.substring(CYCLE_PREFIX.length(), end));
+		}
+		catch (NumberFormatException nfe)
+		{
+			return Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Writes a single patient record.
+	 *
+	 * @param patient	the patient being exported
+	 * @param cycle		the current cycle
+	 * @throws IOException if the record cannot be written
+	 */
+	public void write(Patient patient, int cycle) throws IOException
+	{
+		m_jsonWriter.beginObject();
+		m_jsonWriter.name("Cycle").value(cycle);
+		m_jsonWriter.name("ID").value(patient.getPatientId());
+		m_jsonWriter.name("age").value(patient.getAge());
+		m_jsonWriter.name("Condition").value(patient.toStringCondition());
+		m_jsonWriter.name("Survival").value(patient.isAlive());
+		m_jsonWriter.name("DoctorsUsed").value(patient.getDoctor());
+		m_jsonWriter.name("NursesUsed").value(patient.getNurse());
+		m_jsonWriter.name("DosesUsed").value(patient.getDoses());
+
+		m_jsonWriter.endObject();
+		m_writer.write('\n');
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		m_jsonWriter.flush();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		// The underlying writer is closed directly as the JSON writer rejects closing a stream that
+		// does not contain exactly one complete document
+		m_writer.close();
+	}
+}
@@ -0,0 +1,58 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * The model data loaded from the setup file: the case mix new patients are drawn from, with the
+ * deterioration rate of each condition, and the trajectories patients are matched to. A model is
+ * immutable, so it is shared by every run in the JVM that uses it.
+ */
+public final class Model
+{
+    /**
+     * The distribution of the condition combinations that new patients arrive with, along with the
+     * deterioration rates associated with each condition.
+     */
+    private final CaseMix m_caseMix;
+
+    /**
+     * The trajectories used to determine each patient's stage.
+     */
+    private final TrajectoryTable m_trajectories;
+
+    /**
+     * Creates a new model.
+     *
+     * @param caseMix       the case mix new patients are drawn from
+     * @param trajectories  the trajectories patients are matched to
+     */
+    public Model(CaseMix caseMix, TrajectoryTable trajectories)
+    {
+        m_caseMix = caseMix;
+        m_trajectories = trajectories;
+    }
+
+    /**
+     * {@link Model#m_caseMix}
+     */
+    public CaseMix getCaseMix()
+    {
+        return m_caseMix;
+    }
+
+    /**
+     * {@link Model#m_trajectories}
+     */
+    public TrajectoryTable getTrajectories()
+    {
+        return m_trajectories;
+    }
+
+    /**
+     * Returns the current model of the setup file in the working directory, which is reloaded
+     * whenever the setup file changes, see {@link ModelRegistry#getDefault()}. Callers that need a
+     * consistent model, such as a run, should take it once and keep it.
+     */
+    public static Model getDefault()
+    {
+        return ModelRegistry.getDefault().get();
+    }
+}
@@ -0,0 +1,557 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A precompiled, binary form of the {@link Model} in a setup file, so that runs can load the model
+ * without unzipping and parsing the workbook. The bundle is written next to the setup file and is
+ * keyed by the SHA-256 hash of the workbook's contents: it is only used while the hash matches, and
+ * is rebuilt from the workbook as soon as the workbook changes. The size and modification time of
+ * the workbook are recorded as well, so the workbook is only hashed when either of them changes.
+ *
+ * A bundle starts with {@link ModelBundle#MAGIC}, the format version, the names of the condition
+ * types and material resources it was compiled against and the hash, size and modification time of
+ * the workbook. It then holds
+ * the deterioration rates, the case mix with its alias table and every trajectory with its treatment
+ * plan, and ends with a CRC-32 of everything before it. All values are written with
+ * {@link DataOutputStream} and read back from a memory-mapped buffer.
+ */
+public final class ModelBundle
+{
+    /**
+     * Identifies a model bundle, "MMHB".
+     */
+    static final int MAGIC = 0x4D4D4842;
+
+    /**
+     * The version of the format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The extension appended to the path of the setup file to form the path of its bundle.
+     */
+    public static final String EXTENSION = ".mmhb";
+
+    /**
+     * The size of the hash of the workbook in bytes.
+     */
+    private static final int HASH_SIZE = 32;
+
+    private ModelBundle()
+    {
+    }
+
+    /**
+     * Returns the path of the bundle of a setup file.
+     *
+     * @param workbook the path of the setup file
+     */
+    public static Path getBundlePath(Path workbook)
+    {
+        return Paths.get(workbook.toString() + EXTENSION);
+    }
+
+    /**
+     * Loads the model of a setup file from its bundle if the bundle is up to date, and otherwise
+     * loads the model from the setup file and rebuilds the bundle. A bundle that cannot be read or
+     * written is reported and the model is loaded from the setup file.
+     *
+     * @param workbook the path of the setup file
+     * @return the loaded model
+     * @throws IOException if the setup file cannot be read
+     * @throws IllegalArgumentException if the model in the setup file is invalid
+     */
+    public static Model load(Path workbook) throws IOException
+    {
+        // The workbook is described before it is loaded, so that a bundle compiled from a workbook
+        // that changes during the load is rebuilt by the next run
+        Source source = new Source(workbook);
+        Path bundle = getBundlePath(workbook);
+
+        try
+        {
+            Model model = read(bundle, source);
+            if (model != null)
+            {
+                return model;
+            }
+        }
+        catch (NoSuchFileException nsfe)
+        {
+            // The bundle has not been compiled yet
+        }
+        catch (IOException ioe)
+        {
+            System.out.println("Error: rebuilding model bundle " + bundle + ": " + ioe.getMessage());
+        }
+
+        Model model = SetupLoader.load(workbook);
+        try
+        {
+            write(model, source, bundle);
+        }
+        catch (IOException ioe)
+        {
+            System.out.println("Error: could not write model bundle " + bundle + ": " + ioe.getMessage());
+        }
+
+        return model;
+    }
+
+    /**
+     * Compiles the model of a setup file into its bundle, regardless of whether the bundle is up to
+     * date.
+     *
+     * @param workbook the path of the setup file
+     * @return the path of the bundle
+     * @throws IOException if the setup file cannot be read or the bundle cannot be written
+     */
+    public static Path compile(Path workbook) throws IOException
+    {
+        Source source = new Source(workbook);
+        Path bundle = getBundlePath(workbook);
+        write(SetupLoader.load(workbook), source, bundle);
+
+        return bundle;
+    }
+
+    /**
+     * Returns the SHA-256 hash of the contents of a file.
+     *
+     * @param path the path of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static byte[] hash(Path path) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException nsae)
+        {
+            throw new IllegalStateException("SHA-256 is not available.", nsae);
+        }
+
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream input = Files.newInputStream(path))
+        {
+            int read;
+            while ((read = input.read(buffer)) > 0)
+            {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * Writes a model to a bundle. The bundle is written to a temporary file that replaces any
+     * existing bundle once it is complete, so runs starting at the same time never read a partially
+     * written bundle.
+     *
+     * @param model   the model to write
+     * @param source  the setup file the model was loaded from
+     * @param path    the path of the bundle
+     * @throws IOException if the bundle cannot be written
+     */
+    static void write(Model model, Source source, Path path) throws IOException
+    {
+        Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try
+        {
+            try (
+                CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary)), new CRC32());
+                DataOutputStream data = new DataOutputStream(checked);
+            )
+            {
+                writeModel(data, model, source);
+                data.flush();
+                data.writeInt((int) checked.getChecksum().getValue());
+            }
+
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads a model from a bundle.
+     *
+     * @param path      the path of the bundle
+     * @param workbook  the path of the setup file, or null to accept a bundle of any setup file
+     * @return the model, or null if the bundle was compiled from a different setup file, by a
+     *         different version of the format or against different condition types or resources
+     * @throws IOException if the bundle or setup file cannot be read, or the bundle is corrupt
+     */
+    public static Model read(Path path, Path workbook) throws IOException
+    {
+        return read(path, (workbook == null) ? null : new Source(workbook));
+    }
+
+    private static Model read(Path path, Source source) throws IOException
+    {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            if (channel.size() < 12 || channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException("Model bundle is corrupt.");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt() != MAGIC)
+        {
+            throw new IOException("File is not a model bundle.");
+        }
+        if (buffer.getInt() != VERSION)
+        {
+            return null;
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer contents = buffer.duplicate();
+        contents.position(0).limit(buffer.limit() - 4);
+        crc.update(contents);
+        if (buffer.getInt(buffer.limit() - 4) != (int) crc.getValue())
+        {
+            throw new IOException("Model bundle is corrupt.");
+        }
+
+        try
+        {
+            return readModel(buffer, source);
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e)
+        {
+            throw new IOException("Model bundle is corrupt.", e);
+        }
+    }
+
+    private static void writeModel(DataOutputStream data, Model model, Source source) throws IOException
+    {
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+
+        Condition.Type[] types = Condition.Type.values();
+        data.writeByte(types.length);
+        for (Condition.Type type : types)
+        {
+            data.writeUTF(type.name());
+        }
+        data.writeByte(Hospital.MATERIAL_RESOURCES);
+        for (Hospital.MaterialResource resource : Hospital.MaterialResource.values())
+        {
+            data.writeUTF(resource.name());
+        }
+        data.write(source.getHash());
+        data.writeLong(source.m_size);
+        data.writeLong(source.m_modified);
+
+        CaseMix caseMix = model.getCaseMix();
+        for (Condition.Type type : types)
+        {
+            data.writeDouble(caseMix.getDeteriorationRate(type));
+        }
+
+        data.writeInt(caseMix.getCombinationCount());
+        for (int combination = 0; combination < caseMix.getCombinationCount(); combination++)
+        {
+            data.writeDouble(caseMix.getProbability(combination));
+            data.writeDouble(caseMix.getAliasProbability(combination));
+            data.writeInt(caseMix.getAlias(combination));
+            data.writeByte(caseMix.getConditionCount(combination));
+            for (int index = 0; index < caseMix.getConditionCount(combination); index++)
+            {
+                data.writeByte(caseMix.getConditionType(combination, index).ordinal());
+            }
+        }
+
+        TrajectoryTable trajectories = model.getTrajectories();
+        data.writeInt(trajectories.size());
+        for (int position = 0; position < trajectories.size(); position++)
+        {
+            Trajectory trajectory = trajectories.getAt(position);
+            data.writeInt(trajectory.getId());
+            data.writeInt(trajectory.getRowNumber());
+            data.writeByte(trajectory.getConditionCount());
+            for (int index = 0; index < trajectory.getConditionCount(); index++)
+            {
+                data.writeByte(trajectory.getConditionType(index).ordinal());
+                data.writeDouble(trajectory.getMinimumSeverity(index));
+                data.writeDouble(trajectory.getMaximumSeverity(index));
+            }
+
+            TreatmentPlanTemplate template = trajectory.getTreatmentPlanTemplate();
+            data.writeInt(template.getID());
+            data.writeByte(template.getConditionTypeCount());
+            for (int index = 0; index < template.getConditionTypeCount(); index++)
+            {
+                Condition.Type type = template.getConditionType(index);
+                data.writeByte(type.ordinal());
+                data.writeDouble(template.getTreatmentEfficacy(type));
+            }
+            data.writeByte(template.getMaterialResourceCount());
+            for (int index = 0; index < template.getMaterialResourceCount(); index++)
+            {
+                data.writeByte(template.getMaterialResource(index).ordinal());
+                data.writeDouble(template.getMaterialResourceDosage(index));
+                data.writeInt(template.getMaterialResourceFrequency(index));
+            }
+            data.writeInt(template.getNursesNeeded());
+            data.writeInt(template.getNurseOnTime());
+            data.writeInt(template.getNurseOffTime());
+            data.writeInt(template.getDoctorsNeeded());
+            data.writeInt(template.getDoctorOnTime());
+            data.writeInt(template.getDoctorOffTime());
+            data.writeInt(template.getTotalCycles());
+        }
+    }
+
+    private static Model readModel(ByteBuffer buffer, Source source) throws IOException
+    {
+        Condition.Type[] types = Condition.Type.values();
+        Hospital.MaterialResource[] resources = Hospital.MaterialResource.values();
+
+        // A bundle compiled against other condition types or resources would decode to the wrong
+        // ordinals, so it is treated as out of date
+        boolean current = (buffer.get() & 0xFF) == types.length;
+        for (int index = 0; current && index < types.length; index++)
+        {
+            current = readUTF(buffer).equals(types[index].name());
+        }
+        current = current && (buffer.get() & 0xFF) == resources.length;
+        for (int index = 0; current && index < resources.length; index++)
+        {
+            current = readUTF(buffer).equals(resources[index].name());
+        }
+
+        if (!current)
+        {
+            return null;
+        }
+
+        byte[] hash = new byte[HASH_SIZE];
+        buffer.get(hash);
+        long size = buffer.getLong();
+        long modified = buffer.getLong();
+        if (source != null && (size != source.m_size || modified != source.m_modified) &&
+                !Arrays.equals(hash, source.getHash()))
+        {
+            return null;
+        }
+
+        double[] deteriorationRates = new double[types.length];
+        for (int index = 0; index < types.length; index++)
+        {
+            deteriorationRates[index] = buffer.getDouble();
+        }
+
+        int combinations = count(buffer.getInt());
+        Condition.Type[][] conditions = new Condition.Type[combinations][];
+        double[] probabilities = new double[combinations];
+        double[] aliasProbabilities = new double[combinations];
+        int[] aliases = new int[combinations];
+        for (int combination = 0; combination < combinations; combination++)
+        {
+            probabilities[combination] = buffer.getDouble();
+            aliasProbabilities[combination] = buffer.getDouble();
+            aliases[combination] = buffer.getInt();
+            if (aliases[combination] < 0 || aliases[combination] >= combinations)
+            {
+                throw new IllegalArgumentException("Invalid alias " + aliases[combination] + ".");
+            }
+
+            conditions[combination] = new Condition.Type[buffer.get() & 0xFF];
+            for (int index = 0; index < conditions[combination].length; index++)
+            {
+                conditions[combination][index] = types[ordinal(buffer, types.length)];
+            }
+        }
+        CaseMix caseMix = new CaseMix(conditions, probabilities, aliasProbabilities, aliases, deteriorationRates);
+
+        int count = count(buffer.getInt());
+        List<Trajectory> trajectories = new ArrayList<>(count);
+        for (int position = 0; position < count; position++)
+        {
+            int id = buffer.getInt();
+            int rowNumber = buffer.getInt();
+            int conditionCount = buffer.get() & 0xFF;
+            Condition.Type[] conditionTypes = new Condition.Type[conditionCount];
+            double[] minimumSeverities = new double[conditionCount];
+            double[] maximumSeverities = new double[conditionCount];
+            for (int index = 0; index < conditionCount; index++)
+            {
+                conditionTypes[index] = types[ordinal(buffer, types.length)];
+                minimumSeverities[index] = buffer.getDouble();
+                maximumSeverities[index] = buffer.getDouble();
+            }
+
+            int templateId = buffer.getInt();
+            Condition.Type[] treatedConditions = new Condition.Type[buffer.get() & 0xFF];
+            double[] efficacies = new double[treatedConditions.length];
+            for (int index = 0; index < treatedConditions.length; index++)
+            {
+                treatedConditions[index] = types[ordinal(buffer, types.length)];
+                efficacies[index] = buffer.getDouble();
+            }
+            Hospital.MaterialResource[] materialResources = new Hospital.MaterialResource[buffer.get() & 0xFF];
+            double[] dosages = new double[materialResources.length];
+            int[] frequencies = new int[materialResources.length];
+            for (int index = 0; index < materialResources.length; index++)
+            {
+                materialResources[index] = resources[ordinal(buffer, resources.length)];
+                dosages[index] = buffer.getDouble();
+                frequencies[index] = buffer.getInt();
+            }
+
+            TreatmentPlanTemplate template = new TreatmentPlanTemplate(
+                templateId,
+                treatedConditions,
+                materialResources,
+                efficacies,
+                dosages,
+                frequencies,
+                buffer.getInt(),
+                buffer.getInt(),
+                buffer.getInt(),
+                buffer.getInt(),
+                buffer.getInt(),
+                buffer.getInt(),
+                buffer.getInt()
+            );
+            trajectories.add(new Trajectory(id, rowNumber, conditionTypes, minimumSeverities, maximumSeverities, template));
+        }
+
+        return new Model(caseMix, new TrajectoryTable(trajectories));
+    }
+
+    /**
+     * Reads a string written with {@link DataOutputStream#writeUTF(String)}, which is plain ASCII
+     * for the names of enum constants.
+     */
+    private static String readUTF(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int count(int count)
+    {
+        if (count < 0)
+        {
+            throw new IllegalArgumentException("Invalid count " + count + ".");
+        }
+
+        return count;
+    }
+
+    private static int ordinal(ByteBuffer buffer, int values)
+    {
+        int ordinal = buffer.get() & 0xFF;
+        if (ordinal >= values)
+        {
+            throw new IllegalArgumentException("Invalid ordinal " + ordinal + ".");
+        }
+
+        return ordinal;
+    }
+
+    /**
+     * Describes the setup file a bundle is compiled from.
+     */
+    static final class Source
+    {
+        /**
+         * The path of the setup file.
+         */
+        private final Path m_path;
+
+        /**
+         * The size of the setup file in bytes.
+         */
+        private final long m_size;
+
+        /**
+         * The modification time of the setup file in milliseconds.
+         */
+        private final long m_modified;
+
+        /**
+         * The hash of the setup file, or null until it is first requested.
+         */
+        private byte[] m_hash;
+
+        Source(Path path) throws IOException
+        {
+            m_path = path;
+            m_size = Files.size(path);
+            m_modified = Files.getLastModifiedTime(path).toMillis();
+        }
+
+        /**
+         * {@link Source#m_hash}
+         */
+        byte[] getHash() throws IOException
+        {
+            if (m_hash == null)
+            {
+                m_hash = hash(m_path);
+            }
+
+            return m_hash;
+        }
+    }
+
+    /**
+     * Compiles the setup file into its bundle.
+     *
+     * @param args optionally, the path of the setup file, which defaults to the setup file in the
+     *             working directory
+     * @throws IOException if the setup file cannot be read or the bundle cannot be written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Path workbook = Paths.get((args.length > 0) ? args[0] : App.getSetupFilepath());
+
+        long start = System.nanoTime();
+        Path bundle = compile(workbook);
+        long compiled = System.nanoTime();
+        Model model = read(bundle, workbook);
+        long loaded = System.nanoTime();
+
+        System.out.println("Compiled " + workbook + " to " + bundle + " (" + Files.size(bundle) + " bytes, " +
+            model.getTrajectories().size() + " trajectories, " + model.getCaseMix().getCombinationCount() +
+            " condition combinations) in " + (compiled - start) / 1000000 + " ms; loaded in " +
+            (loaded - compiled) / 1000 + " us");
+    }
+}
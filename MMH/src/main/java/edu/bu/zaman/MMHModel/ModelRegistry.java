@@ -0,0 +1,238 @@
+package edu.bu.zaman.MMHModel;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current model of a setup file and replaces it whenever the setup file changes, so that a
+ * long-running JVM picks up edits to the setup file without a restart. Models are immutable and are
+ * swapped in atomically, so reading the current model takes no lock. A run takes the current model
+ * when its {@link SimulationContext} is created and keeps it until it completes, while runs created
+ * after a reload take the new model.
+ *
+ * Changes are picked up by {@link ModelRegistry#watch()}, which watches the directory of the setup
+ * file on a daemon thread, or by calling {@link ModelRegistry#reload()}. A setup file that cannot be
+ * loaded, e.g. one that is still being saved, leaves the current model in place.
+ */
+public final class ModelRegistry implements Closeable
+{
+    /**
+     * How long to wait for further changes to the setup file before reloading it in milliseconds,
+     * since saving a workbook usually raises several events.
+     */
+    static final long SETTLE_MILLIS = 200;
+
+    /**
+     * The absolute path of the setup file.
+     */
+    private final Path m_path;
+
+    /**
+     * The model most recently loaded from the setup file.
+     */
+    private final AtomicReference<Model> m_model;
+
+    /**
+     * The service watching the directory of the setup file, or null if it is not being watched.
+     */
+    private WatchService m_watchService;
+
+    /**
+     * Creates a registry holding the model of the specified setup file, which is loaded from its
+     * {@link ModelBundle} when the bundle is up to date.
+     *
+     * @param path the path of the setup file
+     * @throws IOException if the setup file cannot be read
+     * @throws IllegalArgumentException if the setup file is invalid
+     */
+    public ModelRegistry(Path path) throws IOException
+    {
+        m_path = path.toAbsolutePath();
+        m_model = new AtomicReference<>(ModelBundle.load(m_path));
+    }
+
+    /**
+     * {@link ModelRegistry#m_path}
+     */
+    public Path getPath()
+    {
+        return m_path;
+    }
+
+    /**
+     * {@link ModelRegistry#m_model}
+     */
+    public Model get()
+    {
+        return m_model.get();
+    }
+
+    /**
+     * Loads the setup file again and makes it the current model. Reloads are serialised, so the
+     * current model is always the one loaded last.
+     *
+     * @return whether the model was replaced, false if the setup file could not be loaded
+     */
+    public synchronized boolean reload()
+    {
+        try
+        {
+            m_model.set(ModelBundle.load(m_path));
+            System.out.println("Reloaded patient trajectories from path: " + m_path);
+
+            return true;
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            System.out.println("Error: keeping the current model, unable to reload " + m_path + ": " +
+                e.getMessage());
+
+            return false;
+        }
+    }
+
+    /**
+     * Starts reloading the model whenever the setup file is modified or replaced. Does nothing if
+     * the setup file is already being watched.
+     *
+     * @throws IOException if the directory of the setup file cannot be watched
+     */
+    public synchronized void watch() throws IOException
+    {
+        if (m_watchService != null)
+        {
+            return;
+        }
+
+        Path directory = m_path.getParent();
+        WatchService watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        m_watchService = watchService;
+
+        Thread watcher = new Thread(() -> watch(watchService), "ModelRegistry " + m_path.getFileName());
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Stops watching the setup file. The current model remains available.
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (m_watchService != null)
+        {
+            m_watchService.close();
+            m_watchService = null;
+        }
+    }
+
+    /**
+     * Reloads the model after every burst of changes to the setup file until the watch service is
+     * closed.
+     */
+    private void watch(WatchService watchService)
+    {
+        try
+        {
+            while (true)
+            {
+                boolean changed = changed(watchService.take());
+                WatchKey key;
+                while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null)
+                {
+                    changed |= changed(key);
+                }
+
+                if (changed)
+                {
+                    reload();
+                }
+            }
+        }
+        catch (ClosedWatchServiceException | InterruptedException e)
+        {
+            // The registry was closed
+        }
+    }
+
+    /**
+     * Returns whether the events of the specified key concern the setup file, rather than e.g. its
+     * bundle or the other files in its directory.
+     */
+    private boolean changed(WatchKey key)
+    {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+            changed |= event.kind() == OVERFLOW || m_path.getFileName().equals(event.context());
+        }
+        key.reset();
+
+        return changed;
+    }
+
+    /**
+     * Returns the registry of the setup file in the working directory, which is created, and starts
+     * watching the setup file, the first time it is requested.
+     */
+    public static ModelRegistry getDefault()
+    {
+        return Default.REGISTRY;
+    }
+
+    /**
+     * Holds the default registry, so that the setup file is only loaded once the model is first
+     * requested rather than whenever this class is used.
+     */
+    private static final class Default
+    {
+        static final ModelRegistry REGISTRY = createDefault();
+
+        private static ModelRegistry createDefault()
+        {
+            String filepath = App.getSetupFilepath();
+            System.out.println("Reading patient trajectories from path: " + filepath);
+
+            ModelRegistry registry = null;
+            try
+            {
+                registry = new ModelRegistry(Paths.get(filepath));
+            }
+            catch (IllegalArgumentException iae)
+            {
+                System.out.println("Error: " + iae.getMessage());
+                System.exit(-1);
+            }
+            catch (IOException ioe)
+            {
+                ioe.printStackTrace();
+                System.exit(-1);
+            }
+
+            // Runs still complete with the model as loaded if the setup file cannot be watched
+            try
+            {
+                registry.watch();
+            }
+            catch (IOException ioe)
+            {
+                System.out.println("Error: unable to watch " + filepath + " for changes: " + ioe.getMessage());
+            }
+
+            return registry;
+        }
+    }
+}
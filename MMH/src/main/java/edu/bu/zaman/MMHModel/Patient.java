@@ -1,6 +1,8 @@
 package edu.bu.zaman.MMHModel;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class Patient
 {
@@ -20,9 +22,21 @@ public class Patient
 	private boolean m_isAlive;
     
     /**
-     * List of conditions the patient has.
+     * List of conditions the patient has, in the order they were contracted.
      */
-	private ArrayList<Condition> m_conditions;
+	private List<Condition> m_conditions;
+
+    /**
+     * The patient's conditions indexed by {@link Condition.Type#ordinal()}, with null entries for
+     * the condition types the patient does not have.
+     */
+	private final Condition[] m_conditionSlots = new Condition[Condition.Type.values().length];
+
+    /**
+     * Bitmask of the condition types the patient has, where each bit corresponds to
+     * {@link Condition.Type#ordinal()}.
+     */
+	private int m_conditionMask;
 
     /**
      * The current stage for the patient
@@ -42,7 +56,7 @@ public class Patient
     /**
      * Using number of Doses
      */
-   private Double doses_using;
+   private double doses_using;
     
     
     
@@ -59,14 +73,45 @@ public class Patient
 		m_age = age;
         m_isAlive = true;
 
-		if (conditions == null)
+		// The list is copied, since the condition slots and mask would go stale if the caller changed it
+		ArrayList<Condition> copy = (conditions == null) ? new ArrayList<>() : new ArrayList<>(conditions);
+		m_conditions = Collections.unmodifiableList(copy);
+
+		for (Condition condition : copy)
+		{
+			// As with a scan of the condition list, the first condition of each type takes precedence
+			int ordinal = condition.getType().ordinal();
+			if (m_conditionSlots[ordinal] == null)
+			{
+				m_conditionSlots[ordinal] = condition;
+				m_conditionMask |= 1 << ordinal;
+			}
+		}
+	}
+
+	/**
+	 * Returns a copy of the patient, e.g. for a {@link SimulationContext#fork()}. The copy has its own
+	 * conditions and treatment plan, so it can be treated and worsened without changing this patient.
+	 */
+	Patient copy()
+	{
+		ArrayList<Condition> conditions = new ArrayList<>(m_conditions.size());
+		for (Condition condition : m_conditions)
 		{
-			m_conditions = new ArrayList<>();
+			conditions.add(condition.copy());
 		}
-		else
+
+		Patient copy = new Patient(m_patientId, m_age, conditions);
+		copy.m_isAlive = m_isAlive;
+		copy.doctors_using = doctors_using;
+		copy.nurses_using = nurses_using;
+		copy.doses_using = doses_using;
+		if (m_stage != null)
 		{
-			m_conditions = conditions;
+			copy.m_stage = new Stage(m_stage.getTreatmentPlan().copy(copy));
 		}
+
+		return copy;
 	}
 
 	/**
@@ -77,15 +122,17 @@ public class Patient
 	 */
 	public boolean hasCondition(Condition.Type type)
 	{
-		for (Condition condition : m_conditions)
-		{
-			if (condition.getType() == type)
-			{
-				return true;
-			}
-		}
-		
-		return false;
+		return (m_conditionMask & (1 << type.ordinal())) != 0;
+	}
+
+    /**
+     * Returns whether or not the patient has every condition in the specified set.
+     *
+     * @param conditionMask a bitmask of condition types, see {@link Patient#m_conditionMask}
+     */
+	public boolean hasConditions(int conditionMask)
+	{
+		return (conditionMask & ~m_conditionMask) == 0;
 	}
 	
     /**
@@ -105,10 +152,13 @@ public class Patient
      */
 	public double probabilityOfMortality()
 	{
+		// Only the first condition of each type is held in a slot. Unlike a scan of the condition
+		// list, a second condition of the same type is ignored, so CaseMix rejects combinations that
+		// repeat a type when the model is loaded
 		double probabilityOfSurvival = 1;
-		for (Condition condition : m_conditions)
+		for (int mask = m_conditionMask; mask != 0; mask &= mask - 1)
 		{
-			probabilityOfSurvival *= 1 - condition.getProbabilityOfMortality();
+			probabilityOfSurvival *= 1 - m_conditionSlots[Integer.numberOfTrailingZeros(mask)].getProbabilityOfMortality();
 		}
 
 		return 1 - probabilityOfSurvival;
@@ -131,12 +181,23 @@ public class Patient
     }
     
     /**
-     * Returns a list of all of the patient conditions.
+     * Returns a read-only list of all of the patient conditions. The list is read-only, rather than
+     * the mutable {@code ArrayList} returned before conditions were indexed by type, since adding or
+     * removing a condition would leave {@link Patient#getCondition(Condition.Type)} and
+     * {@link Patient#getConditionMask()} out of date. The conditions themselves can still be changed.
      */
-    public ArrayList<Condition> getConditions()
+    public List<Condition> getConditions()
     {
         return m_conditions;
     }
+
+    /**
+     * {@link Patient#m_conditionMask}
+     */
+    public int getConditionMask()
+    {
+        return m_conditionMask;
+    }
     
     /**
      * Returns a specific condition for the patient or null if the patient does not have a condition
@@ -146,15 +207,7 @@ public class Patient
      */
 	public Condition getCondition(Condition.Type type)
     {
-        for (Condition condition : m_conditions)
-        {
-            if (condition.getType() == type)
-            {
-                return condition;
-            }
-        }
-        
-		return null;
+		return m_conditionSlots[type.ordinal()];
 	}
     
     /**
@@ -216,13 +269,13 @@ public class Patient
 	}
     
 	
-	public void setDoses(Double Doseage) 
+	public void setDoses(double Doseage) 
 	{
-		doses_using = Double.valueOf(doses_using) + Double.valueOf(Doseage);
+		doses_using = doses_using + Doseage;
 	}
 	
 	
-	public Double getDoses() 
+	public double getDoses() 
 	{
 		return doses_using;
 	}
@@ -0,0 +1,429 @@
+package edu.bu.zaman.MMHModel;
+
+import java.util.Arrays;
+
+/**
+ * Columnar store of the patients in the hospital, used by {@link ColumnarSimulation} for very large
+ * censuses. Rather than one object graph per patient, every patient attribute is stored in a
+ * primitive array indexed by a dense patient slot; per-condition attributes are stored in arrays
+ * with one entry per {@link Condition.Type} per slot, at {@code slot * CONDITION_TYPES + ordinal}.
+ *
+ * Slots are kept in admission order: removing deceased patients shifts the remaining patients down
+ * in a single pass, so that the slot order always matches the order of the patient list used by
+ * {@link Simulation}.
+ *
+ * The columns are package-private so that the simulation phases can run over them in tight loops.
+ */
+public class PatientStore
+{
+    /**
+     * The number of supported condition types, which is the stride of the per-condition columns.
+     */
+    public static final int CONDITION_TYPES = Condition.Type.values().length;
+
+    /**
+     * The initial number of slots allocated when no capacity is specified.
+     */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The number of occupied slots.
+     */
+    int m_size;
+
+    /**
+     * The unique identifier of each patient.
+     */
+    int[] m_ids;
+
+    /**
+     * The age of each patient.
+     */
+    int[] m_ages;
+
+    /**
+     * Whether or not each patient is alive.
+     */
+    boolean[] m_alive;
+
+    /**
+     * Bitmask of the conditions each patient has, where each bit corresponds to
+     * {@link Condition.Type#ordinal()}.
+     */
+    int[] m_conditionMasks;
+
+    /**
+     * The position in the {@link TrajectoryTable} of each patient's current trajectory, or -1 if the
+     * patient has not been assigned a stage yet.
+     */
+    int[] m_stages;
+
+    /**
+     * The number of cycles of treatment administered to each patient in the current stage.
+     */
+    int[] m_planCycles;
+
+    /**
+     * The probability of mortality of each condition.
+     */
+    double[] m_severities;
+
+    /**
+     * The deterioration rate of each condition, see {@link Condition#getDeteriorationRate()}.
+     */
+    double[] m_deteriorationRates;
+
+    /**
+     * The age of each condition in units of cycles, see {@link Condition#getCycle()}.
+     */
+    int[] m_deteriorationCycles;
+
+    /**
+     * The cumulative number of doctors used by each patient.
+     */
+    int[] m_doctors;
+
+    /**
+     * The cumulative number of nurses used by each patient.
+     */
+    int[] m_nurses;
+
+    /**
+     * The cumulative dose of material resources used by each patient.
+     */
+    double[] m_doses;
+
+    /**
+     * Scratch space holding the probability of mortality of each slot while ordering the slots.
+     */
+    private double[] m_triageKeys = new double[0];
+
+    /**
+     * Creates an empty store.
+     */
+    public PatientStore()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty store with room for the specified number of patients.
+     *
+     * @param capacity the initial number of patient slots
+     */
+    public PatientStore(int capacity)
+    {
+        capacity = Math.max(capacity, 1);
+
+        m_ids = new int[capacity];
+        m_ages = new int[capacity];
+        m_alive = new boolean[capacity];
+        m_conditionMasks = new int[capacity];
+        m_stages = new int[capacity];
+        m_planCycles = new int[capacity];
+        m_severities = new double[capacity * CONDITION_TYPES];
+        m_deteriorationRates = new double[capacity * CONDITION_TYPES];
+        m_deteriorationCycles = new int[capacity * CONDITION_TYPES];
+        m_doctors = new int[capacity];
+        m_nurses = new int[capacity];
+        m_doses = new double[capacity];
+    }
+
+    /**
+     * Adds a patient to the end of the store, copying its attributes and conditions.
+     *
+     * @param patient the patient to add
+     * @return the slot of the patient
+     */
+    public int add(Patient patient)
+    {
+        ensureCapacity(m_size + 1);
+
+        int slot = m_size++;
+        m_ids[slot] = patient.getPatientId();
+        m_ages[slot] = patient.getAge();
+        m_alive[slot] = patient.isAlive();
+        m_stages[slot] = -1;
+        m_planCycles[slot] = 0;
+        m_doctors[slot] = patient.getDoctor();
+        m_nurses[slot] = patient.getNurse();
+        m_doses[slot] = patient.getDoses();
+
+        int offset = slot * CONDITION_TYPES;
+        Arrays.fill(m_severities, offset, offset + CONDITION_TYPES, 0);
+        Arrays.fill(m_deteriorationRates, offset, offset + CONDITION_TYPES, 0);
+        Arrays.fill(m_deteriorationCycles, offset, offset + CONDITION_TYPES, 0);
+
+        Condition.Type[] types = Condition.Type.values();
+        m_conditionMasks[slot] = patient.getConditionMask();
+        for (int mask = patient.getConditionMask(); mask != 0; mask &= mask - 1)
+        {
+            int ordinal = Integer.numberOfTrailingZeros(mask);
+            Condition condition = patient.getCondition(types[ordinal]);
+            m_severities[offset + ordinal] = condition.getProbabilityOfMortality();
+            m_deteriorationRates[offset + ordinal] = condition.getDeteriorationRate();
+            m_deteriorationCycles[offset + ordinal] = condition.getCycle();
+        }
+
+        return slot;
+    }
+
+    /**
+     * Removes all deceased patients, shifting the remaining patients down so that slots stay dense
+     * and in admission order.
+     *
+     * @return the number of patients removed
+     */
+    public int removeDeceased()
+    {
+        int target = 0;
+        for (int slot = 0; slot < m_size; slot++)
+        {
+            if (!m_alive[slot])
+            {
+                continue;
+            }
+
+            if (target != slot)
+            {
+                move(slot, target);
+            }
+            target++;
+        }
+
+        int removed = m_size - target;
+        m_size = target;
+        return removed;
+    }
+
+    private void move(int from, int to)
+    {
+        m_ids[to] = m_ids[from];
+        m_ages[to] = m_ages[from];
+        m_alive[to] = m_alive[from];
+        m_conditionMasks[to] = m_conditionMasks[from];
+        m_stages[to] = m_stages[from];
+        m_planCycles[to] = m_planCycles[from];
+        m_doctors[to] = m_doctors[from];
+        m_nurses[to] = m_nurses[from];
+        m_doses[to] = m_doses[from];
+        System.arraycopy(m_severities, from * CONDITION_TYPES, m_severities, to * CONDITION_TYPES, CONDITION_TYPES);
+        System.arraycopy(m_deteriorationRates, from * CONDITION_TYPES, m_deteriorationRates, to * CONDITION_TYPES, CONDITION_TYPES);
+        System.arraycopy(m_deteriorationCycles, from * CONDITION_TYPES, m_deteriorationCycles, to * CONDITION_TYPES, CONDITION_TYPES);
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= m_ids.length)
+        {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, m_ids.length + (m_ids.length >> 1));
+        m_ids = Arrays.copyOf(m_ids, newCapacity);
+        m_ages = Arrays.copyOf(m_ages, newCapacity);
+        m_alive = Arrays.copyOf(m_alive, newCapacity);
+        m_conditionMasks = Arrays.copyOf(m_conditionMasks, newCapacity);
+        m_stages = Arrays.copyOf(m_stages, newCapacity);
+        m_planCycles = Arrays.copyOf(m_planCycles, newCapacity);
+        m_severities = Arrays.copyOf(m_severities, newCapacity * CONDITION_TYPES);
+        m_deteriorationRates = Arrays.copyOf(m_deteriorationRates, newCapacity * CONDITION_TYPES);
+        m_deteriorationCycles = Arrays.copyOf(m_deteriorationCycles, newCapacity * CONDITION_TYPES);
+        m_doctors = Arrays.copyOf(m_doctors, newCapacity);
+        m_nurses = Arrays.copyOf(m_nurses, newCapacity);
+        m_doses = Arrays.copyOf(m_doses, newCapacity);
+    }
+
+    /**
+     * Returns the number of patients in the store.
+     */
+    public int size()
+    {
+        return m_size;
+    }
+
+    /**
+     * Returns the probability of mortality of the patient in the specified slot, accounting for all of
+     * the patient's conditions as in {@link Patient#probabilityOfMortality()}.
+     *
+     * @param slot the patient slot
+     */
+    public double probabilityOfMortality(int slot)
+    {
+        double probabilityOfSurvival = 1;
+        int mask = m_conditionMasks[slot];
+        int offset = slot * CONDITION_TYPES;
+        while (mask != 0)
+        {
+            int ordinal = Integer.numberOfTrailingZeros(mask);
+            probabilityOfSurvival *= 1 - m_severities[offset + ordinal];
+            mask &= mask - 1;
+        }
+
+        return 1 - probabilityOfSurvival;
+    }
+
+    /**
+     * Fills an array with the occupied slots ordered from the most severe to the least severe
+     * patient, as in {@link TriageSorter}: by probability of mortality, then by patient id.
+     *
+     * @param order the array to fill, or null to allocate one
+     * @return the filled array, which is reallocated if the specified array is too small
+     */
+    public int[] triageOrder(int[] order)
+    {
+        if (order == null || order.length < m_size)
+        {
+            order = new int[m_ids.length];
+        }
+        if (m_triageKeys.length < m_ids.length)
+        {
+            m_triageKeys = new double[m_ids.length];
+        }
+
+        for (int slot = 0; slot < m_size; slot++)
+        {
+            order[slot] = slot;
+            m_triageKeys[slot] = probabilityOfMortality(slot);
+        }
+
+        // Heap sort the slots so that the least severe patient ends up last
+        for (int index = m_size / 2 - 1; index >= 0; index--)
+        {
+            siftDown(order, index, m_size);
+        }
+        for (int end = m_size - 1; end > 0; end--)
+        {
+            int root = order[0];
+            order[0] = order[end];
+            order[end] = root;
+            siftDown(order, 0, end);
+        }
+
+        return order;
+    }
+
+    /**
+     * Returns true if the patient in the first slot should be treated after the patient in the
+     * second slot.
+     */
+    private boolean after(int slot1, int slot2)
+    {
+        int compare = Double.compare(m_triageKeys[slot1], m_triageKeys[slot2]);
+        if (compare != 0)
+        {
+            return compare < 0;
+        }
+
+        return m_ids[slot1] > m_ids[slot2];
+    }
+
+    private void siftDown(int[] heap, int index, int size)
+    {
+        int slot = heap[index];
+        while (true)
+        {
+            int child = 2 * index + 1;
+            if (child >= size)
+            {
+                break;
+            }
+            if (child + 1 < size && after(heap[child + 1], heap[child]))
+            {
+                child++;
+            }
+            if (!after(heap[child], slot))
+            {
+                break;
+            }
+
+            heap[index] = heap[child];
+            index = child;
+        }
+
+        heap[index] = slot;
+    }
+
+    /**
+     * Returns the id of the patient in the specified slot.
+     */
+    public int getPatientId(int slot)
+    {
+        return m_ids[slot];
+    }
+
+    /**
+     * Returns the age of the patient in the specified slot.
+     */
+    public int getAge(int slot)
+    {
+        return m_ages[slot];
+    }
+
+    /**
+     * Returns whether the patient in the specified slot is alive.
+     */
+    public boolean isAlive(int slot)
+    {
+        return m_alive[slot];
+    }
+
+    /**
+     * Returns whether the patient in the specified slot has a condition of the specified type.
+     */
+    public boolean hasCondition(int slot, Condition.Type type)
+    {
+        return (m_conditionMasks[slot] & (1 << type.ordinal())) != 0;
+    }
+
+    /**
+     * Returns the probability of mortality of a condition of the patient in the specified slot, or
+     * zero if the patient does not have the condition.
+     */
+    public double getProbabilityOfMortality(int slot, Condition.Type type)
+    {
+        return m_severities[slot * CONDITION_TYPES + type.ordinal()];
+    }
+
+    /**
+     * Returns the position in the trajectory table of the current trajectory of the patient in the
+     * specified slot, or -1 if the patient has not been assigned a stage yet.
+     */
+    public int getStage(int slot)
+    {
+        return m_stages[slot];
+    }
+
+    /**
+     * Returns the number of cycles of treatment administered to the patient in the specified slot in
+     * the current stage.
+     */
+    public int getPlanCycle(int slot)
+    {
+        return m_planCycles[slot];
+    }
+
+    /**
+     * Returns the cumulative number of doctors used by the patient in the specified slot.
+     */
+    public int getDoctors(int slot)
+    {
+        return m_doctors[slot];
+    }
+
+    /**
+     * Returns the cumulative number of nurses used by the patient in the specified slot.
+     */
+    public int getNurses(int slot)
+    {
+        return m_nurses[slot];
+    }
+
+    /**
+     * Returns the cumulative dose of material resources used by the patient in the specified slot.
+     */
+    public double getDoses(int slot)
+    {
+        return m_doses[slot];
+    }
+}
@@ -0,0 +1,229 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * Arrival process in which the number of patients arriving in each cycle is Poisson distributed.
+ * The arrival rate can either be constant or follow a periodic profile, such as one rate per cycle
+ * of the day, giving a non-homogeneous Poisson process.
+ */
+public class PoissonArrivalProcess implements ArrivalProcess
+{
+    /**
+     * Rates above which arrivals are drawn by transformed rejection rather than by inversion, whose
+     * cost grows with the rate.
+     */
+    private static final double INVERSION_LIMIT = 30;
+
+    /**
+     * The mean number of arrivals in each cycle of the rate profile. The profile repeats once every
+     * cycle of the profile has been used.
+     */
+    private final double[] m_rates;
+
+    /**
+     * The cumulative arrival rate of the profile before each cycle of the profile, with one extra
+     * entry holding the total rate of the profile.
+     */
+    private final double[] m_cumulativeRates;
+
+    /**
+     * Creates a new Poisson arrival process.
+     *
+     * @param rates the mean number of arrivals per cycle, either a single constant rate or a
+     *              periodic profile with one rate per cycle
+     * @throws IllegalArgumentException if no rate is given or a rate is negative
+     */
+    public PoissonArrivalProcess(double... rates)
+    {
+        if (rates.length == 0)
+        {
+            throw new IllegalArgumentException("At least one arrival rate is required.");
+        }
+        for (double rate : rates)
+        {
+            if (!(rate >= 0) || Double.isInfinite(rate))
+            {
+                throw new IllegalArgumentException("Invalid arrival rate " + rate + ".");
+            }
+        }
+
+        m_rates = rates.clone();
+        m_cumulativeRates = new double[rates.length + 1];
+        for (int index = 0; index < rates.length; index++)
+        {
+            m_cumulativeRates[index + 1] = m_cumulativeRates[index] + rates[index];
+        }
+    }
+
+    /**
+     * Returns the mean number of arrivals in the specified cycle.
+     *
+     * @param cycle the current cycle of the run
+     */
+    public double getRate(int cycle)
+    {
+        return m_rates[cycle % m_rates.length];
+    }
+
+    @Override
+    public int arrivals(int cycle, RandomSource random)
+    {
+        return sample(getRate(cycle), random);
+    }
+
+    /**
+     * Skips the cycles without arrivals. The probability that no patient arrives in a cycle is
+     * {@code exp(-rate)}, so the first cycle with an arrival is the first cycle at which the
+     * cumulative rate exceeds an exponentially distributed variate. Whole repetitions of the rate
+     * profile are skipped at once.
+     */
+    @Override
+    public int nextArrivalCycle(int cycle, RandomSource random)
+    {
+        int period = m_rates.length;
+        double total = m_cumulativeRates[period];
+        if (total <= 0)
+        {
+            return Integer.MAX_VALUE;
+        }
+
+        // Measure the variate from the start of the current repetition of the profile
+        int offset = cycle % period;
+        double hazard = -Math.log1p(-random.nextDouble()) + m_cumulativeRates[offset];
+        double repetitions = Math.floor(hazard / total);
+        double remainder = hazard - repetitions * total;
+
+        int index = 0;
+        while (index < period - 1 && m_cumulativeRates[index + 1] <= remainder)
+        {
+            index++;
+        }
+
+        return (int) Math.min((double) cycle - offset + repetitions * period + index, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Draws the number of arrivals from the zero-truncated Poisson distribution.
+     */
+    @Override
+    public int conditionalArrivals(int cycle, RandomSource random)
+    {
+        double mean = getRate(cycle);
+        if (mean <= 0)
+        {
+            return 0;
+        }
+        if (mean >= INVERSION_LIMIT)
+        {
+            // Zero is too unlikely for rejection to be costly
+            int count;
+            do
+            {
+                count = sampleByRejection(mean, random);
+            }
+            while (count == 0);
+
+            return count;
+        }
+
+        double probability = Math.exp(-mean);
+        double variate = probability + random.nextDouble() * (1 - probability);
+        return Math.max(1, sampleByInversion(mean, variate));
+    }
+
+    /**
+     * Draws a Poisson distributed number.
+     *
+     * @param mean      the mean of the distribution
+     * @param random    the random source to draw from
+     */
+    public static int sample(double mean, RandomSource random)
+    {
+        if (mean <= 0)
+        {
+            return 0;
+        }
+        if (mean < INVERSION_LIMIT)
+        {
+            return sampleByInversion(mean, random);
+        }
+
+        return sampleByRejection(mean, random);
+    }
+
+    /**
+     * Sequential search of the cumulative distribution using a single uniform variate.
+     */
+    private static int sampleByInversion(double mean, RandomSource random)
+    {
+        return sampleByInversion(mean, random.nextDouble());
+    }
+
+    private static int sampleByInversion(double mean, double variate)
+    {
+        double probability = Math.exp(-mean);
+        double cumulative = probability;
+
+        int count = 0;
+        while (variate > cumulative)
+        {
+            count++;
+            probability *= mean / count;
+            cumulative += probability;
+
+            // Guard against rounding errors leaving the cumulative probability just below the variate
+            if (probability < 1e-300 && count > mean)
+            {
+                break;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Hörmann's transformed rejection with squeeze (PTRS), whose expected cost does not depend on
+     * the mean.
+     */
+    private static int sampleByRejection(double mean, RandomSource random)
+    {
+        double logMean = Math.log(mean);
+        double b = 0.931 + 2.53 * Math.sqrt(mean);
+        double a = -0.059 + 0.02483 * b;
+        double inverseAlpha = 1.1239 + 1.1328 / (b - 3.4);
+        double vr = 0.9277 - 3.6224 / (b - 2);
+
+        while (true)
+        {
+            double u = random.nextDouble() - 0.5;
+            double v = random.nextDouble();
+            double us = 0.5 - Math.abs(u);
+            int count = (int) Math.floor((2 * a / us + b) * u + mean + 0.43);
+
+            if (us >= 0.07 && v <= vr)
+            {
+                return count;
+            }
+            if (count < 0 || (us < 0.013 && v > us))
+            {
+                continue;
+            }
+            if (Math.log(v) + Math.log(inverseAlpha) - Math.log(a / (us * us) + b) <=
+                    -mean + count * logMean - SpecialFunctions.logGamma(count + 1))
+            {
+                return count;
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder rates = new StringBuilder();
+        for (double rate : m_rates)
+        {
+            rates.append((rates.length() == 0) ? "" : ";").append(rate);
+        }
+
+        return "Poisson rate=" + rates;
+    }
+}
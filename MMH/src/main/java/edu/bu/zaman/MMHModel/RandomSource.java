@@ -0,0 +1,40 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * Source of uniformly distributed random numbers used by the model. Every random draw made by a
+ * simulation goes through a random source owned by its {@link SimulationContext}, so that runs can
+ * be seeded and reproduced independently of each other.
+ */
+public interface RandomSource
+{
+    /**
+     * Returns the next pseudorandom {@code double} value between zero (inclusive) and one
+     * (exclusive).
+     */
+    double nextDouble();
+
+    /**
+     * Returns the next pseudorandom {@code long} value.
+     */
+    long nextLong();
+
+    /**
+     * Returns a pseudorandom {@code int} value between zero (inclusive) and the specified bound
+     * (exclusive).
+     *
+     * @param bound the upper bound, which must be positive
+     */
+    int nextInt(int bound);
+
+    /**
+     * Creates a new, statistically independent random source. Splitting advances the state of this
+     * source, so the sequence of sources obtained by repeated splitting is itself reproducible.
+     */
+    RandomSource split();
+
+    /**
+     * Returns a copy of this random source that will produce the same sequence of values, e.g. for a
+     * {@link SimulationContext#fork()}.
+     */
+    RandomSource copy();
+}
@@ -0,0 +1,115 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * The independent random streams used by a single simulation run. Each source of randomness in the
+ * model draws from its own stream, so that, for example, a change to the number of arrivals does
+ * not shift the sequence of death draws.
+ */
+public final class RandomStreams
+{
+    /**
+     * Stream used to determine whether new patients arrive.
+     */
+    private final RandomSource m_arrivals;
+
+    /**
+     * Stream used to draw the age and set of conditions of new patients.
+     */
+    private final RandomSource m_admissions;
+
+    /**
+     * Stream used to draw the initial severity of new conditions.
+     */
+    private final RandomSource m_severities;
+
+    /**
+     * Stream used to determine patient deaths.
+     */
+    private final RandomSource m_deaths;
+
+    /**
+     * Creates the random streams of a run from a single seed.
+     *
+     * @param seed the seed of the run
+     */
+    public RandomStreams(long seed)
+    {
+        this(new SplitMixRandomSource(seed));
+    }
+
+    /**
+     * Creates the random streams of a run by splitting the specified random source.
+     *
+     * @param source the source the streams are split from
+     */
+    public RandomStreams(RandomSource source)
+    {
+        this(source.split(), source.split(), source.split(), source.split());
+    }
+
+    /**
+     * Creates the random streams of a run from the state of each stream, in the order returned by
+     * {@link RandomStreams#getSources()}.
+     */
+    RandomStreams(
+        RandomSource arrivals,
+        RandomSource admissions,
+        RandomSource severities,
+        RandomSource deaths
+    )
+    {
+        m_arrivals = arrivals;
+        m_admissions = admissions;
+        m_severities = severities;
+        m_deaths = deaths;
+    }
+
+    /**
+     * {@link RandomStreams#m_arrivals}
+     */
+    public RandomSource arrivals()
+    {
+        return m_arrivals;
+    }
+
+    /**
+     * {@link RandomStreams#m_admissions}
+     */
+    public RandomSource admissions()
+    {
+        return m_admissions;
+    }
+
+    /**
+     * {@link RandomStreams#m_severities}
+     */
+    public RandomSource severities()
+    {
+        return m_severities;
+    }
+
+    /**
+     * {@link RandomStreams#m_deaths}
+     */
+    public RandomSource deaths()
+    {
+        return m_deaths;
+    }
+
+    /**
+     * Returns the arrival, admission, severity and death streams, e.g. so that their state can be
+     * saved in a {@link Checkpoint}.
+     */
+    RandomSource[] getSources()
+    {
+        return new RandomSource[] { m_arrivals, m_admissions, m_severities, m_deaths };
+    }
+
+    /**
+     * Returns a copy of the streams that will produce the same sequences of values.
+     */
+    public RandomStreams copy()
+    {
+        return new RandomStreams(m_arrivals.copy(), m_admissions.copy(), m_severities.copy(), m_deaths.copy());
+    }
+}
@@ -0,0 +1,214 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * Summary outcome of one or more simulation replications. While a replication is running, the
+ * result is registered as a listener to record admissions, deaths and the census of every cycle;
+ * results of independent replications are then combined with {@link #merge(ReplicationResult)}.
+ */
+public class ReplicationResult implements SimulationListener
+{
+    /**
+     * The number of replications combined in this result.
+     */
+    private int m_replications;
+
+    /**
+     * The total number of patients admitted.
+     */
+    private long m_admissions;
+
+    /**
+     * The total number of patients that died.
+     */
+    private long m_deaths;
+
+    /**
+     * The total number of patients still in the hospital at the end of each replication.
+     */
+    private long m_survivors;
+
+    /**
+     * The total number of patients in the hospital at the end of each cycle.
+     */
+    private final long[] m_censusByCycle;
+
+    /**
+     * The total number of deaths that occurred during each cycle.
+     */
+    private final long[] m_deathsByCycle;
+
+    /**
+     * Statistics of the mortality rate of the individual replications.
+     */
+    private RunningStatistics m_mortality = new RunningStatistics();
+
+    /**
+     * Creates an empty result.
+     *
+     * @param totalCycles the number of cycles run in each replication
+     */
+    public ReplicationResult(int totalCycles)
+    {
+        m_censusByCycle = new long[totalCycles];
+        m_deathsByCycle = new long[totalCycles];
+    }
+
+    @Override
+    public void patientAdmitted(SimulationContext context, Patient patient)
+    {
+        m_admissions++;
+    }
+
+    @Override
+    public void runResumed(SimulationContext context)
+    {
+        // Count the admissions and deaths before the checkpoint or fork, so the result covers the whole run
+        m_admissions = context.getPatientCount();
+        m_deaths = context.getDeceasedPatients().size();
+    }
+
+    @Override
+    public void cycleCompleted(SimulationContext context)
+    {
+        int cycle = context.getCycle();
+        if (cycle >= m_censusByCycle.length)
+        {
+            return;
+        }
+
+        int deaths = context.getDeceasedPatients().size();
+        m_deathsByCycle[cycle] = deaths - m_deaths;
+        m_deaths = deaths;
+        m_censusByCycle[cycle] = context.getCurrentPatients().size();
+    }
+
+    /**
+     * Completes the result of a single replication once its run has finished.
+     *
+     * @param context the context of the finished run
+     */
+    public void complete(SimulationContext context)
+    {
+        m_replications = 1;
+        m_survivors = context.getCurrentPatients().size();
+
+        m_mortality = new RunningStatistics();
+        m_mortality.add(getMortality());
+    }
+
+    /**
+     * Combines this result with the result of other replications.
+     *
+     * @param other the result to combine with this result
+     * @return a new result containing both sets of replications
+     */
+    public ReplicationResult merge(ReplicationResult other)
+    {
+        if (other.m_censusByCycle.length != m_censusByCycle.length)
+        {
+            throw new IllegalArgumentException("Replications must run the same number of cycles.");
+        }
+
+        ReplicationResult merged = new ReplicationResult(m_censusByCycle.length);
+        merged.m_replications = m_replications + other.m_replications;
+        merged.m_admissions = m_admissions + other.m_admissions;
+        merged.m_deaths = m_deaths + other.m_deaths;
+        merged.m_survivors = m_survivors + other.m_survivors;
+        merged.m_mortality = m_mortality.merge(other.m_mortality);
+        for (int cycle = 0; cycle < m_censusByCycle.length; cycle++)
+        {
+            merged.m_censusByCycle[cycle] = m_censusByCycle[cycle] + other.m_censusByCycle[cycle];
+            merged.m_deathsByCycle[cycle] = m_deathsByCycle[cycle] + other.m_deathsByCycle[cycle];
+        }
+
+        return merged;
+    }
+
+    /**
+     * {@link ReplicationResult#m_replications}
+     */
+    public int getReplications()
+    {
+        return m_replications;
+    }
+
+    /**
+     * {@link ReplicationResult#m_admissions}
+     */
+    public long getAdmissions()
+    {
+        return m_admissions;
+    }
+
+    /**
+     * {@link ReplicationResult#m_deaths}
+     */
+    public long getDeaths()
+    {
+        return m_deaths;
+    }
+
+    /**
+     * {@link ReplicationResult#m_survivors}
+     */
+    public long getSurvivors()
+    {
+        return m_survivors;
+    }
+
+    /**
+     * Returns the number of cycles run in each replication.
+     */
+    public int getTotalCycles()
+    {
+        return m_censusByCycle.length;
+    }
+
+    /**
+     * Returns the mean number of patients in the hospital at the end of the specified cycle.
+     */
+    public double getMeanCensus(int cycle)
+    {
+        return m_replications == 0 ? 0 : (double) m_censusByCycle[cycle] / m_replications;
+    }
+
+    /**
+     * Returns the mean number of deaths during the specified cycle.
+     */
+    public double getMeanDeaths(int cycle)
+    {
+        return m_replications == 0 ? 0 : (double) m_deathsByCycle[cycle] / m_replications;
+    }
+
+    /**
+     * Returns the fraction of all admitted patients that died.
+     */
+    public double getMortality()
+    {
+        return m_admissions == 0 ? 0 : (double) m_deaths / m_admissions;
+    }
+
+    /**
+     * Returns the mean of the mortality rate of the individual replications.
+     */
+    public double getMeanMortality()
+    {
+        return m_mortality.getMean();
+    }
+
+    /**
+     * Returns the sample standard deviation of the mortality rate of the individual replications.
+     */
+    public double getMortalityStandardDeviation()
+    {
+        return m_mortality.getStandardDeviation();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Replications=" + m_replications + ", admissions=" + m_admissions + ", deaths=" + m_deaths +
+            ", survivors=" + m_survivors + ", mortality=" + getMeanMortality() +
+            " (sd " + getMortalityStandardDeviation() + ")";
+    }
+}
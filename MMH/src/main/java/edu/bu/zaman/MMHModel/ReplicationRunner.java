@@ -0,0 +1,169 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Runs independent Monte Carlo replications of a scenario in parallel across all available cores.
+ * Each replication runs in its own {@link SimulationContext}; the results of all replications are
+ * merged into a single {@link ReplicationResult}.
+ *
+ * Replications are run as a parallel stream, so when the runner is invoked from within a
+ * {@link java.util.concurrent.ForkJoinPool} task the replications are scheduled on that pool.
+ */
+public class ReplicationRunner
+{
+    /**
+     * The scenario being replicated.
+     */
+    private final Scenario m_scenario;
+
+    /**
+     * Whether replications skip the cycles in which the hospital is empty and no patient arrives,
+     * see {@link Simulation#setSkipIdleCycles(boolean)}.
+     */
+    private final boolean m_skipIdleCycles;
+
+    /**
+     * Times and counters of the phases of every cycle, shared by all replications.
+     */
+    private final CycleMetrics m_metrics = new CycleMetrics();
+
+    /**
+     * The merged statistics of the replications of the last run, or null if the runner has not
+     * been run.
+     */
+    private CycleStatistics m_statistics;
+
+    /**
+     * Creates a new replication runner that steps through every cycle.
+     *
+     * @param scenario the scenario to replicate
+     */
+    public ReplicationRunner(Scenario scenario)
+    {
+        this(scenario, false);
+    }
+
+    /**
+     * Creates a new replication runner.
+     *
+     * @param scenario        the scenario to replicate
+     * @param skipIdleCycles    whether replications skip the cycles in which the hospital is empty
+     *                          and no patient arrives
+     */
+    public ReplicationRunner(Scenario scenario, boolean skipIdleCycles)
+    {
+        m_scenario = scenario;
+        m_skipIdleCycles = skipIdleCycles;
+    }
+
+    /**
+     * {@link ReplicationRunner#m_metrics}
+     */
+    public CycleMetrics getMetrics()
+    {
+        return m_metrics;
+    }
+
+    /**
+     * {@link ReplicationRunner#m_statistics}
+     */
+    public CycleStatistics getStatistics()
+    {
+        return m_statistics;
+    }
+
+    /**
+     * Runs the replications of the scenario in parallel and merges their results. The random
+     * streams of each replication are split from the scenario's seed in replication order before
+     * any replication starts, so the merged result is identical regardless of the number of threads.
+     * Every replication uses the current model when the run starts, even if the setup file is
+     * reloaded during the run.
+     *
+     * @return the merged result of all replications
+     */
+    public ReplicationResult run()
+    {
+        int replications = m_scenario.getReplications();
+        final Model model = Model.getDefault();
+
+        SplitMixRandomSource source = new SplitMixRandomSource(m_scenario.getSeed());
+        final RandomStreams[] streams = new RandomStreams[replications];
+        final CycleStatistics[] statistics = new CycleStatistics[replications];
+        for (int replication = 0; replication < replications; replication++)
+        {
+            streams[replication] = new RandomStreams(source.split());
+        }
+
+        List<ReplicationResult> results = IntStream.range(0, replications)
+            .parallel()
+            .mapToObj(replication -> runReplication(model, streams[replication], statistics, replication))
+            .collect(Collectors.toList());
+
+        // Merge sequentially in replication order so the merged result does not depend on how
+        // the replications were scheduled
+        ReplicationResult merged = new ReplicationResult(m_scenario.getTotalCycles());
+        for (ReplicationResult result : results)
+        {
+            merged = merged.merge(result);
+        }
+
+        CycleStatistics mergedStatistics = null;
+        for (CycleStatistics replication : statistics)
+        {
+            mergedStatistics = (mergedStatistics == null) ? replication : mergedStatistics.merge(replication);
+        }
+        m_statistics = mergedStatistics;
+
+        return merged;
+    }
+
+    /**
+     * Runs a single replication with the current model.
+     *
+     * @param random the random streams of the replication
+     * @return the result of the replication
+     */
+    public ReplicationResult runReplication(RandomStreams random)
+    {
+        return runReplication(Model.getDefault(), random, new CycleStatistics[1], 0);
+    }
+
+    /**
+     * Runs a single replication, collecting its statistics.
+     *
+     * @param model         the model of the replication
+     * @param random        the random streams of the replication
+     * @param statistics    the statistics of each replication
+     * @param replication   the index at which the statistics of the replication are stored
+     * @return the result of the replication
+     */
+    private ReplicationResult runReplication(Model model, RandomStreams random, CycleStatistics[] statistics,
+        int replication)
+    {
+        SimulationContext context = new SimulationContext(m_scenario.createHospital(), model, random);
+        ReplicationResult result = new ReplicationResult(m_scenario.getTotalCycles());
+        statistics[replication] = new CycleStatistics(context.getHospital(), m_scenario.getTotalCycles());
+
+        try
+        {
+            Simulation simulation = new Simulation(context, m_scenario.getArrivalProcess());
+            simulation.setSkipIdleCycles(m_skipIdleCycles);
+            simulation.setMetrics(m_metrics);
+            simulation.addListener(result);
+            simulation.addListener(statistics[replication]);
+            simulation.run(m_scenario.getTotalCycles());
+        }
+        catch (IOException ioe)
+        {
+            throw new UncheckedIOException(ioe);
+        }
+
+        result.complete(context);
+        return result;
+    }
+}
@@ -0,0 +1,43 @@
+package edu.bu.zaman.MMHModel;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a patient that could not be treated because the resources required by
+ * its treatment plan were not available.
+ */
+@Name("edu.bu.zaman.MMHModel.ResourceDenial")
+@Label("Resource Denial")
+@Category("MMH Model")
+@Description("A patient could not be treated for lack of resources")
+final class ResourceDenialEvent extends Event
+{
+    @Label("Cycle")
+    int cycle;
+
+    @Label("Patient ID")
+    int patientId;
+
+    @Label("Trajectory ID")
+    int trajectoryId;
+
+    @Label("Required Nurses")
+    int requiredNurses;
+
+    @Label("Available Nurses")
+    int availableNurses;
+
+    @Label("Required Doctors")
+    int requiredDoctors;
+
+    @Label("Available Doctors")
+    int availableDoctors;
+
+    @Label("Required Resources")
+    @Description("Bitmask of the required material resources, indexed by resource ordinal")
+    int requiredResources;
+}
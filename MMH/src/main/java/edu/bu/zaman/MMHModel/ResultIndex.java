@@ -0,0 +1,646 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Sidecar index of a columnar result file, see {@link ColumnarResultFormat}, stored next to it with
+ * the {@link ResultIndex#EXTENSION} extension. The index is built with a single scan of the result
+ * file and is then memory-mapped, so that queries only touch the blocks they need.
+ *
+ * The index holds:
+ * <ul>
+ * <li>for every block, the number of survivors, the doctors, nurses and doses used during its cycle,
+ * and where the rows of the block stop being sorted by patient ID</li>
+ * <li>for every patient, sorted by patient ID, the first and last block the patient appears in</li>
+ * <li>for every block, one bitmap of the rows with each condition type, and one of the survivors</li>
+ * </ul>
+ * Patients appear in every cycle from their admission to their death, and the rows of each block
+ * are made up of at most two runs sorted by patient ID, the survivors and the patients that died
+ * during the cycle, so a patient's row in a block is found by binary search.
+ *
+ * The doctors, nurses and doses of a patient in the result file are running totals since admission,
+ * so the usage of a block is the sum of the increase of each patient's totals since the patient's
+ * row in the previous block. The usage of a patient's first block is the patient's totals so far.
+ */
+public class ResultIndex implements Closeable
+{
+    /**
+     * The extension of index files, appended to the name of the result file.
+     */
+    public static final String EXTENSION = ".idx";
+
+    /**
+     * Identifies an index file, "MMHI".
+     */
+    private static final int MAGIC = 0x4D4D4849;
+
+    /**
+     * The version of the index format.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * The size of the header: magic, version, result file size and modification time, and the
+     * number of blocks and patients.
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * The size of each block entry: first run length, survivors, rows, a reserved int, doctors,
+     * nurses, doses and bitmap offset.
+     */
+    private static final int BLOCK_ENTRY_SIZE = 48;
+
+    /**
+     * The number of bitmaps of each block: one per condition type, followed by the survivors.
+     */
+    private static final int BITMAPS = ColumnarResultFormat.CONDITION_TYPES + 1;
+
+    /**
+     * Run length stored for a block whose rows are not made up of two sorted runs.
+     */
+    private static final int UNSORTED = -1;
+
+    /**
+     * The channel of the index file, from which the bitmaps of a block are mapped when needed.
+     */
+    private final FileChannel m_channel;
+
+    /**
+     * The mapped header, block table and patient table of the index file.
+     */
+    private final MappedByteBuffer m_index;
+
+    /**
+     * The number of blocks of the result file.
+     */
+    private final int m_blocks;
+
+    /**
+     * The number of patients in the result file.
+     */
+    private final int m_patients;
+
+    /**
+     * The sorted patient IDs.
+     */
+    private final IntBuffer m_patientIds;
+
+    /**
+     * The first block of each patient, in the order of {@link ResultIndex#m_patientIds}.
+     */
+    private final IntBuffer m_firstBlocks;
+
+    /**
+     * The last block of each patient, in the order of {@link ResultIndex#m_patientIds}.
+     */
+    private final IntBuffer m_lastBlocks;
+
+    private ResultIndex(FileChannel channel) throws IOException
+    {
+        m_channel = channel;
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ColumnarResultFormat.BYTE_ORDER);
+        int blocks = header.getInt(24);
+        int patients = header.getInt(28);
+
+        m_index = channel.map(FileChannel.MapMode.READ_ONLY, 0, tablesSize(blocks, patients));
+        m_index.order(ColumnarResultFormat.BYTE_ORDER);
+        m_blocks = blocks;
+        m_patients = patients;
+
+        int table = HEADER_SIZE + blocks * BLOCK_ENTRY_SIZE;
+        m_patientIds = slice(table, 4 * patients).asIntBuffer();
+        m_firstBlocks = slice(table + 4 * patients, 4 * patients).asIntBuffer();
+        m_lastBlocks = slice(table + 8 * patients, 4 * patients).asIntBuffer();
+    }
+
+    /**
+     * Opens the index of a result file, building it first if it does not exist or is out of date.
+     *
+     * @param reader    the reader of the result file
+     * @param filepath  the path of the result file
+     * @return the index
+     * @throws IOException if the index cannot be built or read
+     */
+    public static ResultIndex open(ColumnarResultReader reader, String filepath) throws IOException
+    {
+        Path source = Paths.get(filepath);
+        Path path = Paths.get(filepath + EXTENSION);
+
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        if (!isCurrent(path, size, modified))
+        {
+            build(reader, path, size, modified);
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try
+        {
+            return new ResultIndex(channel);
+        }
+        catch (IOException ioe)
+        {
+            channel.close();
+            throw ioe;
+        }
+    }
+
+    private static boolean isCurrent(Path path, long size, long modified) throws IOException
+    {
+        if (!Files.exists(path) || Files.size(path) < HEADER_SIZE)
+        {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ColumnarResultFormat.BYTE_ORDER);
+            while (header.hasRemaining() && channel.read(header) >= 0)
+            {
+            }
+            header.flip();
+
+            return header.remaining() == HEADER_SIZE && header.getInt() == MAGIC && header.getInt() == VERSION &&
+                header.getLong() == size && header.getLong() == modified;
+        }
+    }
+
+    /**
+     * Builds the index with a single scan of the result file. The index is written to a temporary
+     * file that replaces any existing index once it is complete.
+     */
+    private static void build(ColumnarResultReader reader, Path path, long size, long modified) throws IOException
+    {
+        int blocks = reader.getBlockCount();
+
+        // Find the block range of every patient, in order of first appearance, and the resources
+        // used during each block from the increase of every patient's running totals
+        int patients = 0;
+        int[] ids = new int[1024];
+        int[] firstBlocks = new int[1024];
+        int[] lastBlocks = new int[1024];
+        int[] totalDoctors = new int[1024];
+        int[] totalNurses = new int[1024];
+        double[] totalDoses = new double[1024];
+        long[] blockDoctors = new long[blocks];
+        long[] blockNurses = new long[blocks];
+        double[] blockDoses = new double[blocks];
+        IdMap positions = new IdMap();
+
+        long bitmapSize = 0;
+        for (int block = 0; block < blocks; block++)
+        {
+            IntBuffer blockIds = reader.getPatientIds(block);
+            IntBuffer doctors = reader.getDoctors(block);
+            IntBuffer nurses = reader.getNurses(block);
+            DoubleBuffer doses = reader.getDoses(block);
+            for (int row = 0; row < blockIds.limit(); row++)
+            {
+                int id = blockIds.get(row);
+                int position = positions.get(id);
+                if (position < 0)
+                {
+                    if (patients == ids.length)
+                    {
+                        ids = Arrays.copyOf(ids, patients * 2);
+                        firstBlocks = Arrays.copyOf(firstBlocks, patients * 2);
+                        lastBlocks = Arrays.copyOf(lastBlocks, patients * 2);
+                        totalDoctors = Arrays.copyOf(totalDoctors, patients * 2);
+                        totalNurses = Arrays.copyOf(totalNurses, patients * 2);
+                        totalDoses = Arrays.copyOf(totalDoses, patients * 2);
+                    }
+                    position = patients++;
+                    positions.put(id, position);
+                    ids[position] = id;
+                    firstBlocks[position] = block;
+                }
+                lastBlocks[position] = block;
+
+                blockDoctors[block] += doctors.get(row) - totalDoctors[position];
+                blockNurses[block] += nurses.get(row) - totalNurses[position];
+                blockDoses[block] += doses.get(row) - totalDoses[position];
+                totalDoctors[position] = doctors.get(row);
+                totalNurses[position] = nurses.get(row);
+                totalDoses[position] = doses.get(row);
+            }
+            bitmapSize += 8L * BITMAPS * words(reader.getRowCount(block));
+        }
+
+        // Sort the patients by ID
+        long[] order = new long[patients];
+        for (int position = 0; position < patients; position++)
+        {
+            order[position] = ((long) ids[position] << 32) | position;
+        }
+        Arrays.sort(order);
+
+        int bitmapsOffset = tablesSize(blocks, patients);
+        long indexSize = bitmapsOffset + bitmapSize;
+
+        Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try
+        {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE))
+            {
+                // The header and tables are written through a buffer, and the bitmaps one block at a time
+                ByteBuffer tables = ByteBuffer.allocate(bitmapsOffset).order(ColumnarResultFormat.BYTE_ORDER);
+                tables.putInt(MAGIC);
+                tables.putInt(VERSION);
+                tables.putLong(size);
+                tables.putLong(modified);
+                tables.putInt(blocks);
+                tables.putInt(patients);
+
+                long bitmapOffset = bitmapsOffset;
+                for (int block = 0; block < blocks; block++)
+                {
+                    int rows = reader.getRowCount(block);
+                    int words = words(rows);
+                    long[] bitmaps = new long[BITMAPS * words];
+
+                    for (Condition.Type type : Condition.Type.values())
+                    {
+                        DoubleBuffer severities = reader.getProbabilityOfMortality(block, type);
+                        int base = type.ordinal() * words;
+                        for (int row = 0; row < rows; row++)
+                        {
+                            if (!Double.isNaN(severities.get(row)))
+                            {
+                                bitmaps[base + (row >>> 6)] |= 1L << row;
+                            }
+                        }
+                    }
+
+                    ByteBuffer outcomes = reader.getOutcomes(block);
+                    int survivors = 0;
+                    int base = ColumnarResultFormat.CONDITION_TYPES * words;
+                    for (int row = 0; row < rows; row++)
+                    {
+                        if (outcomes.get(row) == ColumnarResultFormat.SURVIVED)
+                        {
+                            bitmaps[base + (row >>> 6)] |= 1L << row;
+                            survivors++;
+                        }
+                    }
+
+                    tables.putInt(firstRun(reader.getPatientIds(block)));
+                    tables.putInt(survivors);
+                    tables.putInt(rows);
+                    tables.putInt(0);
+                    tables.putLong(blockDoctors[block]);
+                    tables.putLong(blockNurses[block]);
+                    tables.putDouble(blockDoses[block]);
+                    tables.putLong(bitmapOffset);
+
+                    ByteBuffer bytes = ByteBuffer.allocate(8 * bitmaps.length).order(ColumnarResultFormat.BYTE_ORDER);
+                    bytes.asLongBuffer().put(bitmaps);
+                    bitmapOffset += writeFully(channel, bytes, bitmapOffset);
+                }
+
+                for (long entry : order)
+                {
+                    tables.putInt(ids[(int) entry]);
+                }
+                for (long entry : order)
+                {
+                    tables.putInt(firstBlocks[(int) entry]);
+                }
+                for (long entry : order)
+                {
+                    tables.putInt(lastBlocks[(int) entry]);
+                }
+
+                tables.clear();
+                writeFully(channel, tables, 0);
+                channel.truncate(indexSize);
+            }
+
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Returns the number of blocks of the result file.
+     */
+    public int getBlockCount()
+    {
+        return m_blocks;
+    }
+
+    /**
+     * Returns the number of distinct patients in the result file.
+     */
+    public int getPatientCount()
+    {
+        return m_patients;
+    }
+
+    /**
+     * Returns the number of patients that survived each block.
+     */
+    public int getSurvivors(int block)
+    {
+        return m_index.getInt(blockEntry(block) + 4);
+    }
+
+    /**
+     * Returns the number of doctors used by the patients of a block during its cycle.
+     */
+    public long getDoctors(int block)
+    {
+        return m_index.getLong(blockEntry(block) + 16);
+    }
+
+    /**
+     * Returns the number of nurses used by the patients of a block during its cycle.
+     */
+    public long getNurses(int block)
+    {
+        return m_index.getLong(blockEntry(block) + 24);
+    }
+
+    /**
+     * Returns the doses used by the patients of a block during its cycle.
+     */
+    public double getDoses(int block)
+    {
+        return m_index.getDouble(blockEntry(block) + 32);
+    }
+
+    /**
+     * Returns the first and last block a patient appears in.
+     *
+     * @param patientId the patient ID
+     * @return the first and last block, or null if the patient does not appear in the result file
+     */
+    public int[] getBlockRange(int patientId)
+    {
+        int low = 0;
+        int high = m_patients - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int id = m_patientIds.get(middle);
+            if (id < patientId)
+            {
+                low = middle + 1;
+            }
+            else if (id > patientId)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return new int[] { m_firstBlocks.get(middle), m_lastBlocks.get(middle) };
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the row of a patient within a block.
+     *
+     * @param block     the block
+     * @param ids       the patient ID column of the block
+     * @param patientId the patient ID
+     * @return the row, or -1 if the patient does not appear in the block
+     */
+    public int findRow(int block, IntBuffer ids, int patientId)
+    {
+        int firstRun = m_index.getInt(blockEntry(block));
+        if (firstRun == UNSORTED)
+        {
+            for (int row = 0; row < ids.limit(); row++)
+            {
+                if (ids.get(row) == patientId)
+                {
+                    return row;
+                }
+            }
+
+            return -1;
+        }
+
+        int row = search(ids, 0, firstRun, patientId);
+        return (row >= 0) ? row : search(ids, firstRun, ids.limit(), patientId);
+    }
+
+    /**
+     * Returns the bitmap of the rows of a block that have a condition, one bit per row.
+     */
+    public LongBuffer getConditionBitmap(int block, Condition.Type type) throws IOException
+    {
+        return bitmap(block, type.ordinal());
+    }
+
+    /**
+     * Returns the bitmap of the rows of a block that survived the cycle, one bit per row.
+     */
+    public LongBuffer getSurvivorBitmap(int block) throws IOException
+    {
+        return bitmap(block, ColumnarResultFormat.CONDITION_TYPES);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        m_channel.close();
+    }
+
+    private LongBuffer bitmap(int block, int bitmap) throws IOException
+    {
+        int entry = blockEntry(block);
+        int words = words(m_index.getInt(entry + 8));
+        long offset = m_index.getLong(entry + 40) + 8L * bitmap * words;
+        ByteBuffer bytes = m_channel.map(FileChannel.MapMode.READ_ONLY, offset, 8L * words);
+        return bytes.order(ColumnarResultFormat.BYTE_ORDER).asLongBuffer();
+    }
+
+    private int blockEntry(int block)
+    {
+        if (block < 0 || block >= m_blocks)
+        {
+            throw new IndexOutOfBoundsException("Block " + block + " of " + m_blocks);
+        }
+
+        return HEADER_SIZE + block * BLOCK_ENTRY_SIZE;
+    }
+
+    private ByteBuffer slice(int offset, int length)
+    {
+        ByteBuffer slice = m_index.duplicate();
+        slice.position(offset);
+        slice.limit(offset + length);
+        return slice.slice().order(ColumnarResultFormat.BYTE_ORDER);
+    }
+
+    /**
+     * Returns the size of the header, block table and patient table, which is the offset of the
+     * bitmaps.
+     */
+    private static int tablesSize(int blocks, int patients)
+    {
+        long size = align(HEADER_SIZE + (long) blocks * BLOCK_ENTRY_SIZE + 12L * patients);
+        if (size > Integer.MAX_VALUE)
+        {
+            throw new IllegalStateException("Index of " + patients + " patients exceeds the maximum table size.");
+        }
+
+        return (int) size;
+    }
+
+    /**
+     * Returns the length of the first run of rows sorted by patient ID, or
+     * {@link ResultIndex#UNSORTED} if the rest of the rows are not sorted either.
+     */
+    private static int firstRun(IntBuffer ids)
+    {
+        int rows = ids.limit();
+        int run = 1;
+        while (run < rows && ids.get(run - 1) < ids.get(run))
+        {
+            run++;
+        }
+
+        for (int row = run + 1; row < rows; row++)
+        {
+            if (ids.get(row - 1) >= ids.get(row))
+            {
+                return UNSORTED;
+            }
+        }
+
+        return Math.min(run, rows);
+    }
+
+    private static int search(IntBuffer ids, int from, int to, int patientId)
+    {
+        int low = from;
+        int high = to - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int id = ids.get(middle);
+            if (id < patientId)
+            {
+                low = middle + 1;
+            }
+            else if (id > patientId)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int words(int rows)
+    {
+        return (rows + 63) >>> 6;
+    }
+
+    private static long align(long size)
+    {
+        return (size + 7) & ~7L;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        int written = 0;
+        while (buffer.hasRemaining())
+        {
+            written += channel.write(buffer, position + written);
+        }
+
+        return written;
+    }
+
+    /**
+     * Open addressing map from patient ID to position, used while building the index.
+     */
+    private static class IdMap
+    {
+        private int[] m_keys = new int[1 << 12];
+
+        private int[] m_values = new int[1 << 12];
+
+        private boolean[] m_used = new boolean[1 << 12];
+
+        private int m_size;
+
+        int get(int key)
+        {
+            int mask = m_keys.length - 1;
+            for (int slot = hash(key) & mask; m_used[slot]; slot = (slot + 1) & mask)
+            {
+                if (m_keys[slot] == key)
+                {
+                    return m_values[slot];
+                }
+            }
+
+            return -1;
+        }
+
+        void put(int key, int value)
+        {
+            if (2 * (m_size + 1) > m_keys.length)
+            {
+                int[] keys = m_keys;
+                int[] values = m_values;
+                boolean[] used = m_used;
+                m_keys = new int[keys.length * 2];
+                m_values = new int[keys.length * 2];
+                m_used = new boolean[keys.length * 2];
+                m_size = 0;
+                for (int slot = 0; slot < keys.length; slot++)
+                {
+                    if (used[slot])
+                    {
+                        put(keys[slot], values[slot]);
+                    }
+                }
+            }
+
+            int mask = m_keys.length - 1;
+            int slot = hash(key) & mask;
+            while (m_used[slot])
+            {
+                slot = (slot + 1) & mask;
+            }
+            m_keys[slot] = key;
+            m_values[slot] = value;
+            m_used[slot] = true;
+            m_size++;
+        }
+
+        private static int hash(int key)
+        {
+            int hash = key * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Answers queries over a columnar result file using its {@link ResultIndex}, so that only the
+ * blocks, and within them the rows, that a query needs are read from the file.
+ */
+public class ResultQuery implements Closeable
+{
+    /**
+     * The reader of the result file.
+     */
+    private final ColumnarResultReader m_reader;
+
+    /**
+     * The index of the result file.
+     */
+    private final ResultIndex m_index;
+
+    /**
+     * Opens a result file and its index, building the index if it does not exist or is out of date.
+     *
+     * @param filepath the path of the result file
+     * @throws IOException if the result file or its index cannot be read
+     */
+    public ResultQuery(String filepath) throws IOException
+    {
+        m_reader = new ColumnarResultReader(filepath);
+        try
+        {
+            m_index = ResultIndex.open(m_reader, filepath);
+        }
+        catch (IOException ioe)
+        {
+            m_reader.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * {@link ResultQuery#m_reader}
+     */
+    public ColumnarResultReader getReader()
+    {
+        return m_reader;
+    }
+
+    /**
+     * {@link ResultQuery#m_index}
+     */
+    public ResultIndex getIndex()
+    {
+        return m_index;
+    }
+
+    /**
+     * Returns the block of a cycle.
+     *
+     * @param cycle the cycle
+     * @return the block, or -1 if the file has no block for the cycle
+     */
+    public int findBlock(int cycle)
+    {
+        // Blocks are written in cycle order
+        int low = 0;
+        int high = m_reader.getBlockCount() - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int blockCycle = m_reader.getCycle(middle);
+            if (blockCycle < cycle)
+            {
+                low = middle + 1;
+            }
+            else if (blockCycle > cycle)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the record of a patient in every cycle the patient appears in.
+     *
+     * @param patientId the patient ID
+     * @return the records in cycle order, empty if the patient does not appear in the file
+     * @throws IOException if the file cannot be read
+     */
+    public List<PatientRecord> getPatientHistory(int patientId) throws IOException
+    {
+        List<PatientRecord> history = new ArrayList<>();
+        int[] range = m_index.getBlockRange(patientId);
+        if (range == null)
+        {
+            return history;
+        }
+
+        for (int block = range[0]; block <= range[1]; block++)
+        {
+            int row = m_index.findRow(block, m_reader.getPatientIds(block), patientId);
+            if (row < 0)
+            {
+                continue;
+            }
+
+            double[] probabilities = new double[ColumnarResultFormat.CONDITION_TYPES];
+            for (Condition.Type type : Condition.Type.values())
+            {
+                probabilities[type.ordinal()] = m_reader.getProbabilityOfMortality(block, type).get(row);
+            }
+
+            history.add(new PatientRecord(m_reader.getCycle(block), patientId, probabilities,
+                m_reader.getDoses(block).get(row), m_reader.getDoctors(block).get(row),
+                m_reader.getNurses(block).get(row),
+                m_reader.getOutcomes(block).get(row) == ColumnarResultFormat.SURVIVED));
+        }
+
+        return history;
+    }
+
+    /**
+     * Returns the IDs of the patients that have a condition and survived a cycle.
+     *
+     * @param cycle the cycle
+     * @param type  the condition type
+     * @return the patient IDs, empty if the file has no block for the cycle
+     * @throws IOException if the file cannot be read
+     */
+    public int[] getSurvivorsWithCondition(int cycle, Condition.Type type) throws IOException
+    {
+        int block = findBlock(cycle);
+        if (block < 0)
+        {
+            return new int[0];
+        }
+
+        LongBuffer conditions = m_index.getConditionBitmap(block, type);
+        LongBuffer survivors = m_index.getSurvivorBitmap(block);
+        IntBuffer ids = m_reader.getPatientIds(block);
+
+        int[] matches = new int[m_index.getSurvivors(block)];
+        int count = 0;
+        for (int word = 0; word < conditions.limit(); word++)
+        {
+            long bits = conditions.get(word) & survivors.get(word);
+            while (bits != 0)
+            {
+                matches[count++] = ids.get((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+
+        return Arrays.copyOf(matches, count);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            m_index.close();
+        }
+        finally
+        {
+            m_reader.close();
+        }
+    }
+
+    /**
+     * The record of a patient in a single cycle.
+     */
+    public static class PatientRecord
+    {
+        /**
+         * The cycle of the record.
+         */
+        private final int m_cycle;
+
+        /**
+         * The patient ID.
+         */
+        private final int m_patientId;
+
+        /**
+         * The probability of mortality of each condition type, NaN if the patient does not have the
+         * condition.
+         */
+        private final double[] m_probabilities;
+
+        /**
+         * The doses used by the patient since admission.
+         */
+        private final double m_doses;
+
+        /**
+         * The doctors used by the patient since admission.
+         */
+        private final int m_doctors;
+
+        /**
+         * The nurses used by the patient since admission.
+         */
+        private final int m_nurses;
+
+        /**
+         * Whether the patient survived the cycle.
+         */
+        private final boolean m_survived;
+
+        PatientRecord(int cycle, int patientId, double[] probabilities, double doses, int doctors, int nurses,
+            boolean survived)
+        {
+            m_cycle = cycle;
+            m_patientId = patientId;
+            m_probabilities = probabilities;
+            m_doses = doses;
+            m_doctors = doctors;
+            m_nurses = nurses;
+            m_survived = survived;
+        }
+
+        /**
+         * {@link PatientRecord#m_cycle}
+         */
+        public int getCycle()
+        {
+            return m_cycle;
+        }
+
+        /**
+         * {@link PatientRecord#m_patientId}
+         */
+        public int getPatientId()
+        {
+            return m_patientId;
+        }
+
+        /**
+         * Returns the probability of mortality of a condition type, NaN if the patient does not have
+         * the condition.
+         */
+        public double getProbabilityOfMortality(Condition.Type type)
+        {
+            return m_probabilities[type.ordinal()];
+        }
+
+        /**
+         * {@link PatientRecord#m_doses}
+         */
+        public double getDoses()
+        {
+            return m_doses;
+        }
+
+        /**
+         * {@link PatientRecord#m_doctors}
+         */
+        public int getDoctors()
+        {
+            return m_doctors;
+        }
+
+        /**
+         * {@link PatientRecord#m_nurses}
+         */
+        public int getNurses()
+        {
+            return m_nurses;
+        }
+
+        /**
+         * {@link PatientRecord#m_survived}
+         */
+        public boolean isSurvived()
+        {
+            return m_survived;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder builder = new StringBuilder();
+            builder.append(m_cycle);
+            for (Condition.Type type : Condition.Type.values())
+            {
+                double probability = m_probabilities[type.ordinal()];
+                if (!Double.isNaN(probability))
+                {
+                    builder.append(' ').append(type).append('=').append(probability);
+                }
+            }
+            builder.append(" doses=").append(m_doses);
+            builder.append(" doctors=").append(m_doctors);
+            builder.append(" nurses=").append(m_nurses);
+            builder.append(m_survived ? " Survived" : " Died");
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Runs a query over a result file. The index is built on first use and reused afterwards.
+     * <ul>
+     * <li>{@code patient <id>} prints the record of a patient in every cycle</li>
+     * <li>{@code alive <cycle> <condition>} prints the patients with a condition that survived a
+     * cycle</li>
+     * <li>{@code staff} prints the doctors, nurses and doses used during every cycle</li>
+     * </ul>
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2 || (args[1].equals("patient") && args.length < 3) ||
+                (args[1].equals("alive") && args.length < 4))
+        {
+            System.out.println("Usage: ResultQuery <results file> patient <id> | alive <cycle> <condition> | staff");
+            return;
+        }
+
+        try (ResultQuery query = new ResultQuery(args[0]))
+        {
+            switch (args[1])
+            {
+                case "patient":
+                    for (PatientRecord record : query.getPatientHistory(Integer.parseInt(args[2])))
+                    {
+                        System.out.println(record);
+                    }
+                    break;
+
+                case "alive":
+                    Condition.Type type;
+                    try
+                    {
+                        type = Condition.Type.valueOf(args[3].toUpperCase());
+                    }
+                    catch (IllegalArgumentException iae)
+                    {
+                        System.out.println("Error: unknown condition " + args[3]);
+                        return;
+                    }
+                    for (int patientId : query.getSurvivorsWithCondition(Integer.parseInt(args[2]), type))
+                    {
+                        System.out.println(patientId);
+                    }
+                    break;
+
+                case "staff":
+                    ResultIndex index = query.getIndex();
+                    ColumnarResultReader reader = query.getReader();
+                    System.out.println("cycle,doctors,nurses,doses");
+                    for (int block = 0; block < index.getBlockCount(); block++)
+                    {
+                        System.out.println(reader.getCycle(block) + "," + index.getDoctors(block) + "," +
+                            index.getNurses(block) + "," + index.getDoses(block));
+                    }
+                    break;
+
+                default:
+                    System.out.println("Error: unknown query " + args[1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * Running count, mean and variance of a series of values, updated in constant time and space with
+ * Welford's algorithm. Statistics of separate series are combined with
+ * {@link RunningStatistics#merge(RunningStatistics)}, which gives the same result as adding all of
+ * the values to a single instance.
+ */
+public class RunningStatistics
+{
+    /**
+     * The number of values added.
+     */
+    private long m_count;
+
+    /**
+     * The mean of the values added.
+     */
+    private double m_mean;
+
+    /**
+     * The sum of the squared differences between each value and the mean.
+     */
+    private double m_sumOfSquares;
+
+    /**
+     * The smallest value added.
+     */
+    private double m_min = Double.POSITIVE_INFINITY;
+
+    /**
+     * The largest value added.
+     */
+    private double m_max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Adds a value to the series.
+     *
+     * @param value the value to add
+     */
+    public void add(double value)
+    {
+        m_count++;
+        double delta = value - m_mean;
+        m_mean += delta / m_count;
+        m_sumOfSquares += delta * (value - m_mean);
+
+        m_min = Math.min(m_min, value);
+        m_max = Math.max(m_max, value);
+    }
+
+    /**
+     * Combines these statistics with those of another series.
+     *
+     * @param other the statistics to combine with these statistics
+     * @return new statistics of both series
+     */
+    public RunningStatistics merge(RunningStatistics other)
+    {
+        RunningStatistics merged = new RunningStatistics();
+        merged.m_count = m_count + other.m_count;
+        if (merged.m_count == 0)
+        {
+            return merged;
+        }
+
+        double delta = other.m_mean - m_mean;
+        merged.m_mean = m_mean + delta * other.m_count / merged.m_count;
+        merged.m_sumOfSquares = m_sumOfSquares + other.m_sumOfSquares +
+            delta * delta * ((double) m_count * other.m_count / merged.m_count);
+        merged.m_min = Math.min(m_min, other.m_min);
+        merged.m_max = Math.max(m_max, other.m_max);
+
+        return merged;
+    }
+
+    /**
+     * {@link RunningStatistics#m_count}
+     */
+    public long getCount()
+    {
+        return m_count;
+    }
+
+    /**
+     * Returns the mean of the values added, or 0 if no values were added.
+     */
+    public double getMean()
+    {
+        return m_mean;
+    }
+
+    /**
+     * Returns the sample variance of the values added, or 0 if fewer than two values were added.
+     */
+    public double getVariance()
+    {
+        return (m_count < 2) ? 0 : m_sumOfSquares / (m_count - 1);
+    }
+
+    /**
+     * Returns the sample standard deviation of the values added.
+     */
+    public double getStandardDeviation()
+    {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the smallest value added, or NaN if no values were added.
+     */
+    public double getMin()
+    {
+        return (m_count == 0) ? Double.NaN : m_min;
+    }
+
+    /**
+     * Returns the largest value added, or NaN if no values were added.
+     */
+    public double getMax()
+    {
+        return (m_count == 0) ? Double.NaN : m_max;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "mean=" + getMean() + " (sd " + getStandardDeviation() + ", min " + getMin() + ", max " + getMax() + ")";
+    }
+}
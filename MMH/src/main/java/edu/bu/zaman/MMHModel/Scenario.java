@@ -0,0 +1,251 @@
+package edu.bu.zaman.MMHModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable set of parameters describing a simulation scenario: the arrival process, the length of
+ * the run, the hospital staffing and initial inventory, and the number of replications to run.
+ */
+public final class Scenario
+{
+    /**
+     * A name used to identify the scenario in the results.
+     */
+    private final String m_name;
+
+    /**
+     * The probability of acquiring a new patient in each cycle, or NaN if the scenario uses an
+     * arrival process other than {@link BernoulliArrivalProcess}.
+     */
+    private final double m_probabilityNewPatient;
+
+    /**
+     * Determines how many new patients arrive in each cycle.
+     */
+    private final ArrivalProcess m_arrivalProcess;
+
+    /**
+     * Number of cycles to run each replication, 1 cycle is 15 minutes.
+     */
+    private final int m_totalCycles;
+
+    /**
+     * The number of nurses available at the start of each replication.
+     */
+    private final int m_nurses;
+
+    /**
+     * The number of doctors available at the start of each replication.
+     */
+    private final int m_doctors;
+
+    /**
+     * The initial amount (in mg) of each disposable resource.
+     */
+    private final Map<Hospital.MaterialResource, Double> m_stock;
+
+    /**
+     * The number of independent replications to run.
+     */
+    private final int m_replications;
+
+    /**
+     * The seed from which the random streams of every replication are derived.
+     */
+    private final long m_seed;
+
+    /**
+     * Creates a new scenario in which at most one patient arrives per cycle.
+     *
+     * @param name                  a name used to identify the scenario
+     * @param probabilityNewPatient the probability of acquiring a new patient in each cycle
+     * @param totalCycles           the number of cycles to run each replication
+     * @param nurses                the number of nurses available at the start of each replication
+     * @param doctors               the number of doctors available at the start of each replication
+     * @param stock                 the initial amount (in mg) of each disposable resource
+     * @param replications          the number of replications to run
+     * @param seed                  the seed from which the random streams of every replication are
+     *                              derived
+     */
+    public Scenario(
+        String name,
+        double probabilityNewPatient,
+        int totalCycles,
+        int nurses,
+        int doctors,
+        Map<Hospital.MaterialResource, Double> stock,
+        int replications,
+        long seed
+    )
+    {
+        this(name, new BernoulliArrivalProcess(probabilityNewPatient), totalCycles, nurses, doctors, stock,
+            replications, seed);
+    }
+
+    /**
+     * Creates a new scenario with an arbitrary arrival process.
+     *
+     * @param name              a name used to identify the scenario
+     * @param arrivalProcess    determines how many new patients arrive in each cycle
+     * @param totalCycles       the number of cycles to run each replication
+     * @param nurses            the number of nurses available at the start of each replication
+     * @param doctors           the number of doctors available at the start of each replication
+     * @param stock             the initial amount (in mg) of each disposable resource
+     * @param replications      the number of replications to run
+     * @param seed              the seed from which the random streams of every replication are
+     *                          derived
+     */
+    public Scenario(
+        String name,
+        ArrivalProcess arrivalProcess,
+        int totalCycles,
+        int nurses,
+        int doctors,
+        Map<Hospital.MaterialResource, Double> stock,
+        int replications,
+        long seed
+    )
+    {
+        m_name = name;
+        m_arrivalProcess = arrivalProcess;
+        m_probabilityNewPatient = (arrivalProcess instanceof BernoulliArrivalProcess) ?
+            ((BernoulliArrivalProcess) arrivalProcess).getProbabilityNewPatient() : Double.NaN;
+        m_totalCycles = totalCycles;
+        m_nurses = nurses;
+        m_doctors = doctors;
+        m_stock = Collections.unmodifiableMap(new EnumMap<>(stock));
+        m_replications = replications;
+        m_seed = seed;
+    }
+
+    /**
+     * Creates one scenario for every combination of the specified arrival probabilities and staffing
+     * levels. All scenarios share the same run length, initial inventory, number of replications and
+     * seed, so that their results differ only because of the swept parameters.
+     *
+     * @param probabilitiesNewPatient   the arrival probabilities to sweep
+     * @param nurses                    the numbers of nurses to sweep
+     * @param doctors                   the numbers of doctors to sweep
+     * @param totalCycles               the number of cycles to run each replication
+     * @param stock                     the initial amount (in mg) of each disposable resource
+     * @param replications              the number of replications to run per scenario
+     * @param seed                      the seed shared by all scenarios
+     * @return the list of scenarios
+     */
+    public static List<Scenario> grid(
+        double[] probabilitiesNewPatient,
+        int[] nurses,
+        int[] doctors,
+        int totalCycles,
+        Map<Hospital.MaterialResource, Double> stock,
+        int replications,
+        long seed
+    )
+    {
+        List<Scenario> scenarios = new ArrayList<>();
+        for (double probability : probabilitiesNewPatient)
+        {
+            for (int nurseCount : nurses)
+            {
+                for (int doctorCount : doctors)
+                {
+                    String name = "p=" + probability + ";nurses=" + nurseCount + ";doctors=" + doctorCount;
+                    scenarios.add(new Scenario(name, probability, totalCycles, nurseCount, doctorCount,
+                        stock, replications, seed));
+                }
+            }
+        }
+
+        return scenarios;
+    }
+
+    /**
+     * {@link Scenario#m_name}
+     */
+    public String getName()
+    {
+        return m_name;
+    }
+
+    /**
+     * {@link Scenario#m_probabilityNewPatient}
+     */
+    public double getProbabilityNewPatient()
+    {
+        return m_probabilityNewPatient;
+    }
+
+    /**
+     * {@link Scenario#m_arrivalProcess}
+     */
+    public ArrivalProcess getArrivalProcess()
+    {
+        return m_arrivalProcess;
+    }
+
+    /**
+     * {@link Scenario#m_totalCycles}
+     */
+    public int getTotalCycles()
+    {
+        return m_totalCycles;
+    }
+
+    /**
+     * {@link Scenario#m_nurses}
+     */
+    public int getNurses()
+    {
+        return m_nurses;
+    }
+
+    /**
+     * {@link Scenario#m_doctors}
+     */
+    public int getDoctors()
+    {
+        return m_doctors;
+    }
+
+    /**
+     * {@link Scenario#m_stock}
+     */
+    public Map<Hospital.MaterialResource, Double> getStock()
+    {
+        return m_stock;
+    }
+
+    /**
+     * {@link Scenario#m_replications}
+     */
+    public int getReplications()
+    {
+        return m_replications;
+    }
+
+    /**
+     * {@link Scenario#m_seed}
+     */
+    public long getSeed()
+    {
+        return m_seed;
+    }
+
+    /**
+     * Creates a hospital with the staffing and initial inventory of this scenario.
+     */
+    public Hospital createHospital()
+    {
+        return new Hospital(m_nurses, m_doctors, m_stock);
+    }
+
+    @Override
+    public String toString()
+    {
+        return m_name;
+    }
+}
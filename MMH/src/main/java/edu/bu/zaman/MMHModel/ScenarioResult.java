@@ -0,0 +1,84 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * The aggregated result of all replications of a single scenario.
+ */
+public class ScenarioResult
+{
+    /**
+     * The scenario that was run.
+     */
+    private final Scenario m_scenario;
+
+    /**
+     * The merged result of all replications of the scenario.
+     */
+    private final ReplicationResult m_result;
+
+    /**
+     * The wall clock time taken to run all replications, in milliseconds.
+     */
+    private final long m_elapsedMillis;
+
+    /**
+     * Creates a new scenario result.
+     *
+     * @param scenario      the scenario that was run
+     * @param result        the merged result of all replications of the scenario
+     * @param elapsedMillis the wall clock time taken to run all replications, in milliseconds
+     */
+    public ScenarioResult(Scenario scenario, ReplicationResult result, long elapsedMillis)
+    {
+        m_scenario = scenario;
+        m_result = result;
+        m_elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * {@link ScenarioResult#m_scenario}
+     */
+    public Scenario getScenario()
+    {
+        return m_scenario;
+    }
+
+    /**
+     * {@link ScenarioResult#m_result}
+     */
+    public ReplicationResult getResult()
+    {
+        return m_result;
+    }
+
+    /**
+     * {@link ScenarioResult#m_elapsedMillis}
+     */
+    public long getElapsedMillis()
+    {
+        return m_elapsedMillis;
+    }
+
+    /**
+     * Writes the per-cycle table of the scenario as CSV, containing the mean census and the mean
+     * number of deaths of every cycle across all replications.
+     *
+     * @param writer the writer the table should be written to
+     * @throws IOException if the table cannot be written
+     */
+    public void writeTable(Writer writer) throws IOException
+    {
+        Collector.writeLine(writer, Arrays.asList("Cycle", "MeanCensus", "MeanDeaths"));
+        for (int cycle = 0; cycle < m_result.getTotalCycles(); cycle++)
+        {
+            Collector.writeLine(writer, Arrays.asList(
+                String.valueOf(cycle),
+                String.valueOf(m_result.getMeanCensus(cycle)),
+                String.valueOf(m_result.getMeanDeaths(cycle))
+            ));
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.BufferedReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a list of scenarios in a single JVM on a shared fork-join pool. The setup file is loaded
+ * once and all scenarios and their replications are scheduled on the same pool, so that loading the
+ * model and warming up the JIT compiler are only paid for once per sweep.
+ */
+public class ScenarioSweep
+{
+    /**
+     * The pool on which scenarios and their replications are run.
+     */
+    private final ForkJoinPool m_pool;
+
+    /**
+     * Creates a sweep that uses all available cores.
+     */
+    public ScenarioSweep()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a sweep with the specified level of parallelism.
+     *
+     * @param parallelism the number of worker threads used to run scenarios and replications
+     */
+    public ScenarioSweep(int parallelism)
+    {
+        m_pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Runs all of the replications of every scenario.
+     *
+     * @param scenarios the scenarios to run
+     * @return the result of each scenario, in the same order as the scenarios
+     */
+    public List<ScenarioResult> run(final List<Scenario> scenarios)
+    {
+        try
+        {
+            return m_pool.submit(() -> scenarios.parallelStream()
+                .map(ScenarioSweep::runScenario)
+                .collect(Collectors.toList())
+            ).get();
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Scenario sweep interrupted.", ie);
+        }
+        catch (ExecutionException ee)
+        {
+            throw new IllegalStateException("Scenario sweep failed.", ee.getCause());
+        }
+    }
+
+    /**
+     * Shuts down the pool used by the sweep.
+     */
+    public void shutdown()
+    {
+        m_pool.shutdown();
+    }
+
+    private static ScenarioResult runScenario(Scenario scenario)
+    {
+        long start = System.nanoTime();
+        ReplicationResult result = new ReplicationRunner(scenario).run();
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        return new ScenarioResult(scenario, result, elapsed);
+    }
+
+    /**
+     * Reads a list of scenarios from a CSV file. The first line is a header naming the columns
+     * {@code Name}, {@code ProbabilityNewPatient}, {@code TotalCycles}, {@code Nurses},
+     * {@code Doctors}, {@code Replications} and {@code Seed}; any column named after a
+     * {@link Hospital.MaterialResource} provides its initial stock, which defaults to
+     * {@link Hospital#DEFAULT_STOCK} when the column or value is missing. An optional {@code ArrivalRate} column replaces the arrival
+     * probability with Poisson arrivals at the given mean per cycle, or with a periodic profile when
+     * several rates are separated by semicolons. Values containing commas, such as names, are
+     * enclosed in double quotes, with any double quote within them doubled.
+     *
+     * @param path the path of the scenario file
+     * @return the scenarios in the file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is empty
+     */
+    public static List<Scenario> readScenarios(Path path) throws IOException
+    {
+        List<Scenario> scenarios = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8))
+        {
+            String headerLine = reader.readLine();
+            if (headerLine == null)
+            {
+                throw new IllegalArgumentException("Scenario file is empty");
+            }
+            List<String> header = Arrays.asList(split(headerLine.trim()));
+
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.trim().isEmpty())
+                {
+                    continue;
+                }
+
+                String[] values = split(line.trim());
+                EnumMap<Hospital.MaterialResource, Double> stock = Hospital.defaultStock();
+                for (Hospital.MaterialResource resource : Hospital.MaterialResource.values())
+                {
+                    int column = header.indexOf(resource.name());
+                    if (column >= 0 && column < values.length && !values[column].trim().isEmpty())
+                    {
+                        stock.put(resource, Double.parseDouble(values[column]));
+                    }
+                }
+
+                ArrivalProcess arrivalProcess;
+                int rateColumn = header.indexOf("ArrivalRate");
+                if (rateColumn >= 0 && rateColumn < values.length && !values[rateColumn].trim().isEmpty())
+                {
+                    String[] rateValues = values[rateColumn].trim().split(";");
+                    double[] rates = new double[rateValues.length];
+                    for (int index = 0; index < rates.length; index++)
+                    {
+                        rates[index] = Double.parseDouble(rateValues[index]);
+                    }
+                    arrivalProcess = new PoissonArrivalProcess(rates);
+                }
+                else
+                {
+                    arrivalProcess = new BernoulliArrivalProcess(
+                        Double.parseDouble(values[header.indexOf("ProbabilityNewPatient")]));
+                }
+
+                scenarios.add(new Scenario(
+                    values[header.indexOf("Name")],
+                    arrivalProcess,
+                    Integer.parseInt(values[header.indexOf("TotalCycles")]),
+                    Integer.parseInt(values[header.indexOf("Nurses")]),
+                    Integer.parseInt(values[header.indexOf("Doctors")]),
+                    stock,
+                    Integer.parseInt(values[header.indexOf("Replications")]),
+                    Long.parseLong(values[header.indexOf("Seed")])
+                ));
+            }
+        }
+
+        return scenarios;
+    }
+
+    /**
+     * Splits a line of a CSV file into its values, removing the quotes around quoted values.
+     */
+    static String[] split(String line)
+    {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int index = 0; index < line.length(); index++)
+        {
+            char character = line.charAt(index);
+            if (quoted && character == '"' && index + 1 < line.length() && line.charAt(index + 1) == '"')
+            {
+                value.append('"');
+                index++;
+            }
+            else if (character == '"')
+            {
+                quoted = !quoted;
+            }
+            else if (character == ',' && !quoted)
+            {
+                values.add(value.toString());
+                value.setLength(0);
+            }
+            else
+            {
+                value.append(character);
+            }
+        }
+        values.add(value.toString());
+
+        return values.toArray(new String[0]);
+    }
+
+    /**
+     * Writes a summary table with one row per scenario as CSV. Values containing commas, such as
+     * the names of scenarios, are quoted.
+     *
+     * @param writer    the writer the table should be written to
+     * @param results   the scenario results
+     * @throws IOException if the table cannot be written
+     */
+    public static void writeSummary(Writer writer, List<ScenarioResult> results) throws IOException
+    {
+        List<String> header = new ArrayList<>(Arrays.asList(
+            "Name", "ArrivalProcess", "TotalCycles", "Nurses", "Doctors"));
+        for (Hospital.MaterialResource resource : Hospital.MaterialResource.values())
+        {
+            header.add(resource.name());
+        }
+        header.addAll(Arrays.asList("Replications", "MeanAdmissions", "MeanDeaths", "MeanMortality",
+            "MortalitySD", "ElapsedMillis"));
+        Collector.writeLine(writer, header);
+
+        for (ScenarioResult scenarioResult : results)
+        {
+            Scenario scenario = scenarioResult.getScenario();
+            ReplicationResult result = scenarioResult.getResult();
+
+            List<String> row = new ArrayList<>(Arrays.asList(
+                scenario.getName(),
+                scenario.getArrivalProcess().toString(),
+                String.valueOf(scenario.getTotalCycles()),
+                String.valueOf(scenario.getNurses()),
+                String.valueOf(scenario.getDoctors())
+            ));
+            for (Hospital.MaterialResource resource : Hospital.MaterialResource.values())
+            {
+                Double stock = scenario.getStock().get(resource);
+                row.add(String.valueOf(stock == null ? 0 : stock));
+            }
+            row.addAll(Arrays.asList(
+                String.valueOf(result.getReplications()),
+                String.valueOf((double) result.getAdmissions() / result.getReplications()),
+                String.valueOf((double) result.getDeaths() / result.getReplications()),
+                String.valueOf(result.getMeanMortality()),
+                String.valueOf(result.getMortalityStandardDeviation()),
+                String.valueOf(scenarioResult.getElapsedMillis())
+            ));
+            Collector.writeLine(writer, row);
+        }
+    }
+
+    /**
+     * Runs every scenario in a scenario file and writes a summary table, plus one per-cycle table
+     * per scenario, to the output directory.
+     *
+     * @param args the path of the scenario file and, optionally, the output directory
+     * @throws IOException if the scenario file cannot be read or the results cannot be written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.out.println("Usage: ScenarioSweep <scenarios.csv> [output directory]");
+            return;
+        }
+
+        List<Scenario> scenarios = readScenarios(Paths.get(args[0]));
+        Path outputDirectory = Paths.get(args.length > 1 ? args[1] : System.getProperty("user.dir"));
+        Files.createDirectories(outputDirectory);
+
+        ScenarioSweep sweep = new ScenarioSweep();
+        List<ScenarioResult> results;
+        try
+        {
+            results = sweep.run(scenarios);
+        }
+        finally
+        {
+            sweep.shutdown();
+        }
+
+        try (Writer writer = new FileWriter(outputDirectory.resolve("sweep.csv").toFile()))
+        {
+            writeSummary(writer, results);
+        }
+
+        for (int index = 0; index < results.size(); index++)
+        {
+            String filename = "scenario-" + (index + 1) + ".csv";
+            try (Writer writer = new FileWriter(outputDirectory.resolve(filename).toFile()))
+            {
+                results.get(index).writeTable(writer);
+            }
+
+            System.out.println(results.get(index).getScenario() + ": " + results.get(index).getResult());
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Loads a {@link Model} from the setup file in a single pass. The sheets of the workbook are
+ * streamed with a SAX parser, one row at a time, rather than loaded into a workbook, and each row
+ * is parsed straight into the model tables, so no spreadsheet objects outlive the load.
+ *
+ * The setup file holds three sheets, each with a header row:
+ * <ol>
+ * <li>the deterioration rate of each condition type</li>
+ * <li>the incidence of each combination of conditions new patients arrive with</li>
+ * <li>the trajectories, one per row with the columns listed in {@link SetupLoader.Fields}</li>
+ * </ol>
+ * Every cell is read as text, as it is displayed in the spreadsheet, and numeric cells are converted
+ * with the same rules as the spreadsheet.
+ */
+public final class SetupLoader
+{
+	/**
+	 * The columns of the trajectories sheet.
+	 */
+	static final class Fields
+	{
+		public static final int TRAJECTORY_ID = 0;
+		public static final int PATIENT_CONDITIONS = 1;
+		public static final int SEVERITIES = 2;
+		public static final int TREATED_CONDITIONS = 3;
+		public static final int MATERIAL_RESOURCES = 4;
+		public static final int RESOURCE_EFFICACIES = 5;
+		public static final int RESOURCE_DOSAGES = 6;
+		public static final int RESOURCE_FREQUENCIES = 7;
+		public static final int NURSES = 8;
+		public static final int NURSE_ON_TIME = 9;
+		public static final int NURSE_OFF_TIME = 10;
+		public static final int DOCTORS = 11;
+		public static final int DOCTOR_ON_TIME = 12;
+		public static final int DOCTOR_OFF_TIME = 13;
+		public static final int TOTAL_CYCLES = 14;
+	}
+
+	/**
+	 * Receives the rows of a sheet in order.
+	 */
+	interface RowHandler
+	{
+		/**
+		 * Handles a single row of a sheet.
+		 *
+		 * @param rowNumber	the zero-based number of the row
+		 * @param cells		the text of each cell, indexed by column, with blank cells as empty strings
+		 */
+		void row(int rowNumber, String[] cells);
+	}
+
+	/**
+	 * The namespace of the relationship IDs that refer to the sheets of a workbook.
+	 */
+	private static final String RELATIONSHIPS_NAMESPACE =
+		"http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+	private SetupLoader()
+	{
+	}
+
+	/**
+	 * Loads the model from a setup file. Trajectories with invalid values are reported and skipped.
+	 *
+	 * @param path the path of the setup file
+	 * @return the loaded model
+	 * @throws IOException if the setup file cannot be read
+	 * @throws IllegalArgumentException if the deterioration rates or case mix are invalid
+	 */
+	public static Model load(Path path) throws IOException
+	{
+		// Parse the deterioration rate of each condition type from the first sheet
+		final double[] deteriorationRates = new double[Condition.Type.values().length];
+		Arrays.fill(deteriorationRates, Double.NaN);
+		RowHandler deteriorations = (rowNumber, cells) ->
+		{
+			// Skip the header row
+			if (rowNumber == 0)
+			{
+				return;
+			}
+
+			Condition.Type condition = Condition.Type.valueOf(getString(cells, 0));
+			deteriorationRates[condition.ordinal()] = Double.parseDouble(getString(cells, 1));
+		};
+
+		// Parse the probability of each condition or set of conditions that new patients arrive with
+		// from the second sheet
+		final ArrayList<Condition.Type[]> combinations = new ArrayList<>();
+		final ArrayList<Double> probabilities = new ArrayList<>();
+		RowHandler caseMix = (rowNumber, cells) ->
+		{
+			// Skip the header row
+			if (rowNumber == 0)
+			{
+				return;
+			}
+
+			String[] conditionTypes = getString(cells, 0).split(",");
+			Condition.Type[] combination = new Condition.Type[conditionTypes.length];
+			for (int index = 0; index < conditionTypes.length; index++)
+			{
+				combination[index] = Condition.Type.valueOf(conditionTypes[index]);
+			}
+
+			combinations.add(combination);
+			probabilities.add(Double.parseDouble(getString(cells, 1)));
+		};
+
+		// Compile the trajectories in the third sheet
+		final List<Trajectory> trajectories = new ArrayList<>();
+		RowHandler trajectoryRows = (rowNumber, cells) ->
+		{
+			// Skip the header row
+			if (rowNumber == 0)
+			{
+				return;
+			}
+
+			try
+			{
+				trajectories.add(compileTrajectory(rowNumber, cells));
+			}
+			catch (IllegalArgumentException iae)
+			{
+				System.out.println("Error: skipping trajectory in row " + rowNumber + ": " + iae.getMessage());
+			}
+		};
+
+		read(path, deteriorations, caseMix, trajectoryRows);
+
+		double[] incidences = new double[probabilities.size()];
+		for (int index = 0; index < incidences.length; index++)
+		{
+			incidences[index] = probabilities.get(index);
+		}
+
+		return new Model(new CaseMix(combinations, incidences, deteriorationRates), new TrajectoryTable(trajectories));
+	}
+
+	/**
+	 * Parses the condition and severity requirements and the treatment plan of a trajectory from a
+	 * row of the trajectories sheet.
+	 *
+	 * @param rowNumber	the number of the row
+	 * @param cells		the cells of the row
+	 * @return the compiled trajectory
+	 * @throws IllegalArgumentException if any of the values are invalid
+	 */
+	private static Trajectory compileTrajectory(int rowNumber, String[] cells)
+	{
+		TreatmentPlanTemplate template = TreatmentPlanTemplate.parse(
+			getString(cells, Fields.TRAJECTORY_ID),
+			getString(cells, Fields.TREATED_CONDITIONS),
+			getString(cells, Fields.MATERIAL_RESOURCES),
+			getString(cells, Fields.RESOURCE_EFFICACIES),
+			getString(cells, Fields.RESOURCE_DOSAGES),
+			getString(cells, Fields.RESOURCE_FREQUENCIES),
+			getString(cells, Fields.NURSES),
+			getString(cells, Fields.NURSE_ON_TIME),
+			getString(cells, Fields.NURSE_OFF_TIME),
+			getString(cells, Fields.DOCTORS),
+			getString(cells, Fields.DOCTOR_ON_TIME),
+			getString(cells, Fields.DOCTOR_OFF_TIME),
+			getString(cells, Fields.TOTAL_CYCLES)
+		);
+
+		return Trajectory.parse(
+			template.getID(),
+			rowNumber,
+			getString(cells, Fields.PATIENT_CONDITIONS),
+			getString(cells, Fields.SEVERITIES),
+			template
+		);
+	}
+
+	/**
+	 * Returns the text of a cell, or an empty string if the cell is blank.
+	 */
+	private static String getString(String[] cells, int column)
+	{
+		return (column < cells.length) ? cells[column] : "";
+	}
+
+	/**
+	 * Streams the first sheets of a workbook, in workbook order, to the specified row handlers.
+	 *
+	 * @param path		the path of the workbook
+	 * @param handlers	the row handler of each sheet, from the first sheet on
+	 * @throws IOException if the workbook cannot be read or has fewer sheets than handlers
+	 */
+	static void read(Path path, RowHandler... handlers) throws IOException
+	{
+		try (OPCPackage workbook = OPCPackage.open(path.toFile(), PackageAccess.READ))
+		{
+			XSSFReader reader = new XSSFReader(workbook);
+			ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(workbook);
+
+			// The sheets are looked up from the workbook part rather than with the sheet iterator of
+			// XSSFReader, which returns every sheet twice for workbooks written by POI
+			List<String> sheets = new ArrayList<>();
+			try (InputStream workbookData = reader.getWorkbookData())
+			{
+				parse(workbookData, new DefaultHandler()
+				{
+					@Override
+					public void startElement(String uri, String localName, String name, Attributes attributes)
+					{
+						if (localName.equals("sheet"))
+						{
+							sheets.add(attributes.getValue(RELATIONSHIPS_NAMESPACE, "id"));
+						}
+					}
+				});
+			}
+
+			if (sheets.size() < handlers.length)
+			{
+				throw new IOException("Setup file " + path + " has fewer than " + handlers.length + " sheets.");
+			}
+
+			for (int index = 0; index < handlers.length; index++)
+			{
+				try (InputStream sheet = reader.getSheet(sheets.get(index)))
+				{
+					parse(sheet, new SheetHandler(strings, handlers[index]));
+				}
+			}
+		}
+		catch (OpenXML4JException | SAXException e)
+		{
+			throw new IOException("Could not read setup file " + path + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Parses a part of a workbook with a SAX handler.
+	 */
+	private static void parse(InputStream part, DefaultHandler handler) throws IOException, SAXException
+	{
+		try
+		{
+			XMLReader reader = SAXHelper.newXMLReader();
+			reader.setContentHandler(handler);
+			reader.parse(new InputSource(part));
+		}
+		catch (ParserConfigurationException pce)
+		{
+			throw new SAXException(pce);
+		}
+	}
+
+	/**
+	 * Collects the cells of each row of a worksheet and passes complete rows to a row handler.
+	 */
+	private static final class SheetHandler extends DefaultHandler
+	{
+		/**
+		 * The shared strings of the workbook, which string cells refer to by index.
+		 */
+		private final ReadOnlySharedStringsTable m_strings;
+
+		/**
+		 * The handler the rows are passed to.
+		 */
+		private final RowHandler m_handler;
+
+		/**
+		 * The cells of the current row, indexed by column.
+		 */
+		private final ArrayList<String> m_cells = new ArrayList<>();
+
+		/**
+		 * The text of the value of the current cell.
+		 */
+		private final StringBuilder m_value = new StringBuilder();
+
+		/**
+		 * The number of the current row.
+		 */
+		private int m_rowNumber = -1;
+
+		/**
+		 * The column of the current cell.
+		 */
+		private int m_column;
+
+		/**
+		 * The type of the current cell, or null for a numeric cell.
+		 */
+		private String m_type;
+
+		/**
+		 * Whether the parser is inside the value of a cell.
+		 */
+		private boolean m_inValue;
+
+		SheetHandler(ReadOnlySharedStringsTable strings, RowHandler handler)
+		{
+			m_strings = strings;
+			m_handler = handler;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String name, Attributes attributes)
+		{
+			switch (localName)
+			{
+			case "row":
+				String row = attributes.getValue("r");
+				m_rowNumber = (row == null) ? m_rowNumber + 1 : Integer.parseInt(row) - 1;
+				m_cells.clear();
+				break;
+
+			case "c":
+				String reference = attributes.getValue("r");
+				m_column = (reference == null) ? m_cells.size() : column(reference);
+				m_type = attributes.getValue("t");
+				m_value.setLength(0);
+				break;
+
+			case "v":
+			case "t":
+				m_inValue = true;
+				break;
+
+			default:
+				break;
+			}
+		}
+
+		@Override
+		public void characters(char[] characters, int start, int length)
+		{
+			if (m_inValue)
+			{
+				m_value.append(characters, start, length);
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String name)
+		{
+			switch (localName)
+			{
+			case "v":
+			case "t":
+				m_inValue = false;
+				break;
+
+			case "c":
+				while (m_cells.size() <= m_column)
+				{
+					m_cells.add("");
+				}
+				m_cells.set(m_column, cellText());
+				break;
+
+			case "row":
+				if (!m_cells.isEmpty())
+				{
+					m_handler.row(m_rowNumber, m_cells.toArray(new String[m_cells.size()]));
+				}
+				break;
+
+			default:
+				break;
+			}
+		}
+
+		/**
+		 * Returns the text of the current cell as it is displayed in the spreadsheet.
+		 */
+		private String cellText()
+		{
+			String value = m_value.toString();
+			if (m_type == null || m_type.equals("n"))
+			{
+				return value.isEmpty() ? "" : NumberToTextConverter.toText(Double.parseDouble(value));
+			}
+
+			switch (m_type)
+			{
+			case "s":
+				return m_strings.getEntryAt(Integer.parseInt(value));
+
+			case "b":
+				return value.equals("1") ? "TRUE" : "FALSE";
+
+			default:
+				// Inline strings, formula strings and errors hold their text
+				return value;
+			}
+		}
+
+		/**
+		 * Returns the zero-based column of a cell reference such as "B2".
+		 */
+		private static int column(String reference)
+		{
+			int column = 0;
+			for (int index = 0; index < reference.length() && Character.isLetter(reference.charAt(index)); index++)
+			{
+				column = column * 26 + (reference.charAt(index) - 'A' + 1);
+			}
+
+			return column - 1;
+		}
+	}
+}
@@ -1,16 +1,6 @@
 package edu.bu.zaman.MMHModel;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 /**
  * Singleton class that manages the creation and reassessment of patients and their
@@ -21,128 +11,83 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
  */
 public class Shiva
 {	
-	/**
-	 * Reference to the condition probabilities excel spreadsheet.
-	 */
-	private static Sheet m_conditionProbabilitiesSheet;
-	
-	/**
-	 * Contains list of probabilities associated with the incidence of each condition or set
-	 * of conditions that patients arrive with.
-	 */
-	private static ArrayList<Double> m_conditionProbabilities = new ArrayList<>();
-	
-	/**
-	 * Stores the deterioration rates associated with each condition.
-	 */
-    private static HashMap<Condition.Type, Double> m_deteriorationRates = new HashMap<>();
-	
+    private Shiva()
+    {
+    }
+    
     /**
-     * Counter used to provide unique patient ids when creating a new patient
+     * Returns the distribution of the condition combinations that new patients arrive with, along
+     * with the deterioration rates associated with each condition, from the current model of the
+     * setup file. Patients are drawn from the case mix of the run they are admitted to, see
+     * {@link SimulationContext#getCaseMix()}.
      */
-    private static int m_patientCount = 0;
+    public static CaseMix getCaseMix()
+    {
+        return Model.getDefault().getCaseMix();
+    }
     
-    @SuppressWarnings("unused")
-	private static Shiva m_instance = new Shiva(); // Eager creation of singleton StageManager object
-    private Shiva() 
+    /**
+     * Creates a new patient with a random age and a random set of conditions drawn according to
+     * the condition probabilities of the run's model.
+     *
+     * @param context   the context of the run the patient is admitted to
+     * @param minAge    the minimum age of the patient
+     * @param maxAge    the maximum age of the patient
+     * @return the new patient
+     */
+	public static Patient createPatient(SimulationContext context, int minAge, int maxAge)
     {
-    	String filepath = App.getSetupFilepath();        
-        
-        // Open the trajectories workbook and get the first sheet
-        try (
-    		FileInputStream trajectoriesFile = new FileInputStream(new File(filepath));
-	        Workbook workbook = new XSSFWorkbook(trajectoriesFile);
-		)
-        {
-        	// Get the first sheet, which contains deterioration rates for each condition
-        	Sheet deteriorations = workbook.getSheetAt(0);
-        	
-        	// Parse the deterioration information and store it locally
-        	for (Row row : deteriorations)
-        	{
-        		// Skip the header row
-        		if (row.getRowNum() == 0)
-        		{
-        			continue;
-        		}
-        		
-        		Condition.Type condition = Condition.Type.valueOf(row.getCell(0).getStringCellValue());
-        		double deterioration = row.getCell(1).getNumericCellValue();
-        		
-        		if (condition != null)
-        		{
-        			m_deteriorationRates.put(condition, deterioration);
-        		}
-        	}
-        	
-        	// Get the second sheet, which contains probabilties for each condition or set of
-        	// conditions that new patients arrive with
-        	m_conditionProbabilitiesSheet = workbook.getSheetAt(1);
-        	
-        	// Parse the condition probability information and store it locally
-        	double sum = 0;
-        	for (Row row : m_conditionProbabilitiesSheet)
-        	{
-        		// Skip the header row
-        		if (row.getRowNum() == 0)
-        		{
-        			continue;
-        		}
-        		
-        		sum += row.getCell(1).getNumericCellValue();
-        		m_conditionProbabilities.add(sum);
-        	}        
-        	
-        	// Test for unity taking into account rounding errors with floating point arithmetic
-        	if ((Math.round(sum * 100000d) / 100000d) != 1)
-        	{
-        		System.out.println("Error: condition probabilities do not sum to unity.");
-        		System.exit(-1);
-        	}
-        }
-        catch(FileNotFoundException fnfe)
-        {
-        	fnfe.printStackTrace();
-        }
-        catch(IOException ioe)
+        return createPatient(context, context.getCaseMix(), minAge, maxAge);
+    }
+    
+    /**
+     * Creates the specified number of new patients, each with a random age and a random set of
+     * conditions drawn according to the condition probabilities of the run's model. The patients are
+     * created in order, exactly as if {@link Shiva#createPatient(SimulationContext, int, int)} were
+     * called once per patient.
+     *
+     * @param context   the context of the run the patients are admitted to
+     * @param count     the number of patients to create
+     * @param minAge    the minimum age of the patients
+     * @param maxAge    the maximum age of the patients
+     * @return the new patients
+     */
+	public static ArrayList<Patient> createPatients(SimulationContext context, int count, int minAge, int maxAge)
+    {
+        CaseMix caseMix = context.getCaseMix();
+        ArrayList<Patient> patients = new ArrayList<>(count);
+        for (int index = 0; index < count; index++)
         {
-        	ioe.printStackTrace();
+            patients.add(createPatient(context, caseMix, minAge, maxAge));
         }
+        
+        return patients;
     }
     
-	public static Patient createPatient(int minAge, int maxAge)
+    private static Patient createPatient(SimulationContext context, CaseMix caseMix, int minAge, int maxAge)
     {
+        RandomSource admissions = context.getRandom().admissions();
+        RandomSource severities = context.getRandom().severities();
+        
         // Generates a random age for the patient
-        int age = minAge + (int)(Math.random() * maxAge);
+        int age = minAge + (int)(admissions.nextDouble() * maxAge);
         
         // Randomly assign conditions to the patient
-        double variate = Math.random();
-        int row = 0;
-        for (int index = 0;index < m_conditionProbabilities.size(); index++)
-        {
-        	if (m_conditionProbabilities.get(index) >= variate)
-        	{
-        		row = index;
-        		break;
-        	}
-        }
+        int combination = caseMix.sample(admissions);
         
-        String[] conditionTypes = m_conditionProbabilitiesSheet.getRow(row + 1).getCell(0).getStringCellValue().split(",");        
-        ArrayList<Condition> conditions = new ArrayList<>();
-        for (String condition : conditionTypes)
+        int conditionCount = caseMix.getConditionCount(combination);
+        ArrayList<Condition> conditions = new ArrayList<>(conditionCount);
+        for (int index = 0; index < conditionCount; index++)
         {
-        	Condition.Type type = Condition.Type.valueOf(condition);
-        	if (type != null)
-        	{
-                conditions.add(new Condition(
-                    type,
-                    Math.random(), // TODO: Should be changed to a more appropriate binomial distribution
-                    m_deteriorationRates.get(type)
-                ));
-        	}
+        	Condition.Type type = caseMix.getConditionType(combination, index);
+            conditions.add(new Condition(
+                type,
+                severities.nextDouble(), // TODO: Should be changed to a more appropriate binomial distribution
+                caseMix.getDeteriorationRate(type)
+            ));
         }
         
-        return new Patient(++m_patientCount, age, conditions);
+        return new Patient(context.nextPatientId(), age, conditions);
     }
 
     /**
@@ -0,0 +1,485 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Runs the cycle loop of the model for a single simulation context. Each cycle represents 15
+ * minutes and is made up of four phases: admission of new patients, allocation of resources and
+ * treatment, evaluation of patient health and release of resources.
+ *
+ * Every patient in the hospital is treated or deteriorates, and is subject to a death draw, in every
+ * cycle, so a cycle with patients always has to be run in full. A cycle in which the hospital is
+ * empty and nobody arrives changes nothing, however, so the simulation can optionally skip such
+ * cycles, see {@link Simulation#setSkipIdleCycles(boolean)}.
+ */
+public class Simulation
+{
+    /**
+     * The state of the run.
+     */
+    private final SimulationContext m_context;
+
+    /**
+     * Determines how many new patients arrive in each cycle.
+     */
+    private final ArrivalProcess m_arrivalProcess;
+
+    /**
+     * Listeners notified about the progress of the run.
+     */
+    private final ArrayList<SimulationListener> m_listeners = new ArrayList<>();
+
+    /**
+     * The patients in the order they are treated in the current cycle.
+     */
+    private final ArrayList<Patient> m_triageOrder = new ArrayList<>();
+
+    /**
+     * Puts the current patients in triage order at the start of each treatment phase.
+     */
+    private final TriageSorter m_triageSorter = new TriageSorter();
+
+    /**
+     * Buffer holding the doses of the material resources required by the patient being treated,
+     * indexed by {@link Hospital.MaterialResource#ordinal()}.
+     */
+    private final double[] m_requiredDoses = new double[Hospital.MATERIAL_RESOURCES];
+
+    /**
+     * Times and counters of the phases of each cycle.
+     */
+    private CycleMetrics m_metrics = new CycleMetrics();
+
+    /**
+     * Whether cycles in which the hospital is empty and no patient arrives are skipped.
+     */
+    private boolean m_skipIdleCycles;
+
+    /**
+     * Creates a new simulation in which at most one patient arrives per cycle.
+     *
+     * @param context               the state of the run
+     * @param probabilityNewPatient the probability of acquiring a new patient in each cycle
+     */
+    public Simulation(SimulationContext context, double probabilityNewPatient)
+    {
+        this(context, new BernoulliArrivalProcess(probabilityNewPatient));
+    }
+
+    /**
+     * Creates a new simulation.
+     *
+     * @param context           the state of the run
+     * @param arrivalProcess    determines how many new patients arrive in each cycle
+     */
+    public Simulation(SimulationContext context, ArrivalProcess arrivalProcess)
+    {
+        m_context = context;
+        m_arrivalProcess = arrivalProcess;
+    }
+
+    /**
+     * Registers a listener to be notified about the progress of the run.
+     */
+    public void addListener(SimulationListener listener)
+    {
+        m_listeners.add(listener);
+    }
+
+    /**
+     * {@link Simulation#m_context}
+     */
+    public SimulationContext getContext()
+    {
+        return m_context;
+    }
+
+    /**
+     * {@link Simulation#m_metrics}
+     */
+    public CycleMetrics getMetrics()
+    {
+        return m_metrics;
+    }
+
+    /**
+     * Replaces the metrics the phases of each cycle are recorded in, e.g. so that replications
+     * record into the same metrics.
+     */
+    public void setMetrics(CycleMetrics metrics)
+    {
+        m_metrics = metrics;
+    }
+
+    /**
+     * {@link Simulation#m_skipIdleCycles}
+     */
+    public boolean isSkipIdleCycles()
+    {
+        return m_skipIdleCycles;
+    }
+
+    /**
+     * Sets whether cycles in which the hospital is empty and no patient arrives are skipped. While
+     * the hospital is empty, the cycle of the next arrival is drawn directly from the arrival process
+     * and the run jumps to it, so a run with sparse arrivals costs time in proportion to the cycles
+     * with patients rather than to its length. Listeners are not notified about the skipped cycles.
+     *
+     * The arrivals are drawn differently from stepping through every cycle, so the two modes produce
+     * the same distribution of outcomes but, once the hospital has been empty, not the same outcomes
+     * for a given seed.
+     */
+    public void setSkipIdleCycles(boolean skipIdleCycles)
+    {
+        m_skipIdleCycles = skipIdleCycles;
+    }
+
+    /**
+     * Runs the specified number of cycles.
+     *
+     * @param cycles the number of cycles to run
+     * @throws IOException if a listener fails to write its output
+     */
+    public void run(int cycles) throws IOException
+    {
+        int endCycle = m_context.getCycle() + cycles;
+        while (m_context.getCycle() < endCycle)
+        {
+            if (m_skipIdleCycles && m_context.getCurrentPatients().isEmpty())
+            {
+                RandomSource random = m_context.getRandom().arrivals();
+                int arrivalCycle = m_arrivalProcess.nextArrivalCycle(m_context.getCycle(), random);
+                if (arrivalCycle >= endCycle)
+                {
+                    m_context.advanceTo(endCycle);
+                    break;
+                }
+
+                m_context.advanceTo(arrivalCycle);
+                runCycle(m_arrivalProcess.conditionalArrivals(arrivalCycle, random));
+            }
+            else
+            {
+                runCycle();
+            }
+        }
+    }
+
+    /**
+     * Runs the specified number of cycles of a run restored from a {@link Checkpoint} or forked with
+     * {@link SimulationContext#fork()}, notifying the listeners that the run has resumed first.
+     *
+     * @param cycles the number of cycles to run
+     * @throws IOException if a listener fails to write its output
+     */
+    public void resume(int cycles) throws IOException
+    {
+        for (SimulationListener listener : m_listeners)
+        {
+            listener.runResumed(m_context);
+        }
+
+        run(cycles);
+    }
+
+    /**
+     * Runs a single 15 minute cycle of the model.
+     *
+     * @throws IOException if a listener fails to write its output
+     */
+    public void runCycle() throws IOException
+    {
+        // Determine how many new patients have arrived
+        runCycle(m_arrivalProcess.arrivals(m_context.getCycle(), m_context.getRandom().arrivals()));
+    }
+
+    /**
+     * Runs a single 15 minute cycle of the model in which the specified number of patients arrive.
+     *
+     * @param arrivals the number of patients arriving
+     * @throws IOException if a listener fails to write its output
+     */
+    private void runCycle(int arrivals) throws IOException
+    {
+        CycleEvent event = new CycleEvent();
+        event.begin();
+        int admitted = m_context.getPatientCount();
+        int deceased = m_context.getDeceasedPatients().size();
+
+        admitPatients(arrivals);
+        treatPatients();
+        evaluatePatients();
+        releaseResources();
+
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.cycle = m_context.getCycle();
+            event.census = m_context.getCurrentPatients().size();
+            event.admissions = m_context.getPatientCount() - admitted;
+            event.deaths = m_context.getDeceasedPatients().size() - deceased;
+            event.commit();
+        }
+
+        completeCycle();
+    }
+
+    /**
+     * Admits the specified number of new patients in the current cycle.
+     *
+     * @param arrivals the number of patients arriving
+     */
+    private void admitPatients(int arrivals)
+    {
+        /////////////////////////////////////////////////////////////////////////////////
+        // 1. Take in additional patients
+        //
+        // New patients are randomly admitted to the hospital. Each patient is created
+        // by Shiva with a random age and set of conditions.
+        /////////////////////////////////////////////////////////////////////////////////
+
+        long start = System.nanoTime();
+
+        // Create each new patient with a random age and set of conditions
+        ArrayList<Patient> currentPatients = m_context.getCurrentPatients();
+        for (Patient p : Shiva.createPatients(m_context, arrivals, 18, 45))
+        {
+            currentPatients.add(p);
+
+            for (SimulationListener listener : m_listeners)
+            {
+                listener.patientAdmitted(m_context, p);
+            }
+        }
+
+        m_metrics.addPatientsAdmitted(arrivals);
+        m_metrics.addTime(CycleMetrics.Phase.ADMISSION, System.nanoTime() - start);
+    }
+
+    /**
+     * Allocates resources to the current patients and treats them.
+     */
+    private void treatPatients()
+    {
+        Hospital hospital = m_context.getHospital();
+
+        /////////////////////////////////////////////////////////////////////////////////
+        // 2. Allocate resources to patients and treat them
+        //
+        // The current list of patients are sorted from most severe to least t and are
+        // assigned human and material resources required for treatment. The patient's
+        // treatment is based on their current stage and associated treatment plan.
+        // The patient's current stage is updated every cycle by the StageManager, who
+        // evaluates the patient's current state and list of conditions.
+        /////////////////////////////////////////////////////////////////////////////////
+
+        long start = System.nanoTime();
+
+        // Order the patients according to their current probability of mortality from most
+        // severe to least severe
+        m_triageSorter.sort(m_context.getCurrentPatients(), m_triageOrder);
+
+        long triaged = System.nanoTime();
+        m_metrics.addTime(CycleMetrics.Phase.TRIAGE, triaged - start);
+
+        // Update the patient's stage, if needed. A patient's stage only depends on its own
+        // conditions, so all stages are updated before any patient is treated.
+        int transitions = 0;
+        for (Patient patient : m_triageOrder)
+        {
+            StageTransitionEvent event = new StageTransitionEvent();
+            event.begin();
+
+            // Get the stage the patient should be in from the StageManager and update it
+            // if it has changed
+            Stage stage = StageManager.getStage(m_context, patient);
+            if (!stage.equals(patient.getStage()))
+            {
+                event.end();
+                if (event.shouldCommit())
+                {
+                    event.cycle = m_context.getCycle();
+                    event.patientId = patient.getPatientId();
+                    event.previousTrajectoryId = (patient.getStage() == null) ? -1 : patient.getStage().getTreatmentPlan().getID();
+                    event.trajectoryId = stage.getTreatmentPlan().getID();
+                    event.commit();
+                }
+
+                patient.setStage(stage);
+                transitions++;
+            }
+        }
+
+        long matched = System.nanoTime();
+        m_metrics.addTime(CycleMetrics.Phase.STAGE_MATCHING, matched - triaged);
+        m_metrics.addStageTransitions(transitions);
+
+        // Administer cycle treatment
+        int treated = 0;
+        for (Patient patient : m_triageOrder)
+        {
+            // Get treatment plan for the patient's current stage and determine if the required
+            // resources for treatment in the current cycle are available
+            TreatmentPlan plan = patient.getStage().getTreatmentPlan();
+
+            int requiredResources = plan.requiredMaterialResources(m_requiredDoses);
+
+            int requiredNurses = plan.requiredNurses();
+            int requiredDoctors = plan.requiredDoctors();
+
+            // Request resources from the hospital based on the treatments for the current stage
+            // if the resources are available. The material resources for the treatment plan are
+            // only consumed from the hospital inventory if all of them, and the required nurses
+            // and doctors, are available.
+            boolean resourcesAvailable = hospital.nurses >= requiredNurses &&
+                    hospital.doctors >= requiredDoctors &&
+                    hospital.consumeResources(requiredResources, m_requiredDoses);
+
+            if (resourcesAvailable)
+            {
+                for (int mask = requiredResources; mask != 0; mask &= mask - 1)
+                {
+                    patient.setDoses(m_requiredDoses[Integer.numberOfTrailingZeros(mask)]);
+                }
+
+                // Check out the number of nurses and doctors required for treatment in the current cycle
+                hospital.nurses -= requiredNurses;
+                hospital.doctors -= requiredDoctors;
+
+                patient.setDoctor(requiredDoctors);
+                patient.setNurse(requiredNurses);
+
+                // Treat the patient, updating his or her probability of mortality
+                plan.treatPatient();
+                treated++;
+
+                for (SimulationListener listener : m_listeners)
+                {
+                    listener.patientTreated(m_context, patient);
+                }
+            }
+            else
+            {
+                ResourceDenialEvent event = new ResourceDenialEvent();
+                if (event.shouldCommit())
+                {
+                    event.cycle = m_context.getCycle();
+                    event.patientId = patient.getPatientId();
+                    event.trajectoryId = plan.getID();
+                    event.requiredNurses = requiredNurses;
+                    event.availableNurses = hospital.nurses;
+                    event.requiredDoctors = requiredDoctors;
+                    event.availableDoctors = hospital.doctors;
+                    event.requiredResources = requiredResources;
+                    event.commit();
+                }
+
+                // Worsen the patient's current conditions as the patient could not be treated
+                for (Condition condition : patient.getConditions())
+                {
+                    condition.worsen();
+                }
+            }
+        }
+
+        m_metrics.addPatientsTreated(treated);
+        m_metrics.addPatientsDeniedResources(m_triageOrder.size() - treated);
+        m_metrics.addTime(CycleMetrics.Phase.TREATMENT, System.nanoTime() - matched);
+    }
+
+    /**
+     * Draws the deaths of the current cycle.
+     */
+    private void evaluatePatients()
+    {
+        /////////////////////////////////////////////////////////////////////////////////
+        // 3. Evaluate patient health
+        //
+        // Determine if any patient deaths will occur based on the patient probability
+        // of mortality and a random number draw.
+        /////////////////////////////////////////////////////////////////////////////////
+
+        long start = System.nanoTime();
+
+        RandomSource deaths = m_context.getRandom().deaths();
+        int died = 0;
+        for (Patient patient : m_context.getCurrentPatients())
+        {
+            double variate = deaths.nextDouble();
+            if (variate <= patient.probabilityOfMortality())
+            {
+                patient.die();
+                died++;
+            }
+        }
+
+        m_metrics.addDeaths(died);
+        m_metrics.addTime(CycleMetrics.Phase.EVALUATION, System.nanoTime() - start);
+    }
+
+    /**
+     * Removes deceased patients and returns available human resources to the hospital.
+     */
+    private void releaseResources()
+    {
+        Hospital hospital = m_context.getHospital();
+
+        /////////////////////////////////////////////////////////////////////////////////
+        // 4. Update current patient list and return and available resources to the hospital
+        //
+        // Remove any deceased patients from the list of current patients and return any
+        // human resources that are now available after the current treatment cycle.
+        /////////////////////////////////////////////////////////////////////////////////
+
+        long start = System.nanoTime();
+
+        Iterator<Patient> iterator = m_context.getCurrentPatients().iterator();
+        while (iterator.hasNext())
+        {
+            Patient patient = iterator.next();
+            TreatmentPlan plan = patient.getStage().getTreatmentPlan();
+
+            if (patient.isAlive())
+            {
+                Shiva.reassessConditions(patient);
+            }
+            else
+            {
+                // Add patient to running list of deceased patients and remove from the list of
+                // current patients
+                m_context.getDeceasedPatients().add(patient);
+                iterator.remove();
+            }
+
+            int freeNurses = plan.freeNursesAfterTreatment();
+            int freeDoctors = plan.freeDoctorsAfterTreatment();
+
+            hospital.nurses += freeNurses;
+            hospital.doctors += freeDoctors;
+        }
+
+        m_metrics.addTime(CycleMetrics.Phase.RELEASE, System.nanoTime() - start);
+    }
+
+    /**
+     * Notifies the listeners that the current cycle is complete and moves on to the next cycle.
+     *
+     * @throws IOException if a listener fails to write its output
+     */
+    private void completeCycle() throws IOException
+    {
+        long start = System.nanoTime();
+
+        for (SimulationListener listener : m_listeners)
+        {
+            listener.cycleCompleted(m_context);
+        }
+
+        m_metrics.addTime(CycleMetrics.Phase.EXPORT, System.nanoTime() - start);
+        m_metrics.cycleCompleted();
+
+        m_context.nextCycle();
+    }
+}
@@ -0,0 +1,230 @@
+package edu.bu.zaman.MMHModel;
+
+import java.util.ArrayList;
+
+/**
+ * Holds all of the mutable state of a single simulation run, so that independent replications
+ * can be run side by side in the same JVM. The model data loaded from the setup file is immutable
+ * and shared by all contexts; each context keeps the model it was created with, even when the setup
+ * file is reloaded during the run, see {@link ModelRegistry}.
+ */
+public class SimulationContext
+{
+    /**
+     * The hospital, including its staff and inventory of disposable resources.
+     */
+    private final Hospital m_hospital;
+
+    /**
+     * The distribution of the condition combinations that new patients arrive with, along with the
+     * deterioration rates associated with each condition.
+     */
+    private final CaseMix m_caseMix;
+
+    /**
+     * The trajectories used to determine each patient's stage.
+     */
+    private final TrajectoryTable m_trajectories;
+
+    /**
+     * The random streams used for every random draw made during the run.
+     */
+    private final RandomStreams m_random;
+
+    /**
+     * The patients currently in the hospital, in the order they were admitted.
+     */
+    private final ArrayList<Patient> m_currentPatients = new ArrayList<>();
+
+    /**
+     * The patients who have died during the run.
+     */
+    private final ArrayList<Patient> m_deceasedPatients = new ArrayList<>();
+
+    /**
+     * Counter used to provide unique patient ids when creating a new patient
+     */
+    private int m_patientCount = 0;
+
+    /**
+     * The current cycle of the run.
+     */
+    private int m_cycle = 0;
+
+    /**
+     * Creates a new simulation context using the current model of the setup file.
+     *
+     * @param hospital  the hospital the run takes place in
+     * @param random    the random streams of the run
+     */
+    public SimulationContext(Hospital hospital, RandomStreams random)
+    {
+        this(hospital, Model.getDefault(), random);
+    }
+
+    /**
+     * Creates a new simulation context using the specified trajectories and the case mix of the
+     * current model of the setup file.
+     *
+     * @param hospital      the hospital the run takes place in
+     * @param trajectories  the trajectories used to determine each patient's stage
+     * @param random        the random streams of the run
+     */
+    public SimulationContext(Hospital hospital, TrajectoryTable trajectories, RandomStreams random)
+    {
+        this(hospital, Model.getDefault().getCaseMix(), trajectories, random);
+    }
+
+    /**
+     * Creates a new simulation context.
+     *
+     * @param hospital  the hospital the run takes place in
+     * @param model     the model the run uses for its whole duration
+     * @param random    the random streams of the run
+     */
+    public SimulationContext(Hospital hospital, Model model, RandomStreams random)
+    {
+        this(hospital, model.getCaseMix(), model.getTrajectories(), random);
+    }
+
+    private SimulationContext(Hospital hospital, CaseMix caseMix, TrajectoryTable trajectories, RandomStreams random)
+    {
+        m_hospital = hospital;
+        m_caseMix = caseMix;
+        m_trajectories = trajectories;
+        m_random = random;
+    }
+
+    /**
+     * Creates an independent copy of the run at its current cycle, e.g. to branch a warmed-up run
+     * into several interventions with {@link WhatIfRunner}. The fork shares what cannot change: the
+     * model, and the deceased patients, who are never modified once they have died. Only the
+     * state a fork goes on to modify is copied: the hospital, the random streams, which continue from
+     * the same state so that forks draw common random numbers, and the patients still in the
+     * hospital, each of whom is triaged and either treated or worsened in the next cycle.
+     *
+     * Forking only reads this context, so any number of forks can be taken from it, but not while it
+     * is running.
+     *
+     * @return the forked context, which continues with {@link Simulation#resume(int)}
+     */
+    public SimulationContext fork()
+    {
+        SimulationContext fork = new SimulationContext(m_hospital.copy(), m_caseMix, m_trajectories,
+            m_random.copy());
+        for (Patient patient : m_currentPatients)
+        {
+            Patient copy = patient.copy();
+            fork.m_currentPatients.add(copy);
+        }
+        fork.m_deceasedPatients.addAll(m_deceasedPatients);
+        fork.m_patientCount = m_patientCount;
+        fork.m_cycle = m_cycle;
+
+        return fork;
+    }
+
+    /**
+     * {@link SimulationContext#m_hospital}
+     */
+    public Hospital getHospital()
+    {
+        return m_hospital;
+    }
+
+    /**
+     * {@link SimulationContext#m_caseMix}
+     */
+    public CaseMix getCaseMix()
+    {
+        return m_caseMix;
+    }
+
+    /**
+     * {@link SimulationContext#m_trajectories}
+     */
+    public TrajectoryTable getTrajectories()
+    {
+        return m_trajectories;
+    }
+
+    /**
+     * {@link SimulationContext#m_random}
+     */
+    public RandomStreams getRandom()
+    {
+        return m_random;
+    }
+
+    /**
+     * {@link SimulationContext#m_currentPatients}
+     */
+    public ArrayList<Patient> getCurrentPatients()
+    {
+        return m_currentPatients;
+    }
+
+    /**
+     * {@link SimulationContext#m_deceasedPatients}
+     */
+    public ArrayList<Patient> getDeceasedPatients()
+    {
+        return m_deceasedPatients;
+    }
+
+    /**
+     * Returns a new unique patient id.
+     */
+    public int nextPatientId()
+    {
+        return ++m_patientCount;
+    }
+
+    /**
+     * Returns the number of patients that have been created during the run.
+     */
+    public int getPatientCount()
+    {
+        return m_patientCount;
+    }
+
+    /**
+     * Restores the number of patients created during the run, so that restored runs continue to
+     * provide unique patient ids.
+     */
+    void restorePatientCount(int patientCount)
+    {
+        m_patientCount = patientCount;
+    }
+
+    /**
+     * {@link SimulationContext#m_cycle}
+     */
+    public int getCycle()
+    {
+        return m_cycle;
+    }
+
+    /**
+     * Advances the run to the next cycle.
+     */
+    void nextCycle()
+    {
+        m_cycle++;
+    }
+
+    /**
+     * Advances the run to the specified cycle, skipping any cycles in between.
+     *
+     * @param cycle the cycle to advance to, which must not be before the current cycle
+     */
+    void advanceTo(int cycle)
+    {
+        if (cycle < m_cycle)
+        {
+            throw new IllegalArgumentException("Cannot move the run back to cycle " + cycle + ".");
+        }
+
+        m_cycle = cycle;
+    }
+}
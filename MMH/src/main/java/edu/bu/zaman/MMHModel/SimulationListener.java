@@ -0,0 +1,55 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+
+/**
+ * Receives notifications about the progress of a simulation run. Outputs of a run, such as the
+ * patient list files written by {@link App}, are produced by listeners rather than by the
+ * simulation itself. All methods have empty default implementations so that a listener only
+ * needs to override the notifications it is interested in.
+ */
+public interface SimulationListener
+{
+    /**
+     * Called when a new patient is admitted to the hospital.
+     *
+     * @param context   the context of the run
+     * @param patient   the newly admitted patient
+     */
+    default void patientAdmitted(SimulationContext context, Patient patient)
+    {
+    }
+
+    /**
+     * Called after a patient has been treated in the current cycle.
+     *
+     * @param context   the context of the run
+     * @param patient   the treated patient
+     */
+    default void patientTreated(SimulationContext context, Patient patient)
+    {
+    }
+
+    /**
+     * Called at the end of every cycle, once deceased patients have been removed from the list of
+     * current patients.
+     *
+     * @param context   the context of the run
+     * @throws IOException if the listener fails to write its output
+     */
+    default void cycleCompleted(SimulationContext context) throws IOException
+    {
+    }
+
+    /**
+     * Called before the first cycle of a run restored from a {@link Checkpoint} or forked with
+     * {@link SimulationContext#fork()}, when the context already holds the patients admitted and
+     * deceased before the checkpoint or fork.
+     *
+     * @param context   the context of the run
+     * @throws IOException if the listener fails to write its output
+     */
+    default void runResumed(SimulationContext context) throws IOException
+    {
+    }
+}
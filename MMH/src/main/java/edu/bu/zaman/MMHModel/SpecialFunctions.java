@@ -0,0 +1,65 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * Special mathematical functions used by the model.
+ */
+public final class SpecialFunctions
+{
+    /**
+     * The {@code g} parameter of the Lanczos approximation.
+     */
+    private static final double LANCZOS_G = 607.0 / 128.0;
+
+    /**
+     * The coefficients of the Lanczos approximation for {@code g = 607/128}.
+     */
+    private static final double[] LANCZOS = {
+        0.99999999999999709182,
+        57.156235665862923517,
+        -59.597960355475491248,
+        14.136097974741747174,
+        -0.49191381609762019978,
+        .33994649984811888699e-4,
+        .46523628927048575665e-4,
+        -.98374475304879564677e-4,
+        .15808870322491248884e-3,
+        -.21026444172410488319e-3,
+        .21743961811521264320e-3,
+        -.16431810653676389022e-3,
+        .84418223983852743293e-4,
+        -.26190838401581408670e-4,
+        .36899182659531622704e-5,
+    };
+
+    /**
+     * {@code log(2 * pi) / 2}
+     */
+    private static final double HALF_LOG_2_PI = 0.5 * Math.log(2.0 * Math.PI);
+
+    private SpecialFunctions()
+    {
+    }
+
+    /**
+     * Returns the natural logarithm of the gamma function, using the Lanczos approximation.
+     *
+     * @param x the argument, which must be positive
+     * @return {@code ln(Gamma(x))}, or NaN if {@code x} is not positive
+     */
+    public static double logGamma(double x)
+    {
+        if (!(x > 0))
+        {
+            return Double.NaN;
+        }
+
+        double sum = LANCZOS[0];
+        for (int index = LANCZOS.length - 1; index > 0; index--)
+        {
+            sum += LANCZOS[index] / (x + index);
+        }
+
+        double tmp = x + LANCZOS_G + 0.5;
+        return ((x + 0.5) * Math.log(tmp)) - tmp + HALF_LOG_2_PI + Math.log(sum / x);
+    }
+}
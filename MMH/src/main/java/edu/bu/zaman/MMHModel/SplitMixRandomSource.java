@@ -0,0 +1,152 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * Random source implementing the SplitMix64 algorithm, the same generator used by
+ * {@link java.util.SplittableRandom}. The generator state is a pair of {@code long} values that are
+ * exposed so that a stream can be copied or saved and resumed exactly where it left off.
+ */
+public final class SplitMixRandomSource implements RandomSource
+{
+    /**
+     * The default gamma value, the odd integer closest to 2^64 divided by the golden ratio.
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Scale factor used to convert the 53 most significant bits of a {@code long} to a
+     * {@code double}.
+     */
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    /**
+     * The current state of the generator, advanced by {@link #m_gamma} on every draw.
+     */
+    private long m_seed;
+
+    /**
+     * The odd increment applied to the seed on every draw, which identifies the stream.
+     */
+    private final long m_gamma;
+
+    /**
+     * Creates a new random source for the specified seed.
+     *
+     * @param seed the initial seed
+     */
+    public SplitMixRandomSource(long seed)
+    {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    /**
+     * Creates a random source with the specified state, as returned by {@link #getSeed()} and
+     * {@link #getGamma()}.
+     *
+     * @param seed  the current seed
+     * @param gamma the stream increment, which must be odd
+     */
+    public SplitMixRandomSource(long seed, long gamma)
+    {
+        if ((gamma & 1) == 0)
+        {
+            throw new IllegalArgumentException("The gamma value must be odd.");
+        }
+
+        m_seed = seed;
+        m_gamma = gamma;
+    }
+
+    /**
+     * {@link SplitMixRandomSource#m_seed}
+     */
+    public long getSeed()
+    {
+        return m_seed;
+    }
+
+    /**
+     * {@link SplitMixRandomSource#m_gamma}
+     */
+    public long getGamma()
+    {
+        return m_gamma;
+    }
+
+    /**
+     * Returns a copy of this random source that will produce the same sequence of values.
+     */
+    public SplitMixRandomSource copy()
+    {
+        return new SplitMixRandomSource(m_seed, m_gamma);
+    }
+
+    @Override
+    public long nextLong()
+    {
+        return mix64(nextSeed());
+    }
+
+    @Override
+    public double nextDouble()
+    {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    @Override
+    public int nextInt(int bound)
+    {
+        if (bound <= 0)
+        {
+            throw new IllegalArgumentException("The bound must be positive.");
+        }
+
+        // Rejection sampling avoids the bias of a plain modulo for bounds that are not powers of 2
+        int mask = bound - 1;
+        int value = mix32(nextSeed());
+        if ((bound & mask) == 0)
+        {
+            return value & mask;
+        }
+
+        for (int unsigned = value >>> 1; unsigned + mask - (value = unsigned % bound) < 0; unsigned = mix32(nextSeed()) >>> 1)
+        {
+        }
+
+        return value;
+    }
+
+    @Override
+    public SplitMixRandomSource split()
+    {
+        return new SplitMixRandomSource(nextLong(), mixGamma(nextSeed()));
+    }
+
+    private long nextSeed()
+    {
+        return m_seed += m_gamma;
+    }
+
+    private static long mix64(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z)
+    {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    private static long mixGamma(long z)
+    {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+
+        // Avoid gamma values with too few bit transitions, which produce poorly mixed streams
+        int transitions = Long.bitCount(z ^ (z >>> 1));
+        return (transitions < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -0,0 +1,31 @@
+package edu.bu.zaman.MMHModel;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a patient moving to a new stage. The duration of the event is the
+ * time taken to find the patient's new trajectory.
+ */
+@Name("edu.bu.zaman.MMHModel.StageTransition")
+@Label("Stage Transition")
+@Category("MMH Model")
+@Description("A patient moved to the stage of a new trajectory")
+final class StageTransitionEvent extends Event
+{
+    @Label("Cycle")
+    int cycle;
+
+    @Label("Patient ID")
+    int patientId;
+
+    @Label("Previous Trajectory ID")
+    @Description("The trajectory of the patient's previous stage, or -1 for a newly admitted patient")
+    int previousTrajectoryId;
+
+    @Label("Trajectory ID")
+    int trajectoryId;
+}
@@ -0,0 +1,246 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * Immutable, pre-parsed form of a single row in the trajectories sheet. The condition list and
+ * severity bounds of the row are parsed once when the setup file is loaded so that matching a
+ * patient against the trajectory only requires primitive comparisons.
+ */
+public final class Trajectory
+{
+    /**
+     * The ID used to uniquely identify this trajectory and its treatment plan.
+     */
+    private final int m_id;
+
+    /**
+     * The row of the trajectories sheet this trajectory was compiled from. Rows that appear earlier
+     * in the sheet take precedence when more than one trajectory matches a patient.
+     */
+    private final int m_rowNumber;
+
+    /**
+     * Bitmask of the condition types required by this trajectory, where each bit corresponds to
+     * {@link Condition.Type#ordinal()}.
+     */
+    private final int m_conditionMask;
+
+    /**
+     * The condition types required by this trajectory, in the order they are listed in the sheet.
+     */
+    private final Condition.Type[] m_conditionTypes;
+
+    /**
+     * The exclusive lower bound of the probability of mortality for each required condition.
+     */
+    private final double[] m_minimumSeverities;
+
+    /**
+     * The inclusive upper bound of the probability of mortality for each required condition.
+     */
+    private final double[] m_maximumSeverities;
+
+    /**
+     * The treatment plan followed by patients on this trajectory.
+     */
+    private final TreatmentPlanTemplate m_treatmentPlanTemplate;
+
+    /**
+     * Creates a new compiled trajectory.
+     *
+     * @param id                the trajectory ID
+     * @param rowNumber         the row of the trajectories sheet the trajectory was read from
+     * @param conditionTypes    the condition types a patient must have to follow the trajectory
+     * @param minimumSeverities the exclusive lower severity bound for each condition type
+     * @param maximumSeverities the inclusive upper severity bound for each condition type
+     * @param template          the treatment plan followed by patients on the trajectory
+     */
+    public Trajectory(
+        int id,
+        int rowNumber,
+        Condition.Type[] conditionTypes,
+        double[] minimumSeverities,
+        double[] maximumSeverities,
+        TreatmentPlanTemplate template
+    )
+    {
+        if (conditionTypes.length != minimumSeverities.length || conditionTypes.length != maximumSeverities.length)
+        {
+            throw new IllegalArgumentException("Each trajectory condition requires a severity range.");
+        }
+
+        m_id = id;
+        m_rowNumber = rowNumber;
+        m_conditionTypes = conditionTypes.clone();
+        m_minimumSeverities = minimumSeverities.clone();
+        m_maximumSeverities = maximumSeverities.clone();
+        m_treatmentPlanTemplate = template;
+
+        int mask = 0;
+        for (Condition.Type type : m_conditionTypes)
+        {
+            mask |= 1 << type.ordinal();
+        }
+        m_conditionMask = mask;
+    }
+
+    /**
+     * Parses the patient conditions and severity requirements of a trajectory, as they are written
+     * in the trajectories sheet.
+     *
+     * @param id            the trajectory ID
+     * @param rowNumber     the row of the trajectories sheet the values were read from
+     * @param conditions    comma separated list of condition types, e.g. {@code DELIVERY,SEPSIS}
+     * @param severities    comma separated list of severity ranges, e.g. {@code 0-0.5,0.2-1}
+     * @param template      the treatment plan followed by patients on the trajectory
+     * @return the compiled trajectory
+     * @throws IllegalArgumentException if a condition type or severity range is invalid
+     */
+    public static Trajectory parse(int id, int rowNumber, String conditions, String severities,
+            TreatmentPlanTemplate template)
+    {
+        String[] conditionNames = conditions.split(",");
+        String[] severityRanges = severities.split(",");
+        if (severityRanges.length < conditionNames.length)
+        {
+            throw new IllegalArgumentException("Missing severity range for trajectory " + id);
+        }
+
+        Condition.Type[] types = new Condition.Type[conditionNames.length];
+        double[] minimums = new double[conditionNames.length];
+        double[] maximums = new double[conditionNames.length];
+        for (int index = 0; index < conditionNames.length; index++)
+        {
+            types[index] = Condition.Type.valueOf(conditionNames[index].trim());
+
+            String[] bounds = severityRanges[index].split("-");
+            if (bounds.length != 2)
+            {
+                throw new IllegalArgumentException("Invalid severity condition <" + severityRanges[index] + ">");
+            }
+
+            minimums[index] = Double.parseDouble(bounds[0]);
+            maximums[index] = Double.parseDouble(bounds[1]);
+        }
+
+        return new Trajectory(id, rowNumber, types, minimums, maximums, template);
+    }
+
+    /**
+     * {@link Trajectory#m_id}
+     */
+    public int getId()
+    {
+        return m_id;
+    }
+
+    /**
+     * {@link Trajectory#m_rowNumber}
+     */
+    public int getRowNumber()
+    {
+        return m_rowNumber;
+    }
+
+    /**
+     * {@link Trajectory#m_conditionMask}
+     */
+    public int getConditionMask()
+    {
+        return m_conditionMask;
+    }
+
+    /**
+     * {@link Trajectory#m_treatmentPlanTemplate}
+     */
+    public TreatmentPlanTemplate getTreatmentPlanTemplate()
+    {
+        return m_treatmentPlanTemplate;
+    }
+
+    /**
+     * Returns the number of conditions required by this trajectory.
+     */
+    public int getConditionCount()
+    {
+        return m_conditionTypes.length;
+    }
+
+    /**
+     * Returns the required condition type at the specified position.
+     */
+    public Condition.Type getConditionType(int index)
+    {
+        return m_conditionTypes[index];
+    }
+
+    /**
+     * Returns the exclusive lower severity bound for the required condition at the specified position.
+     */
+    public double getMinimumSeverity(int index)
+    {
+        return m_minimumSeverities[index];
+    }
+
+    /**
+     * Returns the inclusive upper severity bound for the required condition at the specified position.
+     */
+    public double getMaximumSeverity(int index)
+    {
+        return m_maximumSeverities[index];
+    }
+
+    /**
+     * Determines whether the patient's current set of conditions and associated severities meets the
+     * requirements for this trajectory.
+     *
+     * @param patient the current patient
+     * @return whether the trajectory matches the patient's current status
+     */
+    public boolean matches(Patient patient)
+    {
+        if (!patient.hasConditions(m_conditionMask))
+        {
+            return false;
+        }
+
+        for (int index = 0; index < m_conditionTypes.length; index++)
+        {
+            double pom = patient.getCondition(m_conditionTypes[index]).getProbabilityOfMortality();
+            if (!(pom > m_minimumSeverities[index] && pom <= m_maximumSeverities[index]))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Determines whether a patient, described by a condition mask and the probability of mortality
+     * of each condition, meets the requirements for this trajectory.
+     *
+     * @param conditionMask the patient's condition mask, see {@link Trajectory#m_conditionMask}
+     * @param severities    the probability of mortality of each of the patient's conditions, indexed
+     *                      by {@link Condition.Type#ordinal()} starting at the specified offset
+     * @param offset        the position of the patient's first severity in the array
+     * @return whether the trajectory matches the patient's current status
+     */
+    public boolean matches(int conditionMask, double[] severities, int offset)
+    {
+        if ((m_conditionMask & ~conditionMask) != 0)
+        {
+            return false;
+        }
+
+        for (int index = 0; index < m_conditionTypes.length; index++)
+        {
+            double pom = severities[offset + m_conditionTypes[index].ordinal()];
+            if (!(pom > m_minimumSeverities[index] && pom <= m_maximumSeverities[index]))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,314 @@
+package edu.bu.zaman.MMHModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable lookup table of all compiled patient trajectories. Trajectories are grouped by the
+ * set of conditions they require, and each group is sorted by the severity interval of its first
+ * condition, so that finding the trajectory for a patient only inspects the groups whose condition
+ * set the patient has and, within a group, only the trajectories whose interval contains the
+ * patient's severity.
+ *
+ * As with the trajectories sheet, when more than one trajectory matches a patient, the trajectory
+ * that appears first in the sheet is selected.
+ */
+public final class TrajectoryTable
+{
+    /**
+     * All condition types, indexed by {@link Condition.Type#ordinal()}.
+     */
+    private static final Condition.Type[] TYPES = Condition.Type.values();
+
+    /**
+     * Scratch buffer of the severities of the patient being looked up, one per thread since tables
+     * are shared by runs on different threads. Only the entries of the patient's conditions are read,
+     * so entries left over from an earlier patient are never used.
+     */
+    private static final ThreadLocal<double[]> SEVERITIES = ThreadLocal.withInitial(() -> new double[TYPES.length]);
+
+    /**
+     * All trajectories that share the same set of required conditions, sorted by the lower severity
+     * bound of the first required condition.
+     */
+    private static final class Group
+    {
+        /**
+         * The condition mask shared by all trajectories in this group.
+         */
+        private final int m_conditionMask;
+
+        /**
+         * The condition used to order the trajectories in this group.
+         */
+        private final Condition.Type m_leadCondition;
+
+        /**
+         * The trajectories of the group, sorted by the lower severity bound of the lead condition.
+         */
+        private final Trajectory[] m_trajectories;
+
+        /**
+         * The position in the table of each trajectory of the group.
+         */
+        private final int[] m_positions;
+
+        /**
+         * The lead condition's position within each trajectory of the group.
+         */
+        private final int[] m_leadIndices;
+
+        /**
+         * The lower severity bound of the lead condition for each trajectory.
+         */
+        private final double[] m_minimumSeverities;
+
+        /**
+         * The largest upper severity bound of the lead condition found in the trajectories up to and
+         * including each position, used to stop the search once no earlier interval can contain the
+         * patient's severity.
+         */
+        private final double[] m_maximumSeverities;
+
+        private Group(int conditionMask, List<Trajectory> trajectories, final Map<Trajectory, Integer> positions)
+        {
+            m_conditionMask = conditionMask;
+            m_leadCondition = trajectories.get(0).getConditionType(0);
+
+            final int[] leadIndices = new int[trajectories.size()];
+            final Map<Trajectory, Integer> leadIndexByTrajectory = new HashMap<>();
+            for (Trajectory trajectory : trajectories)
+            {
+                leadIndexByTrajectory.put(trajectory, leadIndex(trajectory, m_leadCondition));
+            }
+
+            List<Trajectory> sorted = new ArrayList<>(trajectories);
+            Collections.sort(sorted, new Comparator<Trajectory>()
+            {
+                @Override
+                public int compare(Trajectory trajectory1, Trajectory trajectory2)
+                {
+                    return Double.compare(
+                        trajectory1.getMinimumSeverity(leadIndexByTrajectory.get(trajectory1)),
+                        trajectory2.getMinimumSeverity(leadIndexByTrajectory.get(trajectory2))
+                    );
+                }
+            });
+
+            m_trajectories = sorted.toArray(new Trajectory[sorted.size()]);
+            m_positions = new int[m_trajectories.length];
+            m_minimumSeverities = new double[m_trajectories.length];
+            m_maximumSeverities = new double[m_trajectories.length];
+
+            double maximum = Double.NEGATIVE_INFINITY;
+            for (int index = 0; index < m_trajectories.length; index++)
+            {
+                m_positions[index] = positions.get(m_trajectories[index]);
+                leadIndices[index] = leadIndexByTrajectory.get(m_trajectories[index]);
+                m_minimumSeverities[index] = m_trajectories[index].getMinimumSeverity(leadIndices[index]);
+                maximum = Math.max(maximum, m_trajectories[index].getMaximumSeverity(leadIndices[index]));
+                m_maximumSeverities[index] = maximum;
+            }
+            m_leadIndices = leadIndices;
+        }
+
+        /**
+         * Returns the table position of the matching trajectory in this group that appears first in
+         * the trajectories sheet, provided that it appears before the specified position; otherwise
+         * returns -1.
+         */
+        private int find(int conditionMask, double[] severities, int offset, int beforePosition)
+        {
+            double pom = severities[offset + m_leadCondition.ordinal()];
+
+            // Only trajectories with a lower bound below the patient's severity can match
+            int end = Arrays.binarySearch(m_minimumSeverities, pom);
+            if (end < 0)
+            {
+                end = -end - 1;
+            }
+            while (end > 0 && m_minimumSeverities[end - 1] >= pom)
+            {
+                end--;
+            }
+
+            int match = -1;
+            for (int index = end - 1; index >= 0 && m_maximumSeverities[index] >= pom; index--)
+            {
+                if (m_positions[index] >= beforePosition ||
+                        m_trajectories[index].getMaximumSeverity(m_leadIndices[index]) < pom)
+                {
+                    continue;
+                }
+
+                if (m_trajectories[index].matches(conditionMask, severities, offset))
+                {
+                    match = m_positions[index];
+                    beforePosition = match;
+                }
+            }
+
+            return match;
+        }
+
+        private static int leadIndex(Trajectory trajectory, Condition.Type leadCondition)
+        {
+            for (int index = 0; index < trajectory.getConditionCount(); index++)
+            {
+                if (trajectory.getConditionType(index) == leadCondition)
+                {
+                    return index;
+                }
+            }
+
+            throw new IllegalStateException("Trajectory is missing the lead condition of its group.");
+        }
+    }
+
+    /**
+     * All trajectories in the order they appear in the trajectories sheet.
+     */
+    private final Trajectory[] m_trajectories;
+
+    /**
+     * Trajectories indexed by their ID.
+     */
+    private final HashMap<Integer, Trajectory> m_trajectoriesById;
+
+    /**
+     * Trajectories grouped by their required condition set.
+     */
+    private final Group[] m_groups;
+
+    /**
+     * Creates a new trajectory table.
+     *
+     * @param trajectories  the compiled trajectories
+     */
+    public TrajectoryTable(List<Trajectory> trajectories)
+    {
+        List<Trajectory> ordered = new ArrayList<>(trajectories);
+        Collections.sort(ordered, new Comparator<Trajectory>()
+        {
+            @Override
+            public int compare(Trajectory trajectory1, Trajectory trajectory2)
+            {
+                return Integer.compare(trajectory1.getRowNumber(), trajectory2.getRowNumber());
+            }
+        });
+        m_trajectories = ordered.toArray(new Trajectory[ordered.size()]);
+
+        m_trajectoriesById = new HashMap<>();
+        HashMap<Trajectory, Integer> positions = new HashMap<>();
+        LinkedHashMap<Integer, List<Trajectory>> trajectoriesByMask = new LinkedHashMap<>();
+        for (Trajectory trajectory : m_trajectories)
+        {
+            m_trajectoriesById.put(trajectory.getId(), trajectory);
+            positions.put(trajectory, positions.size());
+
+            List<Trajectory> group = trajectoriesByMask.get(trajectory.getConditionMask());
+            if (group == null)
+            {
+                group = new ArrayList<>();
+                trajectoriesByMask.put(trajectory.getConditionMask(), group);
+            }
+            group.add(trajectory);
+        }
+
+        m_groups = new Group[trajectoriesByMask.size()];
+        int index = 0;
+        for (Map.Entry<Integer, List<Trajectory>> entry : trajectoriesByMask.entrySet())
+        {
+            m_groups[index++] = new Group(entry.getKey(), entry.getValue(), positions);
+        }
+    }
+
+    /**
+     * Returns the trajectory with the specified ID or null if no such trajectory exists.
+     *
+     * @param trajectoryId the trajectory id
+     */
+    public Trajectory get(int trajectoryId)
+    {
+        return m_trajectoriesById.get(trajectoryId);
+    }
+
+    /**
+     * Returns the number of trajectories in the table.
+     */
+    public int size()
+    {
+        return m_trajectories.length;
+    }
+
+    /**
+     * Returns the trajectory at the specified position of the table, where trajectories are ordered
+     * as they appear in the trajectories sheet.
+     *
+     * @param position the position of the trajectory in the table
+     */
+    public Trajectory getAt(int position)
+    {
+        return m_trajectories[position];
+    }
+
+    /**
+     * Finds the first trajectory, in sheet order, whose condition and severity requirements are
+     * satisfied by the patient.
+     *
+     * @param patient the current patient
+     * @return the matching trajectory, or null if the patient does not match any trajectory
+     */
+    public Trajectory find(Patient patient)
+    {
+        double[] severities = SEVERITIES.get();
+        for (int mask = patient.getConditionMask(); mask != 0; mask &= mask - 1)
+        {
+            int ordinal = Integer.numberOfTrailingZeros(mask);
+            severities[ordinal] = patient.getCondition(TYPES[ordinal]).getProbabilityOfMortality();
+        }
+
+        int position = find(patient.getConditionMask(), severities, 0);
+        return (position < 0) ? null : m_trajectories[position];
+    }
+
+    /**
+     * Finds the first trajectory, in sheet order, whose condition and severity requirements are
+     * satisfied by a patient described by a condition mask and the severity of each condition.
+     *
+     * @param conditionMask the patient's condition mask, see {@link Trajectory#getConditionMask()}
+     * @param severities    the probability of mortality of each of the patient's conditions, indexed
+     *                      by {@link Condition.Type#ordinal()} starting at the specified offset
+     * @param offset        the position of the patient's first severity in the array
+     * @return the position of the matching trajectory in the table, or -1 if the patient does not
+     *         match any trajectory
+     */
+    public int find(int conditionMask, double[] severities, int offset)
+    {
+        int match = -1;
+        int beforePosition = Integer.MAX_VALUE;
+        for (Group group : m_groups)
+        {
+            // Skip groups that require a condition the patient does not have
+            if ((group.m_conditionMask & ~conditionMask) != 0)
+            {
+                continue;
+            }
+
+            int position = group.find(conditionMask, severities, offset, beforePosition);
+            if (position >= 0)
+            {
+                match = position;
+                beforePosition = position;
+            }
+        }
+
+        return match;
+    }
+}
@@ -0,0 +1,27 @@
+package edu.bu.zaman.MMHModel;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for one cycle of treatment administered to a patient.
+ */
+@Name("edu.bu.zaman.MMHModel.Treatment")
+@Label("Treatment")
+@Category("MMH Model")
+@Description("A cycle of a treatment plan was administered to a patient")
+final class TreatmentEvent extends Event
+{
+    @Label("Patient ID")
+    int patientId;
+
+    @Label("Trajectory ID")
+    int trajectoryId;
+
+    @Label("Plan Cycle")
+    @Description("The cycle of the treatment plan that was administered")
+    int planCycle;
+}
@@ -1,8 +1,10 @@
 package edu.bu.zaman.MMHModel;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-
+/**
+ * Tracks a single patient's progress through the treatment plan of a trajectory. The plan data
+ * itself is stored in a {@link TreatmentPlanTemplate} that is shared by every patient following
+ * the same trajectory.
+ */
 public class TreatmentPlan
 {
     /**
@@ -11,78 +13,9 @@ public class TreatmentPlan
 	private Patient m_patient;
 
 	/**
-	 * The ID used to uniquely identify this treatment plan.
+	 * The shared description of the treatment plan.
 	 */
-	private int m_id;
-	
-    /**
-     * List of condition types that this treatment treats.
-     */
-	private ArrayList<Condition.Type> m_conditionTypes;
-    
-    /**
-     * Stores the initial probability of mortality for each condition associated with this
-     * treatment plan before any treatment is administered.
-     */
-    //private HashMap<Condition.Type, Double> m_initialProbabilitiesOfMortality;
-    
-    /**
-     * Stores the efficacy of this treatment plan toward the treatment of each specific condition.
-     */
-    private HashMap<Condition.Type, Double> m_treatmentEfficacies;
-    
-    /**
-     * Stores the dosags used for each material resource when they administered in accordance with
-     * the treatment plan.
-     */
-    private HashMap<Hospital.MaterialResource, Double> m_materialResourceDosages;
-    
-    /**
-     * Describes in cycles how often each material resource is used throughout the treatment plan.
-     * A value of zero indicates that the resource should only be used once at the beginning of the
-     * treatment plan. A value of 1 indicates that it should be used every cycle; a value of 2, every
-     * other cycle; etc.
-     */
-    private HashMap<Hospital.MaterialResource, Integer> m_materialResourceFrequencies;
-    
-    /**
-     * The number of nurses needed during active periods of the treatment plan.
-     */
-	private int m_nursesNeeded;
-    
-    /**
-     * The number of consecutive cycles that a nurse is needed during active periods of the
-     * treatment plan.
-     */
-	private int m_nurseOnTime;
-    
-    /**
-     * The number of consecutive cycles a nurse is not needed during inactive periods of the
-     * treatment plan.
-     */
-	private int m_nurseOffTime;
-    
-    /**
-     * The number of doctors needed during active periods of the treatment plan.
-     */
-	private int m_doctorsNeeded;
-    
-    /**
-     * The number of consecutive cycles that a doctor is needed during active periods of the
-     * treatment plan.
-     */
-	private int m_doctorOnTime;
-    
-    /**
-     * The number of consecutive cycles a doctor is not needed during inactive periods of the
-     * treatment plan.
-     */
-	private int m_doctorOffTime;
-    
-    /**
-     * The total length of the treatment plan in units of cycles.
-     */
-	private int m_totalCycles;
+	private TreatmentPlanTemplate m_template;
 
     /**
      * Records how many cycles of treatment have been administered
@@ -93,55 +26,52 @@ public class TreatmentPlan
      * Creates a new treatment plan.
      *
      * @param patient   the patient associated with this treatment plan
+     * @param template  the treatment plan the patient should follow
      */
-	public TreatmentPlan(
-        Patient patient,
-        int id,
-        ArrayList<Condition.Type> conditionTypes,
-        Hospital.MaterialResource[] materialResources,
-        double[] treatmentEfficacies,
-        double[] materialResourceDosages,
-        int[] materialResourceFrequencies,
-        int nursesNeeded,
-        int nurseOnTime,
-        int nurseOffTime,
-        int doctorsNeeded,
-        int doctorOnTime,
-        int doctorOffTime,
-        int totalCycles
-    )
+	public TreatmentPlan(Patient patient, TreatmentPlanTemplate template)
     {
+		this(patient, template, 0);
+	}
+	
+	/**
+	 * Creates a treatment plan that has already administered a number of cycles of treatment, e.g.
+	 * when it is restored from a {@link Checkpoint}.
+	 *
+	 * @param patient   the patient associated with this treatment plan
+	 * @param template  the treatment plan the patient should follow
+	 * @param cycle     {@link TreatmentPlan#m_cycle}
+	 */
+	TreatmentPlan(Patient patient, TreatmentPlanTemplate template, int cycle)
+	{
 		m_patient = patient;
-		m_id = id;
-        m_conditionTypes = conditionTypes;
-        
-        m_nursesNeeded = nursesNeeded;
-        m_nurseOnTime = nurseOnTime;
-        m_nurseOffTime = nurseOffTime;
-        
-        m_doctorsNeeded = doctorsNeeded;
-        m_doctorOnTime = doctorOnTime;
-        m_doctorOffTime = doctorOffTime;
-        
-        m_totalCycles = totalCycles;
-        
-        //m_initialProbabilitiesOfMortality = new HashMap<>();
-        m_treatmentEfficacies = new HashMap<>();
-        m_materialResourceFrequencies = new HashMap<>();
-        m_materialResourceDosages = new HashMap<>();
-        
-        // Store the treatment efficacies internally as a HashMap rather than an array
-        for (int index = 0; index < conditionTypes.size(); index++)
-        {
-            m_treatmentEfficacies.put(conditionTypes.get(index), treatmentEfficacies[index]);
-        }
-        
-        // Stores the dosages and frequencies as a HashMap rather than as arrays
-        for (int index = 0; index < materialResources.length; index++)
-        {
-            m_materialResourceDosages.put(materialResources[index], materialResourceDosages[index]);
-            m_materialResourceFrequencies.put(materialResources[index], materialResourceFrequencies[index]);
-        }
+		m_template = template;
+		m_cycle = cycle;
+	}
+	
+	/**
+	 * Returns a copy of the treatment plan, at the same cycle of treatment, for another patient.
+	 *
+	 * @param patient the patient associated with the copy
+	 */
+	TreatmentPlan copy(Patient patient)
+	{
+		return new TreatmentPlan(patient, m_template, m_cycle);
+	}
+	
+	/**
+	 * {@link TreatmentPlan#m_cycle}
+	 */
+	int getCycle()
+	{
+		return m_cycle;
+	}
+	
+	/**
+	 * {@link TreatmentPlan#m_template}
+	 */
+	public TreatmentPlanTemplate getTemplate()
+	{
+		return m_template;
 	}
 	
 	/**
@@ -151,29 +81,20 @@ public class TreatmentPlan
 	 */
 	public int getID()
 	{
-		return m_id;
+		return m_template.getID();
 	}
     
     /**
-     * Returns a HashMap of material resources and associated dosages that are required for 
+     * Fills a resource vector with the dosage of every material resource that is required for
      * treatment within the current treatment cycle.
+     *
+     * @param doses the resource vector to fill, indexed by {@link Hospital.MaterialResource#ordinal()}
+     * @return a bitmask of the required material resources
+     * @see TreatmentPlanTemplate#requiredMaterialResources(int, double[])
      */
-	public HashMap<Hospital.MaterialResource, Double> requiredMaterialResources()
+	public int requiredMaterialResources(double[] doses)
     {
-        HashMap<Hospital.MaterialResource, Double> cycleResources = new HashMap<>();
-        for (Hospital.MaterialResource resource : m_materialResourceDosages.keySet())
-        {
-            int frequency = m_materialResourceFrequencies.get(resource);
-			if (
-                (frequency == 0 && m_cycle == 0) ||
-                (frequency != 0 && m_cycle % frequency == 0)
-            )
-            {
-                cycleResources.put(resource, m_materialResourceDosages.get(resource));
-			}
-		}
-        
-        return cycleResources;
+        return m_template.requiredMaterialResources(m_cycle, doses);
 	}
     
     /**
@@ -181,23 +102,7 @@ public class TreatmentPlan
      */
 	public int requiredNurses()
     {
-        boolean nursesNeeded = false;
-        
-		if (m_cycle == 0)
-        {
-            nursesNeeded = humanResourcesRequired(m_cycle, m_nurseOnTime, m_nurseOffTime);
-		}
-		else
-        {
-            nursesNeeded = !humanResourcesRequired(m_cycle - 1, m_nurseOnTime, m_nurseOffTime);
-		}
-
-		if (nursesNeeded)
-        {
-            return m_nursesNeeded;
-		}
-
-        return 0;
+		return m_template.requiredNurses(m_cycle);
 	}
     
     /**
@@ -205,23 +110,7 @@ public class TreatmentPlan
      */
 	public int requiredDoctors()
     {
-        boolean doctorsNeeded = false;
-        
-		if (m_cycle == 0)
-        {
-            doctorsNeeded = humanResourcesRequired(m_cycle, m_doctorOnTime, m_doctorOffTime);
-		}
-		else
-        {
-            doctorsNeeded = !humanResourcesRequired(m_cycle - 1, m_doctorOnTime, m_doctorOffTime);
-		}
-
-		if (doctorsNeeded)
-        {
-            return m_doctorsNeeded;
-		}
-
-        return 0;
+		return m_template.requiredDoctors(m_cycle);
 	}
     
     /**
@@ -230,12 +119,7 @@ public class TreatmentPlan
      */
 	public int freeNursesAfterTreatment()
     {
-		if (!m_patient.isAlive() || !humanResourcesRequired(m_cycle, m_nurseOnTime, m_nurseOffTime))
-        {
-            return m_nursesNeeded;
-		}
-            
-        return 0;
+		return m_template.freeNursesAfterTreatment(m_cycle, m_patient.isAlive());
 	}
             
     /**
@@ -244,36 +128,7 @@ public class TreatmentPlan
      */
 	public int freeDoctorsAfterTreatment()
     {
-		if (!m_patient.isAlive() || !humanResourcesRequired(m_cycle, m_doctorOnTime, m_doctorOffTime))
-        {
-            return m_doctorsNeeded;
-		}
-            
-        return 0;
-	}
-    
-    /**
-     * Returns whether a human resource is required with the patient for treatment in the current cycle.
-     *
-     * @param cycle     the cycle for which the human resource requirements are being requested
-     * @param onTime    the number of consecutive cycles the human resource is active for during treatment
-     * @param offTime   the number of consecutive cycles the human resource in inactive for after treatment
-     */
-	private boolean humanResourcesRequired(int cycle, int onTime, int offTime)
-    {
-		int period = onTime + offTime;
-        if (period == 0)
-        {
-            return false;
-        }
-        
-		int periodCycle = cycle % period;
-		if (periodCycle < onTime)
-        {
-            return true;
-        }
-            
-        return false;
+		return m_template.freeDoctorsAfterTreatment(m_cycle, m_patient.isAlive());
 	}
             
     /**
@@ -282,39 +137,31 @@ public class TreatmentPlan
      */
 	public void treatPatient()
     {
-		double pi;
-		double pf;
-		double newProbability;
-            
-        for (Condition.Type type: m_conditionTypes)
+        TreatmentEvent event = new TreatmentEvent();
+        event.begin();
+        
+        for (int index = 0; index < m_template.getConditionTypeCount(); index++)
         {
+            Condition.Type type = m_template.getConditionType(index);
             Condition patientCondition = m_patient.getCondition(type);
             if (patientCondition == null)
             {
                 continue;
             }
             
-			pi = patientCondition.getProbabilityOfMortality();
-			pf = m_treatmentEfficacies.get(type);
-            
-			newProbability = ((pi - pf) * decay(m_cycle + 1)) + pf;
-            patientCondition.setProbabilityOfMortality(newProbability);
-            
-            //System.out.println("\t\tTreating patient " + m_patient.getPatientId() +", pom=" + newProbability + ", pi=" + pi + ", pf=" + pf + ", cycle="+m_cycle);
+            double pi = patientCondition.getProbabilityOfMortality();
+            patientCondition.setProbabilityOfMortality(m_template.treatedProbabilityOfMortality(type, pi, m_cycle));
 		}
             
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.patientId = m_patient.getPatientId();
+            event.trajectoryId = m_template.getID();
+            event.planCycle = m_cycle;
+            event.commit();
+        }
+        
         m_cycle++; // Increase the relative cycle, now that treatment has been adminsitered for this patient
     }
-	
-	/** 
-     * Represents the shape of a decay function for decreasing the probability of mortality for a given
-	 * condition over the course of the treatment plan; this function should be defined such that f(0) = 1
-	 * and f(c) = 0, where c is final cycle of the treatment plan.
-     *
-     * @param cycle the cycle number for which the decay factor is being requested
-     */
-	private double decay(int cycle)
-    {
-        return 1 - ((double)cycle / (double)m_totalCycles);
-	}
 }
@@ -0,0 +1,507 @@
+package edu.bu.zaman.MMHModel;
+
+/**
+ * Immutable description of the treatment plan associated with a trajectory. A single template is
+ * created for each trajectory when the setup file is loaded and shared by all patients following
+ * that trajectory; the per-patient progress through the plan is tracked by {@link TreatmentPlan}.
+ */
+public final class TreatmentPlanTemplate
+{
+	/**
+	 * The ID used to uniquely identify this treatment plan.
+	 */
+	private final int m_id;
+
+    /**
+     * List of condition types that this treatment treats.
+     */
+	private final Condition.Type[] m_conditionTypes;
+
+    /**
+     * Stores the efficacy of this treatment plan toward the treatment of each specific condition,
+     * indexed by {@link Condition.Type#ordinal()}.
+     */
+    private final double[] m_treatmentEfficacies;
+
+    /**
+     * The material resources used by the treatment plan.
+     */
+    private final Hospital.MaterialResource[] m_materialResources;
+
+    /**
+     * Stores the dosages used for each material resource when they administered in accordance with
+     * the treatment plan.
+     */
+    private final double[] m_materialResourceDosages;
+
+    /**
+     * Describes in cycles how often each material resource is used throughout the treatment plan.
+     * A value of zero indicates that the resource should only be used once at the beginning of the
+     * treatment plan. A value of 1 indicates that it should be used every cycle; a value of 2, every
+     * other cycle; etc.
+     */
+    private final int[] m_materialResourceFrequencies;
+
+    /**
+     * The number of nurses needed during active periods of the treatment plan.
+     */
+	private final int m_nursesNeeded;
+
+    /**
+     * The number of consecutive cycles that a nurse is needed during active periods of the
+     * treatment plan.
+     */
+	private final int m_nurseOnTime;
+
+    /**
+     * The number of consecutive cycles a nurse is not needed during inactive periods of the
+     * treatment plan.
+     */
+	private final int m_nurseOffTime;
+
+    /**
+     * The number of doctors needed during active periods of the treatment plan.
+     */
+	private final int m_doctorsNeeded;
+
+    /**
+     * The number of consecutive cycles that a doctor is needed during active periods of the
+     * treatment plan.
+     */
+	private final int m_doctorOnTime;
+
+    /**
+     * The number of consecutive cycles a doctor is not needed during inactive periods of the
+     * treatment plan.
+     */
+	private final int m_doctorOffTime;
+
+    /**
+     * The total length of the treatment plan in units of cycles.
+     */
+	private final int m_totalCycles;
+
+    /**
+     * Creates a new treatment plan template.
+     */
+	public TreatmentPlanTemplate(
+        int id,
+        Condition.Type[] conditionTypes,
+        Hospital.MaterialResource[] materialResources,
+        double[] treatmentEfficacies,
+        double[] materialResourceDosages,
+        int[] materialResourceFrequencies,
+        int nursesNeeded,
+        int nurseOnTime,
+        int nurseOffTime,
+        int doctorsNeeded,
+        int doctorOnTime,
+        int doctorOffTime,
+        int totalCycles
+    )
+	{
+		if (treatmentEfficacies.length < conditionTypes.length)
+		{
+			throw new IllegalArgumentException("Missing treatment efficacy for treatment plan " + id);
+		}
+
+		if (materialResourceDosages.length < materialResources.length ||
+				materialResourceFrequencies.length < materialResources.length)
+		{
+			throw new IllegalArgumentException("Missing dosage or frequency for treatment plan " + id);
+		}
+
+		m_id = id;
+		m_conditionTypes = conditionTypes.clone();
+
+        m_nursesNeeded = nursesNeeded;
+        m_nurseOnTime = nurseOnTime;
+        m_nurseOffTime = nurseOffTime;
+
+        m_doctorsNeeded = doctorsNeeded;
+        m_doctorOnTime = doctorOnTime;
+        m_doctorOffTime = doctorOffTime;
+
+        m_totalCycles = totalCycles;
+
+        // Store the treatment efficacies by condition type so they can be looked up directly
+        m_treatmentEfficacies = new double[Condition.Type.values().length];
+        for (int index = 0; index < conditionTypes.length; index++)
+        {
+        	m_treatmentEfficacies[conditionTypes[index].ordinal()] = treatmentEfficacies[index];
+        }
+
+        m_materialResources = materialResources.clone();
+        m_materialResourceDosages = new double[materialResources.length];
+        m_materialResourceFrequencies = new int[materialResources.length];
+        System.arraycopy(materialResourceDosages, 0, m_materialResourceDosages, 0, materialResources.length);
+        System.arraycopy(materialResourceFrequencies, 0, m_materialResourceFrequencies, 0, materialResources.length);
+	}
+
+	/**
+	 * Parses a treatment plan from the comma separated values of a trajectory, as they are written in
+	 * the trajectories sheet.
+	 *
+	 * @return the parsed treatment plan template
+	 * @throws IllegalArgumentException if any of the values are invalid
+	 */
+	public static TreatmentPlanTemplate parse(
+		String id,
+		String treatedConditions,
+		String materialResources,
+		String efficacies,
+		String dosages,
+		String frequencies,
+		String nurses,
+		String nurseOnTime,
+		String nurseOffTime,
+		String doctors,
+		String doctorOnTime,
+		String doctorOffTime,
+		String totalCycles
+	)
+	{
+		String[] conditions = treatedConditions.split(",");
+		Condition.Type[] conditionTypes = new Condition.Type[conditions.length];
+		for (int index = 0; index < conditions.length; index++)
+		{
+			conditionTypes[index] = Condition.Type.valueOf(conditions[index].trim());
+		}
+
+		String[] resources = materialResources.split(",");
+		Hospital.MaterialResource[] resourceTypes = new Hospital.MaterialResource[resources.length];
+		for (int index = 0; index < resources.length; index++)
+		{
+			resourceTypes[index] = Hospital.MaterialResource.valueOf(resources[index].trim());
+		}
+
+		return new TreatmentPlanTemplate(
+			Integer.parseInt(id),
+			conditionTypes,
+			resourceTypes,
+			parseDoubles(efficacies),
+			parseDoubles(dosages),
+			parseIntegers(frequencies),
+			Integer.parseInt(nurses),
+			Integer.parseInt(nurseOnTime),
+			Integer.parseInt(nurseOffTime),
+			Integer.parseInt(doctors),
+			Integer.parseInt(doctorOnTime),
+			Integer.parseInt(doctorOffTime),
+			Integer.parseInt(totalCycles)
+		);
+	}
+
+	private static double[] parseDoubles(String values)
+	{
+		String[] strings = values.split(",");
+		double[] doubles = new double[strings.length];
+		for (int index = 0; index < strings.length; index++)
+		{
+			doubles[index] = Double.parseDouble(strings[index]);
+		}
+
+		return doubles;
+	}
+
+	private static int[] parseIntegers(String values)
+	{
+		String[] strings = values.split(",");
+		int[] integers = new int[strings.length];
+		for (int index = 0; index < strings.length; index++)
+		{
+			integers[index] = Integer.parseInt(strings[index]);
+		}
+
+		return integers;
+	}
+
+	/**
+	 * {@link TreatmentPlanTemplate#m_id}
+	 */
+	public int getID()
+	{
+		return m_id;
+	}
+
+	/**
+	 * Returns the number of condition types treated by this plan.
+	 */
+	public int getConditionTypeCount()
+	{
+		return m_conditionTypes.length;
+	}
+
+	/**
+	 * Returns the treated condition type at the specified position.
+	 */
+	public Condition.Type getConditionType(int index)
+	{
+		return m_conditionTypes[index];
+	}
+
+	/**
+	 * Returns the efficacy of the treatment plan toward the specified condition type.
+	 */
+	public double getTreatmentEfficacy(Condition.Type type)
+	{
+		return m_treatmentEfficacies[type.ordinal()];
+	}
+
+	/**
+	 * Returns the number of material resources used by this plan.
+	 */
+	public int getMaterialResourceCount()
+	{
+		return m_materialResources.length;
+	}
+
+	/**
+	 * Returns the material resource at the specified position.
+	 */
+	public Hospital.MaterialResource getMaterialResource(int index)
+	{
+		return m_materialResources[index];
+	}
+
+	/**
+	 * Returns the dosage of the material resource at the specified position.
+	 */
+	public double getMaterialResourceDosage(int index)
+	{
+		return m_materialResourceDosages[index];
+	}
+
+	/**
+	 * Returns the frequency of the material resource at the specified position.
+	 *
+	 * @see TreatmentPlanTemplate#m_materialResourceFrequencies
+	 */
+	public int getMaterialResourceFrequency(int index)
+	{
+		return m_materialResourceFrequencies[index];
+	}
+
+	/**
+	 * {@link TreatmentPlanTemplate#m_nursesNeeded}
+	 */
+	public int getNursesNeeded()
+	{
+		return m_nursesNeeded;
+	}
+
+	/**
+	 * {@link TreatmentPlanTemplate#m_nurseOnTime}
+	 */
+	public int getNurseOnTime()
+	{
+		return m_nurseOnTime;
+	}
+
+	/**
+	 * {@link TreatmentPlanTemplate#m_nurseOffTime}
+	 */
+	public int getNurseOffTime()
+	{
+		return m_nurseOffTime;
+	}
+
+	/**
+	 * {@link TreatmentPlanTemplate#m_doctorsNeeded}
+	 */
+	public int getDoctorsNeeded()
+	{
+		return m_doctorsNeeded;
+	}
+
+	/**
+	 * {@link TreatmentPlanTemplate#m_doctorOnTime}
+	 */
+	public int getDoctorOnTime()
+	{
+		return m_doctorOnTime;
+	}
+
+	/**
+	 * {@link TreatmentPlanTemplate#m_doctorOffTime}
+	 */
+	public int getDoctorOffTime()
+	{
+		return m_doctorOffTime;
+	}
+
+	/**
+	 * {@link TreatmentPlanTemplate#m_totalCycles}
+	 */
+	public int getTotalCycles()
+	{
+		return m_totalCycles;
+	}
+
+	/**
+	 * Returns whether the material resource at the specified position is administered in the
+	 * specified cycle of the treatment plan.
+	 *
+	 * @param index	the position of the material resource
+	 * @param cycle	the relative cycle of the treatment plan
+	 * @see TreatmentPlanTemplate#m_materialResourceFrequencies
+	 */
+	public boolean isMaterialResourceDue(int index, int cycle)
+	{
+		int frequency = m_materialResourceFrequencies[index];
+		return (frequency == 0 && cycle == 0) || (frequency != 0 && cycle % frequency == 0);
+	}
+
+	/**
+	 * Fills a resource vector with the dosage of every material resource administered in the
+	 * specified cycle of the treatment plan. Entries for resources that are not administered are
+	 * left untouched.
+	 *
+	 * @param cycle	the relative cycle of the treatment plan
+	 * @param doses	the resource vector to fill, indexed by {@link Hospital.MaterialResource#ordinal()}
+	 * @return a bitmask of the material resources administered in the cycle, where each bit
+	 *         corresponds to {@link Hospital.MaterialResource#ordinal()}
+	 */
+	public int requiredMaterialResources(int cycle, double[] doses)
+	{
+		int resourceMask = 0;
+		for (int index = 0; index < m_materialResources.length; index++)
+		{
+			if (isMaterialResourceDue(index, cycle))
+			{
+				int ordinal = m_materialResources[index].ordinal();
+				doses[ordinal] = m_materialResourceDosages[index];
+				resourceMask |= 1 << ordinal;
+			}
+		}
+
+		return resourceMask;
+	}
+
+    /**
+     * Returns the number of nurses needed from the hospital for treatment in the specified cycle of
+     * the treatment plan.
+     *
+     * @param cycle the relative cycle of the treatment plan
+     */
+	public int requiredNurses(int cycle)
+    {
+		return requiredHumanResources(cycle, m_nursesNeeded, m_nurseOnTime, m_nurseOffTime);
+	}
+
+    /**
+     * Returns the number of doctors needed from the hospital for treatment in the specified cycle of
+     * the treatment plan.
+     *
+     * @param cycle the relative cycle of the treatment plan
+     */
+	public int requiredDoctors(int cycle)
+    {
+		return requiredHumanResources(cycle, m_doctorsNeeded, m_doctorOnTime, m_doctorOffTime);
+	}
+
+    /**
+     * Returns the number of nurses that are free from their treatment visit after treatment has been
+     * administered, where the cycle is the relative cycle of the plan after treatment.
+     *
+     * @param cycle	the relative cycle of the treatment plan
+     * @param alive	whether the patient is still alive
+     */
+	public int freeNursesAfterTreatment(int cycle, boolean alive)
+    {
+		if (!alive || !humanResourcesRequired(cycle, m_nurseOnTime, m_nurseOffTime))
+        {
+            return m_nursesNeeded;
+		}
+
+        return 0;
+	}
+
+    /**
+     * Returns the number of doctors that are free from their treatment visit after treatment has been
+     * administered, where the cycle is the relative cycle of the plan after treatment.
+     *
+     * @param cycle	the relative cycle of the treatment plan
+     * @param alive	whether the patient is still alive
+     */
+	public int freeDoctorsAfterTreatment(int cycle, boolean alive)
+    {
+		if (!alive || !humanResourcesRequired(cycle, m_doctorOnTime, m_doctorOffTime))
+        {
+            return m_doctorsNeeded;
+		}
+
+        return 0;
+	}
+
+	/**
+	 * Returns the probability of mortality of a condition after it has been treated in the specified
+	 * cycle of the treatment plan, based on the treatment efficacy for the condition.
+	 *
+	 * @param type	the condition type being treated
+	 * @param pi	the probability of mortality of the condition before treatment
+	 * @param cycle	the relative cycle of the treatment plan
+	 */
+	public double treatedProbabilityOfMortality(Condition.Type type, double pi, int cycle)
+	{
+		double pf = m_treatmentEfficacies[type.ordinal()];
+		return ((pi - pf) * decay(cycle + 1)) + pf;
+	}
+
+	private static int requiredHumanResources(int cycle, int needed, int onTime, int offTime)
+	{
+        boolean required = false;
+
+		if (cycle == 0)
+        {
+            required = humanResourcesRequired(cycle, onTime, offTime);
+		}
+		else
+        {
+            required = !humanResourcesRequired(cycle - 1, onTime, offTime);
+		}
+
+		if (required)
+        {
+            return needed;
+		}
+
+        return 0;
+	}
+
+    /**
+     * Returns whether a human resource is required with the patient for treatment in the current cycle.
+     *
+     * @param cycle     the cycle for which the human resource requirements are being requested
+     * @param onTime    the number of consecutive cycles the human resource is active for during treatment
+     * @param offTime   the number of consecutive cycles the human resource in inactive for after treatment
+     */
+	private static boolean humanResourcesRequired(int cycle, int onTime, int offTime)
+    {
+		int period = onTime + offTime;
+        if (period == 0)
+        {
+            return false;
+        }
+
+		int periodCycle = cycle % period;
+		if (periodCycle < onTime)
+        {
+            return true;
+        }
+
+        return false;
+	}
+
+	/**
+     * Represents the shape of a decay function for decreasing the probability of mortality for a given
+	 * condition over the course of the treatment plan; this function should be defined such that f(0) = 1
+	 * and f(c) = 0, where c is final cycle of the treatment plan.
+     *
+     * @param cycle the cycle number for which the decay factor is being requested
+     */
+	private double decay(int cycle)
+    {
+        return 1 - ((double)cycle / (double)m_totalCycles);
+	}
+}
@@ -0,0 +1,89 @@
+package edu.bu.zaman.MMHModel;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Puts patients in triage order, from the most severe to the least severe patient by
+ * {@link Patient#probabilityOfMortality()}. Patients with the same probability of mortality are
+ * ordered by their id, so that patients admitted earlier are seen first.
+ *
+ * Every patient in the hospital is visited in triage order in every cycle, and is either treated or
+ * deteriorates, so nearly every patient's probability of mortality changes between two cycles.
+ * Keeping the patients in a priority queue updated on each change would therefore cost as much as
+ * a sort, and still need a full ordered traversal. Instead the probability of mortality of each
+ * patient is evaluated once per cycle and the patients are sorted on those cached keys.
+ */
+public class TriageSorter
+{
+    /**
+     * Orders entries by their cached probability of mortality, most severe first, and then by id.
+     */
+    private static final Comparator<Entry> ORDER = (entry1, entry2) ->
+    {
+        int compare = Double.compare(entry2.m_key, entry1.m_key);
+        return (compare != 0) ? compare : Integer.compare(entry1.m_patient.getPatientId(), entry2.m_patient.getPatientId());
+    };
+
+    /**
+     * Entries reused from one sort to the next, so that sorting does not allocate once the census
+     * has stopped growing.
+     */
+    private Entry[] m_entries = new Entry[0];
+
+    /**
+     * Fills the specified list with the patients in triage order. The probability of mortality of
+     * each patient is evaluated once, so changes made while the caller works through the list do
+     * not affect it.
+     *
+     * @param patients  the patients to order, which are left unchanged
+     * @param order     the list to fill, which is cleared first
+     */
+    public void sort(List<Patient> patients, List<Patient> order)
+    {
+        order.clear();
+
+        int size = patients.size();
+        if (m_entries.length < size)
+        {
+            int length = m_entries.length;
+            m_entries = Arrays.copyOf(m_entries, Math.max(size, 2 * length));
+            for (int index = length; index < m_entries.length; index++)
+            {
+                m_entries[index] = new Entry();
+            }
+        }
+
+        for (int index = 0; index < size; index++)
+        {
+            Entry entry = m_entries[index];
+            entry.m_patient = patients.get(index);
+            entry.m_key = entry.m_patient.probabilityOfMortality();
+        }
+
+        Arrays.sort(m_entries, 0, size, ORDER);
+
+        for (int index = 0; index < size; index++)
+        {
+            order.add(m_entries[index].m_patient);
+            m_entries[index].m_patient = null;
+        }
+    }
+
+    /**
+     * A patient and its probability of mortality at the start of the sort.
+     */
+    private static final class Entry
+    {
+        /**
+         * The patient.
+         */
+        Patient m_patient;
+
+        /**
+         * The probability of mortality of the patient.
+         */
+        double m_key;
+    }
+}
@@ -0,0 +1,119 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Branches a single run into several what-if interventions. Each branch is a
+ * {@link SimulationContext#fork()} of the same base run, so the branches continue from the cycle the
+ * base run has reached rather than from cycle 0, and share its trajectories and deceased patients.
+ * Branches are run in parallel across all available cores, like the replications of a
+ * {@link ReplicationRunner}.
+ *
+ * Every branch continues with the random streams of the base run, so differences between branches
+ * are due to the interventions rather than to different random draws.
+ */
+public class WhatIfRunner
+{
+    /**
+     * The run the branches are forked from.
+     */
+    private final SimulationContext m_base;
+
+    /**
+     * Determines how many new patients arrive in each cycle of every branch.
+     */
+    private final ArrivalProcess m_arrivalProcess;
+
+    /**
+     * The cycle at which every branch ends.
+     */
+    private final int m_totalCycles;
+
+    /**
+     * Times and counters of the phases of every cycle, shared by all branches.
+     */
+    private final CycleMetrics m_metrics = new CycleMetrics();
+
+    /**
+     * Creates a new what-if runner.
+     *
+     * @param base              the run the branches are forked from, which is not modified
+     * @param arrivalProcess    determines how many new patients arrive in each cycle
+     * @param totalCycles       the cycle at which every branch ends
+     */
+    public WhatIfRunner(SimulationContext base, ArrivalProcess arrivalProcess, int totalCycles)
+    {
+        if (totalCycles < base.getCycle())
+        {
+            throw new IllegalArgumentException("The base run is already past cycle " + totalCycles + ".");
+        }
+
+        m_base = base;
+        m_arrivalProcess = arrivalProcess;
+        m_totalCycles = totalCycles;
+    }
+
+    /**
+     * {@link WhatIfRunner#m_metrics}
+     */
+    public CycleMetrics getMetrics()
+    {
+        return m_metrics;
+    }
+
+    /**
+     * Forks a branch per intervention, applies the intervention and runs the branches in parallel
+     * up to the total number of cycles. Every branch is forked before any branch starts, so the base
+     * run is only read while it is not changing.
+     *
+     * The result of each branch counts the admissions and deaths of the whole run, including those
+     * before the fork, but only records the census and deaths of the cycles run by the branch.
+     *
+     * @param interventions the interventions to compare
+     * @return the result of each branch, in the same order as the interventions
+     */
+    public List<ReplicationResult> run(List<Intervention> interventions)
+    {
+        final SimulationContext[] branches = new SimulationContext[interventions.size()];
+        for (int branch = 0; branch < branches.length; branch++)
+        {
+            branches[branch] = m_base.fork();
+            interventions.get(branch).apply(branches[branch]);
+        }
+
+        return IntStream.range(0, branches.length)
+            .parallel()
+            .mapToObj(branch -> runBranch(branches[branch]))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Runs a single branch to the total number of cycles.
+     *
+     * @param context the state of the branch
+     * @return the result of the branch
+     */
+    private ReplicationResult runBranch(SimulationContext context)
+    {
+        ReplicationResult result = new ReplicationResult(m_totalCycles);
+
+        Simulation simulation = new Simulation(context, m_arrivalProcess);
+        simulation.setMetrics(m_metrics);
+        simulation.addListener(result);
+        try
+        {
+            simulation.resume(m_totalCycles - context.getCycle());
+        }
+        catch (IOException ioe)
+        {
+            throw new UncheckedIOException(ioe);
+        }
+
+        result.complete(context);
+        return result;
+    }
+}
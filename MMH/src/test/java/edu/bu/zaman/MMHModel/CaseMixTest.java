@@ -0,0 +1,84 @@
+package edu.bu.zaman.MMHModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the case mix distribution.
+ */
+public class CaseMixTest
+    extends TestCase
+{
+    /**
+     * Sampled combinations should follow the incidence of each combination.
+     */
+    public void testSampleFrequencies()
+    {
+        ArrayList<Condition.Type[]> combinations = new ArrayList<>();
+        combinations.add(new Condition.Type[] { Condition.Type.DELIVERY });
+        combinations.add(new Condition.Type[] { Condition.Type.DELIVERY, Condition.Type.PPH });
+        combinations.add(new Condition.Type[] { Condition.Type.DELIVERY, Condition.Type.SEPSIS });
+        combinations.add(new Condition.Type[] { Condition.Type.ABORTION });
+        double[] probabilities = { 0.55, 0.25, 0.2, 0 };
+
+        double[] rates = new double[Condition.Type.values().length];
+        Arrays.fill(rates, 100);
+        CaseMix caseMix = new CaseMix(combinations, probabilities, rates);
+
+        int samples = 200000;
+        int[] counts = new int[probabilities.length];
+        SplitMixRandomSource random = new SplitMixRandomSource(7);
+        for (int index = 0; index < samples; index++)
+        {
+            counts[caseMix.sample(random)]++;
+        }
+
+        for (int index = 0; index < probabilities.length; index++)
+        {
+            assertEquals(probabilities[index], (double) counts[index] / samples, 0.005);
+        }
+        assertEquals(0, counts[3]);
+    }
+
+    /**
+     * Probabilities that do not sum to unity should be rejected.
+     */
+    public void testRejectsInvalidProbabilities()
+    {
+        ArrayList<Condition.Type[]> combinations = new ArrayList<>();
+        combinations.add(new Condition.Type[] { Condition.Type.DELIVERY });
+        combinations.add(new Condition.Type[] { Condition.Type.PPH });
+
+        try
+        {
+            new CaseMix(combinations, new double[] { 0.5, 0.4 }, new double[Condition.Type.values().length]);
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException iae)
+        {
+        }
+    }
+
+    /**
+     * A combination that repeats a condition type should be rejected, since patients hold one
+     * condition per type.
+     */
+    public void testRejectsRepeatedCondition()
+    {
+        ArrayList<Condition.Type[]> combinations = new ArrayList<>();
+        combinations.add(new Condition.Type[] { Condition.Type.DELIVERY, Condition.Type.SEPSIS, Condition.Type.SEPSIS });
+
+        double[] rates = new double[Condition.Type.values().length];
+        Arrays.fill(rates, 100);
+        try
+        {
+            new CaseMix(combinations, new double[] { 1 }, rates);
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException iae)
+        {
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for checkpoints of a run.
+ */
+public class CheckpointTest
+    extends TestCase
+{
+    /**
+     * A run restored from a checkpoint should continue exactly as the original run.
+     */
+    public void testResumedRunMatchesOriginal() throws IOException
+    {
+        List<String> original = new ArrayList<>();
+        Simulation uninterrupted = new Simulation(new SimulationContext(new Hospital(3, 1), new RandomStreams(23)), 0.5);
+        uninterrupted.addListener(new Recorder(original));
+        uninterrupted.run(200);
+
+        File file = File.createTempFile("checkpoint", ".mmhk");
+        file.deleteOnExit();
+
+        List<String> interrupted = new ArrayList<>();
+        Simulation first = new Simulation(new SimulationContext(new Hospital(3, 1), new RandomStreams(23)), 0.5);
+        first.addListener(new Recorder(interrupted));
+        first.addListener(new CheckpointWriter(file.toPath(), 80));
+        first.run(90);
+
+        SimulationContext context = Checkpoint.load(file.toPath(), first.getContext().getTrajectories());
+        assertEquals(80, context.getCycle());
+
+        // Drop the cycles run after the checkpoint, which the resumed run repeats
+        interrupted.subList(80, interrupted.size()).clear();
+        Simulation resumed = new Simulation(context, 0.5);
+        resumed.addListener(new Recorder(interrupted));
+        resumed.resume(120);
+
+        assertEquals(original, interrupted);
+        assertEquals(uninterrupted.getContext().getPatientCount(), context.getPatientCount());
+        assertEquals(uninterrupted.getContext().getDeceasedPatients().size(), context.getDeceasedPatients().size());
+        for (Hospital.MaterialResource resource : Hospital.MaterialResource.values())
+        {
+            assertEquals(uninterrupted.getContext().getHospital().getStock(resource), context.getHospital().getStock(resource));
+        }
+    }
+
+    /**
+     * A checkpoint with a corrupted byte should be rejected.
+     */
+    public void testRejectsCorruptCheckpoint() throws IOException
+    {
+        Simulation simulation = new Simulation(new SimulationContext(new Hospital(3, 1), new RandomStreams(29)), 0.5);
+        simulation.run(20);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Checkpoint.write(simulation.getContext(), 20, output);
+        byte[] bytes = output.toByteArray();
+        bytes[bytes.length / 2] ^= 0x10;
+
+        try
+        {
+            Checkpoint.read(new ByteArrayInputStream(bytes), simulation.getContext().getTrajectories());
+            fail("Expected an IOException");
+        }
+        catch (IOException expected)
+        {
+        }
+    }
+
+    /**
+     * Records the state of every patient at the end of each cycle.
+     */
+    private static class Recorder implements SimulationListener
+    {
+        private final List<String> m_cycles;
+
+        Recorder(List<String> cycles)
+        {
+            m_cycles = cycles;
+        }
+
+        @Override
+        public void cycleCompleted(SimulationContext context)
+        {
+            StringBuilder builder = new StringBuilder();
+            builder.append(context.getCycle()).append(':');
+            builder.append(context.getHospital().nurses).append(',').append(context.getHospital().doctors);
+            for (Patient patient : context.getCurrentPatients())
+            {
+                builder.append(' ').append(patient.getPatientId()).append('/').append(patient.getAge());
+                builder.append('/').append(EventLogWriter.trajectoryId(patient));
+                builder.append('/').append(patient.getStage().getTreatmentPlan().getCycle());
+                for (Condition condition : patient.getConditions())
+                {
+                    builder.append('/').append(condition.getType()).append('=').append(condition.getProbabilityOfMortality());
+                }
+                builder.append('/').append(patient.getDoctor()).append('/').append(patient.getNurse());
+                builder.append('/').append(patient.getDoses());
+            }
+            builder.append(" deaths ").append(context.getDeceasedPatients().size());
+            m_cycles.add(builder.toString());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the columnar result files.
+ */
+public class ColumnarResultTest
+    extends TestCase
+{
+    /**
+     * Every column of every cycle should read back as it was written, including empty cycles, and the
+     * file should end with its footer.
+     */
+    public void testRoundTrip() throws IOException
+    {
+        File file = File.createTempFile("results", ".mmhc");
+        file.deleteOnExit();
+
+        SimulationContext context = new SimulationContext(new Hospital(3, 1), new RandomStreams(11));
+        List<List<Patient>> cycles = new ArrayList<>();
+        ColumnarResultWriter writer = new ColumnarResultWriter(file.getPath());
+        try
+        {
+            for (int cycle = 0; cycle < 20; cycle++)
+            {
+                List<Patient> patients = Shiva.createPatients(context, (cycle % 5 == 0) ? 0 : 3 * cycle, 18, 45);
+                for (Patient patient : patients)
+                {
+                    patient.setDoctor(cycle % 2);
+                    patient.setNurse(cycle % 3);
+                    patient.setDoses(0.5 * cycle);
+                    if (patient.getPatientId() % 4 == 0)
+                    {
+                        patient.die();
+                    }
+                }
+
+                writer.writeCycle(cycle, patients);
+                cycles.add(patients);
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+        assertEquals(writer.getBytesWritten(), file.length());
+
+        try (ColumnarResultReader reader = new ColumnarResultReader(file.getPath()))
+        {
+            assertEquals(cycles.size(), reader.getBlockCount());
+            for (int block = 0; block < cycles.size(); block++)
+            {
+                List<Patient> patients = cycles.get(block);
+                assertEquals(block, reader.getCycle(block));
+                assertEquals(patients.size(), reader.getRowCount(block));
+
+                IntBuffer ids = reader.getPatientIds(block);
+                IntBuffer ages = reader.getAges(block);
+                IntBuffer doctors = reader.getDoctors(block);
+                IntBuffer nurses = reader.getNurses(block);
+                DoubleBuffer doses = reader.getDoses(block);
+                ByteBuffer outcomes = reader.getOutcomes(block);
+                assertEquals(patients.size(), ids.remaining());
+                for (int row = 0; row < patients.size(); row++)
+                {
+                    Patient patient = patients.get(row);
+                    assertEquals(patient.getPatientId(), ids.get(row));
+                    assertEquals(patient.getAge(), ages.get(row));
+                    assertEquals(patient.getDoctor(), doctors.get(row));
+                    assertEquals(patient.getNurse(), nurses.get(row));
+                    assertEquals(patient.getDoses(), doses.get(row));
+                    assertEquals(patient.isAlive() ? ColumnarResultFormat.SURVIVED : ColumnarResultFormat.DIED,
+                        outcomes.get(row));
+                }
+
+                for (Condition.Type type : Condition.Type.values())
+                {
+                    DoubleBuffer severities = reader.getProbabilityOfMortality(block, type);
+                    for (int row = 0; row < patients.size(); row++)
+                    {
+                        Condition condition = patients.get(row).getCondition(type);
+                        if (condition == null)
+                        {
+                            assertTrue(Double.isNaN(severities.get(row)));
+                        }
+                        else
+                        {
+                            assertEquals(condition.getProbabilityOfMortality(), severities.get(row));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A file that was never closed has no footer and should be rejected.
+     */
+    public void testRejectsFileWithoutFooter() throws IOException
+    {
+        File file = File.createTempFile("results", ".mmhc");
+        file.deleteOnExit();
+
+        SimulationContext context = new SimulationContext(new Hospital(3, 1), new RandomStreams(11));
+        ColumnarResultWriter writer = new ColumnarResultWriter(file.getPath());
+        writer.writeCycle(0, Shiva.createPatients(context, 10, 18, 45));
+
+        try
+        {
+            new ColumnarResultReader(file.getPath()).close();
+            fail("Expected an IOException");
+        }
+        catch (IOException expected)
+        {
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * A file continued by a restored run should drop the cycles written after the checkpoint and end
+     * up identical to the file of the uninterrupted run.
+     */
+    public void testContinuedFileMatchesUninterrupted() throws IOException
+    {
+        SimulationContext context = new SimulationContext(new Hospital(3, 1), new RandomStreams(17));
+        List<List<Patient>> cycles = new ArrayList<>();
+        for (int cycle = 0; cycle < 10; cycle++)
+        {
+            cycles.add(Shiva.createPatients(context, cycle % 4, 18, 45));
+        }
+
+        File original = File.createTempFile("results", ".mmhc");
+        original.deleteOnExit();
+        try (ColumnarResultWriter writer = new ColumnarResultWriter(original.getPath()))
+        {
+            for (int cycle = 0; cycle < 10; cycle++)
+            {
+                writer.writeCycle(cycle, cycles.get(cycle));
+            }
+        }
+
+        File file = File.createTempFile("results", ".mmhc");
+        file.deleteOnExit();
+        try (ColumnarResultWriter writer = new ColumnarResultWriter(file.getPath()))
+        {
+            for (int cycle = 0; cycle < 8; cycle++)
+            {
+                writer.writeCycle(cycle, cycles.get(cycle));
+            }
+        }
+
+        // A file cannot be continued by a run restored after its last cycle, or by a run whose
+        // patients are not the ones the file has in the hospital
+        long length = file.length();
+        SimulationContext restored = new SimulationContext(new Hospital(3, 1), new RandomStreams(17));
+        restored.advanceTo(12);
+        assertFalse(ColumnarResultWriter.truncate(file.getPath(), restored));
+        restored = new SimulationContext(new Hospital(3, 1), new RandomStreams(17));
+        restored.advanceTo(4);
+        restored.getCurrentPatients().addAll(cycles.get(2));
+        assertFalse(ColumnarResultWriter.truncate(file.getPath(), restored));
+        assertEquals(length, file.length());
+
+        restored.getCurrentPatients().clear();
+        restored.getCurrentPatients().addAll(cycles.get(3));
+        assertTrue(ColumnarResultWriter.truncate(file.getPath(), restored));
+        try (ColumnarResultWriter writer = new ColumnarResultWriter(file.getPath(), true))
+        {
+            for (int cycle = 4; cycle < 10; cycle++)
+            {
+                writer.writeCycle(cycle, cycles.get(cycle));
+            }
+        }
+
+        assertTrue(Arrays.equals(Files.readAllBytes(original.toPath()), Files.readAllBytes(file.toPath())));
+    }
+}
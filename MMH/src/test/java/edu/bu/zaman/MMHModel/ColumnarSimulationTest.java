@@ -0,0 +1,53 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the columnar simulation engine.
+ */
+public class ColumnarSimulationTest
+    extends TestCase
+{
+    /**
+     * With the same seed, the columnar engine should produce the same census, severities and
+     * deaths as the object-based engine in every cycle.
+     */
+    public void testMatchesObjectSimulation() throws IOException
+    {
+        long seed = 2017;
+        SimulationContext objectContext = new SimulationContext(new Hospital(3, 1), new RandomStreams(seed));
+        SimulationContext columnarContext = new SimulationContext(new Hospital(3, 1), new RandomStreams(seed));
+
+        Simulation objectSimulation = new Simulation(objectContext, 0.5);
+        ColumnarSimulation columnarSimulation = new ColumnarSimulation(columnarContext, new BernoulliArrivalProcess(0.5), new PatientStore(4));
+
+        for (int cycle = 0; cycle < 500; cycle++)
+        {
+            objectSimulation.runCycle();
+            columnarSimulation.runCycle();
+
+            ArrayList<Patient> patients = objectContext.getCurrentPatients();
+            PatientStore store = columnarSimulation.getStore();
+            assertEquals(patients.size(), store.size());
+            assertEquals(objectContext.getDeceasedPatients().size(), columnarSimulation.getDeaths());
+            assertEquals(objectContext.getHospital().nurses, columnarContext.getHospital().nurses);
+            assertEquals(objectContext.getHospital().doctors, columnarContext.getHospital().doctors);
+
+            for (int slot = 0; slot < store.size(); slot++)
+            {
+                Patient patient = patients.get(slot);
+                assertEquals(patient.getPatientId(), store.getPatientId(slot));
+                assertEquals(patient.getNurse(), store.getNurses(slot));
+                assertEquals(patient.getDoctor(), store.getDoctors(slot));
+                for (Condition condition : patient.getConditions())
+                {
+                    assertEquals(condition.getProbabilityOfMortality(),
+                        store.getProbabilityOfMortality(slot, condition.getType()));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the cycle metrics.
+ */
+public class CycleMetricsTest
+    extends TestCase
+{
+    /**
+     * The counters should agree with the state of the run. Every patient in the hospital during
+     * the treatment phase is either treated or denied resources, and is either still in the
+     * hospital at the end of the cycle or has died.
+     */
+    public void testCountersMatchRun() throws IOException
+    {
+        SimulationContext context = new SimulationContext(new Hospital(3, 1), new RandomStreams(7));
+        Simulation simulation = new Simulation(context, 0.5);
+
+        final long[] census = new long[1];
+        simulation.addListener(new SimulationListener()
+        {
+            @Override
+            public void cycleCompleted(SimulationContext context)
+            {
+                census[0] += context.getCurrentPatients().size();
+            }
+        });
+        simulation.run(200);
+
+        CycleMetrics metrics = simulation.getMetrics();
+        assertEquals(200, metrics.getCycles());
+        assertEquals(context.getPatientCount(), metrics.getPatientsAdmitted());
+        assertEquals(context.getDeceasedPatients().size(), metrics.getDeaths());
+        assertEquals(census[0] + metrics.getDeaths(), metrics.getPatientsTreated() + metrics.getPatientsDeniedResources());
+        assertTrue(metrics.getStageTransitions() >= metrics.getPatientsAdmitted());
+        assertTrue(metrics.getTreatmentNanos() > 0);
+
+        metrics.reset();
+        assertEquals(0, metrics.getCycles());
+        assertEquals(0, metrics.getTreatmentNanos());
+    }
+
+    /**
+     * Registered metrics should be readable over JMX.
+     */
+    public void testRegister() throws JMException
+    {
+        CycleMetrics metrics = new CycleMetrics();
+        metrics.addExported(3, 120);
+
+        ObjectName name = metrics.register("CycleMetricsTest");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            assertEquals(3L, server.getAttribute(name, "RecordsExported"));
+            assertEquals(120L, server.getAttribute(name, "BytesExported"));
+        }
+        finally
+        {
+            server.unregisterMBean(name);
+        }
+    }
+}
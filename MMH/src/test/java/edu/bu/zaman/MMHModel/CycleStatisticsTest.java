@@ -0,0 +1,132 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the running and per-cycle statistics.
+ */
+public class CycleStatisticsTest
+    extends TestCase
+{
+    /**
+     * Running statistics should match a two-pass computation, and merging the statistics of two
+     * series should match adding both series to one instance.
+     */
+    public void testRunningStatistics()
+    {
+        Random random = new Random(3);
+        double[] values = new double[1000];
+        RunningStatistics all = new RunningStatistics();
+        RunningStatistics first = new RunningStatistics();
+        RunningStatistics second = new RunningStatistics();
+        for (int index = 0; index < values.length; index++)
+        {
+            // A large offset would lose precision with a sum of squares
+            values[index] = 1e9 + random.nextGaussian();
+            all.add(values[index]);
+            (index < 300 ? first : second).add(values[index]);
+        }
+
+        double mean = 0;
+        for (double value : values)
+        {
+            mean += value / values.length;
+        }
+        double variance = 0;
+        for (double value : values)
+        {
+            variance += (value - mean) * (value - mean) / (values.length - 1);
+        }
+
+        assertEquals(mean, all.getMean(), 1e-6);
+        assertEquals(variance, all.getVariance(), 1e-6);
+
+        RunningStatistics merged = first.merge(second);
+        assertEquals(all.getCount(), merged.getCount());
+        assertEquals(all.getMean(), merged.getMean(), 1e-6);
+        assertEquals(all.getVariance(), merged.getVariance(), 1e-6);
+        assertEquals(all.getMin(), merged.getMin());
+        assertEquals(all.getMax(), merged.getMax());
+    }
+
+    /**
+     * The statistics collected during replications should agree with the replication results.
+     */
+    public void testStatisticsMatchReplications()
+    {
+        Scenario scenario = new Scenario("statistics", 0.5, 100, 3, 1, Hospital.defaultStock(), 4, 19);
+        ReplicationRunner runner = new ReplicationRunner(scenario);
+        ReplicationResult result = runner.run();
+        CycleStatistics statistics = runner.getStatistics();
+
+        assertEquals(4, statistics.getRuns());
+        double census = 0;
+        for (int cycle = 0; cycle < scenario.getTotalCycles(); cycle++)
+        {
+            assertEquals(result.getMeanCensus(cycle), statistics.getMeanCensus(cycle), 1e-9);
+            assertEquals(result.getMeanDeaths(cycle), statistics.getMeanDeaths(cycle), 1e-9);
+            assertTrue(statistics.getMeanNursesInUse(cycle) <= 3);
+            assertTrue(statistics.getMeanDrawdown(cycle, Hospital.MaterialResource.OXYTOCIN) >= 0);
+            census += statistics.getMeanCensus(cycle);
+        }
+        assertEquals(census / scenario.getTotalCycles(), statistics.getCensus().getMean(), 1e-9);
+        assertEquals(4L * scenario.getTotalCycles(), statistics.getCensus().getCount());
+
+        long admissions = 0;
+        long deaths = 0;
+        for (Condition.Type type : Condition.Type.values())
+        {
+            admissions += statistics.getAdmissions(type);
+            deaths += statistics.getDeaths(type);
+        }
+        assertTrue(admissions >= result.getAdmissions());
+        assertTrue(deaths >= result.getDeaths());
+    }
+
+    /**
+     * Utilization should stay between 0 and 1, and the staff in use should add up to the staff
+     * checked out by every patient.
+     */
+    public void testUtilizationCountsCheckedOutStaff() throws IOException
+    {
+        Hospital hospital = new Hospital(3, 1);
+        CycleStatistics statistics = new CycleStatistics(hospital, 200);
+        Simulation simulation = new Simulation(new SimulationContext(hospital, new RandomStreams(43)), 0.5);
+        simulation.addListener(statistics);
+        simulation.run(200);
+
+        assertEquals(200, statistics.getNurseUtilization().getCount());
+        assertTrue(statistics.getNurseUtilization().getMin() >= 0);
+        assertTrue(statistics.getNurseUtilization().getMax() <= 1);
+        assertTrue(statistics.getNurseUtilization().getMax() > 0);
+        assertTrue(statistics.getDoctorUtilization().getMin() >= 0);
+        assertTrue(statistics.getDoctorUtilization().getMax() <= 1);
+
+        SimulationContext context = simulation.getContext();
+        long nurses = 0;
+        long doctors = 0;
+        for (List<Patient> patients : Arrays.asList(context.getCurrentPatients(), context.getDeceasedPatients()))
+        {
+            for (Patient patient : patients)
+            {
+                nurses += patient.getNurse();
+                doctors += patient.getDoctor();
+            }
+        }
+
+        double nursesInUse = 0;
+        double doctorsInUse = 0;
+        for (int cycle = 0; cycle < 200; cycle++)
+        {
+            nursesInUse += statistics.getMeanNursesInUse(cycle);
+            doctorsInUse += statistics.getMeanDoctorsInUse(cycle);
+        }
+        assertEquals((double) nurses, nursesInUse);
+        assertEquals((double) doctors, doctorsInUse);
+    }
+}
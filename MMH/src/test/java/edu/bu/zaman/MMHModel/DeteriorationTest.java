@@ -0,0 +1,73 @@
+package edu.bu.zaman.MMHModel;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the closed form of condition deterioration.
+ */
+public class DeteriorationTest
+    extends TestCase
+{
+    /**
+     * Advancing a condition should match worsening it one cycle at a time.
+     */
+    public void testAdvanceMatchesWorsen()
+    {
+        for (double rate : new double[] { 0.5, 3, 10, 100, 1000 })
+        {
+            for (int start : new int[] { 0, 1, 7, 250 })
+            {
+                for (int cycles : new int[] { 1, 2, 5, 40, 960 })
+                {
+                    Condition worsened = new Condition(Condition.Type.SEPSIS, 0.2, rate);
+                    Condition advanced = new Condition(Condition.Type.SEPSIS, 0.2, rate);
+                    for (int cycle = 0; cycle < start; cycle++)
+                    {
+                        worsened.worsen();
+                        advanced.worsen();
+                    }
+
+                    for (int cycle = 0; cycle < cycles; cycle++)
+                    {
+                        worsened.worsen();
+                    }
+                    advanced.advance(cycles);
+
+                    assertEquals(worsened.getCycle(), advanced.getCycle());
+                    assertEquals(worsened.getProbabilityOfMortality(), advanced.getProbabilityOfMortality(),
+                        1e-10 * worsened.getProbabilityOfMortality() + 1e-300);
+                }
+            }
+        }
+    }
+
+    /**
+     * The bulk kernel should update only the specified conditions.
+     */
+    public void testBulkAdvance()
+    {
+        double[] probabilities = { 0.1, 0.2, 0.3 };
+        double[] rates = { 5, 50, 500 };
+        int[] ages = { 0, 3, 9 };
+
+        Deterioration.advance(probabilities, rates, ages, new int[] { 2, 0 }, 2, 12);
+
+        assertEquals(Deterioration.advance(0.1, 5, 0, 12), probabilities[0]);
+        assertEquals(0.2, probabilities[1]);
+        assertEquals(Deterioration.advance(0.3, 500, 9, 12), probabilities[2]);
+        assertEquals(12, ages[0]);
+        assertEquals(3, ages[1]);
+        assertEquals(21, ages[2]);
+    }
+
+    /**
+     * The gamma function should match known values.
+     */
+    public void testLogGamma()
+    {
+        assertEquals(0, SpecialFunctions.logGamma(1), 1e-14);
+        assertEquals(0, SpecialFunctions.logGamma(2), 1e-14);
+        assertEquals(Math.log(3628800), SpecialFunctions.logGamma(11), 1e-12);
+        assertEquals(0.5 * Math.log(Math.PI), SpecialFunctions.logGamma(0.5), 1e-14);
+    }
+}
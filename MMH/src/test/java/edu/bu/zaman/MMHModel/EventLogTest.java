@@ -0,0 +1,171 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the patient event log.
+ */
+public class EventLogTest
+    extends TestCase
+{
+    /**
+     * Replaying the log should reconstruct the state of every patient at the end of every cycle.
+     */
+    public void testReplayMatchesRun() throws IOException
+    {
+        SimulationContext context = new SimulationContext(new Hospital(3, 1), new RandomStreams(13));
+        Simulation simulation = new Simulation(context, 0.5);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final EventLogWriter writer = new EventLogWriter(output);
+        simulation.addListener(writer);
+
+        // The state of each cycle as a list of rows, with the patients that died in the cycle last
+        final List<List<String>> expected = new ArrayList<>();
+        simulation.addListener(new SimulationListener()
+        {
+            private int m_deaths;
+
+            @Override
+            public void cycleCompleted(SimulationContext context)
+            {
+                List<String> rows = new ArrayList<>();
+                for (Patient patient : context.getCurrentPatients())
+                {
+                    rows.add(describe(patient));
+                }
+                ArrayList<Patient> deceased = context.getDeceasedPatients();
+                for (Patient patient : deceased.subList(m_deaths, deceased.size()))
+                {
+                    rows.add(describe(patient));
+                }
+                m_deaths = deceased.size();
+                expected.add(rows);
+            }
+        });
+        simulation.run(150);
+        writer.close();
+
+        try (EventLogReplay replay = new EventLogReplay(new ByteArrayInputStream(output.toByteArray())))
+        {
+            for (int cycle = 0; cycle < expected.size(); cycle++)
+            {
+                assertTrue(replay.nextCycle());
+                assertEquals(cycle, replay.getCycle());
+
+                List<String> rows = new ArrayList<>();
+                for (EventLogReplay.PatientState patient : replay.getPatients())
+                {
+                    rows.add(describe(patient));
+                }
+                for (EventLogReplay.PatientState patient : replay.getDeaths())
+                {
+                    rows.add(describe(patient));
+                }
+                assertEquals(expected.get(cycle), rows);
+            }
+            assertFalse(replay.nextCycle());
+        }
+
+        // Each patient is written once on admission rather than once per cycle
+        assertTrue(writer.getRecordCount() < context.getPatientCount() * expected.size());
+    }
+
+    /**
+     * The log of a run restored from a checkpoint should continue the log written before the run
+     * was stopped, without repeating the cycles run after the checkpoint, and so end up identical to
+     * the log of the uninterrupted run.
+     */
+    public void testContinuedLogMatchesUninterruptedLog() throws IOException
+    {
+        ByteArrayOutputStream original = new ByteArrayOutputStream();
+        Simulation uninterrupted = new Simulation(new SimulationContext(new Hospital(3, 1), new RandomStreams(31)), 0.5);
+        EventLogWriter originalWriter = new EventLogWriter(original);
+        uninterrupted.addListener(originalWriter);
+        uninterrupted.run(200);
+        originalWriter.close();
+
+        File log = File.createTempFile("patientlog", ".mmhe");
+        log.deleteOnExit();
+        File checkpoint = File.createTempFile("checkpoint", ".mmhk");
+        checkpoint.deleteOnExit();
+
+        Simulation first = new Simulation(new SimulationContext(new Hospital(3, 1), new RandomStreams(31)), 0.5);
+        EventLogWriter firstWriter = new EventLogWriter(log.getPath());
+        first.addListener(firstWriter);
+        first.addListener(new CheckpointWriter(checkpoint.toPath(), 80));
+        first.run(90);
+        firstWriter.close();
+
+        SimulationContext context = Checkpoint.load(checkpoint.toPath(), first.getContext().getTrajectories());
+        assertTrue(EventLogWriter.truncate(log.getPath(), context));
+
+        Simulation resumed = new Simulation(context, 0.5);
+        EventLogWriter resumedWriter = new EventLogWriter(new FileOutputStream(log, true), true);
+        resumed.addListener(resumedWriter);
+        resumed.resume(120);
+        resumedWriter.close();
+
+        assertTrue(Arrays.equals(original.toByteArray(), Files.readAllBytes(log.toPath())));
+    }
+
+    /**
+     * A log that does not reach the checkpoint of a restored run should be left for a new log to
+     * replace.
+     */
+    public void testDoesNotContinueShortLog() throws IOException
+    {
+        File log = File.createTempFile("patientlog", ".mmhe");
+        log.deleteOnExit();
+        Simulation simulation = new Simulation(new SimulationContext(new Hospital(3, 1), new RandomStreams(37)), 0.5);
+        EventLogWriter writer = new EventLogWriter(log.getPath());
+        simulation.addListener(writer);
+        simulation.run(10);
+        writer.close();
+        long length = log.length();
+
+        Simulation longer = new Simulation(new SimulationContext(new Hospital(3, 1), new RandomStreams(37)), 0.5);
+        longer.run(20);
+        assertFalse(EventLogWriter.truncate(log.getPath(), longer.getContext()));
+        assertEquals(length, log.length());
+    }
+
+    private static String describe(Patient patient)
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append(patient.getPatientId()).append(' ').append(patient.getAge());
+        builder.append(' ').append(EventLogWriter.trajectoryId(patient));
+        for (Condition.Type type : Condition.Type.values())
+        {
+            Condition condition = patient.getCondition(type);
+            builder.append(' ').append((condition == null) ? Double.NaN : condition.getProbabilityOfMortality());
+        }
+        builder.append(' ').append(patient.getDoctor()).append(' ').append(patient.getNurse());
+        builder.append(' ').append(patient.getDoses()).append(' ').append(patient.isAlive());
+        return builder.toString();
+    }
+
+    private static String describe(EventLogReplay.PatientState patient)
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append(patient.getPatientId()).append(' ').append(patient.getAge());
+        builder.append(' ').append(patient.getTrajectoryId());
+        for (Condition.Type type : Condition.Type.values())
+        {
+            builder.append(' ').append(patient.getProbabilityOfMortality(type));
+        }
+        builder.append(' ').append(patient.getDoctors()).append(' ').append(patient.getNurses());
+        builder.append(' ').append(patient.getDoses()).append(' ').append(patient.isAlive());
+        return builder.toString();
+    }
+}
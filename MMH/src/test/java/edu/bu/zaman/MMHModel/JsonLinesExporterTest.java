@@ -0,0 +1,128 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the JSON Lines patient export.
+ */
+public class JsonLinesExporterTest
+    extends TestCase
+{
+    /**
+     * Each patient should be written as one compact JSON object per line, with the fields of
+     * {@link PatientSerialize}, so that the line reads back into a {@link PatientSerialize}.
+     */
+    public void testOneCompactObjectPerLine() throws IOException
+    {
+        SimulationContext context = new SimulationContext(new Hospital(3, 1), new RandomStreams(3));
+        List<Patient> patients = Shiva.createPatients(context, 2, 18, 45);
+        Patient first = patients.get(0);
+        Patient second = patients.get(1);
+        first.setDoctor(1);
+        first.setNurse(2);
+        first.setDoses(2.5);
+        second.die();
+
+        StringWriter output = new StringWriter();
+        try (JsonLinesExporter exporter = new JsonLinesExporter(output))
+        {
+            exporter.write(first, 7);
+            exporter.write(second, 8);
+        }
+
+        String text = output.toString();
+        assertTrue(text.endsWith("\n"));
+        String[] lines = text.substring(0, text.length() - 1).split("\n", -1);
+        assertEquals(2, lines.length);
+
+        List<String> fields = Arrays.asList("Cycle", "ID", "age", "Condition", "Survival", "DoctorsUsed", "NursesUsed",
+            "DosesUsed");
+        int[] cycles = { 7, 8 };
+        Gson compact = new GsonBuilder().disableHtmlEscaping().create();
+        for (int index = 0; index < lines.length; index++)
+        {
+            String line = lines[index];
+            Patient patient = patients.get(index);
+
+            // A compact line is exactly the compact serialization of the object it holds
+            JsonObject record = new JsonParser().parse(line).getAsJsonObject();
+            assertEquals(compact.toJson(record), line);
+            List<String> names = new ArrayList<>();
+            for (Map.Entry<String, JsonElement> entry : record.entrySet())
+            {
+                names.add(entry.getKey());
+            }
+            assertEquals(fields, names);
+
+            PatientSerialize serialized = new Gson().fromJson(line, PatientSerialize.class);
+            assertEquals(cycles[index], serialized.getCycle());
+            assertEquals(patient.getPatientId(), serialized.getPatientCollected());
+            assertEquals(patient.getAge(), serialized.getAge());
+            assertEquals(patient.toStringCondition(), serialized.getCondition());
+            assertEquals(patient.isAlive(), serialized.getisAlive());
+            assertEquals(patient.getDoctor(), serialized.getDoctors());
+            assertEquals(patient.getNurse(), serialized.getNurses());
+            assertEquals(patient.getDoses(), serialized.getDoses().doubleValue());
+        }
+    }
+
+    /**
+     * Truncating the export of a restored run should keep only the records of the cycles before the
+     * checkpoint, and drop a last line that was only partly written.
+     */
+    public void testTruncateDropsRestoredCycles() throws IOException
+    {
+        SimulationContext context = new SimulationContext(new Hospital(3, 1), new RandomStreams(5));
+        List<Patient> patients = Shiva.createPatients(context, 3, 18, 45);
+
+        File file = File.createTempFile("patientlist", ".jsonl");
+        file.deleteOnExit();
+        StringWriter written = new StringWriter();
+        StringWriter expected = new StringWriter();
+        try (JsonLinesExporter exporter = new JsonLinesExporter(file.getPath(), false);
+            JsonLinesExporter all = new JsonLinesExporter(written);
+            JsonLinesExporter kept = new JsonLinesExporter(expected))
+        {
+            for (int cycle = 8; cycle < 14; cycle++)
+            {
+                for (Patient patient : patients)
+                {
+                    exporter.write(patient, cycle);
+                    all.write(patient, cycle);
+                    if (cycle < 11)
+                    {
+                        kept.write(patient, cycle);
+                    }
+                }
+            }
+        }
+        try (FileOutputStream output = new FileOutputStream(file, true))
+        {
+            output.write("{\"Cycle\":14,\"ID\"".getBytes(StandardCharsets.UTF_8));
+        }
+
+        // Restored after the last cycle written, only the partly written line is dropped
+        JsonLinesExporter.truncate(file.getPath(), 20);
+        assertEquals(written.toString(), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+        JsonLinesExporter.truncate(file.getPath(), 11);
+        assertEquals(expected.toString(), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,152 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the precompiled model bundle.
+ */
+public class ModelBundleTest
+    extends TestCase
+{
+    /**
+     * A model read from a bundle should be identical to the model loaded from the setup file.
+     */
+    public void testBundleMatchesSetupFile() throws IOException
+    {
+        Path workbook = copySetupFile();
+        Path bundle = ModelBundle.compile(workbook);
+
+        Model expected = SetupLoader.load(workbook);
+        Model actual = ModelBundle.read(bundle, workbook);
+        assertNotNull(actual);
+
+        CaseMix expectedMix = expected.getCaseMix();
+        CaseMix actualMix = actual.getCaseMix();
+        assertEquals(expectedMix.getCombinationCount(), actualMix.getCombinationCount());
+        for (int combination = 0; combination < expectedMix.getCombinationCount(); combination++)
+        {
+            assertEquals(expectedMix.getProbability(combination), actualMix.getProbability(combination));
+            assertEquals(expectedMix.getAliasProbability(combination), actualMix.getAliasProbability(combination));
+            assertEquals(expectedMix.getAlias(combination), actualMix.getAlias(combination));
+            assertEquals(expectedMix.getConditionCount(combination), actualMix.getConditionCount(combination));
+        }
+        for (Condition.Type type : Condition.Type.values())
+        {
+            assertEquals(expectedMix.getDeteriorationRate(type), actualMix.getDeteriorationRate(type));
+        }
+
+        TrajectoryTable expectedTable = expected.getTrajectories();
+        TrajectoryTable actualTable = actual.getTrajectories();
+        assertEquals(expectedTable.size(), actualTable.size());
+        for (int position = 0; position < expectedTable.size(); position++)
+        {
+            Trajectory expectedTrajectory = expectedTable.getAt(position);
+            Trajectory actualTrajectory = actualTable.getAt(position);
+            assertEquals(expectedTrajectory.getId(), actualTrajectory.getId());
+            assertEquals(expectedTrajectory.getRowNumber(), actualTrajectory.getRowNumber());
+            assertEquals(expectedTrajectory.getConditionMask(), actualTrajectory.getConditionMask());
+            for (int index = 0; index < expectedTrajectory.getConditionCount(); index++)
+            {
+                assertEquals(expectedTrajectory.getMinimumSeverity(index), actualTrajectory.getMinimumSeverity(index));
+                assertEquals(expectedTrajectory.getMaximumSeverity(index), actualTrajectory.getMaximumSeverity(index));
+            }
+
+            TreatmentPlanTemplate expectedTemplate = expectedTrajectory.getTreatmentPlanTemplate();
+            TreatmentPlanTemplate actualTemplate = actualTrajectory.getTreatmentPlanTemplate();
+            for (Condition.Type type : Condition.Type.values())
+            {
+                assertEquals(expectedTemplate.getTreatmentEfficacy(type), actualTemplate.getTreatmentEfficacy(type));
+            }
+            for (int cycle = 0; cycle < expectedTemplate.getTotalCycles() + 2; cycle++)
+            {
+                double[] expectedDoses = new double[Hospital.MATERIAL_RESOURCES];
+                double[] actualDoses = new double[Hospital.MATERIAL_RESOURCES];
+                assertEquals(expectedTemplate.requiredMaterialResources(cycle, expectedDoses),
+                    actualTemplate.requiredMaterialResources(cycle, actualDoses));
+                assertTrue(Arrays.equals(expectedDoses, actualDoses));
+                assertEquals(expectedTemplate.requiredNurses(cycle), actualTemplate.requiredNurses(cycle));
+                assertEquals(expectedTemplate.requiredDoctors(cycle), actualTemplate.requiredDoctors(cycle));
+            }
+        }
+    }
+
+    /**
+     * A bundle should only be used while the setup file is unchanged, and a changed setup file or a
+     * corrupt bundle should be rebuilt transparently.
+     */
+    public void testRebuildsStaleOrCorruptBundle() throws IOException
+    {
+        Path workbook = copySetupFile();
+        Path bundle = ModelBundle.getBundlePath(workbook);
+        int trajectories = ModelBundle.load(workbook).getTrajectories().size();
+        assertTrue(Files.exists(bundle));
+        byte[] hash = ModelBundle.hash(workbook);
+
+        removeLastTrajectory(workbook);
+
+        assertNull(ModelBundle.read(bundle, workbook));
+        assertEquals(trajectories - 1, ModelBundle.load(workbook).getTrajectories().size());
+        assertNotNull(ModelBundle.read(bundle, workbook));
+        assertFalse(Arrays.equals(hash, ModelBundle.hash(workbook)));
+
+        byte[] bytes = Files.readAllBytes(bundle);
+        bytes[bytes.length / 2] ^= 0x01;
+        Files.write(bundle, bytes);
+        try
+        {
+            ModelBundle.read(bundle, null);
+            fail("Expected an IOException");
+        }
+        catch (IOException expected)
+        {
+        }
+
+        assertEquals(trajectories - 1, ModelBundle.load(workbook).getTrajectories().size());
+        assertNotNull(ModelBundle.read(bundle, workbook));
+    }
+
+    /**
+     * Copies the setup file into a new temporary directory.
+     */
+    static Path copySetupFile() throws IOException
+    {
+        Path directory = Files.createTempDirectory("bundle");
+        directory.toFile().deleteOnExit();
+
+        Path workbook = directory.resolve("setup.xlsx");
+        Files.copy(Paths.get(App.getSetupFilepath()), workbook, StandardCopyOption.REPLACE_EXISTING);
+        workbook.toFile().deleteOnExit();
+        ModelBundle.getBundlePath(workbook).toFile().deleteOnExit();
+
+        return workbook;
+    }
+
+    /**
+     * Removes the last trajectory from the specified setup file.
+     */
+    static void removeLastTrajectory(Path workbook) throws IOException
+    {
+        try (Workbook setup = new XSSFWorkbook(new FileInputStream(workbook.toFile())))
+        {
+            Sheet sheet = setup.getSheetAt(2);
+            sheet.removeRow(sheet.getRow(sheet.getLastRowNum()));
+            try (OutputStream output = Files.newOutputStream(workbook))
+            {
+                setup.write(output);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for reloading the model when the setup file changes.
+ */
+public class ModelRegistryTest
+    extends TestCase
+{
+    /**
+     * A reload should replace the current model without changing the model of a run that has
+     * already started, and a setup file that cannot be loaded should keep the current model.
+     */
+    public void testReloadKeepsModelOfStartedRuns() throws IOException
+    {
+        Path workbook = ModelBundleTest.copySetupFile();
+        ModelRegistry registry = new ModelRegistry(workbook);
+        Model first = registry.get();
+        SimulationContext context = new SimulationContext(new Hospital(3, 1), first, new RandomStreams(41));
+        int trajectories = first.getTrajectories().size();
+
+        ModelBundleTest.removeLastTrajectory(workbook);
+        assertTrue(registry.reload());
+        Model second = registry.get();
+        assertNotSame(first, second);
+        assertEquals(trajectories - 1, second.getTrajectories().size());
+        assertSame(first.getTrajectories(), context.getTrajectories());
+        assertSame(first.getCaseMix(), context.getCaseMix());
+        assertSame(first.getTrajectories(), context.fork().getTrajectories());
+
+        Files.write(workbook, new byte[] { 1, 2, 3 });
+        assertFalse(registry.reload());
+        assertSame(second, registry.get());
+    }
+
+    /**
+     * Watching the setup file should reload the model once the setup file is saved.
+     */
+    public void testWatchReloadsChangedSetupFile() throws IOException, InterruptedException
+    {
+        Path workbook = ModelBundleTest.copySetupFile();
+        try (ModelRegistry registry = new ModelRegistry(workbook))
+        {
+            Model first = registry.get();
+            registry.watch();
+
+            ModelBundleTest.removeLastTrajectory(workbook);
+            long deadline = System.currentTimeMillis() + 30000;
+            while (registry.get() == first && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(50);
+            }
+
+            assertEquals(first.getTrajectories().size() - 1, registry.get().getTrajectories().size());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package edu.bu.zaman.MMHModel;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the Poisson arrival process.
+ */
+public class PoissonArrivalProcessTest
+    extends TestCase
+{
+    /**
+     * Both sampling methods should produce the mean and variance of the Poisson distribution.
+     */
+    public void testMeanAndVariance()
+    {
+        SplitMixRandomSource random = new SplitMixRandomSource(11);
+        for (double mean : new double[] { 0.5, 4, 29, 45, 300 })
+        {
+            int samples = 100000;
+            double sum = 0;
+            double sumOfSquares = 0;
+            for (int index = 0; index < samples; index++)
+            {
+                int count = PoissonArrivalProcess.sample(mean, random);
+                assertTrue(count >= 0);
+                sum += count;
+                sumOfSquares += (double) count * count;
+            }
+
+            double sampleMean = sum / samples;
+            double sampleVariance = sumOfSquares / samples - sampleMean * sampleMean;
+            assertEquals(mean, sampleMean, 0.02 * mean + 0.01);
+            assertEquals(mean, sampleVariance, 0.05 * mean + 0.01);
+        }
+    }
+
+    /**
+     * A rate profile should repeat once every cycle of the profile has been used.
+     */
+    public void testPeriodicProfile()
+    {
+        PoissonArrivalProcess process = new PoissonArrivalProcess(1, 0, 3);
+        assertEquals(1.0, process.getRate(0));
+        assertEquals(0.0, process.getRate(1));
+        assertEquals(3.0, process.getRate(5));
+        assertEquals(0, process.arrivals(4, new SplitMixRandomSource(1)));
+    }
+
+    /**
+     * Skipping to the next cycle with arrivals should preserve the probability of an arrival in
+     * each cycle of the profile.
+     */
+    public void testNextArrivalCycle()
+    {
+        double[] rates = { 0.1, 0, 2, 0.3 };
+        PoissonArrivalProcess process = new PoissonArrivalProcess(rates);
+        SplitMixRandomSource random = new SplitMixRandomSource(3);
+
+        int samples = 100000;
+        int[] counts = new int[8];
+        for (int index = 0; index < samples; index++)
+        {
+            int cycle = process.nextArrivalCycle(1, random);
+            assertTrue(cycle >= 1);
+            assertTrue(cycle != 5);
+            if (cycle < 1 + counts.length)
+            {
+                counts[cycle - 1]++;
+            }
+            assertTrue(process.conditionalArrivals(cycle, random) >= 1);
+        }
+
+        // The probability that the first arrival is in each cycle from cycle 1 onwards
+        double survival = 1;
+        for (int offset = 0; offset < counts.length; offset++)
+        {
+            double probability = 1 - Math.exp(-rates[(1 + offset) % rates.length]);
+            assertEquals(survival * probability, (double) counts[offset] / samples, 0.005);
+            survival *= 1 - probability;
+        }
+    }
+}
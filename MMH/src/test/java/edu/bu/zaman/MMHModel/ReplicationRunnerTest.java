@@ -0,0 +1,59 @@
+package edu.bu.zaman.MMHModel;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for running replications in parallel.
+ */
+public class ReplicationRunnerTest
+    extends TestCase
+{
+    /**
+     * The merged result for a seed should be bit-identical whether the replications run on one
+     * thread or on several.
+     */
+    public void testResultIndependentOfThreadCount() throws InterruptedException, ExecutionException
+    {
+        Scenario scenario = new Scenario("threads", 0.5, 150, 3, 1, Hospital.defaultStock(), 12, 23);
+        ReplicationResult single = run(scenario, 1);
+        ReplicationResult parallel = run(scenario, 4);
+
+        assertEquals(12, single.getReplications());
+        assertTrue(single.getAdmissions() > 0);
+        assertEquals(single.getReplications(), parallel.getReplications());
+        assertEquals(single.getAdmissions(), parallel.getAdmissions());
+        assertEquals(single.getDeaths(), parallel.getDeaths());
+        assertEquals(single.getSurvivors(), parallel.getSurvivors());
+        assertEquals(Double.doubleToRawLongBits(single.getMeanMortality()),
+            Double.doubleToRawLongBits(parallel.getMeanMortality()));
+        assertEquals(Double.doubleToRawLongBits(single.getMortalityStandardDeviation()),
+            Double.doubleToRawLongBits(parallel.getMortalityStandardDeviation()));
+        for (int cycle = 0; cycle < scenario.getTotalCycles(); cycle++)
+        {
+            assertEquals(Double.doubleToRawLongBits(single.getMeanCensus(cycle)),
+                Double.doubleToRawLongBits(parallel.getMeanCensus(cycle)));
+            assertEquals(Double.doubleToRawLongBits(single.getMeanDeaths(cycle)),
+                Double.doubleToRawLongBits(parallel.getMeanDeaths(cycle)));
+        }
+    }
+
+    /**
+     * Runs the replications of a scenario on a pool with the specified number of threads.
+     */
+    private static ReplicationResult run(Scenario scenario, int threads)
+        throws InterruptedException, ExecutionException
+    {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try
+        {
+            return pool.submit(() -> new ReplicationRunner(scenario).run()).get();
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the indexed queries over columnar result files.
+ */
+public class ResultQueryTest
+    extends TestCase
+{
+    /**
+     * Indexed queries should return the same answers as a scan of the snapshots written, including
+     * for a cycle whose rows are not sorted by patient ID.
+     */
+    public void testQueriesMatchScan() throws IOException
+    {
+        File file = File.createTempFile("results", ".mmhc");
+        file.deleteOnExit();
+        new File(file.getPath() + ResultIndex.EXTENSION).deleteOnExit();
+
+        SimulationContext context = new SimulationContext(new Hospital(3, 1), new RandomStreams(5));
+        List<Patient> current = new ArrayList<>();
+        try (ColumnarResultWriter writer = new ColumnarResultWriter(file.getPath()))
+        {
+            for (int cycle = 0; cycle < 30; cycle++)
+            {
+                // Survivors followed by the patients that died during the cycle, as written by App
+                List<Patient> deaths = new ArrayList<>();
+                for (Patient patient : current)
+                {
+                    if (patient.getPatientId() % 7 == cycle % 7)
+                    {
+                        patient.die();
+                        deaths.add(patient);
+                    }
+                    patient.setDoctor(cycle % 2);
+                    patient.setNurse(1);
+                }
+                current.removeAll(deaths);
+                current.addAll(Shiva.createPatients(context, 4, 18, 45));
+
+                List<Patient> snapshot = new ArrayList<>(current);
+                snapshot.addAll(deaths);
+                if (cycle == 17)
+                {
+                    Collections.shuffle(snapshot, new Random(cycle));
+                }
+                writer.writeCycle(cycle, snapshot);
+            }
+        }
+
+        try (ResultQuery query = new ResultQuery(file.getPath()))
+        {
+            ColumnarResultReader reader = query.getReader();
+            int patients = current.get(current.size() - 1).getPatientId();
+            for (int patientId = 1; patientId <= patients; patientId++)
+            {
+                List<ResultQuery.PatientRecord> history = query.getPatientHistory(patientId);
+                int next = 0;
+                for (int block = 0; block < reader.getBlockCount(); block++)
+                {
+                    IntBuffer ids = reader.getPatientIds(block);
+                    for (int row = 0; row < ids.limit(); row++)
+                    {
+                        if (ids.get(row) == patientId)
+                        {
+                            ResultQuery.PatientRecord record = history.get(next++);
+                            assertEquals(reader.getCycle(block), record.getCycle());
+                            assertEquals(reader.getDoctors(block).get(row), record.getDoctors());
+                            assertEquals(reader.getProbabilityOfMortality(block, Condition.Type.SEPSIS).get(row),
+                                record.getProbabilityOfMortality(Condition.Type.SEPSIS));
+                        }
+                    }
+                }
+                assertEquals(next, history.size());
+            }
+
+            Map<Integer, Integer> doctorTotals = new HashMap<>();
+            for (int block = 0; block < reader.getBlockCount(); block++)
+            {
+                List<Integer> expected = new ArrayList<>();
+                IntBuffer ids = reader.getPatientIds(block);
+                IntBuffer doctors = reader.getDoctors(block);
+                long totalDoctors = 0;
+                for (int row = 0; row < ids.limit(); row++)
+                {
+                    if (reader.getOutcomes(block).get(row) == ColumnarResultFormat.SURVIVED &&
+                            !Double.isNaN(reader.getProbabilityOfMortality(block, Condition.Type.SEPSIS).get(row)))
+                    {
+                        expected.add(ids.get(row));
+                    }
+                    Integer previous = doctorTotals.put(ids.get(row), doctors.get(row));
+                    totalDoctors += doctors.get(row) - ((previous == null) ? 0 : previous);
+                }
+
+                List<Integer> actual = new ArrayList<>();
+                for (int patientId : query.getSurvivorsWithCondition(reader.getCycle(block), Condition.Type.SEPSIS))
+                {
+                    actual.add(patientId);
+                }
+                Collections.sort(expected);
+                Collections.sort(actual);
+                assertEquals(expected, actual);
+                assertEquals(totalDoctors, query.getIndex().getDoctors(block));
+            }
+
+            assertTrue(query.getPatientHistory(-1).isEmpty());
+            assertTrue(Arrays.equals(new int[0], query.getSurvivorsWithCondition(99, Condition.Type.SEPSIS)));
+        }
+
+        // The existing index should be reused rather than rebuilt
+        File index = new File(file.getPath() + ResultIndex.EXTENSION);
+        long modified = index.lastModified();
+        try (ResultQuery query = new ResultQuery(file.getPath()))
+        {
+            assertEquals(30, query.getIndex().getBlockCount());
+        }
+        assertEquals(modified, index.lastModified());
+    }
+
+    /**
+     * The staff and doses of a block should be those used during its cycle, although the result file
+     * holds each patient's running totals, and should not drop when a patient dies.
+     */
+    public void testStaffUsagePerCycle() throws IOException
+    {
+        File file = File.createTempFile("results", ".mmhc");
+        file.deleteOnExit();
+        new File(file.getPath() + ResultIndex.EXTENSION).deleteOnExit();
+
+        SimulationContext context = new SimulationContext(new Hospital(3, 1), new RandomStreams(5));
+        List<Patient> patients = Shiva.createPatients(context, 2, 18, 45);
+        Patient first = patients.get(0);
+        Patient second = patients.get(1);
+        try (ColumnarResultWriter writer = new ColumnarResultWriter(file.getPath()))
+        {
+            first.setNurse(2);
+            first.setDoctor(1);
+            first.setDoses(5);
+            second.setNurse(1);
+            writer.writeCycle(0, Arrays.asList(first, second));
+
+            first.setNurse(1);
+            writer.writeCycle(1, Arrays.asList(first, second));
+
+            first.die();
+            second.setNurse(3);
+            second.setDoctor(1);
+            writer.writeCycle(2, Arrays.asList(second, first));
+
+            writer.writeCycle(3, Arrays.asList(second));
+        }
+
+        try (ResultQuery query = new ResultQuery(file.getPath()))
+        {
+            ResultIndex index = query.getIndex();
+            long[] nurses = { 3, 1, 3, 0 };
+            long[] doctors = { 1, 0, 1, 0 };
+            double[] doses = { 5, 0, 0, 0 };
+            for (int block = 0; block < index.getBlockCount(); block++)
+            {
+                assertEquals(nurses[block], index.getNurses(block));
+                assertEquals(doctors[block], index.getDoctors(block));
+                assertEquals(doses[block], index.getDoses(block));
+            }
+
+            // Records hold the running totals
+            assertEquals(3, query.getPatientHistory(first.getPatientId()).get(2).getNurses());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for building, reading and summarising scenario sweeps.
+ */
+public class ScenarioSweepTest
+    extends TestCase
+{
+    /**
+     * The grid should hold one scenario for every combination of the swept parameters, with names
+     * that can be written to a CSV field without quoting.
+     */
+    public void testGrid()
+    {
+        List<Scenario> scenarios = Scenario.grid(new double[] { 0.25, 0.5 }, new int[] { 2, 3, 4 }, new int[] { 1 },
+            50, Hospital.defaultStock(), 2, 7);
+
+        assertEquals(6, scenarios.size());
+        Scenario last = scenarios.get(5);
+        assertEquals(0.5, last.getProbabilityNewPatient());
+        assertEquals(4, last.getNurses());
+        assertEquals(1, last.getDoctors());
+        assertEquals(50, last.getTotalCycles());
+        assertEquals(7, last.getSeed());
+        assertEquals("p=0.5;nurses=4;doctors=1", last.getName());
+        for (Scenario scenario : scenarios)
+        {
+            assertEquals(-1, scenario.getName().indexOf(','));
+        }
+    }
+
+    /**
+     * Scenarios should be read from a CSV file, including quoted names, resource stocks and arrival
+     * rates.
+     */
+    public void testReadScenarios() throws IOException
+    {
+        Path path = Files.createTempFile("scenarios", ".csv");
+        path.toFile().deleteOnExit();
+        Files.write(path, Arrays.asList(
+            "Name,ProbabilityNewPatient,TotalCycles,Nurses,Doctors,Replications,Seed,OXYTOCIN,ArrivalRate",
+            "\"baseline, \"\"low\"\" staff\",0.5,96,2,1,4,11,75,",
+            "",
+            "poisson,0.5,48,3,1,2,13,,1.5;0.5"
+        ), StandardCharsets.UTF_8);
+
+        List<Scenario> scenarios = ScenarioSweep.readScenarios(path);
+        assertEquals(2, scenarios.size());
+
+        Scenario first = scenarios.get(0);
+        assertEquals("baseline, \"low\" staff", first.getName());
+        assertEquals(0.5, first.getProbabilityNewPatient());
+        assertEquals(96, first.getTotalCycles());
+        assertEquals(2, first.getNurses());
+        assertEquals(4, first.getReplications());
+        assertEquals(11, first.getSeed());
+        assertEquals(75.0, first.getStock().get(Hospital.MaterialResource.OXYTOCIN));
+        assertEquals(Hospital.DEFAULT_STOCK, first.getStock().get(Hospital.MaterialResource.MG_SO4));
+        assertTrue(first.getArrivalProcess() instanceof BernoulliArrivalProcess);
+
+        Scenario second = scenarios.get(1);
+        assertEquals("poisson", second.getName());
+        assertTrue(second.getArrivalProcess() instanceof PoissonArrivalProcess);
+        assertEquals("Poisson rate=1.5;0.5", second.getArrivalProcess().toString());
+    }
+
+    /**
+     * An empty scenario file should be rejected as bad input rather than fail on its missing header.
+     */
+    public void testRejectsEmptyFile() throws IOException
+    {
+        Path path = Files.createTempFile("scenarios", ".csv");
+        path.toFile().deleteOnExit();
+
+        try
+        {
+            ScenarioSweep.readScenarios(path);
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException iae)
+        {
+            assertEquals("Scenario file is empty", iae.getMessage());
+        }
+    }
+
+    /**
+     * The summary should have one row per scenario with as many fields as the header, quoting the
+     * names that contain commas.
+     */
+    public void testWriteSummary() throws IOException
+    {
+        List<Scenario> scenarios = Arrays.asList(
+            new Scenario("a, \"b\"", 0.5, 10, 3, 1, Hospital.defaultStock(), 1, 3),
+            Scenario.grid(new double[] { 0.5 }, new int[] { 3 }, new int[] { 1 }, 10, Hospital.defaultStock(), 1, 3)
+                .get(0)
+        );
+
+        ScenarioSweep sweep = new ScenarioSweep(2);
+        List<ScenarioResult> results;
+        try
+        {
+            results = sweep.run(scenarios);
+        }
+        finally
+        {
+            sweep.shutdown();
+        }
+
+        StringWriter writer = new StringWriter();
+        ScenarioSweep.writeSummary(writer, results);
+        String[] lines = writer.toString().split("\n");
+        assertEquals(3, lines.length);
+
+        int columns = ScenarioSweep.split(lines[0]).length;
+        assertEquals(5 + Hospital.MATERIAL_RESOURCES + 6, columns);
+        assertTrue(lines[1].startsWith("\"a, \"\"b\"\"\","));
+        assertEquals("a, \"b\"", ScenarioSweep.split(lines[1])[0]);
+        assertEquals("p=0.5;nurses=3;doctors=1", ScenarioSweep.split(lines[2])[0]);
+        for (int line = 1; line < lines.length; line++)
+        {
+            assertEquals(columns, ScenarioSweep.split(lines[line]).length);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for loading the model from the setup file.
+ */
+public class SetupLoaderTest
+    extends TestCase
+{
+    /**
+     * Numeric and string cells should both be read as text, blank rows should keep the row numbers
+     * of later rows, and invalid trajectories should be skipped.
+     */
+    public void testLoadsModelTables() throws IOException
+    {
+        File file = File.createTempFile("setup", ".xlsx");
+        file.deleteOnExit();
+
+        try (
+            Workbook workbook = new XSSFWorkbook();
+            OutputStream output = new FileOutputStream(file);
+        )
+        {
+            Sheet deteriorations = workbook.createSheet("Deteriorations");
+            row(deteriorations, 0, "Condition", "Deterioration");
+            row(deteriorations, 1, "DELIVERY", 1000);
+            row(deteriorations, 2, "SEPSIS", 5);
+
+            Sheet incidences = workbook.createSheet("Incidences");
+            row(incidences, 0, "Conditions", "Probability");
+            row(incidences, 1, "DELIVERY", 0.75);
+            row(incidences, 2, "DELIVERY,SEPSIS", 0.25);
+
+            Sheet trajectories = workbook.createSheet("Trajectories");
+            row(trajectories, 0, "ID", "Conditions", "Severities", "Treated", "Resources", "Efficacies",
+                "Dosages", "Frequencies", "Nurses", "NurseOn", "NurseOff", "Doctors", "DoctorOn", "DoctorOff",
+                "Cycles");
+            row(trajectories, 1, 7, "DELIVERY", "0-1", "DELIVERY", "MG_SO4", 0.05, 25, 0, 1, 1, 3, 0, 0, 0, 8);
+            row(trajectories, 2, 8, "DELlVERY", "0-1", "DELIVERY", "MG_SO4", 0.05, 25, 0, 1, 1, 3, 0, 0, 0, 8);
+            row(trajectories, 4, 9, "DELIVERY,SEPSIS", "0-1,0.5-1", "SEPSIS", "OXYTOCIN,MG_SO4", "0.1",
+                "2.5,10", "1,2", 2, 0, 4, 1, 0, 2, 12);
+
+            workbook.write(output);
+        }
+
+        Model model = SetupLoader.load(file.toPath());
+
+        CaseMix caseMix = model.getCaseMix();
+        assertEquals(2, caseMix.getCombinationCount());
+        assertEquals(0.75, caseMix.getProbability(0));
+        assertEquals(2, caseMix.getConditionCount(1));
+        assertEquals(Condition.Type.SEPSIS, caseMix.getConditionType(1, 1));
+        assertEquals(1000.0, caseMix.getDeteriorationRate(Condition.Type.DELIVERY));
+        assertEquals(5.0, caseMix.getDeteriorationRate(Condition.Type.SEPSIS));
+        assertTrue(Double.isNaN(caseMix.getDeteriorationRate(Condition.Type.PPH)));
+
+        TrajectoryTable table = model.getTrajectories();
+        assertEquals(2, table.size());
+        assertNull(table.get(8));
+
+        Trajectory first = table.get(7);
+        assertEquals(1, first.getRowNumber());
+        TreatmentPlanTemplate template = first.getTreatmentPlanTemplate();
+        assertEquals(0.05, template.getTreatmentEfficacy(Condition.Type.DELIVERY));
+        assertEquals(25.0, template.getMaterialResourceDosage(0));
+        assertEquals(1, template.getNursesNeeded());
+        assertEquals(3, template.getNurseOffTime());
+        assertEquals(8, template.getTotalCycles());
+
+        Trajectory second = table.get(9);
+        assertEquals(4, second.getRowNumber());
+        assertEquals(0.5, second.getMinimumSeverity(1));
+        assertEquals(Hospital.MaterialResource.OXYTOCIN, second.getTreatmentPlanTemplate().getMaterialResource(0));
+        assertEquals(10.0, second.getTreatmentPlanTemplate().getMaterialResourceDosage(1));
+        assertEquals(2, second.getTreatmentPlanTemplate().getDoctorOffTime());
+    }
+
+    /**
+     * The default model should hold the tables of the setup file in the working directory.
+     */
+    public void testDefaultModelMatchesSetupFile() throws IOException
+    {
+        Model model = SetupLoader.load(Paths.get(App.getSetupFilepath()));
+        TrajectoryTable defaults = Model.getDefault().getTrajectories();
+
+        assertSame(defaults, StageManager.getTrajectories());
+        assertSame(Model.getDefault().getCaseMix(), Shiva.getCaseMix());
+        assertEquals(model.getTrajectories().size(), defaults.size());
+        for (int position = 0; position < defaults.size(); position++)
+        {
+            assertEquals(model.getTrajectories().getAt(position).getId(), defaults.getAt(position).getId());
+        }
+        assertEquals(model.getCaseMix().getCombinationCount(), Model.getDefault().getCaseMix().getCombinationCount());
+    }
+
+    private static void row(Sheet sheet, int rowNumber, Object... values)
+    {
+        Row row = sheet.createRow(rowNumber);
+        for (int column = 0; column < values.length; column++)
+        {
+            if (values[column] instanceof Number)
+            {
+                row.createCell(column).setCellValue(((Number) values[column]).doubleValue());
+            }
+            else
+            {
+                row.createCell(column).setCellValue((String) values[column]);
+            }
+        }
+    }
+}
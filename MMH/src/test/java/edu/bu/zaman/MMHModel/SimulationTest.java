@@ -0,0 +1,62 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for skipping idle cycles in the simulation.
+ */
+public class SimulationTest
+    extends TestCase
+{
+    /**
+     * When a patient arrives in every cycle, the hospital is never empty and no cycle can be
+     * skipped, so skipping idle cycles should reproduce stepping through every cycle exactly.
+     */
+    public void testSkippingMatchesSteppingWithoutIdleCycles() throws IOException
+    {
+        SimulationContext cycleContext = new SimulationContext(new Hospital(3, 1), new RandomStreams(99));
+        SimulationContext skipContext = new SimulationContext(new Hospital(3, 1), new RandomStreams(99));
+
+        ReplicationResult cycleResult = new ReplicationResult(300);
+        Simulation simulation = new Simulation(cycleContext, 1.0);
+        simulation.addListener(cycleResult);
+        simulation.run(300);
+
+        ReplicationResult skipResult = new ReplicationResult(300);
+        Simulation skipping = new Simulation(skipContext, 1.0);
+        skipping.setSkipIdleCycles(true);
+        skipping.addListener(skipResult);
+        skipping.run(100);
+        skipping.run(200);
+
+        assertEquals(300, skipContext.getCycle());
+        assertEquals(cycleResult.getAdmissions(), skipResult.getAdmissions());
+        for (int cycle = 0; cycle < 300; cycle++)
+        {
+            assertEquals(cycleResult.getMeanCensus(cycle), skipResult.getMeanCensus(cycle));
+            assertEquals(cycleResult.getMeanDeaths(cycle), skipResult.getMeanDeaths(cycle));
+        }
+    }
+
+    /**
+     * With sparse arrivals, idle cycles should be skipped while the arrival rate is preserved.
+     */
+    public void testSkipsIdleCycles() throws IOException
+    {
+        int cycles = 200000;
+        double probability = 0.001;
+        SimulationContext context = new SimulationContext(new Hospital(3, 1), new RandomStreams(5));
+
+        ReplicationResult result = new ReplicationResult(cycles);
+        Simulation simulation = new Simulation(context, new BernoulliArrivalProcess(probability));
+        simulation.setSkipIdleCycles(true);
+        simulation.addListener(result);
+        simulation.run(cycles);
+
+        assertEquals(cycles, context.getCycle());
+        assertEquals(probability * cycles, result.getAdmissions(), 4 * Math.sqrt(probability * cycles));
+        assertTrue(simulation.getMetrics().getCycles() < cycles / 10);
+    }
+}
@@ -0,0 +1,51 @@
+package edu.bu.zaman.MMHModel;
+
+import java.util.SplittableRandom;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the SplitMix64 random source.
+ */
+public class SplitMixRandomSourceTest
+    extends TestCase
+{
+    /**
+     * The random source should produce the same sequences as {@link SplittableRandom}.
+     */
+    public void testMatchesSplittableRandom()
+    {
+        SplitMixRandomSource source = new SplitMixRandomSource(12345);
+        SplittableRandom reference = new SplittableRandom(12345);
+
+        for (int index = 0; index < 1000; index++)
+        {
+            assertEquals(reference.nextLong(), source.nextLong());
+            assertEquals(reference.nextDouble(), source.nextDouble());
+            assertEquals(reference.nextInt(17), source.nextInt(17));
+            assertEquals(reference.nextInt(64), source.nextInt(64));
+        }
+
+        SplitMixRandomSource split = source.split();
+        SplittableRandom referenceSplit = reference.split();
+        for (int index = 0; index < 1000; index++)
+        {
+            assertEquals(referenceSplit.nextLong(), split.nextLong());
+        }
+    }
+
+    /**
+     * A copy should continue the sequence of the original source.
+     */
+    public void testCopy()
+    {
+        SplitMixRandomSource source = new SplitMixRandomSource(7);
+        source.nextLong();
+
+        SplitMixRandomSource copy = source.copy();
+        for (int index = 0; index < 100; index++)
+        {
+            assertEquals(source.nextDouble(), copy.nextDouble());
+        }
+    }
+}
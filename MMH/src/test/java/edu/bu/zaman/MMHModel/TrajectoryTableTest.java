@@ -0,0 +1,81 @@
+package edu.bu.zaman.MMHModel;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the compiled trajectory lookup.
+ */
+public class TrajectoryTableTest
+    extends TestCase
+{
+    /**
+     * The table lookup should select the same trajectory as scanning the trajectories in sheet order.
+     */
+    public void testFindMatchesLinearScan()
+    {
+        Random random = new Random(42);
+        Condition.Type[] types = Condition.Type.values();
+
+        ArrayList<Trajectory> trajectories = new ArrayList<>();
+        for (int row = 1; row <= 300; row++)
+        {
+            int count = 1 + random.nextInt(3);
+            Condition.Type[] conditions = new Condition.Type[count];
+            double[] minimums = new double[count];
+            double[] maximums = new double[count];
+            for (int index = 0; index < count; index++)
+            {
+                conditions[index] = types[random.nextInt(4)];
+                minimums[index] = random.nextInt(10) / 10d;
+                maximums[index] = Math.min(1, minimums[index] + (1 + random.nextInt(5)) / 10d);
+            }
+
+            trajectories.add(new Trajectory(row, row, conditions, minimums, maximums, null));
+        }
+        TrajectoryTable table = new TrajectoryTable(trajectories);
+
+        for (int trial = 0; trial < 2000; trial++)
+        {
+            ArrayList<Condition> conditions = new ArrayList<>();
+            for (int index = 0; index < 4; index++)
+            {
+                if (random.nextBoolean())
+                {
+                    conditions.add(new Condition(types[index], random.nextDouble(), 100));
+                }
+            }
+            Patient patient = new Patient(trial, 30, conditions);
+
+            Trajectory expected = null;
+            for (Trajectory trajectory : trajectories)
+            {
+                if (trajectory.matches(patient))
+                {
+                    expected = trajectory;
+                    break;
+                }
+            }
+
+            assertSame(expected, table.find(patient));
+        }
+    }
+
+    /**
+     * Severity bounds are exclusive below and inclusive above, as in the trajectories sheet.
+     */
+    public void testSeverityBounds()
+    {
+        Trajectory trajectory = Trajectory.parse(1, 1, "DELIVERY,SEPSIS", "0-0.5,0.5-1", null);
+
+        ArrayList<Condition> conditions = new ArrayList<>();
+        conditions.add(new Condition(Condition.Type.DELIVERY, 0.5, 100));
+        conditions.add(new Condition(Condition.Type.SEPSIS, 0.5, 100));
+        assertFalse(trajectory.matches(new Patient(1, 30, conditions)));
+
+        conditions.get(1).setProbabilityOfMortality(0.75);
+        assertTrue(trajectory.matches(new Patient(1, 30, conditions)));
+    }
+}
@@ -0,0 +1,102 @@
+package edu.bu.zaman.MMHModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the triage order.
+ */
+public class TriageSorterTest
+    extends TestCase
+{
+    /**
+     * The triage order should match a full sort by probability of mortality and id, as the census
+     * shrinks and the patients' conditions change between sorts.
+     */
+    public void testOrderFollowsConditionChanges()
+    {
+        Random random = new Random(42);
+        TriageSorter sorter = new TriageSorter();
+        ArrayList<Patient> patients = new ArrayList<>();
+
+        for (int id = 0; id < 200; id++)
+        {
+            ArrayList<Condition> conditions = new ArrayList<>();
+            conditions.add(new Condition(Condition.Type.DELIVERY, random.nextDouble(), 1000));
+            if (random.nextBoolean())
+            {
+                conditions.add(new Condition(Condition.Type.SEPSIS, random.nextDouble(), 10));
+            }
+            // Give some patients the same severity to exercise the id tie break
+            if (id % 10 == 0)
+            {
+                conditions.get(0).setProbabilityOfMortality(0.5);
+            }
+
+            patients.add(new Patient(id, 30, conditions));
+        }
+        Collections.shuffle(patients, random);
+
+        Comparator<Patient> triage = new Comparator<Patient>()
+        {
+            @Override
+            public int compare(Patient patient1, Patient patient2)
+            {
+                int compare = Double.compare(patient2.probabilityOfMortality(), patient1.probabilityOfMortality());
+                return (compare != 0) ? compare : Integer.compare(patient1.getPatientId(), patient2.getPatientId());
+            }
+        };
+
+        ArrayList<Patient> order = new ArrayList<>();
+        for (int round = 0; round < 10; round++)
+        {
+            for (int step = 0; step < 100; step++)
+            {
+                Condition condition = patients.get(random.nextInt(patients.size())).getConditions().get(0);
+                if (random.nextBoolean())
+                {
+                    condition.worsen();
+                }
+                else
+                {
+                    condition.setProbabilityOfMortality(random.nextDouble());
+                }
+            }
+            patients.remove(random.nextInt(patients.size()));
+
+            ArrayList<Patient> unsorted = new ArrayList<>(patients);
+            ArrayList<Patient> expected = new ArrayList<>(patients);
+            Collections.sort(expected, triage);
+
+            sorter.sort(patients, order);
+            assertEquals(expected, order);
+            assertEquals(unsorted, patients);
+        }
+    }
+
+    /**
+     * The order should be fixed when the sort is made, even if the patients change afterwards.
+     */
+    public void testOrderIgnoresLaterChanges()
+    {
+        ArrayList<Patient> patients = new ArrayList<>();
+        for (int id = 1; id <= 3; id++)
+        {
+            ArrayList<Condition> conditions = new ArrayList<>();
+            conditions.add(new Condition(Condition.Type.DELIVERY, 0.1 * id, 1000));
+            patients.add(new Patient(id, 30, conditions));
+        }
+
+        ArrayList<Patient> order = new ArrayList<>();
+        new TriageSorter().sort(patients, order);
+        patients.get(0).getConditions().get(0).setProbabilityOfMortality(0.9);
+
+        assertEquals(3, order.get(0).getPatientId());
+        assertEquals(2, order.get(1).getPatientId());
+        assertEquals(1, order.get(2).getPatientId());
+    }
+}
@@ -0,0 +1,106 @@
+package edu.bu.zaman.MMHModel;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for forking a run into what-if branches.
+ */
+public class WhatIfRunnerTest
+    extends TestCase
+{
+    /**
+     * A fork should share the deceased patients with its base run and copy everything it modifies.
+     */
+    public void testForkSharesOnlyUnchangingState() throws IOException
+    {
+        Simulation simulation = new Simulation(new SimulationContext(new Hospital(3, 1), new RandomStreams(31)), 0.5);
+        SimulationContext base = simulation.getContext();
+        simulation.run(120);
+        while (base.getCurrentPatients().isEmpty() && base.getCycle() < 1000)
+        {
+            simulation.runCycle();
+        }
+        assertFalse(base.getCurrentPatients().isEmpty());
+        assertFalse(base.getDeceasedPatients().isEmpty());
+
+        SimulationContext fork = base.fork();
+        assertEquals(base.getCycle(), fork.getCycle());
+        assertEquals(base.getPatientCount(), fork.getPatientCount());
+        assertSame(base.getTrajectories(), fork.getTrajectories());
+        assertEquals(base.getDeceasedPatients().size(), fork.getDeceasedPatients().size());
+        for (int index = 0; index < base.getDeceasedPatients().size(); index++)
+        {
+            assertSame(base.getDeceasedPatients().get(index), fork.getDeceasedPatients().get(index));
+        }
+
+        assertEquals(base.getCurrentPatients().size(), fork.getCurrentPatients().size());
+        for (int index = 0; index < base.getCurrentPatients().size(); index++)
+        {
+            Patient patient = base.getCurrentPatients().get(index);
+            Patient copy = fork.getCurrentPatients().get(index);
+            assertNotSame(patient, copy);
+            assertEquals(patient.getPatientId(), copy.getPatientId());
+            assertEquals(patient.probabilityOfMortality(), copy.probabilityOfMortality());
+            assertNotSame(patient.getStage().getTreatmentPlan(), copy.getStage().getTreatmentPlan());
+            assertEquals(patient.getStage().getTreatmentPlan().getID(), copy.getStage().getTreatmentPlan().getID());
+        }
+
+        double stock = base.getHospital().getStock(Hospital.MaterialResource.MG_SO4);
+        Intervention.restock(Hospital.MaterialResource.MG_SO4, 50).apply(fork);
+        assertEquals(stock, base.getHospital().getStock(Hospital.MaterialResource.MG_SO4));
+        assertEquals(stock + 50, fork.getHospital().getStock(Hospital.MaterialResource.MG_SO4));
+        assertEquals(base.getRandom().deaths().nextDouble(), fork.getRandom().deaths().nextDouble());
+    }
+
+    /**
+     * A branch without an intervention should continue exactly as the base run would have, and
+     * running the branches should leave the base run unchanged.
+     */
+    public void testBaselineBranchMatchesUninterruptedRun() throws IOException
+    {
+        ReplicationResult uninterrupted = new ReplicationResult(200);
+        Simulation full = new Simulation(new SimulationContext(new Hospital(3, 1), new RandomStreams(37)), 0.5);
+        full.addListener(uninterrupted);
+        full.run(200);
+        uninterrupted.complete(full.getContext());
+
+        Simulation warmup = new Simulation(new SimulationContext(new Hospital(3, 1), new RandomStreams(37)), 0.5);
+        warmup.run(80);
+        SimulationContext base = warmup.getContext();
+        int census = base.getCurrentPatients().size();
+        double probability = base.getCurrentPatients().get(0).probabilityOfMortality();
+        int nurses = base.getHospital().nurses;
+
+        WhatIfRunner runner = new WhatIfRunner(base, new BernoulliArrivalProcess(0.5), 200);
+        List<ReplicationResult> results = runner.run(Arrays.asList(
+            Intervention.none(),
+            Intervention.addStaff(2, 0),
+            Intervention.none()
+        ));
+
+        assertEquals(3, results.size());
+        for (int branch : new int[] { 0, 2 })
+        {
+            ReplicationResult result = results.get(branch);
+            assertEquals(uninterrupted.getAdmissions(), result.getAdmissions());
+            assertEquals(uninterrupted.getDeaths(), result.getDeaths());
+            for (int cycle = 80; cycle < 200; cycle++)
+            {
+                assertEquals(uninterrupted.getMeanCensus(cycle), result.getMeanCensus(cycle));
+                assertEquals(uninterrupted.getMeanDeaths(cycle), result.getMeanDeaths(cycle));
+            }
+        }
+
+        // Extra staff do not change arrivals, which are drawn from their own stream
+        assertEquals(uninterrupted.getAdmissions(), results.get(1).getAdmissions());
+
+        assertEquals(80, base.getCycle());
+        assertEquals(census, base.getCurrentPatients().size());
+        assertEquals(probability, base.getCurrentPatients().get(0).probabilityOfMortality());
+        assertEquals(nurses, base.getHospital().nurses);
+    }
+}